@@ -0,0 +1,148 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.RecordingModbusMock;
+import com.smartgridready.communicator.example.helper.bulk.BulkReader;
+import com.smartgridready.communicator.rest.exception.RestApiAuthenticationException;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This class provides an example on how to read a subset of the data points of a device with
+ * a single bulk read.
+ * <p>
+ * The program reads ten data points spread over the functional profiles {@code VoltageAC}, {@code CurrentAC}
+ * and {@code ActivePowerAC} of a WAGO smart meter, first one at a time with {@code getVal()}, then
+ * with a planned bulk read. It logs the number of Modbus transactions for both variants.
+ * <p>
+ * The program uses a mocked modbus driver and can be run without an attached device/product.
+ */
+public class BulkReadSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BulkReadSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+    private static final String SERIAL_PORT_NAME = "COM3";
+
+    private static final List<DataPointKey> CONTROL_LOOP_DATA_POINTS = List.of(
+            DataPointKey.of("VoltageAC", "VoltageL1"),
+            DataPointKey.of("VoltageAC", "VoltageL2"),
+            DataPointKey.of("VoltageAC", "VoltageL3"),
+            DataPointKey.of("CurrentAC", "CurrentACL1"),
+            DataPointKey.of("CurrentAC", "CurrentACL2"),
+            DataPointKey.of("CurrentAC", "CurrentACL3"),
+            DataPointKey.of("ActivePowerAC", "ActivePowerACtot"),
+            DataPointKey.of("ActivePowerAC", "ActivePowerACL1"),
+            DataPointKey.of("ActivePowerAC", "ActivePowerACL2"),
+            DataPointKey.of("ActivePowerAC", "ActivePowerACL3"));
+
+    public static void main(String[] argv)
+    {
+        final var configProperties = new Properties();
+        configProperties.setProperty("serial_port", SERIAL_PORT_NAME);
+
+        // The bulk reader accesses the Modbus transport of the device directly,
+        // therefore the same transport instance is handed over to the device builder.
+        final var transport = new RecordingModbusMock(false);
+
+        GenDeviceApi sgcpDevice;
+        EidDataPointIndex index;
+
+        try
+        {
+            sgcpDevice = new SGrDeviceBuilder()
+                // mandatory: inject device description (EID)
+                .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+                // optional: inject the recording ModbusFactory mock
+                .useModbusClientFactory(new MockModbusClientFactory(() -> transport))
+                // optional: inject the configuration
+                .properties(configProperties)
+                .build();
+
+            // The data point index is parsed once from the same EID.
+            index = EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME);
+        }
+        catch ( GenDriverException | RestApiAuthenticationException | IOException e )
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        try
+        {
+            sgcpDevice.connect();
+
+            // Read one data point at a time.
+            transport.clear();
+            for (var key : CONTROL_LOOP_DATA_POINTS)
+            {
+                sgcpDevice.getVal(key.getProfileName(), key.getDataPointName());
+            }
+            LOG.info("getVal() one at a time: {} Modbus transactions", transport.getTransactionCount());
+
+            // Plan the bulk read once, then execute it as often as needed.
+            // The result is a flat structure, index i holds the value of CONTROL_LOOP_DATA_POINTS.get(i).
+            final var bulkReader = new BulkReader(sgcpDevice, index, transport, BulkReader.DEFAULT_MAX_GAP);
+            final var plan = bulkReader.plan(CONTROL_LOOP_DATA_POINTS);
+            LOG.info("Plan: {}", plan);
+
+            final var result = plan.newResult();
+            transport.clear();
+            bulkReader.read(plan, result);
+            LOG.info("Bulk read: {} Modbus transactions", transport.getTransactionCount());
+
+            for (int i = 0; i < result.size(); i++)
+            {
+                LOG.info("\t{} = {}", result.getKey(i), result.isOk(i) ? result.getDouble(i) : result.getError(i));
+            }
+        }
+        catch (Exception e)
+        {
+            LOG.error("Error accessing device. ", e);
+        }
+        finally
+        {
+            if (sgcpDevice.isConnected())
+            {
+                try
+                {
+                    LOG.info("Disconnecting ...");
+                    sgcpDevice.disconnect();
+                }
+                catch ( GenDriverException e )
+                {
+                    LOG.error("Error disconnecting device.", e);
+                }
+            }
+        }
+    }
+}
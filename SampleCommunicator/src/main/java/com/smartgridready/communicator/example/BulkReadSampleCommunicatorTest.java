@@ -0,0 +1,140 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.bulk.BulkReadResult;
+import com.smartgridready.communicator.example.helper.bulk.BulkReader;
+
+/**
+ * This test class provides an example on how to read a set of data points with as few Modbus
+ * transactions as possible, using the {@link BulkReader}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The mocked transport returns the register address as register value, so each data point of the
+ * heat pump reads a distinct value. The tests verify that a bulk read returns for each requested key
+ * the value of that key, also if keys are requested more than once.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class BulkReadSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BulkReadSampleCommunicatorTest.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SampleExternalInterfaceFile.xml";
+
+    private static final DataPointKey OP_MODE = DataPointKey.of("HeatPumpBase", "HPOpModeCmd");
+    private static final DataPointKey SETPOINT_COMFORT = DataPointKey.of("HeatCoolCtrl_1", "SupplyWaterTempStptComf");
+    private static final DataPointKey SETPOINT_ECO = DataPointKey.of("HeatCoolCtrl_1", "SupplyWaterTempStptEco");
+
+    private BulkReader bulkReader;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        final var configProperties = new Properties();
+        configProperties.setProperty("serial_port", "COM3");
+
+        final var transport = new AddressModbusMock();
+        final var device = new SGrDeviceBuilder()
+                .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+                .useModbusClientFactory(new MockModbusClientFactory(() -> transport))
+                .properties(configProperties)
+                .build();
+        device.connect();
+
+        bulkReader = new BulkReader(device, EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME), transport,
+                                    BulkReader.DEFAULT_MAX_GAP);
+    }
+
+    @Test
+    void eachKeyReadsItsOwnValue()
+    {
+        final var keys = List.of(SETPOINT_ECO, OP_MODE, SETPOINT_COMFORT);
+        final var result = bulkReader.read(bulkReader.plan(keys));
+        LOG.info("Bulk read: {}", result);
+
+        assertEquals(1, bulkReader.plan(keys).getModbusTransactionCount());
+        assertKeysReadOwnValues(keys, result);
+    }
+
+    @Test
+    void duplicateAndNonAdjacentKeys()
+    {
+        final var keys = List.of(OP_MODE, SETPOINT_ECO, OP_MODE, SETPOINT_COMFORT, SETPOINT_ECO);
+        final var plan = bulkReader.plan(keys);
+        final var result = bulkReader.read(plan);
+        LOG.info("Bulk read with duplicates: {}", result);
+
+        assertEquals(5, result.size());
+        assertEquals(1, plan.getModbusTransactionCount());
+        assertKeysReadOwnValues(keys, result);
+    }
+
+    private void assertKeysReadOwnValues(List<DataPointKey> keys, BulkReadResult result)
+    {
+        for (int i = 0; i < keys.size(); i++)
+        {
+            final var key = keys.get(i);
+            final var single = bulkReader.read(bulkReader.plan(List.of(key)));
+
+            assertTrue(result.isOk(i), result.toString());
+            assertEquals(key, result.getKey(i));
+            assertEquals(single.getDouble(0), result.getDouble(i), 1e-9, "value of " + key + " at index " + i);
+        }
+    }
+
+    /**
+     * Returns the address of each register as its value.
+     */
+    private static class AddressModbusMock extends GenDriverAPI4ModbusMock
+    {
+        AddressModbusMock()
+        {
+            super(true);
+        }
+
+        @Override
+        public int[] ReadHoldingRegisters(int startingAddress, int quantity)
+        {
+            final var registers = new int[quantity];
+            for (int i = 0; i < quantity; i++)
+            {
+                registers[i] = startingAddress + i;
+            }
+            return registers;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.RecordingModbusMock;
+import com.smartgridready.communicator.example.helper.bulk.BulkWriteBatch;
+import com.smartgridready.communicator.example.helper.bulk.BulkWriter;
+
+/**
+ * This test class provides an example on how to write a coordinated set of setpoints
+ * with a single Modbus transaction, using the {@link BulkWriter}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The operating mode and the comfort/eco supply water temperature setpoints of the heat pump
+ * are located in the contiguous holding registers 1501..1503, so they are written with one
+ * {@code WriteMultipleRegisters} transaction instead of three single writes. The transactions
+ * are verified with a recording Modbus mock, no attached device/product is required.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class BulkWriteSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BulkWriteSampleCommunicatorTest.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SampleExternalInterfaceFile.xml";
+
+    private static final String PROFILE_HEAT_PUMP_BASE = "HeatPumpBase";
+    private static final String PROFILE_HEAT_COOL_CTRL = "HeatCoolCtrl_1";
+
+    private RecordingModbusMock transport;
+    private BulkWriter bulkWriter;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        final var configProperties = new Properties();
+        configProperties.setProperty("serial_port", "COM3");
+
+        // The bulk writer accesses the Modbus transport of the device directly,
+        // therefore the same transport instance is handed over to the device builder.
+        transport = new RecordingModbusMock(true);
+
+        final var device = new SGrDeviceBuilder()
+                .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+                .useModbusClientFactory(new MockModbusClientFactory(() -> transport))
+                .properties(configProperties)
+                .build();
+        device.connect();
+
+        bulkWriter = new BulkWriter(device, EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME), transport);
+        transport.clear();
+    }
+
+    @Test
+    void contiguousSetpointsAreWrittenWithOneTransaction()
+    {
+        final var batch = new BulkWriteBatch()
+                .set(PROFILE_HEAT_COOL_CTRL, "SupplyWaterTempStptEco", 40.0)
+                .set(PROFILE_HEAT_PUMP_BASE, "HPOpModeCmd", 3)    // WP_COMFORT_OP
+                .set(PROFILE_HEAT_COOL_CTRL, "SupplyWaterTempStptComf", 45.5);
+
+        final var result = bulkWriter.write(batch);
+        LOG.info("Bulk write: {}, transactions: {}", result, transport.getTransactions());
+
+        assertTrue(result.isAllOk(), result.toString());
+        assertEquals(1, result.getTransactionCount());
+        assertEquals(1, transport.getTransactionCount());
+
+        final var transaction = transport.getTransactions().get(0);
+        assertEquals("WriteMultipleRegisters", transaction.getFunction());
+        assertEquals(1501, transaction.getAddress());
+        // setpoints are scaled by 10^-1 in the EID
+        assertArrayEquals(new int[] { 3, 455, 400 }, transaction.getRegisters());
+    }
+
+    @Test
+    void singleRegisterIsWrittenWithSingleRegisterTransaction()
+    {
+        final var result = bulkWriter.write(new BulkWriteBatch().set(PROFILE_HEAT_COOL_CTRL, "SupplyWaterTempStptEco", 38.0));
+
+        assertTrue(result.isAllOk(), result.toString());
+        assertEquals(1, transport.getTransactionCount());
+        assertEquals("WriteSingleRegister", transport.getTransactions().get(0).getFunction());
+        assertArrayEquals(new int[] { 380 }, transport.getTransactions().get(0).getRegisters());
+    }
+
+    @Test
+    void atomicBatchWithReadOnlyDataPointWritesNothing()
+    {
+        final var batch = new BulkWriteBatch()
+                .set(PROFILE_HEAT_PUMP_BASE, "HPOpModeCmd", 3)
+                .set(PROFILE_HEAT_COOL_CTRL, "SupplyWaterTempStptFb", 45.0);    // read-only
+
+        final var result = bulkWriter.write(batch);
+        LOG.info("Atomic bulk write: {}", result);
+
+        assertFalse(result.isOk(0));
+        assertFalse(result.isOk(1));
+        assertTrue(result.getError(1) instanceof IllegalArgumentException);
+        assertEquals(0, transport.getTransactionCount());
+    }
+
+    @Test
+    void nonAtomicBatchWritesValidValuesOnly()
+    {
+        final var batch = new BulkWriteBatch()
+                .set(PROFILE_HEAT_PUMP_BASE, "HPOpModeCmd", 3)
+                .set(PROFILE_HEAT_COOL_CTRL, "SupplyWaterTempStptComf", 4000.0);    // exceeds int16 range
+
+        final var result = bulkWriter.write(batch, false);
+        LOG.info("Non-atomic bulk write: {}", result);
+
+        assertTrue(result.isOk(0));
+        assertFalse(result.isOk(1));
+        assertEquals(1, transport.getTransactionCount());
+        assertEquals(1501, transport.getTransactions().get(0).getAddress());
+    }
+}
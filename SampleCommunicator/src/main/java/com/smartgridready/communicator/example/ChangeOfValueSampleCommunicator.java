@@ -0,0 +1,174 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.ChangeOfValueFilter;
+import com.smartgridready.communicator.example.helper.ChangeOfValueFilter.Config;
+import com.smartgridready.communicator.example.helper.ChangeOfValueFilter.Deadband;
+import com.smartgridready.communicator.example.helper.ChangeOfValueReader;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.NoisySignalModbusMock;
+import com.smartgridready.communicator.example.helper.ResourceProbe;
+import com.smartgridready.communicator.rest.exception.RestApiAuthenticationException;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This class provides an example on how to suppress unchanged values right after reading them,
+ * using a change-of-value (deadband) filter.
+ * <p>
+ * The program polls the voltages and the total active power of a WAGO smart meter once per (simulated)
+ * second for one hour and hands the values over to a downstream consumer, once without and once with
+ * the filter. It logs the number of downstream events and the CPU time spent for both runs.
+ * <p>
+ * The program uses a mocked modbus driver that returns a noisy signal and can be run without an
+ * attached device/product.
+ */
+public class ChangeOfValueSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeOfValueSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+    private static final String SERIAL_PORT_NAME = "COM3";
+
+    private static final String PROFILE_VOLTAGE_AC = "VoltageAC";
+    private static final List<String> VOLTAGE_DATA_POINTS = List.of("VoltageL1", "VoltageL2", "VoltageL3");
+    private static final String PROFILE_ACTIVE_POWER_AC = "ActivePowerAC";
+    private static final String ACTIVE_POWER_TOT = "ActivePowerACtot";
+
+    private static final int POLL_CYCLES = 3600;
+    private static final long POLL_INTERVAL_MS = 1000;
+
+    public static void main(String[] argv)
+    {
+        final var configProperties = new Properties();
+        configProperties.setProperty("serial_port", SERIAL_PORT_NAME);
+
+        GenDeviceApi sgcpDevice;
+
+        try
+        {
+            sgcpDevice = new SGrDeviceBuilder()
+                // mandatory: inject device description (EID)
+                .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+                // optional: inject a Modbus mock returning a noisy signal around 230V
+                .useModbusClientFactory(new MockModbusClientFactory(() -> new NoisySignalModbusMock(230.0, 0.3, 1.5, 42L)))
+                // optional: inject the configuration
+                .properties(configProperties)
+                .build();
+        }
+        catch ( GenDriverException | RestApiAuthenticationException | IOException e )
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        try
+        {
+            sgcpDevice.connect();
+
+            // Run without filter: every value read is passed downstream.
+            final var downstreamUnfiltered = new Downstream();
+            var probe = ResourceProbe.start();
+            for (int cycle = 0; cycle < POLL_CYCLES; cycle++)
+            {
+                for (var dataPoint : VOLTAGE_DATA_POINTS)
+                {
+                    downstreamUnfiltered.onValue(PROFILE_VOLTAGE_AC, dataPoint, sgcpDevice.getVal(PROFILE_VOLTAGE_AC, dataPoint));
+                }
+                downstreamUnfiltered.onValue(PROFILE_ACTIVE_POWER_AC, ACTIVE_POWER_TOT, sgcpDevice.getVal(PROFILE_ACTIVE_POWER_AC, ACTIVE_POWER_TOT));
+            }
+            LOG.info("Without filter: events={}, bytes={}, {}", downstreamUnfiltered.events, downstreamUnfiltered.bytes, probe);
+
+            // Run with filter: a simulated clock is used, so the sample does not need to wait.
+            // Voltages are reported when they change by 1V, but at least once per minute.
+            // The active power uses a 2% deadband, relative to the scale defined in the EID
+            // (or to the last value, if the EID does not define a scale), and is reported at most every 5s.
+            final var clock = new AtomicLong();
+            final var filter = new ChangeOfValueFilter(new Config(Deadband.none(), 0, 0), clock::get);
+            final var downstreamFiltered = new Downstream();
+            final var reader = new ChangeOfValueReader(sgcpDevice, filter, downstreamFiltered);
+
+            for (var dataPoint : VOLTAGE_DATA_POINTS)
+            {
+                reader.configure(PROFILE_VOLTAGE_AC, dataPoint, new Config(Deadband.absolute(1.0), 0, 60_000));
+            }
+            reader.configure(PROFILE_ACTIVE_POWER_AC, ACTIVE_POWER_TOT, new Config(Deadband.percent(2.0), 5_000, 60_000));
+
+            probe = ResourceProbe.start();
+            for (int cycle = 0; cycle < POLL_CYCLES; cycle++)
+            {
+                for (var dataPoint : VOLTAGE_DATA_POINTS)
+                {
+                    reader.poll(PROFILE_VOLTAGE_AC, dataPoint);
+                }
+                reader.poll(PROFILE_ACTIVE_POWER_AC, ACTIVE_POWER_TOT);
+                clock.addAndGet(POLL_INTERVAL_MS);
+            }
+            LOG.info("With filter:    events={}, bytes={}, suppressed={}, {}",
+                     downstreamFiltered.events, downstreamFiltered.bytes, filter.getSuppressedCount(), probe);
+        }
+        catch (Exception e)
+        {
+            LOG.error("Error accessing device. ", e);
+        }
+        finally
+        {
+            if (sgcpDevice.isConnected())
+            {
+                try
+                {
+                    LOG.info("Disconnecting ...");
+                    sgcpDevice.disconnect();
+                }
+                catch ( GenDriverException e )
+                {
+                    LOG.error("Error disconnecting device.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Simulates a downstream consumer that serializes every event, as a storage or message bus would do.
+     */
+    private static class Downstream implements ChangeOfValueReader.Listener
+    {
+        private long events = 0;
+        private long bytes = 0;
+
+        @Override
+        public void onValue(String profileName, String dataPointName, Value value)
+        {
+            events++;
+            bytes += (profileName + '/' + dataPointName + '=' + value).length();
+        }
+    }
+}
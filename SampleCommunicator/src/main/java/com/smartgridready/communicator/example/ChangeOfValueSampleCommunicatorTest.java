@@ -0,0 +1,166 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.dto.DataPoint;
+import com.smartgridready.communicator.common.api.values.Float64Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.ChangeOfValueFilter;
+import com.smartgridready.communicator.example.helper.ChangeOfValueReader;
+import com.smartgridready.communicator.example.helper.ChangeOfValueFilter.Config;
+import com.smartgridready.communicator.example.helper.ChangeOfValueFilter.Deadband;
+
+/**
+ * This test class provides an example on how to configure the deadband and the reporting intervals of the
+ * {@link ChangeOfValueFilter}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The tests feed values directly into the filter and use a simulated clock, so no device and no waiting is needed.
+ * The {@link ChangeOfValueReader} test reads from a Mockito mock of a device with a scale in its EID.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class ChangeOfValueSampleCommunicatorTest
+{
+    private static final String PROFILE = "VoltageAC";
+    private static final String DATA_POINT = "VoltageL1";
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void unchangedValueIsSuppressedWithoutDeadband()
+    {
+        final var filter = new ChangeOfValueFilter(new Config(Deadband.none(), 0, 0), clock::get);
+
+        assertTrue(filter.test(PROFILE, DATA_POINT, 230.0), "first value");
+        assertFalse(filter.test(PROFILE, DATA_POINT, 230.0), "unchanged value");
+        assertTrue(filter.test(PROFILE, DATA_POINT, 230.1), "any change");
+        assertFalse(filter.test(PROFILE, DATA_POINT, 230.1), "unchanged value");
+
+        assertEquals(2L, filter.getReportedCount());
+        assertEquals(2L, filter.getSuppressedCount());
+    }
+
+    @Test
+    void absoluteDeadband()
+    {
+        final var filter = new ChangeOfValueFilter(new Config(Deadband.absolute(1.0), 0, 0), clock::get);
+
+        assertTrue(filter.test(PROFILE, DATA_POINT, 230.0));
+        assertFalse(filter.test(PROFILE, DATA_POINT, 230.0));
+        assertFalse(filter.test(PROFILE, DATA_POINT, 230.9));
+        assertFalse(filter.test(PROFILE, DATA_POINT, 229.1));
+        // the deadband is relative to the last reported value, not to the last value read
+        assertTrue(filter.test(PROFILE, DATA_POINT, 231.0));
+        assertFalse(filter.test(PROFILE, DATA_POINT, 230.5));
+        assertTrue(filter.test(PROFILE, DATA_POINT, 229.5));
+    }
+
+    @Test
+    void percentDeadbandOfScale()
+    {
+        // 2% of a 0..10000W scale is 200W
+        final var config = new Config(Deadband.percent(2.0), 0, 0).withScale(0.0, 10_000.0);
+        final var filter = new ChangeOfValueFilter(config, clock::get);
+
+        assertTrue(filter.test(PROFILE, DATA_POINT, 1000.0));
+        assertFalse(filter.test(PROFILE, DATA_POINT, 1000.0));
+        assertFalse(filter.test(PROFILE, DATA_POINT, 1199.0));
+        assertTrue(filter.test(PROFILE, DATA_POINT, 1200.0));
+    }
+
+    @Test
+    void percentDeadbandWithoutScale()
+    {
+        // without scale, 2% of the last reported value
+        final var filter = new ChangeOfValueFilter(new Config(Deadband.percent(2.0), 0, 0), clock::get);
+
+        assertTrue(filter.test(PROFILE, DATA_POINT, 1000.0));
+        assertFalse(filter.test(PROFILE, DATA_POINT, 1019.0));
+        assertTrue(filter.test(PROFILE, DATA_POINT, 1020.0));
+
+        // a last value of zero gives no deadband, but unchanged values are still suppressed
+        assertTrue(filter.test(PROFILE, DATA_POINT, 0.0));
+        assertFalse(filter.test(PROFILE, DATA_POINT, 0.0));
+        assertTrue(filter.test(PROFILE, DATA_POINT, 0.5));
+    }
+
+    @Test
+    void readerAppliesEidScaleToDefaultConfig() throws Exception
+    {
+        final var dataPoint = mock(DataPoint.class);
+        when(dataPoint.getMinimumValue()).thenReturn(0.0);
+        when(dataPoint.getMaximumValue()).thenReturn(10_000.0);
+        final var device = mock(GenDeviceApi.class);
+        when(device.getDataPoint(PROFILE, DATA_POINT)).thenReturn(dataPoint);
+        when(device.getVal(PROFILE, DATA_POINT)).thenReturn(Float64Value.of(1000.0), Float64Value.of(1150.0), Float64Value.of(1250.0));
+
+        // no configuration of the data point, the default percent deadband must use the EID scale
+        final var filter = new ChangeOfValueFilter(new Config(Deadband.percent(2.0), 0, 0), clock::get);
+        final var reported = new ArrayList<Value>();
+        final var reader = new ChangeOfValueReader(device, filter, (profileName, dataPointName, value) -> reported.add(value));
+
+        assertTrue(reader.poll(PROFILE, DATA_POINT));
+        // 15% of the last value, but less than 2% of the scale of 10000
+        assertFalse(reader.poll(PROFILE, DATA_POINT));
+        assertTrue(reader.poll(PROFILE, DATA_POINT));
+        assertEquals(2, reported.size());
+    }
+
+    @Test
+    void reportingIntervals()
+    {
+        final var filter = new ChangeOfValueFilter(new Config(Deadband.absolute(1.0), 5_000, 60_000), clock::get);
+
+        assertTrue(filter.test(PROFILE, DATA_POINT, 230.0));
+        // a change within the minimum interval is suppressed
+        clock.addAndGet(1_000);
+        assertFalse(filter.test(PROFILE, DATA_POINT, 235.0));
+        clock.addAndGet(4_000);
+        assertTrue(filter.test(PROFILE, DATA_POINT, 235.0));
+
+        // an unchanged value is reported when the heartbeat is due
+        clock.addAndGet(59_000);
+        assertFalse(filter.test(PROFILE, DATA_POINT, 235.0));
+        clock.addAndGet(1_000);
+        assertTrue(filter.test(PROFILE, DATA_POINT, 235.0));
+    }
+
+    @Test
+    void nonNumericValues()
+    {
+        final var filter = new ChangeOfValueFilter(new Config(Deadband.none(), 0, 0), clock::get);
+
+        assertTrue(filter.test("HeatPumpBase", "HPOpState", (Object) "HEATING"));
+        assertFalse(filter.test("HeatPumpBase", "HPOpState", (Object) "HEATING"));
+        assertTrue(filter.test("HeatPumpBase", "HPOpState", (Object) "STANDBY"));
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.dag.ControlLoop;
+import com.smartgridready.communicator.example.helper.dag.TaskNode;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineExec;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineProcessor;
+
+/**
+ * This class measures the end-to-end latency of a load management loop for {@value #WALLBOX_COUNT} wallboxes.
+ * <p>
+ * Each cycle reads the site meter (40ms) and the charging current of each wallbox (20ms), computes the current
+ * limit of each wallbox from the headroom of the site and writes the limits (30ms). The wallboxes are connected to
+ * {@value #GATEWAY_COUNT} RTU lines, each processing one request at a time. The site power and the charging currents
+ * change slowly, so most limits stay the same from one cycle to the next.
+ * <p>
+ * The loop is run {@value #CYCLES} times as in step 6 of the {@code AsynchronousSampleCommunicatorTest}, i.e. read
+ * chain, computation by the caller and write chain writing all limits, and {@value #CYCLES} times as
+ * {@link ControlLoop}, writing only the limits that changed. The program logs the p50, p99 and maximum loop latency
+ * and the number of writes per cycle.
+ * <p>
+ * The sample uses simulated devices and can be run without an attached device/product.
+ */
+public class ControlLoopSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ControlLoopSampleCommunicator.class);
+
+    private static final int WALLBOX_COUNT = 100;
+    private static final int GATEWAY_COUNT = 10;
+    private static final int CYCLES = 50;
+    private static final float SITE_LIMIT_KW = 400f;
+    private static final float VOLTAGE = 230f;
+
+    private static final Random RANDOM = new Random(42L);
+
+    private static float sitePowerKw;
+    private static final float[] CHARGING_CURRENTS = new float[WALLBOX_COUNT];
+    private static final AtomicInteger WRITE_COUNT = new AtomicInteger();
+
+    /** The simulated RTU lines, a device call blocks while another call uses its line. */
+    private static final Semaphore[] GATEWAYS = new Semaphore[GATEWAY_COUNT];
+
+    static
+    {
+        Arrays.setAll(GATEWAYS, i -> new Semaphore(1));
+    }
+
+    public static void main(String[] argv)
+    {
+        final var twoPhase = new TwoPhaseLoop();
+        final var controlLoop = controlLoop();
+
+        // warm-up
+        resetDevices();
+        twoPhase.run();
+        controlLoop.run();
+
+        resetDevices();
+        measure("Read, compute, write chains", twoPhase::run);
+
+        resetDevices();
+        measure("Control loop               ", () -> controlLoop.run().getElapsedMs());
+    }
+
+    private static void measure(String name, DoubleSupplier cycle)
+    {
+        final var latencies = new double[CYCLES];
+        WRITE_COUNT.set(0);
+
+        for (int i = 0; i < CYCLES; i++)
+        {
+            changeDevices();
+            latencies[i] = cycle.getAsDouble();
+        }
+
+        Arrays.sort(latencies);
+        LOG.info("{}: p50={}ms, p99={}ms, max={}ms, writes per cycle={}",
+                 name,
+                 String.format("%.1f", latencies[CYCLES / 2]),
+                 String.format("%.1f", latencies[(int) Math.ceil(CYCLES * 0.99) - 1]),
+                 String.format("%.1f", latencies[CYCLES - 1]),
+                 String.format("%.1f", (double) WRITE_COUNT.get() / CYCLES));
+    }
+
+    private static ControlLoop controlLoop()
+    {
+        final var loop = new ControlLoop();
+        final var sitePower = loop.read("site ActivePowerACtot", () -> readSitePower());
+
+        for (int i = 0; i < WALLBOX_COUNT; i++)
+        {
+            final var wallbox = i;
+            final var gateway = "gateway" + wallbox % GATEWAY_COUNT;
+            final TaskNode<Value> current = loop.read("wallbox" + i + " CurrentL1", () -> readChargingCurrent(wallbox))
+                    .uses(gateway);
+            loop.write("wallbox" + i + " HemsCurrentLimit",
+                       () -> limitA(sitePower.getResult(), current.getResult()),
+                       value -> writeLimit(wallbox, Float32Value.of(value)),
+                       sitePower,
+                       current)
+                    .uses(gateway);
+        }
+        return loop;
+    }
+
+    /**
+     * The loop as in the asynchronous sample: read chain, computation by the caller, write chain.
+     */
+    private static final class TwoPhaseLoop
+    {
+        private final DeadlineExec<Value> sitePower = new DeadlineExec<>("ActivePowerAC", "ActivePowerACtot",
+                (profileName, dataPointName) -> readSitePower());
+        private final List<DeadlineExec<Value>> currents = new ArrayList<>();
+        private final Float[] limits = new Float[WALLBOX_COUNT];
+        private final DeadlineProcessor readChain = DeadlineProcessor.parallel().add(sitePower);
+        private final DeadlineProcessor writeChain = DeadlineProcessor.parallel();
+
+        private TwoPhaseLoop()
+        {
+            for (int i = 0; i < WALLBOX_COUNT; i++)
+            {
+                final var wallbox = i;
+                final var current = new DeadlineExec<>("CurrentAC", "CurrentACL1",
+                        (profileName, dataPointName) -> readChargingCurrent(wallbox));
+                currents.add(current);
+                readChain.add(current);
+                writeChain.add(new DeadlineExec<>("Curtailment", "HemsCurrentLimit",
+                        (profileName, dataPointName) -> writeLimit(wallbox, Float32Value.of(limits[wallbox]))));
+            }
+        }
+
+        private double run()
+        {
+            final var startNs = System.nanoTime();
+            readChain.process();
+            for (int i = 0; i < WALLBOX_COUNT; i++)
+            {
+                limits[i] = limitA(sitePower.getValue(), currents.get(i).getValue());
+            }
+            writeChain.process();
+            return (System.nanoTime() - startNs) / 1e6;
+        }
+    }
+
+    /**
+     * Shares the headroom of the site equally among the wallboxes, in steps of 1A and at most 32A per wallbox.
+     */
+    private static Float limitA(Value sitePowerKw, Value chargingCurrent)
+    {
+        final var headroomA = (SITE_LIMIT_KW - sitePowerKw.getFloat32()) * 1000f / (3 * VOLTAGE * WALLBOX_COUNT);
+        return Math.min(32f, Math.max(6f, (float) Math.floor(chargingCurrent.getFloat32() + headroomA)));
+    }
+
+    private static void resetDevices()
+    {
+        synchronized (RANDOM)
+        {
+            RANDOM.setSeed(42L);
+            sitePowerKw = 250f;
+            for (int i = 0; i < WALLBOX_COUNT; i++)
+            {
+                CHARGING_CURRENTS[i] = 6f + 10f * RANDOM.nextFloat();
+            }
+        }
+    }
+
+    /**
+     * Lets the site power and the charging currents drift a little, as between two cycles of 1s.
+     */
+    private static void changeDevices()
+    {
+        synchronized (RANDOM)
+        {
+            sitePowerKw += (float) RANDOM.nextGaussian() * 0.5f;
+            for (int i = 0; i < WALLBOX_COUNT; i++)
+            {
+                CHARGING_CURRENTS[i] += (float) RANDOM.nextGaussian() * 0.1f;
+            }
+        }
+    }
+
+    private static Value readSitePower() throws InterruptedException
+    {
+        Thread.sleep(40);
+        synchronized (RANDOM)
+        {
+            return Float32Value.of(sitePowerKw);
+        }
+    }
+
+    private static Value readChargingCurrent(int wallbox) throws InterruptedException
+    {
+        useGateway(wallbox, 20);
+        synchronized (RANDOM)
+        {
+            return Float32Value.of(CHARGING_CURRENTS[wallbox]);
+        }
+    }
+
+    private static Value writeLimit(int wallbox, Value limit) throws InterruptedException
+    {
+        useGateway(wallbox, 30);
+        WRITE_COUNT.incrementAndGet();
+        return limit;
+    }
+
+    private static void useGateway(int wallbox, long delayMs) throws InterruptedException
+    {
+        final var gateway = GATEWAYS[wallbox % GATEWAY_COUNT];
+        gateway.acquire();
+        try
+        {
+            Thread.sleep(delayMs);
+        }
+        finally
+        {
+            gateway.release();
+        }
+    }
+}
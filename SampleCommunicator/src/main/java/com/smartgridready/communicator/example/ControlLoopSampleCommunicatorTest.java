@@ -0,0 +1,150 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.dag.ControlLoop;
+import com.smartgridready.communicator.example.helper.dag.TaskNode.Status;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This test class provides an example on how to read meters, compute the current limits of wallboxes and write them
+ * in one cycle, using the {@link ControlLoop}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * This replaces step 6 of the {@code AsynchronousSampleCommunicatorTest}, where the caller sets the write values after
+ * the read chain has been processed: the loop passes the read results to a compute function and writes the limits
+ * that changed since the last cycle.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class ControlLoopSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ControlLoopSampleCommunicatorTest.class);
+
+    private static final float SITE_LIMIT_KW = 40f;
+
+    private final AtomicReference<Float> sitePowerKw = new AtomicReference<>(20f);
+    private final List<String> writes = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void writesOnlyChangedLimits()
+    {
+        final var loop = new ControlLoop();
+        final var sitePower = loop.read("clemap ActivePowerACtot", () -> Float32Value.of(sitePowerKw.get()));
+        final var voltage = loop.read("wago VoltageL1", () -> Float32Value.of(230f));
+        loop.write("garoA HemsCurrentLimit",
+                   () -> limitA(sitePower.getResult(), voltage.getResult(), 2),
+                   writer("garoA"),
+                   sitePower,
+                   voltage);
+        loop.write("garoB HemsCurrentLimit",
+                   () -> limitA(sitePower.getResult(), voltage.getResult(), 2),
+                   writer("garoB"),
+                   sitePower,
+                   voltage);
+
+        var cycle = loop.run();
+        LOG.info("Cycle 1: {}", cycle);
+        assertEquals(2, cycle.getWrittenCount());
+        assertEquals(List.of("garoA=14.0", "garoB=14.0"), sorted(writes));
+
+        // same site power, the limits do not change
+        cycle = loop.run();
+        LOG.info("Cycle 2: {}", cycle);
+        assertEquals(0, cycle.getWrittenCount());
+        assertEquals(2, cycle.getUnchangedCount());
+
+        sitePowerKw.set(30f);
+        cycle = loop.run();
+        LOG.info("Cycle 3: {}", cycle);
+        assertEquals(2, cycle.getWrittenCount());
+        assertEquals(List.of("garoA=14.0", "garoA=7.0", "garoB=14.0", "garoB=7.0"), sorted(writes));
+
+        // e.g. after a restart of the wallboxes, the limits are written again
+        loop.invalidate();
+        cycle = loop.run();
+        LOG.info("Cycle 4: {}", cycle);
+        assertEquals(2, cycle.getWrittenCount());
+    }
+
+    @Test
+    void failedWriteIsRepeated()
+    {
+        final var failures = new AtomicInteger(1);
+        final var loop = new ControlLoop();
+        final var sitePower = loop.read("clemap ActivePowerACtot", () -> Float32Value.of(sitePowerKw.get()));
+        final var limit = loop.write("garoA HemsCurrentLimit",
+                                     () -> limitA(sitePower.getResult(), Float32Value.of(230f), 1),
+                                     value -> {
+                                         if (failures.getAndDecrement() > 0)
+                                         {
+                                             throw new GenDriverException("Modbus timeout");
+                                         }
+                                         writes.add("garoA=" + value);
+                                     },
+                                     sitePower);
+
+        var cycle = loop.run();
+        LOG.info("Cycle 1: {}", cycle);
+        assertEquals(Status.ERROR, limit.getStatus());
+        assertEquals(0, cycle.getWrittenCount());
+
+        cycle = loop.run();
+        LOG.info("Cycle 2: {}", cycle);
+        assertEquals(Status.SUCCESS, limit.getStatus());
+        assertEquals(1, cycle.getWrittenCount());
+        assertEquals(List.of("garoA=16.0"), writes);
+    }
+
+    /**
+     * Shares the headroom of the site equally among the wallboxes, in steps of 1A and at most 16A per wallbox.
+     */
+    private static Float limitA(Value sitePowerKw, Value voltage, int wallboxCount)
+    {
+        final var headroomW = (SITE_LIMIT_KW - sitePowerKw.getFloat32()) * 1000f;
+        final var perPhaseA = headroomW / (3 * voltage.getFloat32() * wallboxCount);
+        return Math.min(16f, Math.max(0f, (float) Math.floor(perPhaseA)));
+    }
+
+    private ControlLoop.Writer<Float> writer(String wallbox)
+    {
+        return value -> writes.add(wallbox + "=" + value);
+    }
+
+    private static List<String> sorted(List<String> list)
+    {
+        final var copy = new ArrayList<>(list);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.dag.TaskGraph;
+import com.smartgridready.communicator.example.helper.dag.TaskNode;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineExec;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineProcessor;
+
+/**
+ * This class compares a dependency graph with the equivalent tree of nested parallel and sequential chains.
+ * <p>
+ * The control cycle reads the WAGO meter (three reads of 500ms) and two CLEMAP meters (750ms and 2000ms), reads a
+ * thermostat (1000ms) and writes its setpoint (300ms), and writes the current limits of the two GARO wallboxes
+ * (500ms and 250ms), computed from the WAGO meter and the first CLEMAP. The WAGO meter and the wallboxes share one
+ * RTU bus. The delays are scaled down by ten and vary by +/-10%.
+ * <p>
+ * A tree has to read all meters before writing the limits, so the writes wait for the slow second CLEMAP. The graph
+ * writes the limits as soon as their inputs are read and runs the thermostat independently. Each variant runs
+ * {@value #CYCLES} cycles; the program logs the p50 and maximum of the time until the limits are written and of the
+ * cycle duration, and the critical path of the last graph run.
+ * <p>
+ * The sample uses simulated devices and can be run without an attached device/product.
+ */
+public class DagSchedulerSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DagSchedulerSampleCommunicator.class);
+
+    private static final int CYCLES = 20;
+    private static final double TIME_SCALE = 0.1;
+    private static final String RTU_BUS = "COM3";
+
+    private static final Random RANDOM = new Random(42L);
+
+    /** The simulated RTU bus, a device call blocks while another call uses it. */
+    private static final Semaphore BUS = new Semaphore(1);
+
+    private static final AtomicLong LIMITS_WRITTEN_NS = new AtomicLong();
+
+    public static void main(String[] argv)
+    {
+        final var tree = new Tree();
+        final var graph = new Graph();
+
+        // warm-up
+        tree.run();
+        graph.run();
+
+        measure("Nested tree", tree::run);
+        measure("Task graph ", graph::run);
+
+        LOG.info("Last graph run: {}", graph.lastReport);
+    }
+
+    private static void measure(String name, DoubleSupplier cycle)
+    {
+        final var limitsWritten = new double[CYCLES];
+        final var durations = new double[CYCLES];
+
+        for (int i = 0; i < CYCLES; i++)
+        {
+            final var startNs = System.nanoTime();
+            durations[i] = cycle.getAsDouble();
+            limitsWritten[i] = (LIMITS_WRITTEN_NS.get() - startNs) / 1e6;
+        }
+
+        Arrays.sort(limitsWritten);
+        Arrays.sort(durations);
+        LOG.info("{}: limits written p50={}ms max={}ms, cycle p50={}ms max={}ms",
+                 name,
+                 String.format("%.1f", limitsWritten[CYCLES / 2]),
+                 String.format("%.1f", limitsWritten[CYCLES - 1]),
+                 String.format("%.1f", durations[CYCLES / 2]),
+                 String.format("%.1f", durations[CYCLES - 1]));
+    }
+
+    /**
+     * The control cycle as tree of chains: all reads in parallel, then the wallbox writes in sequence.
+     */
+    private static final class Tree
+    {
+        private final DeadlineProcessor chain;
+
+        private Tree()
+        {
+            final var wagoVoltageACL1 = new DeadlineExec<>("VoltageAC", "VoltageL1", reader(read(500, 220f, true)));
+            final var wagoVoltageACL2 = new DeadlineExec<>("VoltageAC", "VoltageL2", reader(read(500, 221f, true)));
+            final var wagoVoltageACL3 = new DeadlineExec<>("VoltageAC", "VoltageL3", reader(read(500, 222f, true)));
+            final var clemapActPowerACtot1 = new DeadlineExec<>("ActivePowerAC", "ActivePowerACtot", reader(read(750, 20f, false)));
+            final var clemapActPowerACtot2 = new DeadlineExec<>("ActivePowerAC", "ActivePowerACtot", reader(read(2000, 50f, false)));
+            final var thermostat = new DeadlineExec<>("Temperature", "RoomTemperature", reader(read(1000, 21.5f, false)));
+            final var setpoint = new DeadlineExec<>("Temperature", "Setpoint",
+                    reader(write(300, () -> thermostat.getValue().getFloat32() + 0.5f, false, false)));
+
+            final Callable<Float> limit = () -> currentLimit(clemapActPowerACtot1.getValue(), wagoVoltageACL3.getValue());
+            final var garoA = new DeadlineExec<>("Curtailment", "HemsCurrentLimit", reader(write(500, limit, true, false)));
+            final var garoB = new DeadlineExec<>("Curtailment", "HemsCurrentLimit", reader(write(250, limit, true, true)));
+
+            chain = DeadlineProcessor.sequence()
+                    .add(DeadlineProcessor.parallel()
+                            .add(DeadlineProcessor.sequence()
+                                    .add(wagoVoltageACL1)
+                                    .add(wagoVoltageACL2)
+                                    .add(wagoVoltageACL3))
+                            .add(clemapActPowerACtot1)
+                            .add(clemapActPowerACtot2)
+                            .add(DeadlineProcessor.sequence()
+                                    .add(thermostat)
+                                    .add(setpoint)))
+                    .add(DeadlineProcessor.sequence()
+                            .add(garoA)
+                            .add(garoB));
+        }
+
+        private double run()
+        {
+            return chain.process().getElapsedMs();
+        }
+
+        private static <T> DeadlineExec.DataPointReader<T> reader(Callable<T> call)
+        {
+            return (profileName, dataPointName) -> call.call();
+        }
+    }
+
+    /**
+     * The control cycle as graph: each write depends on the reads it needs, the RTU bus is a resource.
+     */
+    private static final class Graph
+    {
+        private final TaskGraph graph = new TaskGraph();
+        private TaskGraph.Report lastReport;
+
+        private Graph()
+        {
+            final var wagoVoltageACL1 = graph.node("wago VoltageL1", read(500, 220f, true)).uses(RTU_BUS);
+            final var wagoVoltageACL2 = graph.node("wago VoltageL2", read(500, 221f, true)).uses(RTU_BUS);
+            final var wagoVoltageACL3 = graph.node("wago VoltageL3", read(500, 222f, true)).uses(RTU_BUS);
+            final var clemapActPowerACtot1 = graph.node("clemap1 ActivePowerACtot", read(750, 20f, false));
+            graph.node("clemap2 ActivePowerACtot", read(2000, 50f, false));
+            final var thermostat = graph.node("thermostat Temperature", read(1000, 21.5f, false));
+            graph.node("thermostat Setpoint", write(300, () -> thermostat.getResult().getFloat32() + 0.5f, false, false))
+                    .dependsOn(thermostat);
+
+            final TaskNode<?>[] inputs = { wagoVoltageACL1, wagoVoltageACL2, wagoVoltageACL3, clemapActPowerACtot1 };
+            final Callable<Float> limit = () -> currentLimit(clemapActPowerACtot1.getResult(), wagoVoltageACL3.getResult());
+            final var garoA = graph.node("garoA HemsCurrentLimit", write(500, limit, true, false))
+                    .uses(RTU_BUS)
+                    .dependsOn(inputs);
+            graph.node("garoB HemsCurrentLimit", write(250, limit, true, true))
+                    .uses(RTU_BUS)
+                    .dependsOn(inputs)
+                    .dependsOn(garoA);
+        }
+
+        private double run()
+        {
+            lastReport = graph.process();
+            return lastReport.getElapsedMs();
+        }
+    }
+
+    private static float currentLimit(Value activePower, Value voltage)
+    {
+        return 16f - activePower.getFloat32() * 1000f / (3 * voltage.getFloat32());
+    }
+
+    private static Callable<Value> read(long delayMs, float value, boolean onBus)
+    {
+        return () -> {
+            simulateCall(delayMs, onBus);
+            return Float32Value.of(value);
+        };
+    }
+
+    private static Callable<Float> write(long delayMs, Callable<Float> value, boolean onBus, boolean lastLimit)
+    {
+        return () -> {
+            final var written = value.call();
+            simulateCall(delayMs, onBus);
+            if (lastLimit)
+            {
+                LIMITS_WRITTEN_NS.set(System.nanoTime());
+            }
+            return written;
+        };
+    }
+
+    private static void simulateCall(long delayMs, boolean onBus) throws InterruptedException
+    {
+        final double factor;
+        synchronized (RANDOM)
+        {
+            factor = 0.9 + 0.2 * RANDOM.nextDouble();
+        }
+
+        if (onBus)
+        {
+            BUS.acquire();
+        }
+        try
+        {
+            Thread.sleep((long) (delayMs * TIME_SCALE * factor));
+        }
+        finally
+        {
+            if (onBus)
+            {
+                BUS.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.dag.TaskGraph;
+import com.smartgridready.communicator.example.helper.dag.TaskNode.Status;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This test class provides an example on how to replace nested {@code Parallel} and {@code Sequence} chains by a
+ * dependency graph, using the {@link TaskGraph}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The graph has the devices of the {@code AsynchronousSampleCommunicatorTest}, with delays scaled down by ten: the
+ * wallbox limits are written as soon as the WAGO meter and the first CLEMAP have been read, without waiting for the
+ * slow second CLEMAP or the unrelated thermostat. The WAGO meter and the two GARO wallboxes share one RTU bus.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class DagSchedulerSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DagSchedulerSampleCommunicatorTest.class);
+
+    private static final String RTU_BUS = "COM3";
+
+    @Test
+    void writeWaitsOnlyForItsMeters()
+    {
+        final var graph = new TaskGraph();
+        final var writesDoneNs = new AtomicLong();
+        final var clemap2DoneNs = new AtomicLong();
+
+        final var wagoVoltageACL1 = graph.node("wago VoltageL1", read(30, 220f)).uses(RTU_BUS);
+        final var wagoVoltageACL2 = graph.node("wago VoltageL2", read(30, 221f)).uses(RTU_BUS);
+        final var wagoVoltageACL3 = graph.node("wago VoltageL3", read(30, 222f)).uses(RTU_BUS);
+        final var clemapActPowerACtot1 = graph.node("clemap1 ActivePowerACtot", read(75, 20f));
+        graph.node("clemap2 ActivePowerACtot", () -> {
+            final var value = read(200, 50f).call();
+            clemap2DoneNs.set(System.nanoTime());
+            return value;
+        });
+        final var thermostat = graph.node("thermostat Temperature", read(100, 21.5f));
+        graph.node("thermostat Setpoint", write(30, () -> thermostat.getResult().getFloat32() + 0.5f, null))
+                .dependsOn(thermostat);
+
+        final Callable<Float> limit = () -> 16f - clemapActPowerACtot1.getResult().getFloat32()
+                                            * wagoVoltageACL3.getResult().getFloat32() / 1000f;
+        final var garoA = graph.node("garoA HemsCurrentLimit", write(50, limit, null))
+                .uses(RTU_BUS)
+                .dependsOn(wagoVoltageACL1, wagoVoltageACL2, wagoVoltageACL3, clemapActPowerACtot1);
+        graph.node("garoB HemsCurrentLimit", write(25, limit, writesDoneNs))
+                .uses(RTU_BUS)
+                .dependsOn(wagoVoltageACL1, wagoVoltageACL2, wagoVoltageACL3, clemapActPowerACtot1)
+                .dependsOn(garoA);
+
+        final var report = graph.process();
+        LOG.info("{}", report);
+
+        assertEquals(9, report.getCount(Status.SUCCESS));
+        // the wallbox limits are written before the slow meter has been read
+        assertTrue(writesDoneNs.get() - clemap2DoneNs.get() < 0, "writes waited for clemap2");
+        assertTrue(report.getElapsedMs() < 260, "graph took " + report.getElapsedMs() + "ms");
+        assertEquals(List.of("clemap2 ActivePowerACtot"), report.getCriticalPath());
+    }
+
+    @Test
+    void sharedBusIsUsedByOneNodeAtATime()
+    {
+        final var graph = new TaskGraph().resource("TCP gateway", 2);
+        final var busUsers = new AtomicInteger();
+        final var maxBusUsers = new AtomicInteger();
+        final var gatewayUsers = new AtomicInteger();
+        final var maxGatewayUsers = new AtomicInteger();
+
+        for (int i = 0; i < 6; i++)
+        {
+            graph.node("rtu" + i, occupy(busUsers, maxBusUsers)).uses(RTU_BUS);
+            graph.node("tcp" + i, occupy(gatewayUsers, maxGatewayUsers)).uses("TCP gateway");
+        }
+
+        final var report = graph.process();
+        LOG.info("{}", report);
+
+        assertEquals(12, report.getCount(Status.SUCCESS));
+        assertEquals(1, maxBusUsers.get());
+        assertEquals(2, maxGatewayUsers.get());
+    }
+
+    @Test
+    void failedReadSkipsDependentWrite()
+    {
+        final var graph = new TaskGraph();
+        final var meter = graph.node("wago VoltageL1", () -> {
+            throw new GenDriverException("Modbus timeout");
+        });
+        final var limit = graph.node("garoA HemsCurrentLimit", write(10, () -> 16f, null)).dependsOn(meter);
+        final var display = graph.node("display", write(10, () -> 0f, null)).dependsOn(limit);
+        final var thermostat = graph.node("thermostat Temperature", read(10, 21.5f));
+
+        final var report = graph.process();
+        LOG.info("{}", report);
+
+        assertEquals(Status.ERROR, meter.getStatus());
+        assertNotNull(meter.getError());
+        assertEquals(Status.SKIPPED, limit.getStatus());
+        assertEquals(Status.SKIPPED, display.getStatus());
+        assertEquals(Status.SUCCESS, thermostat.getStatus());
+    }
+
+    @Test
+    void criticalPathFollowsResourceWaits()
+    {
+        final var graph = new TaskGraph();
+        final var meterA = graph.node("meterA", read(40, 1f)).uses(RTU_BUS);
+        final var meterB = graph.node("meterB", read(40, 2f)).uses(RTU_BUS);
+        final var limit = graph.node("limit", write(10, () -> 3f, null)).dependsOn(meterB);
+        graph.node("thermostat", read(20, 21.5f));
+
+        final var report = graph.process();
+        LOG.info("{}", report);
+
+        // meterB leads to a longer path, so it gets the bus first and meterA waits for it
+        assertEquals(Status.SUCCESS, limit.getStatus());
+        assertEquals(List.of("meterB", "meterA"), report.getCriticalPath());
+        assertEquals(Status.SUCCESS, meterA.getStatus());
+    }
+
+    @Test
+    void callerRunsExecutor() throws Exception
+    {
+        final var graph = new TaskGraph();
+        final var meterA = graph.node("meterA", read(30, 1f)).uses(RTU_BUS).estimate(Duration.ofMillis(40));
+        final var meterB = graph.node("meterB", read(5, 2f)).uses(RTU_BUS).estimate(Duration.ofMillis(30));
+        final var thermostat = graph.node("thermostat", read(5, 21.5f)).estimate(Duration.ofMillis(20));
+        final var setpoint = graph.node("setpoint", write(5, () -> 22f, null)).dependsOn(thermostat);
+        final var meterC = graph.node("meterC", read(5, 3f)).uses(RTU_BUS).estimate(Duration.ofMillis(10));
+
+        // one pool thread, busy with meterA: the thermostat runs on the dispatching thread and finishes while
+        // the meters waiting for the bus are still in the ready list
+        final var executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+                                                    new ThreadPoolExecutor.CallerRunsPolicy());
+        try
+        {
+            final var report = graph.process(executor);
+            LOG.info("{}", report);
+
+            assertEquals(5, report.getCount(Status.SUCCESS));
+            for (var node : List.of(meterA, meterB, meterC, thermostat, setpoint))
+            {
+                assertEquals(Status.SUCCESS, node.getStatus(), node.getName());
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        }
+    }
+
+    private static Callable<Value> read(long delayMs, float value)
+    {
+        return () -> {
+            Thread.sleep(delayMs);
+            return Float32Value.of(value);
+        };
+    }
+
+    private static Callable<Float> write(long delayMs, Callable<Float> value, AtomicLong doneNs)
+    {
+        return () -> {
+            final var written = value.call();
+            Thread.sleep(delayMs);
+            if (doneNs != null)
+            {
+                doneNs.set(System.nanoTime());
+            }
+            return written;
+        };
+    }
+
+    private static Callable<Void> occupy(AtomicInteger users, AtomicInteger maxUsers)
+    {
+        return () -> {
+            maxUsers.accumulateAndGet(users.incrementAndGet(), Math::max);
+            Thread.sleep(10);
+            users.decrementAndGet();
+            return null;
+        };
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.common.api.dto.DataPointValue;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.ResourceProbe;
+import com.smartgridready.communicator.example.helper.encode.BatchEncoder;
+import com.smartgridready.communicator.example.helper.encode.BinaryBatchEncoder;
+import com.smartgridready.communicator.example.helper.encode.JsonBatchEncoder;
+
+/**
+ * This class compares the serialization of the values returned by {@code getValues()} through
+ * {@code DataPointValue.toString()} with the {@link JsonBatchEncoder} and the {@link BinaryBatchEncoder}.
+ * <p>
+ * The values of all data points of a WAGO smart meter are read once and then serialized repeatedly to an output
+ * stream discarding the bytes. After a warm-up phase the throughput in MB/s of output and the allocated bytes per
+ * batch are logged for each variant. The figures are a rough indication, measured on the current thread, not a
+ * replacement for a benchmark harness.
+ * <p>
+ * The program uses a mocked modbus driver and can be run without an attached device/product.
+ */
+public class DataPointEncoderSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DataPointEncoderSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+    private static final String SERIAL_PORT_NAME = "COM3";
+
+    private static final int WARMUP_BATCHES = 20_000;
+    private static final int MEASURED_BATCHES = 100_000;
+
+    public static void main(String[] argv)
+    {
+        final List<DataPointValue> batch;
+
+        try
+        {
+            final var configProperties = new Properties();
+            configProperties.setProperty("serial_port", SERIAL_PORT_NAME);
+
+            final var device = new SGrDeviceBuilder()
+                    .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+                    .useModbusClientFactory(new MockModbusClientFactory(() -> new GenDriverAPI4ModbusMock(false)))
+                    .properties(configProperties)
+                    .build();
+
+            device.connect();
+            batch = device.getValues();
+            device.disconnect();
+        }
+        catch (Exception e)
+        {
+            LOG.error("Error reading device values. ", e);
+            return;
+        }
+
+        try
+        {
+            final var out = OutputStream.nullOutputStream();
+            LOG.info("Serializing batches of {} values", batch.size());
+
+            measure("toString()", () -> writeToString(batch, out));
+
+            final var jsonEncoder = new JsonBatchEncoder();
+            measure("JSON encoder", () -> encode(jsonEncoder, batch, out));
+
+            final var binaryEncoder = new BinaryBatchEncoder();
+            // the names are written with the first batch only
+            measure("binary encoder", () -> encode(binaryEncoder, batch, out));
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error serializing values. ", e);
+        }
+    }
+
+    /**
+     * Serialization as done by {@code BasicSampleCommunicator.valsToString()}.
+     */
+    private static long writeToString(List<DataPointValue> batch, OutputStream out) throws IOException
+    {
+        final var sb = new StringBuilder();
+        batch.forEach(value -> sb.append("\n").append(value));
+        final var bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    private static void measure(String variant, BatchWriter writer) throws IOException
+    {
+        for (int i = 0; i < WARMUP_BATCHES; i++)
+        {
+            writer.write();
+        }
+
+        long bytes = 0;
+        final var probe = ResourceProbe.start();
+        for (int i = 0; i < MEASURED_BATCHES; i++)
+        {
+            bytes += writer.write();
+        }
+        final var wallNs = probe.wallNs();
+
+        LOG.info("{}: {} bytes/batch, {} MB/s, {} allocated bytes/batch ({})",
+                 variant,
+                 bytes / MEASURED_BATCHES,
+                 String.format("%.0f", bytes * 1e3 / wallNs),
+                 String.format("%.0f", (double) probe.allocatedBytes() / MEASURED_BATCHES),
+                 probe);
+    }
+
+    private static long encode(BatchEncoder encoder, List<DataPointValue> batch, OutputStream out) throws IOException
+    {
+        final var before = encoder.getEncodedBytes();
+        encoder.encode(batch, out);
+        return encoder.getEncodedBytes() - before;
+    }
+
+    /**
+     * Writes one batch and returns the number of bytes written.
+     */
+    @FunctionalInterface
+    private interface BatchWriter
+    {
+        long write() throws IOException;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.dto.DataPointValue;
+import com.smartgridready.communicator.common.api.values.BooleanValue;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Int64Value;
+import com.smartgridready.communicator.common.api.values.StringValue;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.encode.BinaryBatchEncoder;
+import com.smartgridready.communicator.example.helper.encode.JsonBatchEncoder;
+import com.smartgridready.communicator.example.helper.encode.ValueKind;
+
+/**
+ * This test class provides an example on how to serialize the values returned by {@code getValues()} for
+ * northbound systems, using the {@link JsonBatchEncoder} and the {@link BinaryBatchEncoder}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The encoders write a batch directly to an output stream or a byte buffer, without building strings. The binary
+ * format sends the names of a data point only the first time it occurs on the stream.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class DataPointEncoderSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DataPointEncoderSampleCommunicatorTest.class);
+
+    @Test
+    void encodesJsonLines() throws Exception
+    {
+        final var batch = List.of(dataPointValue("VoltageAC", "VoltageL1", Float32Value.of(230.1f)),
+                                  dataPointValue("ActivePowerAC", "ActivePowerACtot", Float32Value.of(-1.25f)));
+
+        // a small buffer is flushed several times per batch
+        final var encoder = new JsonBatchEncoder(64);
+        final var out = new ByteArrayOutputStream();
+        encoder.encode(batch, out);
+        encoder.encode(batch, out);
+
+        final var line = "[{\"functionalProfile\":\"VoltageAC\",\"dataPoint\":\"VoltageL1\",\"value\":230.1},"
+                + "{\"functionalProfile\":\"ActivePowerAC\",\"dataPoint\":\"ActivePowerACtot\",\"value\":-1.25}]\n";
+        final var json = out.toString(StandardCharsets.UTF_8);
+        LOG.info("JSON: {}", json);
+
+        assertEquals(line + line, json);
+        assertEquals(json.length(), encoder.getEncodedBytes());
+        assertEquals(2, encoder.getBatchCount());
+
+        // the same bytes are written into a byte buffer
+        final var buffer = ByteBuffer.allocate(1024);
+        final var written = new JsonBatchEncoder().encode(batch, buffer);
+        final var bytes = new byte[written];
+        buffer.flip().get(bytes);
+        assertArrayEquals(line.getBytes(StandardCharsets.UTF_8), bytes);
+    }
+
+    @Test
+    void encodesNamesOncePerStream() throws Exception
+    {
+        final var batch = List.of(dataPointValue("VoltageAC", "VoltageL1", Float32Value.of(230.1f)),
+                                  dataPointValue("VoltageAC", "VoltageL2", Float32Value.of(229.8f)));
+
+        final var encoder = new BinaryBatchEncoder();
+        final var buffer = ByteBuffer.allocate(1024);
+        final var first = encoder.encode(batch, buffer);
+        final var second = encoder.encode(batch, buffer);
+        LOG.info("Binary: first batch {} bytes, second batch {} bytes", first, second);
+
+        buffer.flip();
+        assertEquals(BinaryBatchEncoder.VERSION, buffer.get());
+        assertEquals(2, buffer.get());
+        assertEquals(0, buffer.get());
+        assertEquals("VoltageAC", readString(buffer));
+        assertEquals("VoltageL1", readString(buffer));
+        assertEquals(BinaryBatchEncoder.TAG_FLOAT32, buffer.get());
+        assertEquals(230.1f, buffer.getFloat());
+
+        // the second batch refers to the data points by id: version, count and 2 x (id, tag, float32)
+        assertEquals(2 + 2 * 6, second);
+        buffer.position(first);
+        assertEquals(BinaryBatchEncoder.VERSION, buffer.get());
+        assertEquals(2, buffer.get());
+        assertEquals(1, buffer.get());
+        assertEquals(BinaryBatchEncoder.TAG_FLOAT32, buffer.get());
+        assertEquals(230.1f, buffer.getFloat());
+        assertEquals(2, buffer.get());
+        assertEquals(BinaryBatchEncoder.TAG_FLOAT32, buffer.get());
+        assertEquals(229.8f, buffer.getFloat());
+
+        // after a reset, the data points are defined again
+        encoder.reset();
+        assertEquals(first, encoder.encode(batch, ByteBuffer.allocate(1024)));
+    }
+
+    @Test
+    void classifiesLibraryValueClasses()
+    {
+        assertEquals(ValueKind.FLOAT32, ValueKind.of(Float32Value.of(230.1f)));
+        assertEquals(ValueKind.INTEGER, ValueKind.of(Int64Value.of(-42L)));
+        assertEquals(ValueKind.BOOLEAN, ValueKind.of(BooleanValue.of(true)));
+        assertEquals(ValueKind.STRING, ValueKind.of(StringValue.of("Kitchen")));
+        assertNull(ValueKind.of(null));
+    }
+
+    @Test
+    void rejectsTooSmallBuffer()
+    {
+        final var batch = List.of(dataPointValue("VoltageAC", "VoltageL1", Float32Value.of(230.1f)));
+
+        // the batch needs 74 bytes
+        assertThrows(BufferOverflowException.class, () -> new JsonBatchEncoder().encode(batch, ByteBuffer.allocate(70)));
+    }
+
+    @Test
+    void fillsBufferExactly() throws Exception
+    {
+        // a non-ASCII string is encoded character by character, here it ends right at the end of the buffer
+        final var batch = List.of(dataPointValue("Thermostat", "Name", StringValue.of("K\u00fcche")));
+
+        final var expected = ByteBuffer.allocate(1024);
+        final var length = new BinaryBatchEncoder().encode(batch, expected);
+
+        final var exact = ByteBuffer.allocate(length);
+        assertEquals(length, new BinaryBatchEncoder().encode(batch, exact));
+        assertArrayEquals(Arrays.copyOf(expected.array(), length), exact.array());
+    }
+
+    private static DataPointValue dataPointValue(String profileName, String dataPointName, Value value)
+    {
+        final var dataPointValue = mock(DataPointValue.class);
+        when(dataPointValue.getFunctionalProfileName()).thenReturn(profileName);
+        when(dataPointValue.getDataPointName()).thenReturn(dataPointName);
+        when(dataPointValue.getValue()).thenReturn(value);
+        return dataPointValue;
+    }
+
+    private static String readString(ByteBuffer buffer)
+    {
+        final var bytes = new byte[buffer.get()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
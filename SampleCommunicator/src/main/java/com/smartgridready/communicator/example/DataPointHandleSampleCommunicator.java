@@ -0,0 +1,187 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.DataPointHandle;
+import com.smartgridready.communicator.example.helper.DataPointResolver;
+import com.smartgridready.communicator.example.helper.EidDataPoint;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.ResourceProbe;
+import com.smartgridready.communicator.rest.exception.RestApiAuthenticationException;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This class provides an example on how to resolve data points once into handles, instead of
+ * resolving the functional profile and data point names on every {@code getVal()} call.
+ * <p>
+ * The program reads all 47 data points of a WAGO smart meter repeatedly, first by name with
+ * {@code getVal()}, then through handles resolved at startup. After a warm-up phase it logs the
+ * time and the allocated bytes per read for both variants. The figures are a rough indication,
+ * measured on the current thread, not a replacement for a benchmark harness.
+ * <p>
+ * The program uses a mocked modbus driver and can be run without an attached device/product.
+ */
+public class DataPointHandleSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DataPointHandleSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+    private static final String SERIAL_PORT_NAME = "COM3";
+
+    private static final int WARMUP_ROUNDS = 2_000;
+    private static final int MEASURED_ROUNDS = 10_000;
+
+    public static void main(String[] argv)
+    {
+        final var configProperties = new Properties();
+        configProperties.setProperty("serial_port", SERIAL_PORT_NAME);
+
+        // The handles access the Modbus transport of the device directly,
+        // therefore the same transport instance is handed over to the device builder.
+        final var transport = new GenDriverAPI4ModbusMock(false);
+
+        GenDeviceApi sgcpDevice;
+        EidDataPointIndex index;
+
+        try
+        {
+            sgcpDevice = new SGrDeviceBuilder()
+                // mandatory: inject device description (EID)
+                .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+                // optional: inject the ModbusFactory mock
+                .useModbusClientFactory(new MockModbusClientFactory(() -> transport))
+                // optional: inject the configuration
+                .properties(configProperties)
+                .build();
+
+            index = EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME);
+        }
+        catch ( GenDriverException | RestApiAuthenticationException | IOException e )
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        try
+        {
+            sgcpDevice.connect();
+
+            final var dataPoints = index.getDataPoints();
+
+            // Resolve once at startup, keep the handles.
+            final var resolver = new DataPointResolver(sgcpDevice, index, transport);
+            final var handles = new DataPointHandle[dataPoints.size()];
+            for (int i = 0; i < handles.length; i++)
+            {
+                handles[i] = resolver.resolve(dataPoints.get(i).getKey());
+            }
+            LOG.info("Resolved {} data points, e.g. {}", handles.length, handles[0]);
+
+            // Results are stored, so the JIT cannot drop the reads.
+            final var names = dataPoints.toArray(new EidDataPoint[0]);
+            final var values = new Value[handles.length];
+            final var numbers = new double[handles.length];
+
+            readByName(sgcpDevice, names, values, WARMUP_ROUNDS);
+            var probe = ResourceProbe.start();
+            readByName(sgcpDevice, names, values, MEASURED_ROUNDS);
+            report("getVal() by name", probe, handles.length);
+
+            readByHandle(handles, values, numbers, WARMUP_ROUNDS);
+            probe = ResourceProbe.start();
+            readByHandle(handles, values, numbers, MEASURED_ROUNDS);
+            report("resolved handles", probe, handles.length);
+
+            LOG.info("{} = {} (by name), {} (by handle)", names[0].getKey(), values[0], numbers[0]);
+        }
+        catch (Exception e)
+        {
+            LOG.error("Error accessing device. ", e);
+        }
+        finally
+        {
+            if (sgcpDevice.isConnected())
+            {
+                try
+                {
+                    LOG.info("Disconnecting ...");
+                    sgcpDevice.disconnect();
+                }
+                catch ( GenDriverException e )
+                {
+                    LOG.error("Error disconnecting device.", e);
+                }
+            }
+        }
+    }
+
+    private static void readByName(GenDeviceApi device, EidDataPoint[] dataPoints, Value[] values, int rounds)
+            throws Exception
+    {
+        for (int round = 0; round < rounds; round++)
+        {
+            for (int i = 0; i < dataPoints.length; i++)
+            {
+                values[i] = device.getVal(dataPoints[i].getProfileName(), dataPoints[i].getDataPointName());
+            }
+        }
+    }
+
+    private static void readByHandle(DataPointHandle[] handles, Value[] values, double[] numbers, int rounds)
+            throws Exception
+    {
+        for (int round = 0; round < rounds; round++)
+        {
+            for (int i = 0; i < handles.length; i++)
+            {
+                // data points that cannot be decoded directly (e.g. strings) are read through the device API
+                if (handles[i].isDirect())
+                {
+                    numbers[i] = handles[i].readDouble();
+                }
+                else
+                {
+                    values[i] = handles[i].read();
+                }
+            }
+        }
+    }
+
+    private static void report(String variant, ResourceProbe probe, int dataPointCount)
+    {
+        final double reads = (double) MEASURED_ROUNDS * dataPointCount;
+        LOG.info("{}: {} ns/read, {} bytes/read ({})",
+                 variant,
+                 String.format("%.0f", probe.wallNs() / reads),
+                 String.format("%.0f", probe.allocatedBytes() / reads),
+                 probe);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.common.api.values.Float64Value;
+import com.smartgridready.communicator.example.helper.DataPointHandle;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+import com.smartgridready.communicator.example.helper.DataPointResolver;
+import com.smartgridready.communicator.example.helper.EidDataPoint;
+import com.smartgridready.communicator.example.helper.EidDataPoint.RegisterType;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec.WordOrder;
+
+/**
+ * This test class provides an example on how to access data points through {@link DataPointHandle}s resolved
+ * once by a {@link DataPointResolver}, and shows that they read and write the same values as the device API.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The mocked transport keeps the written registers, so a value written through a handle can be read by name
+ * and vice versa. The tests use the numeric data points of the heat pump, which the handles access directly
+ * on the Modbus transport.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class DataPointHandleSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DataPointHandleSampleCommunicatorTest.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SampleExternalInterfaceFile.xml";
+
+    private RegisterModbusMock transport;
+    private GenDeviceApi device;
+    private EidDataPointIndex index;
+    private DataPointResolver resolver;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        final var configProperties = new Properties();
+        configProperties.setProperty("serial_port", "COM3");
+
+        transport = new RegisterModbusMock();
+        device = new SGrDeviceBuilder()
+                .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+                .useModbusClientFactory(new MockModbusClientFactory(() -> transport))
+                .properties(configProperties)
+                .build();
+        device.connect();
+
+        index = EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME);
+        resolver = new DataPointResolver(device, index, transport);
+    }
+
+    @Test
+    void handleReadsEqualGetVal() throws Exception
+    {
+        final var wordOrder = WordOrder.fromEid(index.getBitOrder());
+        final var dataPoints = numericDataPoints();
+
+        // a distinct value per data point, in steps of the scaling factor
+        for (int i = 0; i < dataPoints.size(); i++)
+        {
+            final var dataPoint = dataPoints.get(i);
+            final var registers = new int[dataPoint.getNumberOfRegisters()];
+            ModbusRegisterCodec.encode(dataPoint, (10 + i) * dataPoint.getScalingFactor(), wordOrder, registers, 0);
+            transport.put(dataPoint.getRegisterType(), dataPoint.getAddress(), registers);
+        }
+
+        for (var dataPoint : dataPoints)
+        {
+            final var handle = resolver.resolve(dataPoint.getKey());
+            final var byName = device.getVal(dataPoint.getProfileName(), dataPoint.getDataPointName()).getFloat64();
+            LOG.info("{}: {} by name, {} by handle", handle, byName, handle.readDouble());
+
+            assertTrue(handle.isDirect());
+            assertEquals(byName, handle.readDouble(), 1e-9, dataPoint.toString());
+            assertEquals(byName, handle.read().getFloat64(), 1e-9, dataPoint.toString());
+
+            // the same quantity as a bulk read of the data point
+            assertEquals(dataPoint.getNumberOfRegisters(), transport.getLastReadQuantity());
+        }
+    }
+
+    @Test
+    void handleWritesEqualSetVal() throws Exception
+    {
+        final var writable = numericDataPoints().stream()
+                .filter(dataPoint -> dataPoint.getDataDirection().contains("W"))
+                .collect(Collectors.toList());
+        assertFalse(writable.isEmpty());
+
+        for (var dataPoint : writable)
+        {
+            final var handle = resolver.resolve(dataPoint.getProfileName(), dataPoint.getDataPointName());
+
+            transport.clear();
+            handle.write(21.5);
+            final var writtenByHandle = transport.getHoldingRegisters();
+            assertEquals(21.5, device.getVal(dataPoint.getProfileName(), dataPoint.getDataPointName()).getFloat64(),
+                         1e-9);
+
+            transport.clear();
+            device.setVal(dataPoint.getProfileName(), dataPoint.getDataPointName(), Float64Value.of(21.5));
+            LOG.info("{}: registers {} by handle, {} by name",
+                     handle, writtenByHandle, transport.getHoldingRegisters());
+            assertEquals(writtenByHandle, transport.getHoldingRegisters());
+            assertEquals(21.5, handle.readDouble(), 1e-9);
+        }
+    }
+
+    @Test
+    void unknownDataPointsFailAtResolve()
+    {
+        final var e = assertThrows(IllegalArgumentException.class,
+                                   () -> resolver.resolve("HeatPumpBase", "HPTurboModeCmd"));
+        LOG.info("Unknown data point: {}", e.getMessage());
+
+        assertThrows(IllegalArgumentException.class,
+                     () -> resolver.resolve(DataPointKey.of("HeatPump", "HPOpModeCmd")));
+        assertEquals(0, transport.getReadCount());
+    }
+
+    /**
+     * @return the Modbus data points with a plain numeric value
+     */
+    private List<EidDataPoint> numericDataPoints()
+    {
+        return index.getDataPoints().stream()
+                .filter(dataPoint -> "float64".equals(dataPoint.getDataType()))
+                .filter(ModbusRegisterCodec::isSupported)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Keeps the written registers, registers never written read as {@code 0}.
+     */
+    private static class RegisterModbusMock extends GenDriverAPI4ModbusMock
+    {
+        private final Map<Integer, Integer> holdingRegisters = new HashMap<>();
+        private final Map<Integer, Integer> inputRegisters = new HashMap<>();
+        private int readCount;
+        private int lastReadQuantity;
+
+        RegisterModbusMock()
+        {
+            super(true);
+        }
+
+        synchronized void put(RegisterType registerType, int address, int[] registers)
+        {
+            final var target = registerType == RegisterType.INPUT_REGISTER ? inputRegisters : holdingRegisters;
+            for (int i = 0; i < registers.length; i++)
+            {
+                target.put(address + i, registers[i]);
+            }
+        }
+
+        synchronized Map<Integer, Integer> getHoldingRegisters()
+        {
+            return new HashMap<>(holdingRegisters);
+        }
+
+        synchronized int getReadCount()
+        {
+            return readCount;
+        }
+
+        synchronized int getLastReadQuantity()
+        {
+            return lastReadQuantity;
+        }
+
+        synchronized void clear()
+        {
+            holdingRegisters.clear();
+        }
+
+        @Override
+        public synchronized int[] ReadHoldingRegisters(int startingAddress, int quantity)
+        {
+            return read(holdingRegisters, startingAddress, quantity);
+        }
+
+        @Override
+        public synchronized int[] ReadInputRegisters(int startingAddress, int quantity)
+        {
+            return read(inputRegisters, startingAddress, quantity);
+        }
+
+        @Override
+        public synchronized void WriteMultipleRegisters(int startingAdress, int[] values)
+        {
+            put(RegisterType.HOLD_REGISTER, startingAdress, values);
+        }
+
+        @Override
+        public synchronized void WriteSingleRegister(int startingAdress, int value)
+        {
+            holdingRegisters.put(startingAdress, value);
+        }
+
+        private int[] read(Map<Integer, Integer> source, int startingAddress, int quantity)
+        {
+            readCount++;
+            lastReadQuantity = quantity;
+
+            final var registers = new int[quantity];
+            for (int i = 0; i < quantity; i++)
+            {
+                registers[i] = source.getOrDefault(startingAddress + i, 0);
+            }
+            return registers;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.stream.DataPointPublisher;
+import com.smartgridready.communicator.example.helper.stream.DataPointUpdate;
+
+import io.vavr.control.Either;
+
+/**
+ * This class measures the backlog of a slow consumer of {@value #STREAM_COUNT} MQTT data point streams, with raw
+ * subscription callbacks and with {@link DataPointPublisher}s.
+ * <p>
+ * A simulated broker delivers {@value #MESSAGES_PER_STREAM_PER_S} messages per second and stream. The consumer merges
+ * all streams and needs {@value #PROCESSING_NS}ns per value, i.e. it can process only a part of the messages. With raw
+ * callbacks, the values are queued until the consumer gets to them. With publishers, the consumer requests one value
+ * per stream at a time and each stream buffers only its latest value, i.e. the streams are sampled at the pace of the
+ * consumer. Each variant runs for {@value #DURATION_MS}ms; the program logs the processed and dropped values, the
+ * maximum backlog, the age of the last processed value and the heap used.
+ * <p>
+ * The sample uses simulated devices and can be run without an attached device/product.
+ */
+public class DataPointStreamSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DataPointStreamSampleCommunicator.class);
+
+    private static final int STREAM_COUNT = 2000;
+    private static final int MESSAGES_PER_STREAM_PER_S = 100;
+    private static final long PROCESSING_NS = 10_000;
+    private static final long DURATION_MS = 3000;
+
+    private static final AtomicReferenceArray<Consumer<Either<Throwable, Value>>> BROKER =
+            new AtomicReferenceArray<>(STREAM_COUNT);
+
+    public static void main(String[] argv) throws InterruptedException
+    {
+        rawCallbacks();
+        publishers();
+    }
+
+    private static void rawCallbacks() throws InterruptedException
+    {
+        final BlockingQueue<DataPointUpdate> queue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < STREAM_COUNT; i++)
+        {
+            final var dataPointName = "VoltageDC" + i;
+            BROKER.set(i, result -> queue.add(DataPointUpdate.of("VoltageDC_OUT", dataPointName, result.get(),
+                                                                  System.currentTimeMillis())));
+        }
+
+        final var consumer = new MergingConsumer(queue, update -> { });
+        run("Raw callbacks", consumer, queue::size, () -> 0L);
+    }
+
+    private static void publishers() throws InterruptedException
+    {
+        final var publishers = new ArrayList<DataPointPublisher>();
+        final BlockingQueue<DataPointUpdate> merged = new ArrayBlockingQueue<>(STREAM_COUNT);
+        final var subscriptions = new ArrayList<Flow.Subscription>();
+
+        for (int i = 0; i < STREAM_COUNT; i++)
+        {
+            final var stream = i;
+            final var publisher = DataPointPublisher.pushed("VoltageDC_OUT", "VoltageDC" + i, callback -> {
+                BROKER.set(stream, callback);
+                return () -> BROKER.set(stream, null);
+            }).withBufferSize(1);
+            publisher.subscribe(new Flow.Subscriber<DataPointUpdate>()
+            {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription)
+                {
+                    subscriptions.add(subscription);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(DataPointUpdate update)
+                {
+                    // at most one value per stream is requested, so the merge queue never blocks
+                    merged.add(update);
+                }
+
+                @Override
+                public void onError(Throwable throwable)
+                {
+                    LOG.error("Stream failed", throwable);
+                }
+
+                @Override
+                public void onComplete()
+                {
+                    // nothing to do
+                }
+            });
+            publishers.add(publisher);
+        }
+
+        final var indexes = new HashMap<String, Flow.Subscription>();
+        for (int i = 0; i < STREAM_COUNT; i++)
+        {
+            indexes.put("VoltageDC" + i, subscriptions.get(i));
+        }
+
+        final var consumer = new MergingConsumer(merged, update -> indexes.get(update.getDataPointName()).request(1));
+        run("Publishers   ",
+            consumer,
+            () -> merged.size() + publishers.stream().mapToInt(DataPointPublisher::getBufferedCount).sum(),
+            () -> publishers.stream().mapToLong(DataPointPublisher::getDroppedCount).sum());
+
+        publishers.forEach(DataPointPublisher::close);
+    }
+
+    private static void run(String name, MergingConsumer consumer, IntSupplier backlog, LongSupplier dropped)
+            throws InterruptedException
+    {
+        final var consumerThread = new Thread(consumer, "consumer");
+        consumerThread.start();
+
+        final var startNs = System.nanoTime();
+        final var messagesPerMs = STREAM_COUNT * MESSAGES_PER_STREAM_PER_S / 1000;
+        long published = 0;
+        int maxBacklog = 0;
+        int stream = 0;
+
+        for (long ms = 0; ms < DURATION_MS; ms++)
+        {
+            for (int i = 0; i < messagesPerMs; i++)
+            {
+                BROKER.get(stream).accept(Either.right(Float32Value.of(i)));
+                stream = (stream + 1) % STREAM_COUNT;
+                published++;
+            }
+            if (ms % 10 == 0)
+            {
+                maxBacklog = Math.max(maxBacklog, backlog.getAsInt());
+            }
+
+            final var sleepNs = startNs + TimeUnit.MILLISECONDS.toNanos(ms + 1) - System.nanoTime();
+            if (sleepNs > 0)
+            {
+                TimeUnit.NANOSECONDS.sleep(sleepNs);
+            }
+        }
+        maxBacklog = Math.max(maxBacklog, backlog.getAsInt());
+
+        consumerThread.interrupt();
+        consumerThread.join();
+
+        // the backlog is still referenced by the consumer
+        System.gc();
+        final var runtime = Runtime.getRuntime();
+        final var heapMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
+        LOG.info("{}: published={}, processed={} in {} windows, dropped={}, max backlog={}, age of last value={}ms, "
+                 + "heap used={}MB",
+                 name,
+                 published,
+                 consumer.processedCount,
+                 consumer.windowCount,
+                 dropped.getAsLong(),
+                 maxBacklog,
+                 consumer.lastAgeMs,
+                 String.format("%.1f", heapMb));
+    }
+
+    /**
+     * Consumer merging all streams into windows, processing one value at a time.
+     */
+    private static final class MergingConsumer implements Runnable
+    {
+        private final BlockingQueue<DataPointUpdate> queue;
+        private final Consumer<DataPointUpdate> processed;
+        private double windowSum;
+        private int windowCount;
+        private long windowStartMs = System.currentTimeMillis();
+        private long processedCount;
+        private long lastAgeMs;
+
+        private MergingConsumer(BlockingQueue<DataPointUpdate> queue, Consumer<DataPointUpdate> processed)
+        {
+            this.queue = queue;
+            this.processed = processed;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (!Thread.currentThread().isInterrupted())
+                {
+                    process(queue.take());
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void process(DataPointUpdate update)
+        {
+            final var startNs = System.nanoTime();
+            while (System.nanoTime() - startNs < PROCESSING_NS)
+            {
+                // simulated processing
+                Thread.onSpinWait();
+            }
+
+            final var now = System.currentTimeMillis();
+            windowSum += update.getValue().getFloat32();
+            if (now - windowStartMs >= 100)
+            {
+                LOG.debug("Window {}: sum={}", windowCount++, windowSum);
+                windowSum = 0;
+                windowStartMs = now;
+            }
+            lastAgeMs = now - update.getTimestampMs();
+            processedCount++;
+            processed.accept(update);
+        }
+    }
+}
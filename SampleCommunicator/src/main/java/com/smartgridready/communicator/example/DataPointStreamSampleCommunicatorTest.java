@@ -0,0 +1,212 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.stream.DataPointPublisher;
+import com.smartgridready.communicator.example.helper.stream.DataPointUpdate;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+import io.vavr.control.Either;
+
+/**
+ * This test class provides an example on how to consume data point values as {@link Flow.Publisher} with
+ * backpressure, using the {@link DataPointPublisher}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * A polled device (e.g. Modbus or REST) is only read while the subscriber has requested values, so a slow
+ * subscriber does not pile up values. An MQTT device pushes its values through the {@code subscribe()} callback; a
+ * slow subscriber gets the latest values, the older ones are dropped from its bounded buffer.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class DataPointStreamSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DataPointStreamSampleCommunicatorTest.class);
+
+    private static final String PROFILE = "VoltageDC_OUT_1";
+    private static final String DATA_POINT = "VoltageDC";
+
+    @Mock
+    GenDeviceApi device;
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void polledDeviceIsReadOnDemand() throws Exception
+    {
+        final var reads = new AtomicInteger();
+        when(device.canSubscribe()).thenReturn(false);
+        when(device.getVal(PROFILE, DATA_POINT)).thenAnswer(invocation -> {
+            final var read = reads.incrementAndGet();
+            if (read == 2)
+            {
+                throw new GenDriverException("Modbus timeout");
+            }
+            return Float32Value.of(read);
+        });
+
+        final var publisher = DataPointPublisher.of(device, PROFILE, DATA_POINT, Duration.ofMillis(5), scheduler);
+        final var subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        subscriber.request(3);
+        Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> subscriber.updates.size() == 3);
+
+        // no demand, no reads
+        Thread.sleep(100);
+        LOG.info("Received {} after {} reads", subscriber.updates, reads.get());
+        assertEquals(3, reads.get());
+
+        // a read error does not terminate the stream
+        assertTrue(subscriber.updates.get(1).isError());
+        subscriber.request(2);
+        Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> subscriber.updates.size() == 5);
+        assertEquals(List.of("1.0", "error", "3.0", "4.0", "5.0"), subscriber.values());
+
+        publisher.close();
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    void mqttSubscriberGetsLatestValues() throws Exception
+    {
+        final var callback = new AtomicReference<Consumer<Either<Throwable, Value>>>();
+        when(device.canSubscribe()).thenReturn(true);
+        doAnswer(invocation -> {
+            callback.set(invocation.getArgument(2));
+            return null;
+        }).when(device).subscribe(eq(PROFILE), eq(DATA_POINT), any());
+
+        final var publisher = DataPointPublisher.of(device, PROFILE, DATA_POINT, Duration.ofSeconds(1), scheduler)
+                .withBufferSize(4);
+        final var subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+
+        // the broker delivers 100 messages while the subscriber is busy
+        for (int i = 1; i <= 100; i++)
+        {
+            callback.get().accept(Either.right(Float32Value.of(i)));
+        }
+        assertEquals(0, subscriber.updates.size());
+        assertEquals(4, publisher.getBufferedCount());
+        assertEquals(96, publisher.getDroppedCount());
+
+        subscriber.request(10);
+        assertEquals(List.of("97.0", "98.0", "99.0", "100.0"), subscriber.values());
+
+        // the remaining demand is served as soon as messages arrive
+        callback.get().accept(Either.right(Float32Value.of(101)));
+        assertEquals(5, subscriber.updates.size());
+
+        subscriber.subscription.cancel();
+        verify(device).unsubscribe(PROFILE, DATA_POINT);
+        assertEquals(0, publisher.getSubscriberCount());
+    }
+
+    /**
+     * Subscriber recording the updates, requesting values only when told to.
+     */
+    private static final class RecordingSubscriber implements Flow.Subscriber<DataPointUpdate>
+    {
+        private final List<DataPointUpdate> updates = new CopyOnWriteArrayList<>();
+        private volatile Flow.Subscription subscription;
+        private volatile boolean completed;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription)
+        {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(DataPointUpdate update)
+        {
+            updates.add(update);
+        }
+
+        @Override
+        public void onError(Throwable throwable)
+        {
+            LOG.error("Stream failed", throwable);
+        }
+
+        @Override
+        public void onComplete()
+        {
+            completed = true;
+        }
+
+        private void request(long n)
+        {
+            subscription.request(n);
+        }
+
+        private List<String> values()
+        {
+            return updates.stream()
+                    .map(update -> update.isError() ? "error" : String.valueOf(update.getValue().getFloat32()))
+                    .collect(Collectors.toList());
+        }
+    }
+}
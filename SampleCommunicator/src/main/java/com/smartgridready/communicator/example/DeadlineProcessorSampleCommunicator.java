@@ -0,0 +1,121 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineExec;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineExec.Status;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineProcessor;
+
+/**
+ * This class measures the latency of a read chain with and without a deadline.
+ * <p>
+ * The chain has the structure and the device delays of the read chain of the {@code AsynchronousSampleCommunicatorTest}
+ * (three WAGO reads of 500ms in sequence, CLEMAP reads of 750ms and 2000ms in parallel), scaled down by ten so that the
+ * sample finishes quickly. The delays vary by +/-10%, and 2% of the reads take three times as long. The chain is run
+ * {@value #CYCLES} times without deadline and with the deadline of a 1s control loop (scaled: 100ms). The program logs
+ * the p50, p99 and maximum chain latency and the share of reads delivered in time.
+ * <p>
+ * The sample uses simulated devices and can be run without an attached device/product.
+ */
+public class DeadlineProcessorSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeadlineProcessorSampleCommunicator.class);
+
+    private static final int CYCLES = 100;
+    private static final double TIME_SCALE = 0.1;
+    private static final Duration CONTROL_LOOP_DEADLINE = Duration.ofMillis(100);
+
+    private static final Random RANDOM = new Random(42L);
+
+    public static void main(String[] argv)
+    {
+        final var wagoVoltageACL1 = new DeadlineExec<>("VoltageAC", "VoltageL1", simulatedDevice(500, 220f));
+        final var wagoVoltageACL2 = new DeadlineExec<>("VoltageAC", "VoltageL2", simulatedDevice(500, 220f));
+        final var wagoVoltageACL3 = new DeadlineExec<>("VoltageAC", "VoltageL3", simulatedDevice(500, 220f));
+        final var clemapActPowerACtot1 = new DeadlineExec<>("ActivePowerAC", "ActivePowerACtot", simulatedDevice(750, 20f));
+        final var clemapActPowerACtot2 = new DeadlineExec<>("ActivePowerAC", "ActivePowerACtot", simulatedDevice(2000, 50f));
+        final var execs = List.of(wagoVoltageACL1, wagoVoltageACL2, wagoVoltageACL3, clemapActPowerACtot1, clemapActPowerACtot2);
+
+        final var readChain = DeadlineProcessor.parallel()
+                .add(DeadlineProcessor.sequence()
+                        .add(wagoVoltageACL1)
+                        .add(wagoVoltageACL2)
+                        .add(wagoVoltageACL3))
+                .add(DeadlineProcessor.parallel()
+                        .add(clemapActPowerACtot1)
+                        .add(clemapActPowerACtot2));
+
+        // warm-up
+        readChain.process();
+
+        measure("Without deadline", readChain, execs.size());
+
+        readChain.withTimeout(CONTROL_LOOP_DEADLINE);
+        measure("With deadline   ", readChain, execs.size());
+
+        for (var exec : execs)
+        {
+            LOG.info("Last run: {}", exec);
+        }
+    }
+
+    private static void measure(String name, DeadlineProcessor readChain, int execCount)
+    {
+        final var latencies = new double[CYCLES];
+        var delivered = 0;
+
+        for (int cycle = 0; cycle < CYCLES; cycle++)
+        {
+            final var result = readChain.process();
+            latencies[cycle] = result.getElapsedMs();
+            delivered += result.getCount(Status.SUCCESS) + result.getCount(Status.ERROR);
+        }
+
+        Arrays.sort(latencies);
+        LOG.info("{}: p50={}ms, p99={}ms, max={}ms, reads delivered={}%",
+                 name,
+                 String.format("%.1f", latencies[CYCLES / 2]),
+                 String.format("%.1f", latencies[(int) Math.ceil(CYCLES * 0.99) - 1]),
+                 String.format("%.1f", latencies[CYCLES - 1]),
+                 String.format("%.0f", 100.0 * delivered / (CYCLES * execCount)));
+    }
+
+    private static DeadlineExec.DataPointReader<Value> simulatedDevice(long delayMs, float value)
+    {
+        return (profileName, dataPointName) -> {
+            final double factor;
+            synchronized (RANDOM)
+            {
+                factor = (RANDOM.nextDouble() < 0.02 ? 3.0 : 1.0) * (0.9 + 0.2 * RANDOM.nextDouble());
+            }
+            Thread.sleep((long) (delayMs * TIME_SCALE * factor));
+            return Float32Value.of(value);
+        };
+    }
+}
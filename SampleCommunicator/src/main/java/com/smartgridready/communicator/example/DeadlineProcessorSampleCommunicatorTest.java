@@ -0,0 +1,166 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineExec;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineExec.Status;
+import com.smartgridready.communicator.example.helper.deadline.DeadlineProcessor;
+
+/**
+ * This test class provides an example on how to bound the duration of a processing chain with deadlines,
+ * using the {@link DeadlineProcessor}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The chain has the structure of the read chain of the {@code AsynchronousSampleCommunicatorTest}: three WAGO
+ * reads of 30ms in sequence, in parallel to two CLEMAP reads of 75ms and 200ms. A control loop cannot wait for the slowest device, so the chain gets a deadline. The reads
+ * that did not finish in time are marked as timed out and their calls are interrupted.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class DeadlineProcessorSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeadlineProcessorSampleCommunicatorTest.class);
+
+    private final AtomicInteger interrupted = new AtomicInteger();
+
+    @Test
+    void chainDeadlineReturnsPartialResults()
+    {
+        final var wagoVoltageACL1 = new DeadlineExec<>("VoltageAC", "VoltageL1", reader(30, 220f));
+        final var wagoVoltageACL2 = new DeadlineExec<>("VoltageAC", "VoltageL2", reader(30, 221f));
+        final var wagoVoltageACL3 = new DeadlineExec<>("VoltageAC", "VoltageL3", reader(30, 222f));
+        final var clemapActPowerACtot1 = new DeadlineExec<>("ActivePowerAC", "ActivePowerACtot", reader(75, 20f));
+        final var clemapActPowerACtot2 = new DeadlineExec<>("ActivePowerAC", "ActivePowerACtot", reader(200, 50f));
+
+        final var readChain = DeadlineProcessor.parallel()
+                .add(DeadlineProcessor.sequence()
+                        .add(wagoVoltageACL1)
+                        .add(wagoVoltageACL2)
+                        .add(wagoVoltageACL3))
+                .add(DeadlineProcessor.parallel()
+                        .add(clemapActPowerACtot1)
+                        .add(clemapActPowerACtot2))
+                .withTimeout(Duration.ofMillis(125));
+
+        final var result = readChain.process();
+        LOG.info("{}", result);
+        LOG.info("{}", clemapActPowerACtot2);
+
+        // the chain returns at the deadline instead of after 200ms
+        assertTrue(result.getElapsedMs() < 180, "chain took " + result.getElapsedMs() + "ms");
+        assertFalse(result.isComplete());
+
+        // the values read in time are available
+        assertEquals(Status.SUCCESS, wagoVoltageACL1.getStatus());
+        assertEquals(Status.SUCCESS, wagoVoltageACL2.getStatus());
+        assertEquals(Status.SUCCESS, wagoVoltageACL3.getStatus());
+        assertEquals(222f, wagoVoltageACL3.getValue().getFloat32());
+        assertEquals(Status.SUCCESS, clemapActPowerACtot1.getStatus());
+
+        // the late read is timed out and its call interrupted
+        assertEquals(Status.TIMED_OUT, clemapActPowerACtot2.getStatus());
+        assertEquals(1, result.getCount(Status.TIMED_OUT));
+        Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> interrupted.get() == 1);
+    }
+
+    @Test
+    void execTimeoutLetsSequenceContinue()
+    {
+        final var slow = new DeadlineExec<>("ActivePowerAC", "ActivePowerACtot", reader(200, 50f), Duration.ofMillis(40));
+        final var fast = new DeadlineExec<>("VoltageAC", "VoltageL1", reader(10, 220f));
+        final var sequence = DeadlineProcessor.sequence().add(slow).add(fast);
+
+        for (int run = 0; run < 2; run++)
+        {
+            final var result = sequence.process();
+            LOG.info("Run {}: {}", run, result);
+
+            assertEquals(Status.TIMED_OUT, slow.getStatus());
+            assertEquals(Status.SUCCESS, fast.getStatus());
+            assertTrue(result.getElapsedMs() < 150, "sequence took " + result.getElapsedMs() + "ms");
+        }
+    }
+
+    @Test
+    void sequenceSkipsReadsAfterDeadline()
+    {
+        final var first = new DeadlineExec<>("VoltageAC", "VoltageL1", reader(60, 220f));
+        final var second = new DeadlineExec<>("VoltageAC", "VoltageL2", reader(60, 221f));
+        final var third = new DeadlineExec<>("VoltageAC", "VoltageL3", reader(60, 222f));
+
+        final var result = DeadlineProcessor.sequence().add(first).add(second).add(third)
+                .withTimeout(Duration.ofMillis(90))
+                .process();
+        LOG.info("{}", result);
+
+        assertEquals(Status.SUCCESS, first.getStatus());
+        assertEquals(Status.TIMED_OUT, second.getStatus());
+        assertEquals(Status.SKIPPED, third.getStatus());
+    }
+
+    @Test
+    void nestedChainCanBeExtendedAfterAdd()
+    {
+        final var first = new DeadlineExec<>("VoltageAC", "VoltageL1", reader(10, 220f));
+        final var second = new DeadlineExec<>("VoltageAC", "VoltageL2", reader(10, 221f));
+
+        final var sequence = DeadlineProcessor.sequence().add(first);
+        final var readChain = DeadlineProcessor.parallel().add(sequence);
+        sequence.add(second);
+
+        final var result = readChain.process();
+        LOG.info("{}", result);
+
+        assertTrue(result.isComplete());
+        assertEquals(2, result.getCount(Status.SUCCESS));
+        assertEquals(221f, second.getValue().getFloat32());
+        assertThrows(IllegalArgumentException.class, () -> sequence.add(readChain));
+    }
+
+    private DeadlineExec.DataPointReader<Value> reader(long delayMs, float value)
+    {
+        return (profileName, dataPointName) -> {
+            try
+            {
+                Thread.sleep(delayMs);
+            }
+            catch (InterruptedException e)
+            {
+                interrupted.incrementAndGet();
+                throw e;
+            }
+            return Float32Value.of(value);
+        };
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.fleet.DeviceFleet;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This class measures the startup of a fleet of {@value #DEVICE_COUNT} WAGO meters with the {@link DeviceFleet}.
+ * <p>
+ * The meters are distributed over {@value #LINE_COUNT} RTU lines. Each meter is built from the EID, which is loaded
+ * from the class path once, and connected through a mocked Modbus transport taking {@value #CONNECT_LATENCY_MS}ms to
+ * connect. The fleet is started with 1 (i.e. one device after the other, as in the other samples), 10, 25 and 50
+ * concurrent connects. The meters of one RTU line connect one after the other on the worker of the line, so more
+ * concurrent connects than lines do not speed up the startup. After each startup, one value is read from every meter on the workers of the RTU lines. The
+ * program logs the startup time, the time to read all meters and the maximum lag of the reads.
+ * <p>
+ * The sample uses mocked transports and can be run without an attached device/product.
+ */
+public class DeviceFleetSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceFleetSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+
+    private static final int DEVICE_COUNT = 5000;
+    private static final int LINE_COUNT = 50;
+    private static final int WORKER_COUNT = LINE_COUNT;
+    private static final long CONNECT_LATENCY_MS = 2;
+    private static final int[] CONCURRENT_CONNECTS = { 1, 10, 25, 50 };
+
+    public static void main(String[] argv)
+    {
+        final byte[] eid;
+        try (var stream = EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+        {
+            eid = stream.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        for (var concurrentConnects : CONCURRENT_CONNECTS)
+        {
+            try (var fleet = new DeviceFleet(WORKER_COUNT, concurrentConnects))
+            {
+                run(fleet, eid, concurrentConnects);
+            }
+        }
+    }
+
+    private static void run(DeviceFleet fleet, byte[] eid, int concurrentConnects)
+    {
+        for (int i = 0; i < DEVICE_COUNT; i++)
+        {
+            final var serialPort = "COM" + (i % LINE_COUNT + 1);
+            fleet.register("wago" + i, DeviceFleet.rtuShard(serialPort), () -> {
+                final var properties = new Properties();
+                properties.setProperty("serial_port", serialPort);
+                return new SGrDeviceBuilder()
+                        .eid(new ByteArrayInputStream(eid))
+                        .useModbusClientFactory(new MockModbusClientFactory(ConnectLatencyModbusMock::new))
+                        .properties(properties)
+                        .build();
+            });
+        }
+
+        final var report = fleet.connectAll();
+
+        final var startNs = System.nanoTime();
+        final var reads = new ArrayList<CompletableFuture<Value>>(DEVICE_COUNT);
+        for (int i = 0; i < DEVICE_COUNT; i++)
+        {
+            reads.add(fleet.submit("wago" + i, device -> device.getVal("VoltageAC", "VoltageL1")));
+        }
+        final var maxLagMs = fleet.getMaxLagMs();
+        CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).join();
+        final var readMs = (System.nanoTime() - startNs) / 1e6;
+
+        LOG.info("{} concurrent connects: startup={}ms, connected={}, failed={}, read all={}ms, max lag={}ms, "
+                 + "shards={}, workers={}",
+                 String.format("%3d", concurrentConnects),
+                 String.format("%.0f", report.getElapsedMs()),
+                 fleet.getConnectedCount(),
+                 report.getFailedCount(),
+                 String.format("%.0f", readMs),
+                 String.format("%.1f", maxLagMs),
+                 fleet.getShardCount(),
+                 fleet.getWorkerCount());
+
+        if (report.getFailedCount() > 0)
+        {
+            LOG.warn("Failed devices, e.g.: {}", report.getFailedDevices().get(0));
+        }
+    }
+
+    /**
+     * Mocked transport taking some time to connect, like opening a TCP connection or a serial port.
+     */
+    private static final class ConnectLatencyModbusMock extends GenDriverAPI4ModbusMock
+    {
+        private ConnectLatencyModbusMock()
+        {
+            super(false);
+        }
+
+        @Override
+        public boolean connect() throws GenDriverException
+        {
+            try
+            {
+                Thread.sleep(CONNECT_LATENCY_MS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new GenDriverException("Interrupted while connecting");
+            }
+            return super.connect();
+        }
+    }
+}
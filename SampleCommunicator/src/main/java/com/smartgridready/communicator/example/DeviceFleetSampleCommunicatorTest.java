@@ -0,0 +1,230 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.fleet.DeviceFleet;
+import com.smartgridready.communicator.example.helper.fleet.DeviceFleet.State;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This test class provides an example on how to manage many devices with the {@link DeviceFleet}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The fleet connects the devices in parallel, with a bounded number of concurrent connects, and executes the calls
+ * of all devices on one transport (RTU line, TCP host, MQTT broker) on the same worker thread, connects included.
+ * The devices are Mockito mocks taking 5ms to connect.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class DeviceFleetSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceFleetSampleCommunicatorTest.class);
+
+    private static final int DEVICE_COUNT = 200;
+    private static final int HOST_COUNT = 32;
+    private static final int MAX_CONCURRENT_CONNECTS = 16;
+
+    private final AtomicInteger connecting = new AtomicInteger();
+    private final AtomicInteger maxConnecting = new AtomicInteger();
+    private final Map<String, AtomicInteger> connectingPerHost = new ConcurrentHashMap<>();
+    private final AtomicInteger maxConnectingPerHost = new AtomicInteger();
+
+    @Test
+    void connectsWithBoundedConcurrency() throws Exception
+    {
+        try (var fleet = new DeviceFleet(HOST_COUNT, MAX_CONCURRENT_CONNECTS))
+        {
+            for (int i = 0; i < DEVICE_COUNT; i++)
+            {
+                final var host = "10.0.0." + i % HOST_COUNT;
+                final var device = slowConnectingDevice(host);
+                fleet.register("meter" + i, DeviceFleet.tcpShard(host), () -> device);
+            }
+            fleet.register("broken", DeviceFleet.tcpShard("10.0.0.99"), () -> {
+                throw new GenDriverException("Invalid EID");
+            });
+
+            final var report = fleet.connectAll();
+            LOG.info("{}", report);
+            LOG.info("{}", fleet);
+
+            assertEquals(DEVICE_COUNT, report.getConnectedCount());
+            assertEquals(DEVICE_COUNT, fleet.getConnectedCount());
+            assertEquals(1, report.getFailedCount());
+            assertEquals(State.FAILED, fleet.getState("broken"));
+            assertEquals(HOST_COUNT + 1, fleet.getShardCount());
+
+            // the connects overlap, but never more than allowed, and never on the same host
+            assertEquals(MAX_CONCURRENT_CONNECTS, maxConnecting.get());
+            assertEquals(1, maxConnectingPerHost.get());
+            assertTrue(report.getElapsedMs() < DEVICE_COUNT * 5 / 2, "startup took " + report.getElapsedMs() + "ms");
+        }
+    }
+
+    @Test
+    void callsOfAShardRunOnOneWorker() throws Exception
+    {
+        final Map<String, Set<String>> threadsPerShard = new ConcurrentHashMap<>();
+
+        try (var fleet = new DeviceFleet(2, MAX_CONCURRENT_CONNECTS))
+        {
+            for (int i = 0; i < 30; i++)
+            {
+                final var device = mock(GenDeviceApi.class);
+                when(device.getVal("VoltageAC", "VoltageL1")).thenReturn(Float32Value.of(230f));
+                fleet.register("meter" + i, DeviceFleet.rtuShard("COM" + i % 3), device);
+            }
+            fleet.connectAll();
+
+            final var results = new ArrayList<CompletableFuture<Value>>();
+            for (int i = 0; i < 30; i++)
+            {
+                final var shard = "COM" + i % 3;
+                results.add(fleet.submit("meter" + i, device -> {
+                    threadsPerShard.computeIfAbsent(shard, key -> ConcurrentHashMap.newKeySet())
+                            .add(Thread.currentThread().getName());
+                    return device.getVal("VoltageAC", "VoltageL1");
+                }));
+            }
+            for (var result : results)
+            {
+                assertEquals(230f, result.get().getFloat32());
+            }
+            LOG.info("Threads per shard: {}", threadsPerShard);
+
+            assertEquals(3, threadsPerShard.size());
+            threadsPerShard.values().forEach(threads -> assertEquals(1, threads.size()));
+
+            // calls of disconnected devices fail without reaching the device
+            fleet.disconnectAll();
+            assertEquals(0, fleet.getConnectedCount());
+            final var call = fleet.submit("meter0", device -> device.getVal("VoltageAC", "VoltageL1"));
+            final var exception = assertThrows(ExecutionException.class, call::get);
+            assertTrue(exception.getCause() instanceof GenDriverException);
+        }
+    }
+
+    @Test
+    void closeCompletesAllCalls() throws Exception
+    {
+        final var release = new CountDownLatch(1);
+        final CompletableFuture<Value> blocked;
+        final CompletableFuture<Value> queued;
+
+        final var fleet = new DeviceFleet(1, MAX_CONCURRENT_CONNECTS);
+        try
+        {
+            final var device = mock(GenDeviceApi.class);
+            fleet.register("meter", DeviceFleet.rtuShard("COM1"), device);
+            fleet.connectAll();
+
+            blocked = fleet.submit("meter", dev -> {
+                release.await();
+                return Float32Value.of(230f);
+            });
+            queued = fleet.submit("meter", dev -> Float32Value.of(231f));
+        }
+        finally
+        {
+            // closing waits for the disconnect, which is queued behind the blocked call
+            final var closing = CompletableFuture.runAsync(fleet::close);
+            release.countDown();
+            closing.get(5, TimeUnit.SECONDS);
+        }
+
+        assertEquals(230f, blocked.get().getFloat32());
+        // the queued call ran before the disconnect
+        assertEquals(231f, queued.get().getFloat32());
+
+        // calls submitted after close fail right away
+        assertThrows(IllegalStateException.class, () -> fleet.submit("meter", dev -> null));
+    }
+
+    @Test
+    void unexpectedErrorsDoNotStopTheShard() throws Exception
+    {
+        final var fleet = new DeviceFleet(1, MAX_CONCURRENT_CONNECTS);
+        try
+        {
+            final var device = mock(GenDeviceApi.class);
+            doThrow(new IllegalStateException("Port already closed")).when(device).disconnect();
+            fleet.register("meter", DeviceFleet.rtuShard("COM1"), device);
+            fleet.connectAll();
+
+            final var failing = fleet.submit("meter", dev -> {
+                throw new AssertionError("Unexpected");
+            });
+            final var exception = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+            assertTrue(exception.getCause() instanceof AssertionError);
+
+            // the worker of the shard is still serving calls
+            assertEquals(230f, fleet.submit("meter", dev -> Float32Value.of(230f)).get(5, TimeUnit.SECONDS).getFloat32());
+
+            fleet.disconnectAll();
+            assertEquals(0, fleet.getConnectedCount());
+        }
+        finally
+        {
+            CompletableFuture.runAsync(fleet::close).get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private GenDeviceApi slowConnectingDevice(String host) throws GenDriverException
+    {
+        final var device = mock(GenDeviceApi.class);
+        final var hostConnecting = connectingPerHost.computeIfAbsent(host, key -> new AtomicInteger());
+        doAnswer(invocation -> {
+            maxConnecting.accumulateAndGet(connecting.incrementAndGet(), Math::max);
+            maxConnectingPerHost.accumulateAndGet(hostConnecting.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            hostConnecting.decrementAndGet();
+            connecting.decrementAndGet();
+            return null;
+        }).when(device).connect();
+        return device;
+    }
+}
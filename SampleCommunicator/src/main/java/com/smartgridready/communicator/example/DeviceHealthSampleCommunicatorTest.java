@@ -0,0 +1,259 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.health.DeviceHealthTracker;
+import com.smartgridready.communicator.example.helper.health.DeviceHealthTracker.Config;
+import com.smartgridready.communicator.example.helper.health.DeviceHealthTracker.Decision;
+import com.smartgridready.communicator.example.helper.health.DeviceHealthTracker.State;
+import com.smartgridready.communicator.example.helper.health.DeviceUnavailableException;
+import com.smartgridready.communicator.modbus.impl.SGrModbusDevice;
+import com.smartgridready.communicator.rest.exception.RestApiAuthenticationException;
+import com.smartgridready.communicator.rest.impl.SGrRestApiDevice;
+import com.smartgridready.driver.api.modbus.GenDriverModbusException;
+
+/**
+ * This test class provides an example on how to keep failing devices from slowing down the polling of healthy
+ * devices, using the {@link DeviceHealthTracker}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * Three devices are polled in sequence once per second: a WAGO meter and a CLEMAP meter that fail like the mocks of
+ * the {@code AsynchronousSampleCommunicatorTest} after a full response timeout, and a healthy CLEMAP meter. The tracker
+ * stops calling the failing devices after two consecutive failures and probes them with exponential backoff, so the
+ * healthy device keeps its cadence. The mocks advance a simulated clock instead of sleeping.
+ * <p>
+ * The same decisions can be used to build a processing chain of the asynchronous API: add the {@code ReadExec} of a
+ * device only if {@link DeviceHealthTracker#acquire(String)} does not return {@link Decision#FAST_FAIL}, and record
+ * the outcome of each {@code ReadExec} after {@code process()} has returned.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class DeviceHealthSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceHealthSampleCommunicatorTest.class);
+
+    private static final String DEVICE_ERROR = "DEVICE ERROR";
+
+    private static final String WAGO = "wago";
+    private static final String CLEMAP_1 = "clemap1";
+    private static final String CLEMAP_2 = "clemap2";
+
+    private static final long POLL_INTERVAL_MS = 1000;
+    private static final long RESPONSE_TIME_MS = 50;
+    private static final long MODBUS_TIMEOUT_MS = 3000;
+    private static final long REST_TIMEOUT_MS = 2000;
+
+    private static final Config CONFIG = new Config(2, 1000, 60_000, 2.0);
+
+    @Mock
+    SGrModbusDevice wagoModbusDevice;
+
+    @Mock
+    SGrRestApiDevice clemapRestApiDevice1;
+
+    @Mock
+    SGrRestApiDevice clemapRestApiDevice2;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger wagoCalls = new AtomicInteger();
+    private final AtomicInteger clemap1Calls = new AtomicInteger();
+    private final AtomicInteger clemap2Calls = new AtomicInteger();
+    private final AtomicBoolean clemap2Broken = new AtomicBoolean(true);
+
+    @Test
+    void healthyDeviceKeepsItsCadence() throws Exception
+    {
+        initStubs();
+        final var tracker = new DeviceHealthTracker(CONFIG, clock::get);
+
+        final var cycles = 600;
+        var slowCycles = 0;
+        for (int cycle = 0; cycle < cycles; cycle++)
+        {
+            if (pollCycle(tracker) > POLL_INTERVAL_MS)
+            {
+                slowCycles++;
+            }
+        }
+
+        LOG.info("Health after {} cycles: {}", cycles, tracker.getHealth());
+        LOG.info("Slow cycles: {}, WAGO calls: {}, CLEMAP 2 calls: {}", slowCycles, wagoCalls.get(), clemap2Calls.get());
+
+        // the healthy device is polled in every cycle
+        assertEquals(cycles, clemap1Calls.get());
+        // two failures open the circuit, then the failing devices are probed after 1, 2, 4, ... 60s:
+        // about 17 calls instead of 600, and as many cycles exceeding the poll interval
+        assertEquals(State.OPEN, tracker.getState(WAGO));
+        assertEquals(State.OPEN, tracker.getState(CLEMAP_2));
+        assertTrue(wagoCalls.get() <= 20, "too many calls of the failing device: " + wagoCalls.get());
+        assertTrue(slowCycles <= 20, "too many slow cycles: " + slowCycles);
+    }
+
+    @Test
+    void recoveredDeviceIsPolledAgain() throws Exception
+    {
+        initStubs();
+        final var tracker = new DeviceHealthTracker(CONFIG, clock::get);
+
+        for (int cycle = 0; cycle < 120; cycle++)
+        {
+            pollCycle(tracker);
+        }
+        assertEquals(State.OPEN, tracker.getState(CLEMAP_2));
+
+        // the device recovers and is closed again by the next probe, at most the maximum backoff later
+        clemap2Broken.set(false);
+        for (int cycle = 0; cycle < 60; cycle++)
+        {
+            pollCycle(tracker);
+        }
+        assertEquals(State.CLOSED, tracker.getState(CLEMAP_2));
+
+        // from now on it is polled in every cycle
+        final var callsBefore = clemap2Calls.get();
+        for (int cycle = 0; cycle < 30; cycle++)
+        {
+            pollCycle(tracker);
+        }
+        assertEquals(30, clemap2Calls.get() - callsBefore);
+        LOG.info("Health: {}", tracker.getHealth());
+    }
+
+    @Test
+    void openCircuitFailsFastAndProbesOnce() throws Exception
+    {
+        when(wagoModbusDevice.getVal(any(), any())).thenAnswer(failingAfter(MODBUS_TIMEOUT_MS, wagoCalls, () -> true,
+                () -> new GenDriverModbusException(DEVICE_ERROR)));
+        final var tracker = new DeviceHealthTracker(new Config(1, 10_000, 60_000, 2.0), clock::get);
+
+        assertThrows(GenDriverModbusException.class, () -> tracker.call(WAGO, () -> wagoModbusDevice.getVal("VoltageAC", "VoltageL1")));
+        final var openedAt = clock.get();
+
+        // the device is not called while the circuit is open
+        final var exception = assertThrows(DeviceUnavailableException.class,
+                () -> tracker.call(WAGO, () -> wagoModbusDevice.getVal("VoltageAC", "VoltageL1")));
+        assertEquals(openedAt + 10_000, exception.getNextProbeMs());
+        assertEquals(1, wagoCalls.get());
+
+        // after the backoff, a single probe is let through
+        clock.set(openedAt + 10_000);
+        assertEquals(Decision.PROBE, tracker.acquire(WAGO));
+        assertEquals(Decision.FAST_FAIL, tracker.acquire(WAGO));
+        assertEquals(State.HALF_OPEN, tracker.getState(WAGO));
+
+        // a failed probe doubles the backoff
+        tracker.recordFailure(WAGO, new GenDriverModbusException(DEVICE_ERROR));
+        assertEquals(State.OPEN, tracker.getState(WAGO));
+        assertEquals(clock.get() + 20_000, tracker.getHealth().get(WAGO).getNextProbeMs());
+    }
+
+    /**
+     * Polls the devices in sequence, like a {@code Sequence} of the asynchronous API, and waits for the next cycle.
+     *
+     * @return simulated duration of the poll cycle in milliseconds
+     */
+    private long pollCycle(DeviceHealthTracker tracker)
+    {
+        final var start = clock.get();
+
+        poll(tracker, WAGO, () -> wagoModbusDevice.getVal("VoltageAC", "VoltageL1"));
+        poll(tracker, CLEMAP_1, () -> clemapRestApiDevice1.getVal("ActivePowerAC", "ActivePowerACtot"));
+        poll(tracker, CLEMAP_2, () -> clemapRestApiDevice2.getVal("ActivePowerAC", "ActivePowerACtot"));
+
+        final var duration = clock.get() - start;
+        clock.set(Math.max(clock.get(), start + POLL_INTERVAL_MS));
+        return duration;
+    }
+
+    private static void poll(DeviceHealthTracker tracker, String deviceName, Callable<Value> read)
+    {
+        try
+        {
+            tracker.call(deviceName, read);
+        }
+        catch (DeviceUnavailableException e)
+        {
+            LOG.trace("Skipped {}", deviceName);
+        }
+        catch (Exception e)
+        {
+            LOG.debug("Reading {} failed: {}", deviceName, e.getMessage());
+        }
+    }
+
+    private void initStubs() throws Exception
+    {
+        when(wagoModbusDevice.getVal(any(), any())).thenAnswer(failingAfter(MODBUS_TIMEOUT_MS, wagoCalls, () -> true,
+                () -> new GenDriverModbusException(DEVICE_ERROR)));
+
+        when(clemapRestApiDevice1.getVal(any(), any())).thenAnswer((Answer<Value>) invocation -> {
+            clemap1Calls.incrementAndGet();
+            clock.addAndGet(RESPONSE_TIME_MS);
+            return Float32Value.of(20f);
+        });
+
+        when(clemapRestApiDevice2.getVal(any(), any())).thenAnswer(failingAfter(REST_TIMEOUT_MS, clemap2Calls, clemap2Broken::get,
+                () -> new RestApiAuthenticationException(DEVICE_ERROR)));
+    }
+
+    /**
+     * @return answer that advances the simulated clock by the timeout and throws while the device is broken,
+     *         and responds normally otherwise
+     */
+    private Answer<Value> failingAfter(long timeoutMs,
+                                       AtomicInteger calls,
+                                       BooleanSupplier broken,
+                                       Supplier<Exception> error)
+    {
+        return invocation -> {
+            calls.incrementAndGet();
+            if (broken.getAsBoolean())
+            {
+                clock.addAndGet(timeoutMs);
+                throw error.get();
+            }
+            clock.addAndGet(RESPONSE_TIME_MS);
+            return Float32Value.of(50f);
+        };
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.ResourceProbe;
+import com.smartgridready.communicator.example.helper.meta.DeviceMetadataCache;
+
+/**
+ * This class compares the cost of the metadata calls of the device API with the {@link DeviceMetadataCache}.
+ * <p>
+ * A page load of a device list UI is simulated for {@value #DEVICE_COUNT} WAGO meters: the device information,
+ * all functional profiles with their data points and one data point are looked up per meter. The page is loaded
+ * through the device API and through the cache, and the time and allocated bytes per meter are logged. The figures
+ * are a rough indication, measured on the current thread, not a replacement for a benchmark harness.
+ * <p>
+ * The program uses a mocked modbus driver and can be run without an attached device/product.
+ */
+public class DeviceMetadataSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceMetadataSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+
+    private static final int DEVICE_COUNT = 200;
+    private static final int WARMUP_PAGE_LOADS = 20;
+    private static final int MEASURED_PAGE_LOADS = 100;
+
+    public static void main(String[] argv)
+    {
+        final byte[] eid;
+        final List<GenDeviceApi> devices = new ArrayList<>(DEVICE_COUNT);
+
+        try (var stream = EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+        {
+            eid = stream.readAllBytes();
+
+            for (int i = 0; i < DEVICE_COUNT; i++)
+            {
+                final var properties = new Properties();
+                properties.setProperty("serial_port", "COM" + (i % 10 + 1));
+                devices.add(new SGrDeviceBuilder()
+                        .eid(new ByteArrayInputStream(eid))
+                        .useModbusClientFactory(new MockModbusClientFactory(() -> new GenDriverAPI4ModbusMock(false)))
+                        .properties(properties)
+                        .build());
+            }
+        }
+        catch (Exception e)
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        try
+        {
+            final var eidKey = DeviceMetadataCache.eidKey(eid);
+            final var cache = new DeviceMetadataCache();
+
+            var found = 0;
+            for (int i = 0; i < WARMUP_PAGE_LOADS; i++)
+            {
+                found += loadPageFromDevices(devices) + loadPageFromCache(devices, cache, eidKey);
+            }
+
+            var probe = ResourceProbe.start();
+            for (int i = 0; i < MEASURED_PAGE_LOADS; i++)
+            {
+                found += loadPageFromDevices(devices);
+            }
+            report("device API", probe);
+
+            probe = ResourceProbe.start();
+            for (int i = 0; i < MEASURED_PAGE_LOADS; i++)
+            {
+                found += loadPageFromCache(devices, cache, eidKey);
+            }
+            report("metadata cache", probe);
+
+            LOG.info("{} data points listed, {} EID cached, {} hits, {} misses",
+                     found, cache.size(), cache.getHitCount(), cache.getMissCount());
+        }
+        catch (Exception e)
+        {
+            LOG.error("Error reading device metadata. ", e);
+        }
+    }
+
+    private static int loadPageFromDevices(List<GenDeviceApi> devices) throws Exception
+    {
+        var found = 0;
+        for (var device : devices)
+        {
+            final var deviceInfo = device.getDeviceInfo();
+            found += deviceInfo.getName().length() + deviceInfo.getManufacturer().length();
+
+            for (var profile : device.getFunctionalProfiles())
+            {
+                found += device.getFunctionalProfile(profile.getName()).getName().length();
+                found += device.getDataPoints(profile.getName()).size();
+            }
+            found += device.getDataPoint("VoltageAC", "VoltageL1").getName().length();
+        }
+        return found;
+    }
+
+    private static int loadPageFromCache(List<GenDeviceApi> devices, DeviceMetadataCache cache, String eidKey)
+            throws Exception
+    {
+        var found = 0;
+        for (var device : devices)
+        {
+            final var metadata = cache.get(eidKey, device);
+            found += metadata.getName().length() + metadata.getManufacturer().length();
+
+            for (var profile : metadata.getFunctionalProfiles())
+            {
+                found += metadata.getFunctionalProfile(profile.getName()).getName().length();
+                found += metadata.getDataPoints(profile.getName()).size();
+            }
+            found += metadata.getDataPoint("VoltageAC", "VoltageL1").getName().length();
+        }
+        return found;
+    }
+
+    private static void report(String variant, ResourceProbe probe)
+    {
+        final double loads = (double) MEASURED_PAGE_LOADS * DEVICE_COUNT;
+        LOG.info("{}: {} ns/device, {} bytes/device ({})",
+                 variant,
+                 String.format("%.0f", probe.wallNs() / loads),
+                 String.format("%.0f", probe.allocatedBytes() / loads),
+                 probe);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.dto.DataPoint;
+import com.smartgridready.communicator.common.api.dto.DeviceInfo;
+import com.smartgridready.communicator.common.api.dto.FunctionalProfile;
+import com.smartgridready.communicator.example.helper.meta.DeviceMetadata;
+import com.smartgridready.communicator.example.helper.meta.DeviceMetadataCache;
+
+/**
+ * This test class provides an example on how to read the metadata of a device once and share it between all
+ * devices with the same EID, using the {@link DeviceMetadataCache}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * A UI listing thousands of devices asks for the device information, functional profiles and data points on every
+ * page load. With the cache, {@code getDeviceInfo()} is called once per EID and all further lookups are answered
+ * from immutable maps. Live values are not cached, they are read from the device when needed.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class DeviceMetadataSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceMetadataSampleCommunicatorTest.class);
+
+    private static final String EID_KEY = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+
+    @Mock
+    GenDeviceApi wagoMeter1;
+
+    @Mock
+    GenDeviceApi wagoMeter2;
+
+    @Mock
+    DeviceInfo deviceInfo;
+
+    @Mock
+    FunctionalProfile profile;
+
+    @Mock
+    DataPoint voltageL1;
+
+    @Mock
+    DataPoint voltageL2;
+
+    @Test
+    void metadataIsReadOncePerEid() throws Exception
+    {
+        mockDeviceInfo(wagoMeter1);
+
+        final var cache = new DeviceMetadataCache();
+
+        // a page load of the UI, for two meters with the same EID
+        for (var meter : List.of(wagoMeter1, wagoMeter2, wagoMeter1, wagoMeter2))
+        {
+            final var metadata = cache.get(EID_KEY, meter);
+            final var profileName = metadata.getFunctionalProfiles().get(0).getName();
+            final var dataPoints = metadata.getDataPoints(profileName);
+            LOG.info("{}: {} = {}", metadata, profileName, dataPoints.size());
+
+            assertEquals("WAGO SmartMeter", metadata.getName());
+            assertEquals(2, dataPoints.size());
+            assertSame(voltageL2, metadata.getDataPoint("VoltageAC", "VoltageL2"));
+        }
+
+        verify(wagoMeter1, times(1)).getDeviceInfo();
+        verify(wagoMeter2, never()).getDeviceInfo();
+        assertSame(cache.get(EID_KEY, wagoMeter1), cache.get(EID_KEY, wagoMeter2));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(5, cache.getHitCount());
+    }
+
+    @Test
+    void unknownNamesAreRejected() throws Exception
+    {
+        mockDeviceInfo(wagoMeter1);
+
+        final var metadata = DeviceMetadata.of(wagoMeter1);
+
+        assertEquals(2, metadata.getDataPointCount());
+        assertThrows(IllegalArgumentException.class, () -> metadata.getFunctionalProfile("CurrentAC"));
+        assertThrows(IllegalArgumentException.class, () -> metadata.getDataPoint("VoltageAC", "VoltageL3"));
+    }
+
+    private void mockDeviceInfo(GenDeviceApi device) throws Exception
+    {
+        when(device.getDeviceInfo()).thenReturn(deviceInfo);
+        when(deviceInfo.getName()).thenReturn("WAGO SmartMeter");
+        when(deviceInfo.getFunctionalProfiles()).thenReturn(List.of(profile));
+        when(profile.getName()).thenReturn("VoltageAC");
+        when(profile.getDataPoints()).thenReturn(List.of(voltageL1, voltageL2));
+        when(voltageL1.getName()).thenReturn("VoltageL1");
+        when(voltageL2.getName()).thenReturn("VoltageL2");
+    }
+}
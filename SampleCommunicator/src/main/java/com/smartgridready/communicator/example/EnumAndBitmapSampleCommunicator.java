@@ -27,7 +27,12 @@ import com.smartgridready.communicator.common.api.GenDeviceApi;
 import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
 import com.smartgridready.communicator.common.api.values.BitmapValue;
 import com.smartgridready.communicator.common.api.values.EnumValue;
+import com.smartgridready.communicator.example.helper.BitmapLayout;
+import com.smartgridready.communicator.example.helper.DataPointResolver;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
 import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.EnumTable;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
 import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
 import com.smartgridready.communicator.rest.exception.RestApiAuthenticationException;
 import com.smartgridready.driver.api.common.GenDriverException;
@@ -59,7 +64,12 @@ public class EnumAndBitmapSampleCommunicator
         // You may change the factory implementation or just use the default, in order to
         // create actual Modbus devices with serial or TCP connection.
         //
+        // The primitive bitmap and enum access at the end of this sample uses the Modbus transport
+        // of the device directly, therefore the transport instance is handed over to the device builder.
+        final var transport = new GenDriverAPI4ModbusMock(true);
+
         GenDeviceApi sgcpDevice;
+        EidDataPointIndex index;
 
         try
         {
@@ -67,8 +77,10 @@ public class EnumAndBitmapSampleCommunicator
                 // mandatory: inject device description (EID)
                 .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
                 // optional: inject the ModbusFactory mock
-                .useModbusClientFactory(new MockModbusClientFactory(true))
+                .useModbusClientFactory(new MockModbusClientFactory(() -> transport))
                 .build();
+
+            index = EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME);
         }
         catch ( GenDriverException | RestApiAuthenticationException | IOException e )
         {
@@ -131,6 +143,33 @@ public class EnumAndBitmapSampleCommunicator
             final var  bitmapValue = sgcpDevice.getVal(HEAT_PUMP_BASE_PROFILE, HEAT_PUMP_OP_STATE);
             LOG.info("OP-State BitmapValue.getString() = {}", bitmapValue.getString());
             LOG.info("OP-State BitmapValue.toString() = {}", bitmapValue);
+
+            // PRIMITIVE BITMAPS AND ENUMS
+            // ===========================
+            // getBitmap() and getEnum() build maps and resolve literals by string on every call. For status words
+            // that are polled frequently, resolve the data points, the bit layout and the enum table once at startup.
+            // Then test and modify bits by index on a 'long' and look up enum literals by ordinal, without allocating
+            // maps or boxed booleans.
+            final var resolver = new DataPointResolver(sgcpDevice, index, transport);
+            final var opStateHandle = resolver.resolve(HEAT_PUMP_BASE_PROFILE, HEAT_PUMP_OP_STATE);
+            final var opStateLayout = BitmapLayout.of(opStateHandle.getDataPoint());
+            final var pumpOn = opStateLayout.indexOf("HP_PUMP_ON");
+            final var inHeatingMode = opStateLayout.indexOf("HP_IN_HEATING_MODE");
+
+            final var opStateBits = opStateLayout.valueOf(opStateHandle.readDouble());
+            LOG.info("OP-State bits=0x{}, HP_PUMP_ON={}, HP_IN_HEATING_MODE={}",
+                     Long.toHexString(opStateBits.getBits()), opStateBits.isSet(pumpOn), opStateBits.isSet(inHeatingMode));
+
+            // Modify the bits and write back the complete register value.
+            opStateHandle.write(opStateBits.with(pumpOn, false).with(inHeatingMode, false).getBits());
+
+            // A map view is only built if you really need it.
+            LOG.info("OP-State as map = {}", opStateBits.toMap());
+
+            final var opModeHandle = resolver.resolve(HEAT_PUMP_BASE_PROFILE, HEAT_PUMP_OP_CMD);
+            final var opModes = EnumTable.of(opModeHandle.getDataPoint());
+            opModeHandle.write(opModes.ordinalOf("WP_DOM_WATER_OP"));
+            LOG.info("OP-Mode literal={}", opModes.getLiteral((int) opModeHandle.readDouble()));
         }
         catch (Exception e)
         {
@@ -0,0 +1,179 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.common.api.values.Float64Value;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.http.HttpDeviceEmulator;
+import com.smartgridready.communicator.example.helper.http.ShellyTrvEndpoint;
+import com.smartgridready.communicator.example.helper.load.LatencyHistogram;
+
+/**
+ * This class load-tests the default HTTP driver end to end against {@value #DEVICES} Shelly TRVs emulated by the
+ * {@link HttpDeviceEmulator}.
+ * <p>
+ * The devices are built from the EID-XML "SGr_01_mmmm_dddd_Shelly_TRV_RestAPILocal_V0.1.xml" without injecting a
+ * client factory, so the requests go through the actual HTTP driver and real sockets. {@value #THREADS} threads read
+ * the temperature and from time to time write the target temperature for {@value #RUN_SECONDS}s. The emulator
+ * answers after {@value #LATENCY_MS}ms with a padded payload and fails 1% of the requests. The program logs the
+ * throughput, the latency percentiles and the errors.
+ * <p>
+ * The program can be run without an attached device/product.
+ */
+public class HttpDeviceEmulatorSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HttpDeviceEmulatorSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_01_mmmm_dddd_Shelly_TRV_RestAPILocal_V0.1.xml";
+    private static final String PROFILE = "Thermostat";
+
+    private static final int DEVICES = 50;
+    private static final int THREADS = 16;
+    private static final int RUN_SECONDS = 5;
+    private static final int LATENCY_MS = 5;
+    private static final int PADDING_BYTES = 2048;
+    private static final double ERROR_RATE = 0.01;
+
+    public static void main(String[] argv) throws Exception
+    {
+        // the emulator writes headers and body separately, with Nagle's algorithm each response waits for a delayed
+        // ACK; the property applies to all HTTP servers of the JVM and must be set before the first one is created
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        final byte[] eid;
+        try (var stream = EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+        {
+            eid = stream.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        try (var emulator = new ShellyTrvEndpoint(20.0, PADDING_BYTES).install(new HttpDeviceEmulator(4)))
+        {
+            emulator.withLatency(Duration.ofMillis(LATENCY_MS)).withErrors(ERROR_RATE, 503);
+
+            final List<GenDeviceApi> devices = new ArrayList<>();
+            for (int i = 0; i < DEVICES; i++)
+            {
+                final var properties = new Properties();
+                properties.setProperty("base_uri", emulator.getBaseUri(emulator.addDevice("trv" + i).getId()));
+
+                final var device = new SGrDeviceBuilder()
+                        .eid(new ByteArrayInputStream(eid))
+                        .properties(properties)
+                        .build();
+                device.connect();
+                devices.add(device);
+            }
+
+            run(devices);
+
+            LOG.info("Emulator: {} requests, {} errors", emulator.getRequestCount(), emulator.getErrorCount());
+
+            for (var device : devices)
+            {
+                device.disconnect();
+            }
+        }
+    }
+
+    private static void run(List<GenDeviceApi> devices) throws Exception
+    {
+        final var histogram = new LatencyHistogram();
+        final var failures = new LongAdder();
+        final var running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            final var startNs = System.nanoTime();
+            for (int t = 0; t < THREADS; t++)
+            {
+                final var first = t;
+                futures.add(executor.submit(() -> {
+                    var index = first;
+                    while (running.get())
+                    {
+                        final var device = devices.get(index % devices.size());
+                        final var requestNs = System.nanoTime();
+                        try
+                        {
+                            if (index % 10 == 0)
+                            {
+                                device.setVal(PROFILE, "TargetTemperature", Float64Value.of(18.0 + index % 50 / 10.0));
+                            }
+                            else
+                            {
+                                device.getVal(PROFILE, "Temperature");
+                            }
+                            histogram.record(System.nanoTime() - requestNs);
+                        }
+                        catch (Exception e)
+                        {
+                            failures.increment();
+                        }
+                        index += THREADS;
+                    }
+                    return null;
+                }));
+            }
+
+            TimeUnit.SECONDS.sleep(RUN_SECONDS);
+            running.set(false);
+            for (var future : futures)
+            {
+                future.get();
+            }
+            final var elapsedNs = System.nanoTime() - startNs;
+
+            final var snapshot = histogram.snapshotAndReset();
+            LOG.info("{} requests/s, p50={}ms, p99={}ms, max={}ms, {} failed",
+                     snapshot.getCount() * 1_000_000_000L / elapsedNs,
+                     snapshot.getPercentileMs(50),
+                     snapshot.getPercentileMs(99),
+                     snapshot.getMaxMs(),
+                     failures.sum());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.http.HttpDeviceEmulator;
+import com.smartgridready.communicator.example.helper.http.ShellyTrvEndpoint;
+
+/**
+ * This test class provides an example on how to emulate REST devices with the {@link HttpDeviceEmulator}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The emulator serves the endpoint of the Shelly TRV over real sockets on the loopback interface. The tests use the
+ * HTTP client of the JDK, see {@link HttpDeviceEmulatorSampleCommunicator} for SGr devices using the default HTTP
+ * driver.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class HttpDeviceEmulatorSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HttpDeviceEmulatorSampleCommunicatorTest.class);
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @Test
+    void stateIsKeptPerDevice() throws Exception
+    {
+        try (var emulator = new ShellyTrvEndpoint(20.0, 0).install(new HttpDeviceEmulator(2)))
+        {
+            emulator.addDevice("trv1");
+            emulator.addDevice("trv2");
+
+            final var written = get(emulator.getBaseUri("trv1") + ShellyTrvEndpoint.PATH + "?target_t=22.5");
+            LOG.info("trv1: {}", written.body());
+            assertEquals(200, written.statusCode());
+            assertTrue(written.body().contains("\"target_t\":{\"value\":22.5}"));
+
+            final var other = get(emulator.getBaseUri("trv2") + ShellyTrvEndpoint.PATH);
+            LOG.info("trv2: {}", other.body());
+            assertEquals("{\"tmp\":{\"value\":20.0},\"target_t\":{\"value\":20.0}}", other.body());
+
+            assertEquals(404, get(emulator.getBaseUri("trv3") + ShellyTrvEndpoint.PATH).statusCode());
+            assertEquals(400, get(emulator.getBaseUri("trv1") + ShellyTrvEndpoint.PATH + "?target_t=warm").statusCode());
+        }
+    }
+
+    @Test
+    void latencyAndErrors() throws Exception
+    {
+        try (var emulator = new ShellyTrvEndpoint(20.0, 0).install(new HttpDeviceEmulator(2)))
+        {
+            final var uri = emulator.getBaseUri(emulator.addDevice("trv1").getId()) + ShellyTrvEndpoint.PATH;
+
+            emulator.withLatency(Duration.ofMillis(50));
+            final var startNs = System.nanoTime();
+            assertEquals(200, get(uri).statusCode());
+            final var elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+            LOG.info("Response after {}ms", elapsedMs);
+            assertTrue(elapsedMs >= 50);
+
+            emulator.withLatency(Duration.ZERO).withErrors(1.0, 503);
+            assertEquals(503, get(uri).statusCode());
+            assertEquals(1, emulator.getErrorCount());
+        }
+    }
+
+    @Test
+    void concurrentRequestsDoNotBlockHandlerThreads() throws Exception
+    {
+        final int requests = 200;
+
+        try (var emulator = new ShellyTrvEndpoint(20.0, 1024).install(new HttpDeviceEmulator(2)))
+        {
+            emulator.withLatency(Duration.ofMillis(20));
+            for (int i = 0; i < 10; i++)
+            {
+                emulator.addDevice("trv" + i);
+            }
+
+            final var startNs = System.nanoTime();
+            final List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++)
+            {
+                final var request = HttpRequest.newBuilder(
+                        URI.create(emulator.getBaseUri("trv" + (i % 10)) + ShellyTrvEndpoint.PATH)).build();
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+            }
+            for (var response : responses)
+            {
+                assertEquals(200, response.get().statusCode());
+                assertTrue(response.get().body().length() > 1024);
+            }
+            final var elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+            LOG.info("{} requests with 20ms latency on 2 handler threads took {}ms", requests, elapsedMs);
+
+            // sleeping handlers would need requests * 20ms / 2 threads = 2s
+            assertTrue(elapsedMs < 1500);
+            assertEquals(requests, emulator.getRequestCount());
+        }
+    }
+
+    @Test
+    void slowClientDoesNotDelayOtherResponses() throws Exception
+    {
+        try (var emulator = new ShellyTrvEndpoint(20.0, 0).install(new HttpDeviceEmulator(2));
+                var slowClient = new Socket())
+        {
+            // much more than the socket buffers take, so writing the response blocks until the client reads
+            final var largeResponse = "\"" + "x".repeat(32 * 1024 * 1024) + "\"";
+            emulator.route("GET", "/large", (device, query, body) -> largeResponse);
+            emulator.withLatency(Duration.ofMillis(20));
+            final var baseUri = URI.create(emulator.getBaseUri(emulator.addDevice("trv1").getId()));
+
+            // request the large response but never read it
+            slowClient.setReceiveBufferSize(4096);
+            slowClient.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), baseUri.getPort()));
+            slowClient.getOutputStream().write(("GET " + baseUri.getPath()
+                    + "/large HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            slowClient.getOutputStream().flush();
+            Thread.sleep(200);
+
+            final var request = HttpRequest.newBuilder(URI.create(baseUri + ShellyTrvEndpoint.PATH))
+                    .timeout(Duration.ofSeconds(5))
+                    .build();
+            final var startNs = System.nanoTime();
+            assertEquals(200, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+            final var elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+            LOG.info("Response next to a slow client after {}ms", elapsedMs);
+            assertTrue(elapsedMs < 1000);
+        }
+    }
+
+    @Test
+    void endpointErrorsAreAnswered() throws Exception
+    {
+        try (var emulator = new HttpDeviceEmulator(2))
+        {
+            emulator.route("GET", "/invalid", (device, query, body) -> {
+                throw new IllegalArgumentException("Invalid \"mode\": " + query.get("mode"));
+            });
+            emulator.route("GET", "/broken", (device, query, body) -> {
+                throw new IllegalStateException("Endpoint broken");
+            });
+            final var baseUri = emulator.getBaseUri(emulator.addDevice("trv1").getId());
+
+            // the message is escaped in the JSON response
+            final var invalid = get(baseUri + "/invalid?mode=a%5Cb");
+            assertEquals(400, invalid.statusCode());
+            assertEquals("{\"error\":\"Invalid \\\"mode\\\": a\\\\b\"}", invalid.body());
+
+            // other exceptions are answered with status 500 instead of leaving the client waiting
+            final var broken = get(baseUri + "/broken");
+            LOG.info("broken: {}", broken.body());
+            assertEquals(500, broken.statusCode());
+            assertEquals(2, emulator.getErrorCount());
+        }
+    }
+
+    private HttpResponse<String> get(String uri) throws Exception
+    {
+        return client.send(HttpRequest.newBuilder(URI.create(uri)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.broker.InProcessBroker;
+import com.smartgridready.driver.api.messaging.model.Message;
+import com.smartgridready.driver.api.messaging.model.MessagingPlatformType;
+
+/**
+ * This class measures the message throughput of the {@link InProcessBroker}, the in-process stand-in for an MQTT
+ * broker.
+ * <p>
+ * First, {@value #PUBLISHERS} publisher threads publish to {@value #TOPICS} topics with {@value #SUBSCRIBERS_PER_TOPIC}
+ * subscribers each, once with synchronous delivery and once with a delivery latency of 1ms. Then {@value #DEVICES}
+ * SGr devices built from the EID-XML "SGr_02_mmmmm_dddd_WagoTestsystem_MQTT.xml" read their voltage through the
+ * broker, answered by a device simulator connected to the same broker. The program logs the messages and reads per
+ * second.
+ * <p>
+ * The figures are a rough indication, not a replacement for a benchmark harness.
+ * <p>
+ * The program can be run without an attached device/product or MQTT broker.
+ */
+public class InProcessBrokerSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(InProcessBrokerSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_02_mmmmm_dddd_WagoTestsystem_MQTT.xml";
+
+    private static final String PROFILE = "VoltageDC_OUT_1";
+    private static final String DATA_POINT = "VoltageDC";
+    private static final String DEVICE_TOPIC = "actuators/voltage_dc_out1";
+
+    private static final int PUBLISHERS = 4;
+    private static final int TOPICS = 100;
+    private static final int SUBSCRIBERS_PER_TOPIC = 2;
+    private static final int DEVICES = 8;
+    private static final long RUN_MS = 2000;
+
+    public static void main(String[] argv) throws Exception
+    {
+        fanOut(Duration.ZERO);
+        fanOut(Duration.ofMillis(1));
+
+        try
+        {
+            deviceReads();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error loading device description. ", e);
+        }
+    }
+
+    private static void fanOut(Duration latency) throws Exception
+    {
+        try (var broker = new InProcessBroker().withDeliveryLatency(latency))
+        {
+            final var received = new AtomicLong();
+            for (int t = 0; t < TOPICS; t++)
+            {
+                for (int s = 0; s < SUBSCRIBERS_PER_TOPIC; s++)
+                {
+                    broker.connect("subscriber-" + t + "-" + s)
+                            .subscribe("devices/" + t + "/voltage", null, result -> received.incrementAndGet());
+                }
+            }
+
+            final var topics = new String[TOPICS];
+            for (int t = 0; t < TOPICS; t++)
+            {
+                topics[t] = "devices/" + t + "/voltage";
+            }
+
+            final var elapsedNs = runConcurrently(PUBLISHERS, index -> {
+                final var client = broker.connect("publisher-" + index);
+                final var message = Message.of("230.0");
+                final var sequence = new int[] { index };
+                return () -> client.sendSync(topics[sequence[0]++ % TOPICS], message);
+            });
+
+            // wait for the delayed deliveries
+            Thread.sleep(latency.toMillis() + 50);
+
+            LOG.info("Fan-out, latency {}ms: published {} msg/s, delivered {} msg/s",
+                     latency.toMillis(),
+                     perSecond(broker.getPublishedCount(), elapsedNs),
+                     perSecond(received.get(), elapsedNs));
+        }
+    }
+
+    private static void deviceReads() throws Exception
+    {
+        try (var broker = new InProcessBroker())
+        {
+            // the simulator answers read commands and stores written values, like the real device
+            final var voltage = new AtomicLong(Double.doubleToLongBits(22.2));
+            final var simulator = broker.connect("simulator");
+            simulator.subscribe(DEVICE_TOPIC, null, result -> {
+                final var payload = result.get().getPayload();
+                if ("read".equals(payload))
+                {
+                    simulator.sendSync(DEVICE_TOPIC, Message.of(Double.toString(Double.longBitsToDouble(voltage.get()))));
+                }
+                else
+                {
+                    voltage.set(Double.doubleToLongBits(Double.parseDouble(payload)));
+                }
+            }, true);
+
+            final var eid = readEid();
+            final List<GenDeviceApi> devices = new ArrayList<>();
+            for (int i = 0; i < DEVICES; i++)
+            {
+                final var device = new SGrDeviceBuilder()
+                        .eid(new ByteArrayInputStream(eid))
+                        .useMessagingClientFactory(broker, MessagingPlatformType.MQTT5)
+                        .build();
+                device.connect();
+                devices.add(device);
+            }
+
+            final var reads = new AtomicLong();
+            final var elapsedNs = runConcurrently(DEVICES, index -> {
+                final var device = devices.get(index);
+                return () -> {
+                    device.getVal(PROFILE, DATA_POINT);
+                    reads.incrementAndGet();
+                };
+            });
+
+            LOG.info("Device reads: {} reads/s, {} msg/s through the broker",
+                     perSecond(reads.get(), elapsedNs),
+                     perSecond(broker.getPublishedCount(), elapsedNs));
+
+            for (var device : devices)
+            {
+                device.disconnect();
+            }
+        }
+    }
+
+    private static byte[] readEid() throws IOException
+    {
+        try (var stream = EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+        {
+            return stream.readAllBytes();
+        }
+    }
+
+    /**
+     * Runs the tasks created by the factory on the given number of threads for {@value #RUN_MS}ms.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private static long runConcurrently(int threads, TaskFactory factory) throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final var running = new AtomicBoolean(true);
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            final var startNs = System.nanoTime();
+            for (int i = 0; i < threads; i++)
+            {
+                final var task = factory.create(i);
+                futures.add(executor.submit(() -> {
+                    while (running.get())
+                    {
+                        task.run();
+                    }
+                    return null;
+                }));
+            }
+
+            TimeUnit.MILLISECONDS.sleep(RUN_MS);
+            running.set(false);
+            for (var future : futures)
+            {
+                future.get();
+            }
+            return System.nanoTime() - startNs;
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private static long perSecond(long count, long elapsedNs)
+    {
+        return count * 1_000_000_000L / elapsedNs;
+    }
+
+    @FunctionalInterface
+    private interface TaskFactory
+    {
+        Task create(int index) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Task
+    {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.broker.InProcessBroker;
+import com.smartgridready.driver.api.messaging.model.Message;
+
+/**
+ * This test class provides an example on how to test MQTT clients against the {@link InProcessBroker}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The tests use the topics of the EID-XML "SGr_02_mmmmm_dddd_WagoTestsystem_MQTT.xml", with a device simulator
+ * connected to the broker answering the read commands.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class InProcessBrokerSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(InProcessBrokerSampleCommunicatorTest.class);
+
+    private static final String READ_CMD_TOPIC = "actuator/analgue/voltage_dc_in1";
+    private static final String IN_MESSAGE_TOPIC = "actuator/analogue/voltage_dc_out1";
+
+    @Test
+    void retainedMessagesAndWildcards() throws Exception
+    {
+        try (var broker = new InProcessBroker())
+        {
+            broker.publish("sensors/voltage/dc_in1", Message.of("11.0"), true);
+            broker.publish("sensors/voltage/dc_in2", Message.of("12.0"), true);
+
+            final var received = new CopyOnWriteArrayList<String>();
+            final var client = broker.connect("client");
+            client.subscribe("sensors/+/dc_in2", null, result -> received.add(result.get().getPayload()));
+            client.subscribe("sensors/#", null, result -> received.add(result.get().getPayload()));
+
+            // retained messages are delivered on subscription
+            assertEquals(3, received.size());
+            assertTrue(received.contains("11.0"));
+
+            broker.publish("sensors/voltage/dc_in2", Message.of("12.5"), false);
+            broker.publish("actuators/voltage_dc_out1", Message.of("5.0"), false);
+            LOG.info("Received: {}", received);
+
+            assertEquals(5, received.size());
+            assertEquals("12.0", broker.getRetained("sensors/voltage/dc_in2").getPayload());
+
+            client.unsubscribe("sensors/#");
+            broker.publish("sensors/voltage/dc_in1", Message.of("11.5"), false);
+            assertEquals(5, received.size());
+        }
+    }
+
+    @Test
+    void deliveryThreadParksWhileIdle() throws Exception
+    {
+        try (var broker = new InProcessBroker().withDeliveryLatency(Duration.ofMillis(5)))
+        {
+            final var received = new CopyOnWriteArrayList<String>();
+            final var client = broker.connect("client");
+            client.subscribe("sensors/#", null, result -> received.add(result.get().getPayload()));
+
+            final var deliveryThread = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("broker-delivery"))
+                    .findFirst()
+                    .orElseThrow();
+
+            for (var payload : List.of("11.0", "11.5"))
+            {
+                final var startNs = System.nanoTime();
+                broker.publish("sensors/voltage/dc_in1", Message.of(payload), false);
+                Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> received.contains(payload));
+                assertTrue(System.nanoTime() - startNs >= Duration.ofMillis(5).toNanos());
+
+                // without pending messages, the thread waits without timeout instead of polling the queue
+                Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> deliveryThread.getState() == Thread.State.WAITING);
+            }
+        }
+    }
+
+    @Test
+    void requestResponseWithFilter() throws Exception
+    {
+        try (var broker = new InProcessBroker())
+        {
+            // the simulator answers each read command with the values of two sensors
+            final var simulator = broker.connect("simulator");
+            simulator.subscribe(READ_CMD_TOPIC, null, command -> {
+                simulator.sendSync(IN_MESSAGE_TOPIC, Message.of("[{\"sensorId\":2,\"value\":7.5}]"));
+                simulator.sendSync(IN_MESSAGE_TOPIC, Message.of("[{\"sensorId\":1,\"value\":23.1}]"));
+            });
+
+            final var device = broker.create(null);
+            final var response = device.readSync(READ_CMD_TOPIC,
+                                                 Message.of("{ \"cmd\": \"read\" }"),
+                                                 IN_MESSAGE_TOPIC,
+                                                 payload -> payload.contains("\"sensorId\":1"),
+                                                 1000);
+            LOG.info("Response: {}", response.get().getPayload());
+            assertEquals("[{\"sensorId\":1,\"value\":23.1}]", response.get().getPayload());
+
+            // no answer on an unknown topic
+            final var timeout = device.readSync("unknown/cmd", Message.of("read"), "unknown/value", null, 50);
+            assertTrue(timeout.getLeft() instanceof TimeoutException);
+
+            // the pending responses have been removed
+            assertEquals(1, broker.getSubscriptionCount());
+        }
+    }
+
+    @Test
+    void sameTopicForCommandAndResponse() throws Exception
+    {
+        final var topic = "actuators/voltage_dc_out1";
+
+        try (var broker = new InProcessBroker())
+        {
+            final var simulator = broker.connect("simulator");
+            simulator.subscribe(topic, null, command -> {
+                if ("read".equals(command.get().getPayload()))
+                {
+                    simulator.sendSync(topic, Message.of("22.2"));
+                }
+            }, true);
+
+            final var device = broker.create(null);
+            final var response = device.readSync(topic, Message.of("read"), topic, null, 1000);
+            assertEquals("22.2", response.get().getPayload());
+        }
+    }
+
+    @Test
+    void concurrentPublishers() throws Exception
+    {
+        final int publishers = 8;
+        final int messagesPerPublisher = 20_000;
+        final int topics = 4;
+
+        try (var broker = new InProcessBroker())
+        {
+            final var counters = new ArrayList<AtomicLong>();
+            for (int t = 0; t < topics; t++)
+            {
+                for (int s = 0; s < 2; s++)
+                {
+                    final var counter = new AtomicLong();
+                    counters.add(counter);
+                    broker.connect("subscriber-" + t + "-" + s)
+                            .subscribe("devices/" + t + "/value", null, result -> counter.incrementAndGet());
+                }
+            }
+
+            final ExecutorService executor = Executors.newFixedThreadPool(publishers);
+            try
+            {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int p = 0; p < publishers; p++)
+                {
+                    final var client = broker.connect("publisher-" + p);
+                    futures.add(executor.submit(() -> {
+                        final var message = Message.of("1.0");
+                        for (int i = 0; i < messagesPerPublisher; i++)
+                        {
+                            client.sendSync("devices/" + (i % topics) + "/value", message);
+                        }
+                    }));
+                }
+                for (var future : futures)
+                {
+                    future.get();
+                }
+            }
+            finally
+            {
+                executor.shutdown();
+            }
+
+            LOG.info("published={}, delivered={}", broker.getPublishedCount(), broker.getDeliveredCount());
+            assertEquals((long) publishers * messagesPerPublisher, broker.getPublishedCount());
+            assertEquals(2L * publishers * messagesPerPublisher, broker.getDeliveredCount());
+            for (var counter : counters)
+            {
+                assertEquals((long) publishers * messagesPerPublisher / topics, counter.get());
+            }
+        }
+    }
+}
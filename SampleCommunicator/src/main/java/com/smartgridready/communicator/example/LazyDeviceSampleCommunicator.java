@@ -0,0 +1,201 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.fleet.LazyDevice;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This class compares the footprint of a sparse fleet of {@value #DEVICE_COUNT} WAGO meters built eagerly and as
+ * {@link LazyDevice}s.
+ * <p>
+ * Each meter is read rarely: in each of {@value #ROUNDS} rounds, {@value #READS_PER_ROUND} random meters are read.
+ * Eagerly, all meters are built and connected at startup. Lazily, a meter is built and connected on its first read
+ * and disconnected after {@value #IDLE_TIMEOUT_MS}ms without reads, once keeping and once releasing its model. The
+ * program logs the startup time, the heap used, the number of open transports and the number of builds.
+ * <p>
+ * The sample uses mocked transports and can be run without an attached device/product.
+ */
+public class LazyDeviceSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LazyDeviceSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+
+    private static final int DEVICE_COUNT = 2000;
+    private static final int ROUNDS = 10;
+    private static final int READS_PER_ROUND = 20;
+    private static final long ROUND_INTERVAL_MS = 100;
+    private static final long IDLE_TIMEOUT_MS = 250;
+
+    /** Number of mocked transports currently connected. */
+    private static final AtomicInteger OPEN_TRANSPORTS = new AtomicInteger();
+
+    private static byte[] eid;
+
+    public static void main(String[] argv) throws Exception
+    {
+        try (var stream = EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+        {
+            eid = stream.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        eager();
+        lazy(false);
+        lazy(true);
+    }
+
+    private static void eager() throws Exception
+    {
+        final var startNs = System.nanoTime();
+        final var devices = new ArrayList<GenDeviceApi>(DEVICE_COUNT);
+        for (int i = 0; i < DEVICE_COUNT; i++)
+        {
+            final var device = buildWago(i);
+            device.connect();
+            devices.add(device);
+        }
+        final var startupMs = (System.nanoTime() - startNs) / 1e6;
+
+        final var random = new Random(42L);
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            for (int i = 0; i < READS_PER_ROUND; i++)
+            {
+                devices.get(random.nextInt(DEVICE_COUNT)).getVal("VoltageAC", "VoltageL1");
+            }
+            Thread.sleep(ROUND_INTERVAL_MS);
+        }
+
+        log("Eager                ", startupMs, DEVICE_COUNT);
+
+        for (var device : devices)
+        {
+            device.disconnect();
+        }
+    }
+
+    private static void lazy(boolean releaseModel) throws Exception
+    {
+        final var scheduler = Executors.newSingleThreadScheduledExecutor();
+        final var startNs = System.nanoTime();
+        final List<LazyDevice> devices = new ArrayList<>(DEVICE_COUNT);
+        for (int i = 0; i < DEVICE_COUNT; i++)
+        {
+            final var index = i;
+            final var device = new LazyDevice("wago" + i, () -> buildWago(index), Duration.ofMillis(IDLE_TIMEOUT_MS),
+                                              scheduler);
+            devices.add(releaseModel ? device.releaseModelWhenIdle() : device);
+        }
+        final var startupMs = (System.nanoTime() - startNs) / 1e6;
+
+        final var random = new Random(42L);
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            for (int i = 0; i < READS_PER_ROUND; i++)
+            {
+                devices.get(random.nextInt(DEVICE_COUNT)).getVal("VoltageAC", "VoltageL1");
+            }
+            Thread.sleep(ROUND_INTERVAL_MS);
+        }
+
+        log(releaseModel ? "Lazy, releasing model" : "Lazy, keeping model  ",
+            startupMs,
+            devices.stream().mapToInt(LazyDevice::getBuildCount).sum());
+
+        devices.forEach(LazyDevice::close);
+        scheduler.shutdown();
+    }
+
+    private static void log(String name, double startupMs, int builds)
+    {
+        System.gc();
+        final var runtime = Runtime.getRuntime();
+        final var heapMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
+        LOG.info("{}: startup={}ms, heap used={}MB, open transports={}, builds={}",
+                 name,
+                 String.format("%.0f", startupMs),
+                 String.format("%.1f", heapMb),
+                 OPEN_TRANSPORTS.get(),
+                 builds);
+    }
+
+    private static GenDeviceApi buildWago(int index) throws Exception
+    {
+        final var properties = new Properties();
+        properties.setProperty("serial_port", "COM" + (index % 50 + 1));
+        return new SGrDeviceBuilder()
+                .eid(new ByteArrayInputStream(eid))
+                .useModbusClientFactory(new MockModbusClientFactory(CountingModbusMock::new))
+                .properties(properties)
+                .build();
+    }
+
+    /**
+     * Mocked transport counting the open connections, standing for sockets or serial handles.
+     */
+    private static final class CountingModbusMock extends GenDriverAPI4ModbusMock
+    {
+        private CountingModbusMock()
+        {
+            super(false);
+        }
+
+        @Override
+        public boolean connect() throws GenDriverException
+        {
+            final var result = super.connect();
+            OPEN_TRANSPORTS.incrementAndGet();
+            return result;
+        }
+
+        @Override
+        public void disconnect()
+        {
+            if (isConnected())
+            {
+                OPEN_TRANSPORTS.decrementAndGet();
+            }
+            super.disconnect();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.example.helper.fleet.LazyDevice;
+
+/**
+ * This test class provides an example on how to build and connect rarely used devices on demand, using the
+ * {@link LazyDevice}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The device is built on the first read and connected before each read unless it is still connected. After 100ms
+ * without reads, it is disconnected again. The device is a Mockito mock.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class LazyDeviceSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LazyDeviceSampleCommunicatorTest.class);
+
+    private static final Duration IDLE_TIMEOUT = Duration.ofMillis(100);
+
+    @Mock
+    GenDeviceApi wagoDevice;
+
+    private final AtomicInteger builds = new AtomicInteger();
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp()
+    {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void connectsOnDemandAndReleasesWhenIdle() throws Exception
+    {
+        when(wagoDevice.getVal("VoltageAC", "VoltageL1")).thenReturn(Float32Value.of(230f));
+
+        try (var device = new LazyDevice("wago", this::buildWago, IDLE_TIMEOUT, scheduler))
+        {
+            // nothing is set up before the first access
+            assertFalse(device.isBuilt());
+            assertEquals(0, builds.get());
+
+            assertEquals(230f, device.getVal("VoltageAC", "VoltageL1").getFloat32());
+            assertEquals(230f, device.getVal("VoltageAC", "VoltageL1").getFloat32());
+            LOG.info("After two reads: {}", device);
+            assertTrue(device.isConnected());
+            assertEquals(1, device.getConnectCount());
+
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> !device.isConnected());
+            LOG.info("After idle time: {}", device);
+
+            // the model is kept, the transport is connected again
+            assertEquals(230f, device.getVal("VoltageAC", "VoltageL1").getFloat32());
+            assertEquals(1, builds.get());
+            assertEquals(2, device.getConnectCount());
+        }
+    }
+
+    @Test
+    void regularReadsKeepTheConnection() throws Exception
+    {
+        when(wagoDevice.getVal("VoltageAC", "VoltageL1")).thenReturn(Float32Value.of(230f));
+
+        try (var device = new LazyDevice("wago", this::buildWago, IDLE_TIMEOUT, scheduler))
+        {
+            for (int i = 0; i < 10; i++)
+            {
+                device.getVal("VoltageAC", "VoltageL1");
+                Thread.sleep(IDLE_TIMEOUT.toMillis() / 2);
+            }
+            assertEquals(1, device.getConnectCount());
+        }
+    }
+
+    @Test
+    void releasedModelIsRebuilt() throws Exception
+    {
+        when(wagoDevice.getVal("VoltageAC", "VoltageL1")).thenReturn(Float32Value.of(230f));
+
+        try (var device = new LazyDevice("wago", this::buildWago, IDLE_TIMEOUT, scheduler).releaseModelWhenIdle())
+        {
+            device.getVal("VoltageAC", "VoltageL1");
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> !device.isBuilt());
+
+            device.getVal("VoltageAC", "VoltageL1");
+            assertEquals(2, builds.get());
+        }
+    }
+
+    @Test
+    void slowCallDoesNotHoldUpOtherIdleChecks() throws Exception
+    {
+        when(wagoDevice.getVal("VoltageAC", "VoltageL1")).thenReturn(Float32Value.of(230f));
+        final var release = new CountDownLatch(1);
+
+        // both devices share the scheduler thread of the idle checks
+        try (var slow = new LazyDevice("slow", this::buildWago, IDLE_TIMEOUT, scheduler);
+             var other = new LazyDevice("other", this::buildWago, IDLE_TIMEOUT, scheduler))
+        {
+            slow.getVal("VoltageAC", "VoltageL1");
+            final var slowCall = CompletableFuture.runAsync(() -> {
+                try
+                {
+                    slow.call(device -> release.await(10, TimeUnit.SECONDS));
+                }
+                catch (Exception e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            other.getVal("VoltageAC", "VoltageL1");
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> !other.isConnected());
+
+            // the slow device is not disconnected during its call, but after it has been idle
+            assertTrue(slow.isConnected());
+            release.countDown();
+            slowCall.get();
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> !slow.isConnected());
+            assertEquals(1, slow.getConnectCount());
+        }
+    }
+
+    private GenDeviceApi buildWago()
+    {
+        builds.incrementAndGet();
+        return wagoDevice;
+    }
+}
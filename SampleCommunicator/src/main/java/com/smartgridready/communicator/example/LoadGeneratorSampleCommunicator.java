@@ -0,0 +1,199 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.fleet.DeviceFleet.DeviceFactory;
+import com.smartgridready.communicator.example.helper.load.LoadGenerator;
+import com.smartgridready.driver.api.messaging.model.MessagingPlatformType;
+
+/**
+ * Load generator to find out how many devices one JVM can poll before the latency degrades.
+ * <p>
+ * The program builds simulated devices of the selected transports, Modbus (WAGO meter, {@link MockModbusClientFactory}),
+ * REST (Shelly thermostat, {@link RestClientFactory}) and MQTT (WAGO test system, {@link MockMessagingClientFactory}),
+ * and polls one data point of each device at the configured interval. Starting with the given number of devices
+ * per transport, the number is multiplied step by step until the throughput falls behind the offered rate or the
+ * p99 latency exceeds the limit. Each step logs the throughput and latency percentiles per transport, the garbage
+ * collections, the thread count and the heap.
+ * <p>
+ * The parameters are passed as {@code key=value} arguments, e.g.
+ * {@code transports=modbus,mqtt devices=100 factor=2 steps=8 step-seconds=10 interval-ms=1000 workers=8}.
+ * <p>
+ * The program uses mocked transports and can be run without an attached device/product.
+ */
+public class LoadGeneratorSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGeneratorSampleCommunicator.class);
+
+    private static final String MODBUS_EID = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+    private static final String REST_EID = "SGr_01_mmmm_dddd_Shelly_TRV_RestAPILocal_V0.1.xml";
+    private static final String MQTT_EID = "SGr_02_mmmmm_dddd_WagoTestsystem_MQTT.xml";
+
+    private static final Map<String, String> DEFAULTS = Map.of("transports", "modbus,rest,mqtt",
+                                                               "devices", "50",
+                                                               "factor", "2",
+                                                               "steps", "8",
+                                                               "step-seconds", "5",
+                                                               "interval-ms", "1000",
+                                                               "workers",
+                                                               String.valueOf(Runtime.getRuntime().availableProcessors()),
+                                                               "max-p99-ms", "");
+
+    public static void main(String[] argv)
+    {
+        final Map<String, String> options;
+        try
+        {
+            options = parse(argv);
+        }
+        catch (IllegalArgumentException e)
+        {
+            LOG.error("{}. Arguments (key=value, with defaults): {}", e.getMessage(), DEFAULTS);
+            return;
+        }
+        LOG.info("Load generator options: {}", options);
+
+        final var interval = Duration.ofMillis(Long.parseLong(options.get("interval-ms")));
+        final var maxP99 = options.get("max-p99-ms").isEmpty() ? interval
+                : Duration.ofMillis(Long.parseLong(options.get("max-p99-ms")));
+
+        try (var generator = new LoadGenerator(Integer.parseInt(options.get("workers")), interval))
+        {
+            generator.saturation(0.95, maxP99);
+
+            for (var transport : options.get("transports").split(","))
+            {
+                addTransport(generator, transport.trim());
+            }
+
+            final var reports = generator.ramp(Integer.parseInt(options.get("devices")),
+                                               Double.parseDouble(options.get("factor")),
+                                               Integer.parseInt(options.get("steps")),
+                                               Duration.ofSeconds(Long.parseLong(options.get("step-seconds"))));
+
+            final var capacity = reports.stream().filter(report -> !report.isSaturated()).reduce((a, b) -> b);
+            if (capacity.isPresent())
+            {
+                LOG.info("Highest load without saturation: {} devices per transport, {} polls/s",
+                         capacity.get().getDevicesPerTransport(),
+                         String.format("%.0f", capacity.get().getThroughput()));
+            }
+            else
+            {
+                LOG.info("Already the first step is saturated, start with fewer devices");
+            }
+        }
+        catch (Exception e)
+        {
+            LOG.error("Load generation failed. ", e);
+        }
+    }
+
+    private static Map<String, String> parse(String[] argv)
+    {
+        final var options = new HashMap<>(DEFAULTS);
+        for (var arg : argv)
+        {
+            final var separator = arg.indexOf('=');
+            if (separator < 0 || !DEFAULTS.containsKey(arg.substring(0, separator)))
+            {
+                throw new IllegalArgumentException("Unknown argument '" + arg + "'");
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static void addTransport(LoadGenerator generator, String transport) throws IOException
+    {
+        switch (transport)
+        {
+            case "modbus":
+                generator.transport(transport, modbusFactory(loadEid(MODBUS_EID)), "VoltageAC", "VoltageL1");
+                break;
+            case "rest":
+                generator.transport(transport, restFactory(loadEid(REST_EID)), "Thermostat", "Temperature");
+                break;
+            case "mqtt":
+                generator.transport(transport, mqttFactory(loadEid(MQTT_EID)), "VoltageDC_OUT_1", "VoltageDC");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown transport '" + transport + "', use modbus, rest or mqtt");
+        }
+    }
+
+    private static DeviceFactory modbusFactory(byte[] eid)
+    {
+        final var index = new AtomicInteger();
+        return () -> {
+            final var properties = new Properties();
+            properties.setProperty("serial_port", "COM" + index.incrementAndGet());
+            return new SGrDeviceBuilder()
+                    .eid(new ByteArrayInputStream(eid))
+                    .useModbusClientFactory(new MockModbusClientFactory(() -> new GenDriverAPI4ModbusMock(false)))
+                    .properties(properties)
+                    .build();
+        };
+    }
+
+    private static DeviceFactory restFactory(byte[] eid)
+    {
+        final var index = new AtomicInteger();
+        return () -> {
+            final var properties = new Properties();
+            properties.setProperty("base_uri", "https://thermostat-" + index.incrementAndGet() + ".example.com/");
+            return new SGrDeviceBuilder()
+                    .eid(new ByteArrayInputStream(eid))
+                    .useRestServiceClientFactory(new RestClientFactory())
+                    .properties(properties)
+                    .build();
+        };
+    }
+
+    private static DeviceFactory mqttFactory(byte[] eid)
+    {
+        return () -> new SGrDeviceBuilder()
+                .eid(new ByteArrayInputStream(eid))
+                .useMessagingClientFactory(new MockMessagingClientFactory(), MessagingPlatformType.MQTT5)
+                .build();
+    }
+
+    private static byte[] loadEid(String fileName) throws IOException
+    {
+        try (var stream = EidLoader.getDeviceDescriptionInputStream(fileName))
+        {
+            return stream.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.example.helper.load.LatencyHistogram;
+import com.smartgridready.communicator.example.helper.load.LoadGenerator;
+
+/**
+ * This test class provides an example on how to find the number of devices a JVM can poll, using the
+ * {@link LoadGenerator}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The devices are Mockito mocks taking 5ms per read, polled every 100ms by 2 worker threads. The pool can serve
+ * at most 400 reads per second, i.e. 40 devices. The load generator doubles the number of devices from step to step
+ * until the throughput falls behind the offered rate.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class LoadGeneratorSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGeneratorSampleCommunicatorTest.class);
+
+    private static final String PROFILE = "VoltageAC";
+    private static final String DATA_POINT = "VoltageL1";
+
+    @Test
+    void histogramPercentiles()
+    {
+        final var histogram = new LatencyHistogram();
+        for (int ms = 1; ms <= 1000; ms++)
+        {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        final var snapshot = histogram.snapshotAndReset();
+        LOG.info("p50={}ms, p99={}ms, max={}ms",
+                 snapshot.getPercentileMs(50), snapshot.getPercentileMs(99), snapshot.getMaxMs());
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(500.0, snapshot.getPercentileMs(50), 500.0 / 16);
+        assertEquals(990.0, snapshot.getPercentileMs(99), 990.0 / 16);
+        assertEquals(1000.0, snapshot.getMaxMs());
+        assertEquals(0, histogram.snapshotAndReset().getCount());
+    }
+
+    @Test
+    void rampFindsSaturation() throws Exception
+    {
+        try (var generator = new LoadGenerator(2, Duration.ofMillis(100)))
+        {
+            generator.transport("modbus", LoadGeneratorSampleCommunicatorTest::slowDevice, PROFILE, DATA_POINT);
+
+            final var reports = generator.ramp(10, 2.0, 5, Duration.ofMillis(500));
+
+            final var first = reports.get(0);
+            final var last = reports.get(reports.size() - 1);
+            assertFalse(first.isSaturated());
+            assertEquals(100.0, first.getThroughput(), 20.0);
+            assertTrue(last.isSaturated());
+            assertTrue(last.getDevicesPerTransport() >= 40);
+            assertTrue(last.getThroughput() < 450.0);
+            assertEquals(0, last.getTransports().get("modbus").getErrorCount());
+        }
+    }
+
+    private static GenDeviceApi slowDevice() throws Exception
+    {
+        // lenient, since the devices added by the last step may not be polled before the test ends
+        final var device = mock(GenDeviceApi.class);
+        lenient().when(device.getVal(PROFILE, DATA_POINT)).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            return Float32Value.of(230.0f);
+        });
+        return device;
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.ModbusTcpServerMock;
+import com.smartgridready.communicator.example.helper.tcp.ModbusTcpClientPool;
+import com.smartgridready.driver.api.modbus.GenDriverModbusException;
+
+/**
+ * This test class provides an example on how to share one Modbus TCP connection between several devices
+ * behind the same gateway, using the {@link ModbusTcpClientPool}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The tests run against an in-process Modbus TCP server stand-in. They verify that devices with different
+ * unit IDs share one connection, that pipelined requests are matched to their responses by the MBAP
+ * transaction ID, and that the pool reconnects transparently after the gateway dropped the connection.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class ModbusTcpPoolSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ModbusTcpPoolSampleCommunicatorTest.class);
+
+    private ModbusTcpServerMock server;
+    private ModbusTcpClientPool pool;
+
+    @AfterEach
+    void tearDown()
+    {
+        pool.close();
+        server.close();
+    }
+
+    @Test
+    void devicesShareOneConnection() throws Exception
+    {
+        start(1.0, 0.0);
+        final var unit1 = pool.transport(server.getHost(), server.getPort(), 1);
+        final var unit2 = pool.transport(server.getHost(), server.getPort(), 2);
+        unit1.connect();
+        unit2.connect();
+
+        unit1.WriteMultipleRegisters(100, new int[] { 0x435c, 0x51ec });
+        unit2.WriteSingleRegister(100, 42);
+
+        assertArrayEquals(new int[] { 0x435c, 0x51ec }, unit1.ReadHoldingRegisters(100, 2));
+        assertArrayEquals(new int[] { 42 }, unit2.ReadInputRegisters(100, 1));
+        assertEquals(1, server.getAcceptedConnectionCount());
+        assertEquals(1, pool.getOpenConnectionCount());
+
+        // the connection is closed when the last device disconnects
+        unit1.disconnect();
+        assertEquals(1, pool.getOpenConnectionCount());
+        unit2.disconnect();
+        assertEquals(0, pool.getOpenConnectionCount());
+    }
+
+    @Test
+    void pipelinedResponsesAreMatchedByTransactionId() throws Exception
+    {
+        // the random jitter reorders the responses
+        start(2.0, 5.0);
+        for (int address = 0; address < 64; address++)
+        {
+            server.setRegister(7, address, 1000 + address);
+        }
+
+        final var transport = pool.transport(server.getHost(), server.getPort(), 7);
+        transport.connect();
+
+        final var reads = new ArrayList<CompletableFuture<int[]>>();
+        for (int address = 0; address < 64; address++)
+        {
+            reads.add(transport.readHoldingRegistersAsync(address, 1));
+        }
+        for (int address = 0; address < 64; address++)
+        {
+            assertEquals(1000 + address, reads.get(address).get()[0]);
+        }
+
+        LOG.info("Max. requests in flight at the server: {}", server.getMaxInFlight());
+        assertTrue(server.getMaxInFlight() > 1, "requests were not pipelined");
+        assertEquals(1, server.getAcceptedConnectionCount());
+    }
+
+    @Test
+    void reconnectsTransparently() throws Exception
+    {
+        start(1.0, 0.0);
+        server.setRegister(1, 10, 123);
+        final var transport = pool.transport(server.getHost(), server.getPort(), 1);
+        transport.connect();
+        assertEquals(123, transport.ReadHoldingRegisters(10, 1)[0]);
+
+        server.dropConnections();
+
+        // the read is retried on a new connection
+        assertEquals(123, transport.ReadHoldingRegisters(10, 1)[0]);
+        assertEquals(2, server.getAcceptedConnectionCount());
+        assertEquals(2, pool.getConnectCount());
+    }
+
+    @Test
+    void retriesDoNotWaitForTheirOwnRequestSlot() throws Exception
+    {
+        // a single request slot, so a retry needs the slot of the request it retries
+        start(20.0, 0.0, 1);
+        for (int address = 0; address < 8; address++)
+        {
+            server.setRegister(1, address, 500 + address);
+        }
+        final var transport = pool.transport(server.getHost(), server.getPort(), 1);
+        transport.connect();
+
+        final var startNs = System.nanoTime();
+        final var reads = new ArrayList<CompletableFuture<int[]>>();
+        for (int address = 0; address < 8; address++)
+        {
+            reads.add(transport.readHoldingRegistersAsync(address, 1));
+        }
+        // the requests beyond the free slot are queued instead of blocking the caller
+        assertTrue(System.nanoTime() - startNs < 20_000_000L, "sending blocked the caller");
+
+        server.dropConnections();
+
+        for (int address = 0; address < 8; address++)
+        {
+            assertEquals(500 + address, reads.get(address).get(5, TimeUnit.SECONDS)[0]);
+        }
+        assertEquals(500, transport.ReadHoldingRegisters(0, 1)[0]);
+    }
+
+    @Test
+    void modbusExceptionIsReported() throws Exception
+    {
+        start(1.0, 0.0);
+        final var transport = pool.transport(server.getHost(), server.getPort(), 1);
+        transport.connect();
+
+        // more than 125 registers are rejected by the server with exception 0x03
+        assertThrows(GenDriverModbusException.class, () -> transport.ReadHoldingRegisters(0, 200));
+        // the connection is still usable
+        transport.WriteSingleRegister(0, 1);
+        assertEquals(1, server.getAcceptedConnectionCount());
+    }
+
+    private void start(double responseDelayMs, double responseJitterMs) throws Exception
+    {
+        start(responseDelayMs, responseJitterMs, ModbusTcpClientPool.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    private void start(double responseDelayMs, double responseJitterMs, int maxInFlight) throws Exception
+    {
+        server = new ModbusTcpServerMock(responseDelayMs, responseJitterMs);
+        pool = new ModbusTcpClientPool(maxInFlight);
+    }
+}
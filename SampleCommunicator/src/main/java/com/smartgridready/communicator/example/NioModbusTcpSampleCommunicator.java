@@ -0,0 +1,227 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.ModbusTcpServerMock;
+import com.smartgridready.communicator.example.helper.ResourceProbe;
+import com.smartgridready.communicator.example.helper.tcp.NioModbusTcpClient;
+import com.smartgridready.communicator.example.helper.tcp.NioModbusTcpTransport;
+
+/**
+ * This class compares polling many Modbus TCP devices with one blocking socket and thread per device against
+ * the non-blocking {@link NioModbusTcpClient}, which serves all devices with two event loop threads.
+ * <p>
+ * Each of the devices has its own connection to an in-process Modbus TCP server that answers after 5ms, so the
+ * sample can be run without an attached device/product. Each device is polled {@value #POLL_CYCLES} times.
+ * The program logs the wall time, the achieved transactions per second and the number of client threads.
+ * <p>
+ * To use the non-blocking client for a device with a Modbus TCP interface, inject its factory into the builder:
+ * <pre>
+ * device = new SGrDeviceBuilder()
+ *     .useModbusClientFactory(client.factory(unitId))
+ *     .eid(...)
+ *     .properties(...)
+ *     .build();
+ * </pre>
+ */
+public class NioModbusTcpSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(NioModbusTcpSampleCommunicator.class);
+
+    private static final double RESPONSE_DELAY_MS = 5.0;
+    private static final int DEVICE_COUNT = 500;
+    private static final int POLL_CYCLES = 20;
+    private static final int UNIT_ID = 1;
+
+    public static void main(String[] argv)
+    {
+        try (var server = new ModbusTcpServerMock(RESPONSE_DELAY_MS, 0.0))
+        {
+            runBlocking(server);
+            runNonBlocking(server);
+        }
+        catch (Exception e)
+        {
+            LOG.error("Error running benchmark. ", e);
+        }
+    }
+
+    /**
+     * One blocking socket and one polling thread per device, as with the synchronous driver.
+     */
+    private static void runBlocking(ModbusTcpServerMock server) throws Exception
+    {
+        final var start = new CountDownLatch(1);
+        final var done = new CountDownLatch(DEVICE_COUNT);
+        final var devices = new ArrayList<BlockingDevice>();
+
+        for (int i = 0; i < DEVICE_COUNT; i++)
+        {
+            final var device = new BlockingDevice(server.getHost(), server.getPort());
+            devices.add(device);
+            final var thread = new Thread(() -> {
+                try
+                {
+                    start.await();
+                    for (int cycle = 0; cycle < POLL_CYCLES; cycle++)
+                    {
+                        device.readHoldingRegisters(cycle, 2);
+                    }
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                catch (IOException e)
+                {
+                    LOG.error("Blocking read failed", e);
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            }, "blocking-device-" + i);
+            thread.start();
+        }
+
+        final var probe = ResourceProbe.start();
+        start.countDown();
+        done.await();
+        report("Blocking    ", probe.wallNs(), DEVICE_COUNT);
+
+        for (var device : devices)
+        {
+            device.close();
+        }
+    }
+
+    /**
+     * All devices served by the event loops of the non-blocking client.
+     */
+    private static void runNonBlocking(ModbusTcpServerMock server) throws Exception
+    {
+
+        try (var client = new NioModbusTcpClient())
+        {
+            final var devices = new ArrayList<NioModbusTcpTransport>();
+            final var connects = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < DEVICE_COUNT; i++)
+            {
+                final var device = client.transport(server.getHost(), server.getPort(), UNIT_ID);
+                devices.add(device);
+                connects.add(device.connectAsync());
+            }
+            CompletableFuture.allOf(connects.toArray(new CompletableFuture<?>[0])).join();
+
+            final var probe = ResourceProbe.start();
+            final var polls = new ArrayList<CompletableFuture<Void>>();
+            for (var device : devices)
+            {
+                polls.add(poll(device, 0));
+            }
+            CompletableFuture.allOf(polls.toArray(new CompletableFuture<?>[0])).join();
+            report("Non-blocking", probe.wallNs(), client.getEventLoopCount());
+
+            for (var device : devices)
+            {
+                device.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Polls a device {@value #POLL_CYCLES} times, issuing the next read when the previous one has completed.
+     */
+    private static CompletableFuture<Void> poll(NioModbusTcpTransport device, int cycle)
+    {
+        if (cycle == POLL_CYCLES)
+        {
+            return CompletableFuture.completedFuture(null);
+        }
+        return device.readHoldingRegistersAsync(cycle, 2).thenCompose(registers -> poll(device, cycle + 1));
+    }
+
+    private static void report(String name, long wallNs, int clientThreads)
+    {
+        final var transactions = (long) DEVICE_COUNT * POLL_CYCLES;
+        LOG.info("{}: devices={}, transactions={}, wall={}ms, {} tx/s, client threads={}",
+                 name,
+                 DEVICE_COUNT,
+                 transactions,
+                 String.format("%.0f", wallNs / 1e6),
+                 String.format("%.0f", transactions * 1e9 / wallNs),
+                 clientThreads);
+    }
+
+    /**
+     * Minimal blocking Modbus TCP client, one socket per device.
+     */
+    private static final class BlockingDevice
+    {
+        private final Socket socket;
+        private final OutputStream out;
+        private final DataInputStream in;
+        private int transactionId = 0;
+
+        private BlockingDevice(String host, int port) throws IOException
+        {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new DataInputStream(socket.getInputStream());
+        }
+
+        private int[] readHoldingRegisters(int startingAddress, int quantity) throws IOException
+        {
+            transactionId = (transactionId + 1) & 0xFFFF;
+            out.write(new byte[] {
+                    (byte) (transactionId >> 8), (byte) transactionId, 0, 0, 0, 6, UNIT_ID,
+                    0x03, (byte) (startingAddress >> 8), (byte) startingAddress, (byte) (quantity >> 8), (byte) quantity });
+            out.flush();
+
+            final var header = new byte[7];
+            in.readFully(header);
+            final var pdu = new byte[(((header[4] & 0xFF) << 8) | (header[5] & 0xFF)) - 1];
+            in.readFully(pdu);
+
+            final var registers = new int[quantity];
+            for (int i = 0; i < quantity && 3 + 2 * i < pdu.length; i++)
+            {
+                registers[i] = ((pdu[2 + 2 * i] & 0xFF) << 8) | (pdu[3 + 2 * i] & 0xFF);
+            }
+            return registers;
+        }
+
+        private void close() throws IOException
+        {
+            socket.close();
+        }
+    }
+}
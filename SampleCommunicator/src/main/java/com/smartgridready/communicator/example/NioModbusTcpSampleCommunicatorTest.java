@@ -0,0 +1,210 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.ModbusTcpServerMock;
+import com.smartgridready.communicator.example.helper.tcp.NioModbusTcpClient;
+import com.smartgridready.communicator.example.helper.tcp.NioModbusTcpTransport;
+import com.smartgridready.driver.api.modbus.GenDriverModbusException;
+import com.smartgridready.driver.api.modbus.GenDriverSocketException;
+
+/**
+ * This test class provides an example on how to poll Modbus TCP devices with the non-blocking
+ * {@link NioModbusTcpClient}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The tests run against an in-process Modbus TCP server stand-in. They verify that pipelined requests are matched
+ * to their responses by the MBAP transaction ID, that requests without response fail after the response timeout,
+ * that the transport reconnects after the server dropped the connection, that Modbus exception responses are
+ * reported, and that requests fail right away once the client is closed, including requests sent while it closes.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class NioModbusTcpSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(NioModbusTcpSampleCommunicatorTest.class);
+
+    private static final long RESPONSE_TIMEOUT_MS = 200;
+
+    private ModbusTcpServerMock server;
+    private NioModbusTcpClient client;
+
+    @AfterEach
+    void tearDown()
+    {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void pipelinedResponsesAreMatchedByTransactionId() throws Exception
+    {
+        // the random jitter reorders the responses
+        start(2.0, 5.0, 8);
+        for (int address = 0; address < 64; address++)
+        {
+            server.setRegister(7, address, 1000 + address);
+        }
+
+        final var transport = connect(7);
+        final var reads = new ArrayList<CompletableFuture<int[]>>();
+        for (int address = 0; address < 64; address++)
+        {
+            reads.add(transport.readHoldingRegistersAsync(address, 1));
+        }
+        for (int address = 0; address < 64; address++)
+        {
+            assertEquals(1000 + address, reads.get(address).get()[0]);
+        }
+
+        LOG.info("Max. requests in flight at the server: {}", server.getMaxInFlight());
+        assertTrue(server.getMaxInFlight() > 1, "requests were not pipelined");
+        assertTrue(server.getMaxInFlight() <= 8, "in-flight limit exceeded");
+        assertEquals(1, server.getAcceptedConnectionCount());
+    }
+
+    @Test
+    void requestWithoutResponseTimesOut() throws Exception
+    {
+        start(1000.0, 0.0, 1);
+        final var transport = connect(1);
+
+        final var startNs = System.nanoTime();
+        assertThrows(GenDriverSocketException.class, () -> transport.ReadHoldingRegisters(0, 1));
+        final var elapsedMs = (System.nanoTime() - startNs) / 1_000_000;
+
+        LOG.info("Request failed after {}ms", elapsedMs);
+        assertTrue(elapsedMs >= RESPONSE_TIMEOUT_MS, "failed before the timeout: " + elapsedMs + "ms");
+        assertTrue(elapsedMs < 1000, "failed after the server responded: " + elapsedMs + "ms");
+    }
+
+    @Test
+    void reconnectsAfterServerClosedConnection() throws Exception
+    {
+        start(1.0, 0.0, 1);
+        server.setRegister(1, 10, 123);
+        final var transport = connect(1);
+        assertEquals(123, transport.ReadHoldingRegisters(10, 1)[0]);
+
+        server.dropConnections();
+        // let the event loop see the end of the stream, requests are not retried
+        Thread.sleep(100);
+
+        assertEquals(123, transport.ReadHoldingRegisters(10, 1)[0]);
+        assertEquals(2, server.getAcceptedConnectionCount());
+        assertEquals(2, transport.getConnectCount());
+    }
+
+    @Test
+    void modbusExceptionIsReported() throws Exception
+    {
+        start(1.0, 0.0, 1);
+        final var transport = connect(1);
+
+        // more than 125 registers are rejected by the server with exception 0x03
+        assertThrows(GenDriverModbusException.class, () -> transport.ReadHoldingRegisters(0, 200));
+        // the connection is still usable
+        transport.WriteSingleRegister(0, 1);
+        assertEquals(1, server.getRegister(1, 0));
+        assertEquals(1, server.getAcceptedConnectionCount());
+    }
+
+    @Test
+    void requestsFailOnceClosed() throws Exception
+    {
+        start(1.0, 0.0, 1);
+        final var transport = connect(1);
+        client.close();
+
+        assertThrows(GenDriverSocketException.class, () -> transport.ReadHoldingRegisters(0, 1));
+        assertThrows(GenDriverSocketException.class, transport::connect);
+        assertTrue(transport.readHoldingRegistersAsync(0, 1).isCompletedExceptionally());
+    }
+
+    @Test
+    void failedConnectLeavesTransportDisconnected() throws Exception
+    {
+        start(1.0, 0.0, 1);
+        // nothing listens on port 1
+        final var transport = client.transport(server.getHost(), 1, 1);
+
+        final var connect = transport.connectAsync();
+        assertThrows(ExecutionException.class, () -> connect.get(5, TimeUnit.SECONDS));
+        assertFalse(transport.isConnected());
+    }
+
+    @Test
+    void requestsDuringCloseComplete() throws Exception
+    {
+        start(1.0, 0.0, 16);
+        final var transport = connect(1);
+
+        final var reads = new ArrayList<CompletableFuture<int[]>>();
+        final var sender = new Thread(() -> {
+            for (int i = 0; i < 2000; i++)
+            {
+                reads.add(transport.readHoldingRegistersAsync(0, 1));
+            }
+        });
+        sender.start();
+        client.close();
+        sender.join();
+
+        // every request either got its response or failed, none is left behind in the queue of the closed loop
+        for (var read : reads)
+        {
+            try
+            {
+                read.get(1, TimeUnit.SECONDS);
+            }
+            catch (ExecutionException e)
+            {
+                LOG.debug("Read failed: {}", e.getCause().toString());
+            }
+        }
+    }
+
+    private void start(double responseDelayMs, double responseJitterMs, int maxInFlight) throws Exception
+    {
+        server = new ModbusTcpServerMock(responseDelayMs, responseJitterMs);
+        client = new NioModbusTcpClient(1, maxInFlight, RESPONSE_TIMEOUT_MS);
+    }
+
+    private NioModbusTcpTransport connect(int unitId) throws Exception
+    {
+        final var transport = client.transport(server.getHost(), server.getPort(), unitId);
+        transport.connect();
+        return transport;
+    }
+}
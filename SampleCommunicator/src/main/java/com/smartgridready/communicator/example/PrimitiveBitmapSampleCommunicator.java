@@ -0,0 +1,201 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.BitmapLayout;
+import com.smartgridready.communicator.example.helper.DataPointResolver;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.EnumTable;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.ResourceProbe;
+import com.smartgridready.communicator.rest.exception.RestApiAuthenticationException;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * This class compares the allocations of polling a bitmap status word and an enum with the map based
+ * {@code getBitmap()}/{@code getEnum()} API and with primitive bitmaps and enum tables.
+ * <p>
+ * The program polls the operation state (bitmap) and operation mode (enum) of a heat pump, as a controller
+ * would do every 100ms, and tests one bit and the mode literal per poll. After a warm-up phase it logs the
+ * time and the allocated bytes per poll, end-to-end and for the decoding of an already read register
+ * value only. The figures are a rough indication, measured on the current thread, not a replacement for
+ * a benchmark harness.
+ * <p>
+ * The program uses a mocked modbus driver and can be run without an attached device/product.
+ */
+public class PrimitiveBitmapSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PrimitiveBitmapSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SampleExternalInterfaceFile.xml";
+
+    private static final String HEAT_PUMP_BASE_PROFILE = "HeatPumpBase";
+    private static final String HEAT_PUMP_OP_CMD = "HPOpModeCmd";
+    private static final String HEAT_PUMP_OP_STATE = "HPOpState";
+    private static final String COMPRESSOR_RUNNING = "COMPRESSOR_RUNNING";
+
+    private static final int WARMUP_POLLS = 20_000;
+    private static final int MEASURED_POLLS = 100_000;
+
+    public static void main(String[] argv)
+    {
+        // The primitive access uses the Modbus transport of the device directly,
+        // therefore the same transport instance is handed over to the device builder.
+        final var transport = new GenDriverAPI4ModbusMock(true);
+
+        GenDeviceApi sgcpDevice;
+        EidDataPointIndex index;
+
+        try
+        {
+            sgcpDevice = new SGrDeviceBuilder()
+                // mandatory: inject device description (EID)
+                .eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+                // optional: inject the ModbusFactory mock
+                .useModbusClientFactory(new MockModbusClientFactory(() -> transport))
+                .build();
+
+            index = EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME);
+        }
+        catch ( GenDriverException | RestApiAuthenticationException | IOException e )
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        try
+        {
+            sgcpDevice.connect();
+
+            // resolved once at startup
+            final var resolver = new DataPointResolver(sgcpDevice, index, transport);
+            final var opStateHandle = resolver.resolve(HEAT_PUMP_BASE_PROFILE, HEAT_PUMP_OP_STATE);
+            final var opModeHandle = resolver.resolve(HEAT_PUMP_BASE_PROFILE, HEAT_PUMP_OP_CMD);
+            final var opStateLayout = BitmapLayout.of(opStateHandle.getDataPoint());
+            final var opModes = EnumTable.of(opModeHandle.getDataPoint());
+            final var compressorRunning = opStateLayout.indexOf(COMPRESSOR_RUNNING);
+
+            // end-to-end, map based API
+            final var mapPoll = new Poll()
+            {
+                @Override
+                long poll() throws Exception
+                {
+                    final var bitmap = sgcpDevice.getVal(HEAT_PUMP_BASE_PROFILE, HEAT_PUMP_OP_STATE).getBitmap();
+                    final var mode = sgcpDevice.getVal(HEAT_PUMP_BASE_PROFILE, HEAT_PUMP_OP_CMD).getEnum().getLiteral();
+                    return (Boolean.TRUE.equals(bitmap.get(COMPRESSOR_RUNNING)) ? 1 : 0) + mode.length();
+                }
+            };
+
+            // end-to-end, primitive bitmap and enum table
+            final var primitivePoll = new Poll()
+            {
+                @Override
+                long poll() throws Exception
+                {
+                    final var bitmap = opStateLayout.valueOf(opStateHandle.readDouble());
+                    final var mode = opModes.getLiteral((int) opModeHandle.readDouble());
+                    return (bitmap.isSet(compressorRunning) ? 1 : 0) + mode.length();
+                }
+            };
+
+            // decoding of an already read register value only
+            final var rawBits = (long) opStateHandle.readDouble();
+            final var mapDecode = new Poll()
+            {
+                @Override
+                long poll()
+                {
+                    return Boolean.TRUE.equals(opStateLayout.valueOf(rawBits).toMap().get(COMPRESSOR_RUNNING)) ? 1 : 0;
+                }
+            };
+            final var primitiveDecode = new Poll()
+            {
+                @Override
+                long poll()
+                {
+                    return opStateLayout.valueOf(rawBits).isSet(compressorRunning) ? 1 : 0;
+                }
+            };
+
+            mapPoll.run("getBitmap()/getEnum()");
+            primitivePoll.run("primitive bitmap/enum table");
+            mapDecode.run("decode to map");
+            primitiveDecode.run("decode to primitive bitmap");
+        }
+        catch (Exception e)
+        {
+            LOG.error("Error accessing device. ", e);
+        }
+        finally
+        {
+            if (sgcpDevice.isConnected())
+            {
+                try
+                {
+                    LOG.info("Disconnecting ...");
+                    sgcpDevice.disconnect();
+                }
+                catch ( GenDriverException e )
+                {
+                    LOG.error("Error disconnecting device.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A single poll of the status, returning a checksum so the JIT cannot drop the work.
+     */
+    private abstract static class Poll
+    {
+        abstract long poll() throws Exception;
+
+        void run(String variant) throws Exception
+        {
+            var checksum = 0L;
+            for (int i = 0; i < WARMUP_POLLS; i++)
+            {
+                checksum += poll();
+            }
+
+            final var probe = ResourceProbe.start();
+            for (int i = 0; i < MEASURED_POLLS; i++)
+            {
+                checksum += poll();
+            }
+
+            LOG.info("{}: {} ns/poll, {} bytes/poll ({}, checksum={})",
+                     variant,
+                     String.format("%.0f", (double) probe.wallNs() / MEASURED_POLLS),
+                     String.format("%.0f", (double) probe.allocatedBytes() / MEASURED_POLLS),
+                     probe,
+                     checksum);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.BitmapValue;
+import com.smartgridready.communicator.example.helper.BitmapLayout;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.EnumTable;
+import com.smartgridready.communicator.example.helper.PrimitiveBitmap;
+
+/**
+ * This test class provides an example on how to convert between the {@link PrimitiveBitmap} of a polling loop and
+ * the {@link BitmapValue} of the device API, and how to look up enum literals with an {@link EnumTable}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The tests use the heat pump state of the sample EID, as well as a small EID with a 64 bit status word and an enum
+ * with sparse ordinals, to cover the highest bit and ordinals far beyond the number of literals.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class PrimitiveBitmapSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PrimitiveBitmapSampleCommunicatorTest.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SampleExternalInterfaceFile.xml";
+
+    private static final String HEAT_PUMP_BASE_PROFILE = "HeatPumpBase";
+
+    private static final String TEST_PROFILE = "Test";
+
+    private static final String STATUS_WORD_EID = "<DeviceFrame><deviceName>Test</deviceName>"
+            + "<functionalProfileListElement>"
+            + "<functionalProfile><functionalProfileName>" + TEST_PROFILE + "</functionalProfileName></functionalProfile>"
+            + "<dataPointList>"
+            + "<dataPointListElement><dataPoint><dataPointName>Status</dataPointName><dataType><bitmap>"
+            + "<bitmapEntry><literal>READY</literal><hexMask>0001</hexMask></bitmapEntry>"
+            + "<bitmapEntry><literal>WARNING</literal><hexMask>00F0</hexMask></bitmapEntry>"
+            + "<bitmapEntry><literal>FAULT</literal><hexMask>8000000000000000</hexMask></bitmapEntry>"
+            + "</bitmap></dataType></dataPoint></dataPointListElement>"
+            + "<dataPointListElement><dataPoint><dataPointName>Mode</dataPointName><dataType><enum>"
+            + "<enumEntry><literal>OFF</literal><ordinal>0</ordinal></enumEntry>"
+            + "<enumEntry><literal>AUTO</literal><ordinal>7</ordinal></enumEntry>"
+            + "<enumEntry><literal>SERVICE</literal><ordinal>65535</ordinal></enumEntry>"
+            + "<enumEntry><literal>UNDEFINED</literal><ordinal>2147483647</ordinal></enumEntry>"
+            + "</enum></dataType></dataPoint></dataPointListElement>"
+            + "</dataPointList>"
+            + "</functionalProfileListElement></DeviceFrame>";
+
+    @Test
+    void heatPumpStateRoundTrip() throws Exception
+    {
+        final var layout = BitmapLayout.of(EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME)
+                .get(HEAT_PUMP_BASE_PROFILE, "HPOpState"));
+
+        // all combinations of the literals, some of them cover several bits
+        for (int combination = 0; combination < 1 << layout.size(); combination++)
+        {
+            final var literals = new LinkedHashMap<String, Boolean>();
+            for (int i = 0; i < layout.size(); i++)
+            {
+                literals.put(layout.getLiteral(i), (combination & 1 << i) != 0);
+            }
+
+            final var bitmap = layout.valueOf(literals);
+            final var value = bitmap.toBitmapValue();
+            assertEquals(literals, value.getBitmap());
+            assertEquals(bitmap, layout.valueOf(value.getBitmap()));
+            assertEquals(bitmap, layout.valueOf((double) bitmap.getBits()));
+        }
+
+        final var running = layout.valueOf(0x43L);
+        LOG.info("0x43 is {}", running);
+        assertEquals("[HP_PUMP_ON, COMPRESSOR_RUNNING]", running.toString());
+        assertTrue(running.isSet("HP_PUMP_ON"));
+        assertEquals(0x03L, running.with(layout.indexOf("COMPRESSOR_RUNNING"), false).getBits());
+    }
+
+    @Test
+    void highestBitRoundTrip() throws Exception
+    {
+        final var layout = BitmapLayout.of(loadStatusWordEid().get(TEST_PROFILE, "Status"));
+        final var fault = layout.indexOf("FAULT");
+
+        final var bitmap = layout.valueOf(Map.of("READY", true, "FAULT", true));
+        LOG.info("Status word 0x{} is {}", Long.toHexString(bitmap.getBits()), bitmap);
+        assertEquals(0x8000000000000001L, bitmap.getBits());
+        assertTrue(bitmap.isSet(fault));
+        assertFalse(bitmap.isSet("WARNING"));
+
+        final var value = bitmap.toBitmapValue();
+        assertEquals(Map.of("READY", true, "WARNING", false, "FAULT", true), value.getBitmap());
+        assertEquals(bitmap, layout.valueOf(value.getBitmap()));
+
+        // an unsigned 64 bit register read as double
+        final var read = layout.valueOf(0x1p63);
+        assertEquals(Long.MIN_VALUE, read.getBits());
+        assertTrue(read.isSet(fault));
+        assertFalse(read.isSet("READY"));
+
+        assertEquals(0x1L, bitmap.with(fault, false).getBits());
+        assertEquals(List.of("READY", "WARNING", "FAULT"), List.copyOf(layout.valueOf(-1L).toMap().keySet()));
+    }
+
+    @Test
+    void unknownBitNames() throws Exception
+    {
+        final var layout = BitmapLayout.of(loadStatusWordEid().get(TEST_PROFILE, "Status"));
+
+        final var e = assertThrows(IllegalArgumentException.class, () -> layout.indexOf("OVERHEATED"));
+        LOG.info("Unknown literal: {}", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> layout.valueOf(0L).isSet("OVERHEATED"));
+
+        // also cleared literals must be defined
+        assertThrows(IllegalArgumentException.class, () -> layout.valueOf(Map.of("READY", true, "OVERHEATED", true)));
+        assertThrows(IllegalArgumentException.class, () -> layout.valueOf(Map.of("OVERHEATED", false)));
+
+        // bits without literal are kept, but not reported
+        final var bitmap = layout.valueOf(0x0101L);
+        assertEquals("[READY]", bitmap.toString());
+        assertEquals(0x1L, layout.valueOf(bitmap.toBitmapValue().getBitmap()).getBits());
+    }
+
+    @Test
+    void enumTableLookups() throws Exception
+    {
+        final var opModes = EnumTable.of(EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME)
+                .get(HEAT_PUMP_BASE_PROFILE, "HPOpModeCmd"));
+
+        for (var entry : opModes.toMap().entrySet())
+        {
+            assertEquals(entry.getKey(), opModes.getLiteral(entry.getValue()));
+            assertEquals(entry.getValue().intValue(), opModes.ordinalOf(entry.getKey()));
+        }
+        assertEquals("WP_EMERG_OP", opModes.getLiteral(0));
+        assertEquals(3, opModes.ordinalOf("WP_COMFORT_OP"));
+        assertNull(opModes.getLiteral(-1));
+        assertNull(opModes.getLiteral(1000));
+        assertThrows(IllegalArgumentException.class, () -> opModes.ordinalOf("WP_TURBO_OP"));
+    }
+
+    @Test
+    void enumTableSparseAndLargeOrdinals() throws Exception
+    {
+        final var modes = EnumTable.of(loadStatusWordEid().get(TEST_PROFILE, "Mode"));
+        LOG.info("Modes: {}", modes.toMap());
+
+        assertEquals("OFF", modes.getLiteral(0));
+        assertEquals("AUTO", modes.getLiteral(7));
+        assertEquals("SERVICE", modes.getLiteral(65535));
+        assertEquals("UNDEFINED", modes.getLiteral(Integer.MAX_VALUE));
+        assertEquals(65535, modes.ordinalOf("SERVICE"));
+
+        for (var ordinal : new int[] { -1, 1, 6, 8, 255, 65534, 65536, Integer.MAX_VALUE - 1, Integer.MIN_VALUE })
+        {
+            assertFalse(modes.isDefined(ordinal));
+            assertNull(modes.getLiteral(ordinal));
+        }
+
+        // in ordinal order
+        assertEquals(List.of("OFF", "AUTO", "SERVICE", "UNDEFINED"), List.copyOf(modes.toMap().keySet()));
+    }
+
+    private static EidDataPointIndex loadStatusWordEid() throws Exception
+    {
+        return EidDataPointIndex.load(new ByteArrayInputStream(STATUS_WORD_EID.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.EidDataPoint;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec.WordOrder;
+import com.smartgridready.communicator.example.helper.RegisterBlockDecoder;
+import com.smartgridready.communicator.example.helper.ResourceProbe;
+
+/**
+ * This class compares the decoding of a block of 125 registers, the maximum of a single Modbus read, value by value
+ * with the {@link ModbusRegisterCodec} and in one call with the {@link RegisterBlockDecoder}.
+ * <p>
+ * The block holds 62 float32 values, laid out like the voltages and currents of the WAGO meter starting at register
+ * 20482. The program logs the decoding time per block and per value and the allocated bytes of both variants.
+ * <p>
+ * The program works without an attached device/product.
+ */
+public class RegisterBlockDecoderSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RegisterBlockDecoderSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+
+    private static final int BLOCK_REGISTERS = 125;
+    private static final int BLOCK_VALUES = BLOCK_REGISTERS / 2;
+    private static final int WARMUP_BLOCKS = 200_000;
+    private static final int MEASURED_BLOCKS = 1_000_000;
+
+    private static double sink;
+
+    public static void main(String[] argv)
+    {
+        final EidDataPoint voltage;
+        try
+        {
+            voltage = EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME).get("VoltageAC", "VoltageL1");
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        final var registers = new int[BLOCK_REGISTERS];
+        for (int i = 0; i < BLOCK_VALUES; i++)
+        {
+            ModbusRegisterCodec.encode(voltage, 220.0 + i * 0.1, WordOrder.BIG_ENDIAN, registers, 2 * i);
+        }
+
+        final var values = new double[BLOCK_VALUES];
+        final var decoder = new RegisterBlockDecoder(WordOrder.BIG_ENDIAN);
+
+        for (int round = 0; round < 2; round++)
+        {
+            final var warmup = round == 0;
+            final var blocks = warmup ? WARMUP_BLOCKS : MEASURED_BLOCKS;
+
+            var probe = ResourceProbe.start();
+            for (int block = 0; block < blocks; block++)
+            {
+                for (int i = 0; i < BLOCK_VALUES; i++)
+                {
+                    values[i] = ModbusRegisterCodec.decode(voltage, registers, 2 * i, WordOrder.BIG_ENDIAN);
+                }
+                sink += values[block % BLOCK_VALUES];
+            }
+            report(warmup, "Per value", probe, blocks);
+
+            probe = ResourceProbe.start();
+            for (int block = 0; block < blocks; block++)
+            {
+                decoder.decode(voltage, registers, 0, BLOCK_VALUES, values, 0);
+                sink += values[block % BLOCK_VALUES];
+            }
+            report(warmup, "Block    ", probe, blocks);
+        }
+
+        LOG.info("Checksum {}", sink);
+    }
+
+    private static void report(boolean warmup, String label, ResourceProbe probe, int blocks)
+    {
+        if (!warmup)
+        {
+            final var nsPerBlock = (double) probe.wallNs() / blocks;
+            LOG.info("{}: {} ns/block, {} ns/value, {} bytes allocated",
+                     label, String.format("%.0f", nsPerBlock), String.format("%.1f", nsPerBlock / BLOCK_VALUES),
+                     probe.allocatedBytes());
+        }
+    }
+}
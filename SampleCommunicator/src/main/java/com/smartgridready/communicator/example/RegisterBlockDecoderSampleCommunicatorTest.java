@@ -0,0 +1,128 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec.WordOrder;
+import com.smartgridready.communicator.example.helper.RegisterBlockDecoder;
+
+/**
+ * This test class provides an example on how to decode a block of registers into a primitive array in one call,
+ * using the {@link RegisterBlockDecoder}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The tests decode blocks of float32 values laid out like the voltages of the WAGO meter, as well as integer and
+ * float64 values with swapped words and bytes, and compare the results with the {@link ModbusRegisterCodec}.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class RegisterBlockDecoderSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RegisterBlockDecoderSampleCommunicatorTest.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+
+    @Test
+    void float32BlockMatchesValueDecoding() throws Exception
+    {
+        final var voltage = EidDataPointIndex.load(DEVICE_DESCRIPTION_FILE_NAME).get("VoltageAC", "VoltageL1");
+        final var random = new Random(42);
+
+        for (var wordOrder : WordOrder.values())
+        {
+            // 62 float32 values in a block of 125 registers
+            final var registers = new int[125];
+            for (int i = 0; i + 1 < registers.length; i += 2)
+            {
+                ModbusRegisterCodec.encode(voltage, 230.0 + random.nextGaussian(), wordOrder, registers, i);
+            }
+
+            final var expected = new double[62];
+            for (int i = 0; i < expected.length; i++)
+            {
+                expected[i] = ModbusRegisterCodec.decode(voltage, registers, 2 * i, wordOrder);
+            }
+
+            final var decoder = new RegisterBlockDecoder(wordOrder);
+            final var decoded = new double[62];
+            decoder.decode(voltage, registers, 0, 62, decoded, 0);
+            assertArrayEquals(expected, decoded);
+
+            final var floats = decoder.decodeFloat32(registers, 0, 62);
+            for (int i = 0; i < floats.length; i++)
+            {
+                assertEquals((float) expected[i], floats[i]);
+            }
+            LOG.info("{}: first value {}V", wordOrder, floats[0]);
+        }
+    }
+
+    @Test
+    void swappedWordsAndBytes()
+    {
+        // int32 -2, float64 0.1 and int16U 0xfffe, little-endian words with the low byte first
+        final var registers = new int[] {
+            0xfeff, 0xffff,
+            0x9a99, 0x9999, 0x9999, 0xb93f,
+            0xfeff };
+
+        final var decoder = new RegisterBlockDecoder(WordOrder.LITTLE_ENDIAN, true);
+        final var values = new double[3];
+        decoder.decodeInt32(registers, 0, 1, false, 1.0, 0.0, values, 0);
+        decoder.decodeFloat64(registers, 2, 1, 1.0, 0.0, values, 1);
+        decoder.decodeInt16(registers, 6, 1, true, 1.0, 0.0, values, 2);
+        LOG.info("Decoded {}, {}, {}", values[0], values[1], values[2]);
+
+        assertEquals(-2.0, values[0]);
+        assertEquals(0.1, values[1]);
+        assertEquals(65534.0, values[2]);
+
+        decoder.decodeInt32(registers, 0, 1, true, 1.0, 0.0, values, 0);
+        assertEquals(4294967294.0, values[0]);
+    }
+
+    @Test
+    void scaleAndOffset()
+    {
+        // temperatures in 0.1 K, converted to degree celsius
+        final var registers = new int[] { 2731, 2931, 3731 };
+
+        final var celsius = new double[3];
+        new RegisterBlockDecoder(WordOrder.BIG_ENDIAN).decodeInt16(registers, 0, 3, true, 0.1, -273.15, celsius, 0);
+
+        assertEquals(-0.05, celsius[0], 1e-9);
+        assertEquals(19.95, celsius[1], 1e-9);
+        assertEquals(99.95, celsius[2], 1e-9);
+
+        // a block exceeding the registers is rejected
+        final var decoder = new RegisterBlockDecoder(WordOrder.BIG_ENDIAN);
+        assertThrows(IndexOutOfBoundsException.class, () -> decoder.decodeFloat32(registers, 0, 2));
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.lock.SerializingModbusFactory;
+import com.smartgridready.communicator.example.helper.lock.SharedDevice;
+import com.smartgridready.communicator.example.helper.lock.StripedLocks;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
+
+/**
+ * This class compares three ways to share {@value #DEVICES} WAGO meters between a poller, a control loop and a user
+ * interface, i.e. {@value #THREADS_PER_DEVICE} threads per meter.
+ * <p>
+ * The meters are connected to {@value #BUSES} RS-485 buses, each request takes {@value #REQUEST_TIME_MS}ms on the
+ * bus. The calls are serialized by
+ * <ul>
+ * <li>a global lock around all devices,</li>
+ * <li>a lock per device ({@link SharedDevice.Mode#SERIALIZED}),</li>
+ * <li>a lock per bus only ({@link SharedDevice.Mode#CONCURRENT} with a {@link SerializingModbusFactory}).</li>
+ * </ul>
+ * The program logs the reads per second of each variant. As the buses are the bottleneck, the last two reach the
+ * same throughput, up to {@value #BUSES} times the throughput of the global lock.
+ * <p>
+ * The program uses a mocked modbus driver and can be run without an attached device/product.
+ */
+public class SharedDeviceSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SharedDeviceSampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+
+    private static final int DEVICES = 8;
+    private static final int BUSES = 4;
+    private static final int THREADS_PER_DEVICE = 3;
+    private static final long REQUEST_TIME_MS = 2;
+    private static final long RUN_MS = 3000;
+
+    private static final Object GLOBAL_LOCK = new Object();
+
+    private static byte[] eid;
+
+    public static void main(String[] argv) throws Exception
+    {
+        try (var stream = EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+        {
+            eid = stream.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        final var busLocks = new StripedLocks();
+        final var serializingFactory = new SerializingModbusFactory(new MockModbusClientFactory(BusMock::new), busLocks);
+
+        // global lock: the transports need no lock of their own
+        final var global = build(new MockModbusClientFactory(BusMock::new), SharedDevice.Mode.CONCURRENT);
+        run("Global lock", global, true);
+
+        run("Lock per device", build(serializingFactory, SharedDevice.Mode.SERIALIZED), false);
+        run("Lock per bus", build(serializingFactory, SharedDevice.Mode.CONCURRENT), false);
+
+        LOG.info("Bus locks acquired: {}, contended: {}", busLocks.getAcquiredCount(), busLocks.getContendedCount());
+    }
+
+    private static List<SharedDevice> build(GenDriverAPI4ModbusFactory factory, SharedDevice.Mode mode)
+            throws Exception
+    {
+        final List<SharedDevice> devices = new ArrayList<>();
+        for (int i = 0; i < DEVICES; i++)
+        {
+            final var properties = new Properties();
+            properties.setProperty("serial_port", "COM" + (i % BUSES + 1));
+            final GenDeviceApi device = new SGrDeviceBuilder()
+                    .eid(new ByteArrayInputStream(eid))
+                    .useModbusClientFactory(factory)
+                    .properties(properties)
+                    .build();
+            final var shared = new SharedDevice(device, mode);
+            shared.connect();
+            devices.add(shared);
+        }
+        return devices;
+    }
+
+    private static void run(String label, List<SharedDevice> devices, boolean globalLock) throws Exception
+    {
+        final var reads = new LongAdder();
+        final var running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(DEVICES * THREADS_PER_DEVICE);
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (var device : devices)
+            {
+                for (int t = 0; t < THREADS_PER_DEVICE; t++)
+                {
+                    futures.add(executor.submit(() -> {
+                        while (running.get())
+                        {
+                            if (globalLock)
+                            {
+                                synchronized (GLOBAL_LOCK)
+                                {
+                                    device.getVal("VoltageAC", "VoltageL1");
+                                }
+                            }
+                            else
+                            {
+                                device.getVal("VoltageAC", "VoltageL1");
+                            }
+                            reads.increment();
+                        }
+                        return null;
+                    }));
+                }
+            }
+
+            TimeUnit.MILLISECONDS.sleep(RUN_MS);
+            running.set(false);
+            for (var future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        final var maxInFlight = devices.stream().mapToInt(SharedDevice::getMaxInFlight).max().orElse(0);
+        LOG.info("{}: {} reads/s, max calls in flight per device {}",
+                 label, reads.sum() * 1000 / RUN_MS, maxInFlight);
+
+        for (var device : devices)
+        {
+            device.disconnect();
+        }
+    }
+
+    /**
+     * Meter on a RS-485 bus, taking {@value #REQUEST_TIME_MS}ms per request.
+     */
+    private static class BusMock extends GenDriverAPI4ModbusMock
+    {
+        BusMock()
+        {
+            super(false);
+        }
+
+        @Override
+        public int[] ReadInputRegisters(int startingAddress, int quantity)
+        {
+            onBus();
+            return super.ReadInputRegisters(startingAddress, quantity);
+        }
+
+        @Override
+        public int[] ReadHoldingRegisters(int startingAddress, int quantity)
+        {
+            onBus();
+            return super.ReadHoldingRegisters(startingAddress, quantity);
+        }
+
+        private static void onBus()
+        {
+            try
+            {
+                TimeUnit.MILLISECONDS.sleep(REQUEST_TIME_MS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
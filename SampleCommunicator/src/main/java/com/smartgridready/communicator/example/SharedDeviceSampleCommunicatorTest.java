@@ -0,0 +1,338 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.example.helper.ChannelModbusFactory;
+import com.smartgridready.communicator.example.helper.GenDriverAPI4ModbusMock;
+import com.smartgridready.communicator.example.helper.lock.SerializingModbusFactory;
+import com.smartgridready.communicator.example.helper.lock.SharedDevice;
+import com.smartgridready.communicator.example.helper.lock.StripedLocks;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * This test class provides an example on how to share devices between threads with the {@link SharedDevice} and the
+ * {@link SerializingModbusFactory}, and stress-tests their concurrency contract.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * Each test runs many threads against the same devices and checks an invariant on every call: no two requests on
+ * the same Modbus connection, parallel requests on different connections and devices, one call at a time in
+ * serialized mode, and no call in flight while a device connects or disconnects.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class SharedDeviceSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SharedDeviceSampleCommunicatorTest.class);
+
+    private static final String PROFILE = "VoltageAC";
+    private static final String DATA_POINT = "VoltageL1";
+    private static final int THREADS = 8;
+
+    @Test
+    void wireIsSerializedPerConnection() throws Exception
+    {
+        final Map<String, Wire> wires = new ConcurrentHashMap<>();
+        final var wiresInUse = new AtomicInteger();
+        final var maxWiresInUse = new AtomicInteger();
+        final var factory = new SerializingModbusFactory(new ChannelModbusFactory()
+        {
+            @Override
+            protected GenDriverAPI4Modbus create(String channel, TransportCreator creator)
+            {
+                return new WireTransport(wires.computeIfAbsent(channel, key -> new Wire()), wiresInUse, maxWiresInUse);
+            }
+        }, new StripedLocks());
+
+        // four devices on each of two RS-485 buses
+        final List<GenDriverAPI4Modbus> transports = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++)
+        {
+            transports.add(factory.createRtuTransport(i % 2 == 0 ? "COM1" : "COM2", 9600));
+        }
+
+        runConcurrently(THREADS, index -> {
+            for (int i = 0; i < 200; i++)
+            {
+                transports.get(index).ReadHoldingRegisters(0x5000, 2);
+            }
+        });
+
+        LOG.info("Max requests on one bus: {}, max buses in use: {}, contended locks: {}",
+                 wires.values().stream().mapToInt(wire -> wire.maxInFlight.get()).max().orElse(0),
+                 maxWiresInUse.get(),
+                 factory.getLocks().getContendedCount());
+        assertEquals(2, wires.size());
+        wires.values().forEach(wire -> assertEquals(1, wire.maxInFlight.get()));
+        assertEquals(2, maxWiresInUse.get());
+    }
+
+    @Test
+    void defaultPortSharesTheTcpChannel() throws Exception
+    {
+        final Map<String, Wire> wires = new ConcurrentHashMap<>();
+        final var wiresInUse = new AtomicInteger();
+        final var maxWiresInUse = new AtomicInteger();
+        final var factory = new SerializingModbusFactory(new ChannelModbusFactory()
+        {
+            @Override
+            protected GenDriverAPI4Modbus create(String channel, TransportCreator creator)
+            {
+                return new WireTransport(wires.computeIfAbsent(channel, key -> new Wire()), wiresInUse, maxWiresInUse);
+            }
+        }, new StripedLocks());
+
+        // devices behind the same gateway, with and without explicit port
+        final List<GenDriverAPI4Modbus> transports = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++)
+        {
+            transports.add(i % 2 == 0 ? factory.createTcpTransport("192.168.1.10") : factory.createTcpTransport("192.168.1.10", 502));
+        }
+
+        runConcurrently(THREADS, index -> {
+            for (int i = 0; i < 200; i++)
+            {
+                transports.get(index).ReadHoldingRegisters(0x5000, 2);
+            }
+        });
+
+        assertEquals(Set.of(ChannelModbusFactory.tcpChannel("192.168.1.10", 502)), wires.keySet());
+        assertEquals(1, wires.get("tcp:192.168.1.10:502").maxInFlight.get());
+    }
+
+    @Test
+    void concurrentCallsOnOneDevice() throws Exception
+    {
+        final var device = new SharedDevice(slowDevice(new AtomicInteger()), SharedDevice.Mode.CONCURRENT);
+
+        final var elapsedNs = runConcurrently(THREADS, index -> device.getVal(PROFILE, DATA_POINT));
+
+        LOG.info("Concurrent: max in flight {}, {}ms", device.getMaxInFlight(), TimeUnit.NANOSECONDS.toMillis(elapsedNs));
+        assertTrue(device.getMaxInFlight() > 1);
+        assertTrue(elapsedNs < TimeUnit.MILLISECONDS.toNanos(THREADS * 20L));
+    }
+
+    @Test
+    void serializedCallsOnOneDevice() throws Exception
+    {
+        final var device = new SharedDevice(slowDevice(new AtomicInteger()), SharedDevice.Mode.SERIALIZED);
+
+        final var elapsedNs = runConcurrently(THREADS, index -> device.getVal(PROFILE, DATA_POINT));
+
+        LOG.info("Serialized: max in flight {}, {}ms", device.getMaxInFlight(), TimeUnit.NANOSECONDS.toMillis(elapsedNs));
+        assertEquals(1, device.getMaxInFlight());
+        assertTrue(elapsedNs >= TimeUnit.MILLISECONDS.toNanos(THREADS * 20L));
+    }
+
+    @Test
+    void lifecycleWaitsForCallsInFlight() throws Exception
+    {
+        final var inFlight = new AtomicInteger();
+        final var violations = new AtomicInteger();
+        final var connected = new AtomicBoolean(true);
+        final var api = slowDevice(inFlight);
+        when(api.isConnected()).thenAnswer(invocation -> connected.get());
+        doAnswer(invocation -> {
+            violations.addAndGet(inFlight.get());
+            connected.set(false);
+            return null;
+        }).when(api).disconnect();
+        doAnswer(invocation -> {
+            violations.addAndGet(inFlight.get());
+            connected.set(true);
+            return null;
+        }).when(api).connect();
+
+        final var device = new SharedDevice(api, SharedDevice.Mode.CONCURRENT);
+        final var running = new AtomicBoolean(true);
+        final var executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            final var lifecycle = executor.submit(() -> {
+                var cycles = 0;
+                while (running.get())
+                {
+                    device.disconnect();
+                    device.connect();
+                    cycles++;
+                }
+                return cycles;
+            });
+
+            runConcurrently(THREADS, index -> {
+                for (int i = 0; i < 10; i++)
+                {
+                    device.getVal(PROFILE, DATA_POINT);
+                }
+            });
+            running.set(false);
+
+            LOG.info("Connect/disconnect cycles: {}, violations: {}", lifecycle.get(), violations.get());
+            assertTrue(lifecycle.get() > 0);
+            assertEquals(0, violations.get());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Device taking 20ms per read and counting the reads in flight.
+     */
+    private static GenDeviceApi slowDevice(AtomicInteger inFlight) throws Exception
+    {
+        final var device = mock(GenDeviceApi.class);
+        when(device.getVal(PROFILE, DATA_POINT)).thenAnswer(invocation -> {
+            inFlight.incrementAndGet();
+            try
+            {
+                TimeUnit.MILLISECONDS.sleep(20);
+                return Float32Value.of(230.0f);
+            }
+            finally
+            {
+                inFlight.decrementAndGet();
+            }
+        });
+        return device;
+    }
+
+    /**
+     * Runs the task on the given number of threads, started at the same time.
+     *
+     * @return the elapsed time in nanoseconds
+     */
+    private static long runConcurrently(int threads, Task task) throws Exception
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final var start = new CountDownLatch(1);
+        try
+        {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++)
+            {
+                final var index = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+
+            final var startNs = System.nanoTime();
+            start.countDown();
+            for (var future : futures)
+            {
+                future.get();
+            }
+            return System.nanoTime() - startNs;
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task
+    {
+        void run(int index) throws Exception;
+    }
+
+    /**
+     * A serial bus or TCP connection, counting the requests on it.
+     */
+    private static final class Wire
+    {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+    }
+
+    /**
+     * Transport on a wire, holding the wire for 100us per request.
+     */
+    private static final class WireTransport extends GenDriverAPI4ModbusMock
+    {
+        private final Wire wire;
+        private final AtomicInteger wiresInUse;
+        private final AtomicInteger maxWiresInUse;
+
+        private WireTransport(Wire wire, AtomicInteger wiresInUse, AtomicInteger maxWiresInUse)
+        {
+            super(false);
+            this.wire = wire;
+            this.wiresInUse = wiresInUse;
+            this.maxWiresInUse = maxWiresInUse;
+        }
+
+        @Override
+        public int[] ReadHoldingRegisters(int startingAddress, int quantity)
+        {
+            final var onWire = wire.inFlight.incrementAndGet();
+            wire.maxInFlight.accumulateAndGet(onWire, Math::max);
+            if (onWire == 1)
+            {
+                maxWiresInUse.accumulateAndGet(wiresInUse.incrementAndGet(), Math::max);
+            }
+            try
+            {
+                // parking lets the other threads run, as a real request on the wire would
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                return super.ReadHoldingRegisters(startingAddress, quantity);
+            }
+            finally
+            {
+                if (onWire == 1)
+                {
+                    wiresInUse.decrementAndGet();
+                }
+                wire.inFlight.decrementAndGet();
+            }
+        }
+    }
+}
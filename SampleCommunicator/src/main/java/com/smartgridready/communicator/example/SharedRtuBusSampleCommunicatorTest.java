@@ -0,0 +1,258 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.LatencyModbusMock;
+import com.smartgridready.communicator.example.helper.LatencyModbusMock.SerialLine;
+import com.smartgridready.communicator.example.helper.rtu.ModbusRtuBusArbiter;
+import com.smartgridready.communicator.example.helper.rtu.ModbusRtuBusArbiter.Priority;
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * This test class provides an example on how to share one Modbus RTU line between several slave devices
+ * with a bus arbiter.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * A slow and two fast slave devices are attached to a simulated RS-485 line at 9600 baud. The latency-modelled
+ * Modbus mocks take the frame transmission time plus the response delay of the slave for each transaction.
+ * The tests verify that transactions never overlap and keep the inter-frame gap, that writes overtake queued
+ * telemetry reads, that a fast device does not wait for the whole queue of a slow device, that the port is not
+ * closed while a transaction is on the wire, that opening a slow port does not block the other devices, and that the
+ * transaction of an interrupted caller is dropped.
+ * <p>
+ * In a communicator, the views returned by {@code ModbusRtuBusArbiter.register()} are handed over to the
+ * devices by a {@code GenDriverAPI4ModbusFactory}, see {@code MockModbusClientFactory}.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class SharedRtuBusSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(SharedRtuBusSampleCommunicatorTest.class);
+
+    private static final int BAUD_RATE = 9600;
+    private static final long SLOW_RESPONSE_MS = 200;
+    private static final long FAST_RESPONSE_MS = 2;
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(5);
+
+    private SerialLine line;
+    private ModbusRtuBusArbiter arbiter;
+    private ExecutorService callers;
+
+    private GenDriverAPI4Modbus slowTelemetry;
+    private GenDriverAPI4Modbus fastControl;
+    private GenDriverAPI4Modbus fastTelemetry;
+
+    @BeforeEach
+    void setUp()
+    {
+        line = new SerialLine(BAUD_RATE);
+        arbiter = new ModbusRtuBusArbiter("COM3", BAUD_RATE);
+        callers = Executors.newCachedThreadPool();
+
+        slowTelemetry = arbiter.register("slow", new LatencyModbusMock(line, "slow", SLOW_RESPONSE_MS), Priority.TELEMETRY);
+        fastControl = arbiter.register("fast1", new LatencyModbusMock(line, "fast1", FAST_RESPONSE_MS), Priority.CONTROL);
+        fastTelemetry = arbiter.register("fast2", new LatencyModbusMock(line, "fast2", FAST_RESPONSE_MS), Priority.TELEMETRY);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        LOG.info("Bus statistics: {}", arbiter.getStats().values());
+        callers.shutdownNow();
+        arbiter.close();
+    }
+
+    @Test
+    void transactionsDoNotOverlapAndKeepInterFrameGap() throws Exception
+    {
+        final var calls = new ArrayList<Future<?>>();
+        for (var transport : new GenDriverAPI4Modbus[] { slowTelemetry, fastControl, fastTelemetry })
+        {
+            for (int i = 0; i < 3; i++)
+            {
+                calls.add(callers.submit(() -> transport.ReadHoldingRegisters(20482, 2)));
+                calls.add(callers.submit(() -> {
+                    transport.WriteSingleRegister(1501, 3);
+                    return null;
+                }));
+            }
+        }
+        for (var call : calls)
+        {
+            call.get();
+        }
+
+        assertEquals(0, line.getCollisionCount());
+        assertTrue(line.getMinGapNs() >= arbiter.getInterFrameGapNs(),
+                   "gap " + line.getMinGapNs() + "ns < " + arbiter.getInterFrameGapNs() + "ns");
+        assertEquals(18, line.getLog().size());
+    }
+
+    @Test
+    void writesAndControlReadsOvertakeQueuedTelemetry() throws Exception
+    {
+        occupyBusAndQueue(slowTelemetry, 4);
+
+        final var write = callers.submit(() -> {
+            fastTelemetry.WriteSingleRegister(1501, 3);
+            return null;
+        });
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(POLL_INTERVAL).until(() -> arbiter.getStats().get("fast2").getQueueDepth() == 1);
+        final var controlRead = callers.submit(() -> fastControl.ReadInputRegisters(2501, 1));
+
+        write.get();
+        controlRead.get();
+
+        final var log = line.getLog();
+        LOG.info("Transaction order: {}", log);
+        assertEquals("fast2:WriteSingleRegister", log.get(1));
+        assertEquals("fast1:ReadInputRegisters", log.get(2));
+    }
+
+    @Test
+    void fastDeviceIsNotStarvedBySlowDevice() throws Exception
+    {
+        occupyBusAndQueue(slowTelemetry, 5);
+
+        final var fastRead = callers.submit(() -> fastTelemetry.ReadHoldingRegisters(20482, 2));
+        fastRead.get();
+
+        // round robin: the fast device waits for at most one transaction of the slow device
+        final var log = line.getLog();
+        LOG.info("Transaction order: {}", log);
+        assertTrue(log.indexOf("fast2:ReadHoldingRegisters") <= 2, log.toString());
+
+        final var stats = arbiter.getStats();
+        assertEquals(5, stats.get("slow").getMaxQueueDepth());
+        assertTrue(stats.get("fast2").getMaxWaitMs() < 3 * SLOW_RESPONSE_MS, stats.get("fast2").toString());
+    }
+
+    @Test
+    void disconnectWaitsForTransactionOnTheWire() throws Exception
+    {
+        fastTelemetry.connect();
+        final var slowRead = callers.submit(() -> slowTelemetry.ReadHoldingRegisters(20482, 2));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(POLL_INTERVAL).until(() -> line.getLog().size() == 1);
+
+        // the disconnect is a bus transaction as well, so it waits for the slow read
+        fastTelemetry.disconnect();
+        assertTrue(slowRead.isDone(), "port closed during a transaction");
+        assertFalse(fastTelemetry.isConnected());
+        assertEquals(0, line.getCollisionCount());
+    }
+
+    @Test
+    void slowConnectDoesNotBlockOtherDevices() throws Exception
+    {
+        final var connecting = new CountDownLatch(1);
+        final var gateway = arbiter.register("gateway", new LatencyModbusMock(line, "gateway", FAST_RESPONSE_MS)
+        {
+            @Override
+            public boolean connect() throws GenDriverException
+            {
+                connecting.countDown();
+                sleep(SLOW_RESPONSE_MS);
+                return super.connect();
+            }
+        }, Priority.CONTROL);
+
+        final var connect = callers.submit(gateway::connect);
+        assertTrue(connecting.await(5, TimeUnit.SECONDS));
+
+        // the other devices can queue their transactions and the statistics can be read while the port is opened
+        final var startNs = System.nanoTime();
+        final var read = callers.submit(() -> fastTelemetry.ReadHoldingRegisters(20482, 2));
+        Awaitility.await().atMost(Duration.ofMillis(SLOW_RESPONSE_MS / 2)).pollInterval(Duration.ofMillis(1))
+                .until(() -> arbiter.getStats().get("fast2").getQueueDepth() == 1);
+        assertTrue(System.nanoTime() - startNs < TimeUnit.MILLISECONDS.toNanos(SLOW_RESPONSE_MS), "arbiter blocked by the connect");
+
+        assertTrue(connect.get());
+        read.get();
+        assertTrue(gateway.isConnected());
+    }
+
+    @Test
+    void interruptedCallerDropsItsTransaction() throws Exception
+    {
+        final var slowRead = callers.submit(() -> slowTelemetry.ReadHoldingRegisters(20482, 2));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(POLL_INTERVAL).until(() -> line.getLog().size() == 1);
+
+        final var write = callers.submit(() -> {
+            fastTelemetry.WriteSingleRegister(1501, 3);
+            return null;
+        });
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(POLL_INTERVAL).until(() -> arbiter.getStats().get("fast2").getQueueDepth() == 1);
+
+        // the caller gives up before the write got the bus, so the write must not reach the device
+        write.cancel(true);
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(POLL_INTERVAL).until(() -> arbiter.getStats().get("fast2").getQueueDepth() == 0);
+
+        slowRead.get();
+        fastControl.ReadInputRegisters(2501, 1);
+        assertEquals(2, line.getLog().size(), line.getLog().toString());
+        assertFalse(line.getLog().contains("fast2:WriteSingleRegister"));
+    }
+
+    /**
+     * Starts one transaction on the bus and queues the given number of further transactions behind it.
+     */
+    private void occupyBusAndQueue(GenDriverAPI4Modbus transport, int queued)
+    {
+        callers.submit(() -> transport.ReadHoldingRegisters(20482, 2));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(POLL_INTERVAL).until(() -> line.getLog().size() == 1);
+
+        for (int i = 0; i < queued; i++)
+        {
+            callers.submit(() -> transport.ReadHoldingRegisters(20482, 2));
+        }
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(POLL_INTERVAL).until(() -> arbiter.getStats().get("slow").getQueueDepth() == queued);
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.SGrDeviceBuilder;
+import com.smartgridready.communicator.example.helper.EidLoader;
+import com.smartgridready.communicator.example.helper.MockModbusClientFactory;
+import com.smartgridready.communicator.example.helper.NoisySignalModbusMock;
+import com.smartgridready.communicator.example.helper.replay.TrafficRecorder;
+import com.smartgridready.communicator.example.helper.replay.TrafficRecording;
+import com.smartgridready.communicator.example.helper.replay.TrafficReplayer;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
+
+/**
+ * This class records the traffic of a WAGO meter once and replays it as a deterministic performance test.
+ * <p>
+ * The "live" meter is a {@link NoisySignalModbusMock} answering after {@value #RESPONSE_TIME_MS}ms, standing in for a
+ * device on a site. {@value #POLLS} polls of five data points are recorded with the {@link TrafficRecorder} and
+ * saved to a file. The file is loaded and replayed twice with the original timings, to
+ * show that the values and the timings are reproduced, and once without delays, measuring the overhead of the
+ * communication handler alone. The program logs the file size, the read times and whether the replays are identical.
+ * <p>
+ * The program uses a mocked modbus driver and can be run without an attached device/product.
+ */
+public class TrafficReplaySampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficReplaySampleCommunicator.class);
+
+    private static final String DEVICE_DESCRIPTION_FILE_NAME = "SGr_04_0014_0000_WAGO_SmartMeterV0.2.1.xml";
+
+    private static final String[][] DATA_POINTS = {
+        { "VoltageAC", "VoltageL1" },
+        { "VoltageAC", "VoltageL2" },
+        { "Frequency", "Frequency" },
+        { "CurrentAC", "CurrentACL1" },
+        { "ActivePowerAC", "ActivePowerACtot" },
+    };
+    private static final int POLLS = 100;
+    private static final long RESPONSE_TIME_MS = 2;
+
+    private static byte[] eid;
+
+    public static void main(String[] argv) throws Exception
+    {
+        try (var stream = EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
+        {
+            eid = stream.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            LOG.error("Error loading device description. ", e);
+            return;
+        }
+
+        // record the "live" device
+        final var recorder = new TrafficRecorder(new TrafficRecording());
+        final var live = poll("Live", recorder.modbusFactory(new MockModbusClientFactory(SlowMeterMock::new)));
+
+        final var file = Files.createTempFile("wago-meter", ".sgrr");
+        try
+        {
+            recorder.getRecording().save(file);
+            LOG.info("Recorded {} exchanges in {} bytes, {} bytes per exchange",
+                     recorder.getRecording().size(),
+                     Files.size(file),
+                     Files.size(file) / Math.max(1, recorder.getRecording().size()));
+
+            final var recording = TrafficRecording.load(file);
+            final List<String> replays = new ArrayList<>();
+            for (var run = 1; run <= 2; run++)
+            {
+                try (var replayer = new TrafficReplayer(recording, 1.0))
+                {
+                    replays.add(poll("Replay " + run, replayer.modbusFactory()));
+                }
+            }
+            try (var replayer = new TrafficReplayer(recording, 0.0))
+            {
+                poll("Replay without delays", replayer.modbusFactory());
+            }
+
+            LOG.info("Replays identical to each other: {}, to the live values: {}",
+                     replays.get(0).equals(replays.get(1)),
+                     replays.get(0).equals(live));
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Polls the data points of a meter built with the given transport factory.
+     *
+     * @return the values read
+     */
+    private static String poll(String label, GenDriverAPI4ModbusFactory factory) throws Exception
+    {
+        final var properties = new Properties();
+        properties.setProperty("serial_port", "COM1");
+        final var device = new SGrDeviceBuilder()
+                .eid(new ByteArrayInputStream(eid))
+                .useModbusClientFactory(factory)
+                .properties(properties)
+                .build();
+        device.connect();
+
+        final var values = new StringBuilder();
+        final var startNs = System.nanoTime();
+        for (int i = 0; i < POLLS; i++)
+        {
+            for (var dataPoint : DATA_POINTS)
+            {
+                values.append(device.getVal(dataPoint[0], dataPoint[1]).getFloat64()).append(';');
+            }
+        }
+        final var elapsedNs = System.nanoTime() - startNs;
+        device.disconnect();
+
+        LOG.info("{}: {} reads in {}ms, {}us per read",
+                 label,
+                 POLLS * DATA_POINTS.length,
+                 TimeUnit.NANOSECONDS.toMillis(elapsedNs),
+                 elapsedNs / 1000 / (POLLS * DATA_POINTS.length));
+        return values.toString();
+    }
+
+    /**
+     * Noisy meter answering after {@value #RESPONSE_TIME_MS}ms.
+     */
+    private static class SlowMeterMock extends NoisySignalModbusMock
+    {
+        SlowMeterMock()
+        {
+            super(230.0, 0.5, 2.0, 42L);
+        }
+
+        @Override
+        public synchronized int[] ReadInputRegisters(int startingAddress, int quantity)
+        {
+            respond();
+            return super.ReadInputRegisters(startingAddress, quantity);
+        }
+
+        @Override
+        public synchronized int[] ReadHoldingRegisters(int startingAddress, int quantity)
+        {
+            respond();
+            return super.ReadHoldingRegisters(startingAddress, quantity);
+        }
+
+        private static void respond()
+        {
+            try
+            {
+                TimeUnit.MILLISECONDS.sleep(RESPONSE_TIME_MS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.example.helper.broker.InProcessBroker;
+import com.smartgridready.communicator.example.helper.replay.TrafficRecorder;
+import com.smartgridready.communicator.example.helper.replay.TrafficRecording;
+import com.smartgridready.communicator.example.helper.replay.TrafficReplayer;
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.http.GenHttpClientFactory;
+import com.smartgridready.driver.api.http.GenHttpRequest;
+import com.smartgridready.driver.api.http.GenHttpResponse;
+import com.smartgridready.driver.api.http.HttpMethod;
+import com.smartgridready.driver.api.messaging.model.Message;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverSocketException;
+
+/**
+ * This test class provides an example on how to record the traffic of a device once and replay it in a performance
+ * test, using the {@link TrafficRecorder} and the {@link TrafficReplayer}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The "live" Modbus and HTTP transports are Mockito mocks, the MQTT device is simulated on the
+ * {@link InProcessBroker}. Each recording is saved to a file, loaded again and replayed with the original timings.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+@ExtendWith(value = MockitoExtension.class)
+public class TrafficReplaySampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficReplaySampleCommunicatorTest.class);
+
+    private static final long RESPONSE_TIME_MS = 20;
+
+    @Test
+    void modbusRecordAndReplay() throws Exception
+    {
+        final var live = mock(GenDriverAPI4Modbus.class);
+        when(live.ReadHoldingRegisters(0x5000, 2)).thenAnswer(invocation -> {
+            TimeUnit.MILLISECONDS.sleep(RESPONSE_TIME_MS);
+            return new int[] { 0x4366, 0x0000 };
+        }).thenReturn(new int[] { 0x4367, 0x0000 }).thenThrow(new GenDriverSocketException("Connection reset"));
+
+        final var recorder = new TrafficRecorder(new TrafficRecording());
+        final var recording = recorder.modbus("tcp:192.168.1.10:502", live);
+        recording.ReadHoldingRegisters(0x5000, 2);
+        recording.ReadHoldingRegisters(0x5000, 2);
+        assertThrows(GenDriverSocketException.class, () -> recording.ReadHoldingRegisters(0x5000, 2));
+
+        final var file = save(recorder.getRecording());
+
+        try (var replayer = new TrafficReplayer(TrafficRecording.load(file), 1.0))
+        {
+            final var replay = replayer.modbus("tcp:192.168.1.10:502");
+
+            final var startNs = System.nanoTime();
+            assertArrayEquals(new int[] { 0x4366, 0x0000 }, replay.ReadHoldingRegisters(0x5000, 2));
+            assertTrue(System.nanoTime() - startNs >= TimeUnit.MILLISECONDS.toNanos(RESPONSE_TIME_MS));
+
+            assertArrayEquals(new int[] { 0x4367, 0x0000 }, replay.ReadHoldingRegisters(0x5000, 2));
+            assertThrows(GenDriverSocketException.class, () -> replay.ReadHoldingRegisters(0x5000, 2));
+
+            // the recorded responses are repeated
+            assertArrayEquals(new int[] { 0x4366, 0x0000 }, replay.ReadHoldingRegisters(0x5000, 2));
+
+            // requests that were not recorded fail
+            assertThrows(GenDriverException.class, () -> replay.ReadHoldingRegisters(0x5002, 2));
+            assertEquals(1, replayer.getMissCount());
+        }
+    }
+
+    @Test
+    void httpRecordAndReplay() throws Exception
+    {
+        final var response = "{\"tmp\":{\"value\":21.5},\"target_t\":{\"value\":22.5}}";
+        final var liveFactory = mock(GenHttpClientFactory.class);
+        final var liveRequest = mock(GenHttpRequest.class);
+        when(liveFactory.createHttpRequest()).thenReturn(liveRequest);
+        when(liveRequest.setUri(any())).thenReturn(liveRequest);
+        when(liveRequest.execute()).thenReturn(GenHttpResponse.of(response));
+
+        final var recorder = new TrafficRecorder(new TrafficRecording());
+        final var request = recorder.http("trv1", liveFactory).createHttpRequest();
+        request.setHttpMethod(HttpMethod.GET);
+        request.setUri(URI.create("http://192.168.1.20/thermostats/0?target_t=22.5"));
+        request.execute();
+
+        final var file = save(recorder.getRecording());
+
+        try (var replayer = new TrafficReplayer(TrafficRecording.load(file), 0.0))
+        {
+            // the replay may use another base URI
+            final var factory = replayer.http("trv1");
+            final var uri = factory.createUriBuilder("http://localhost:8080/")
+                    .addPath("/thermostats/0")
+                    .addQueryParameter("target_t", "22.5")
+                    .build();
+            final var replay = factory.createHttpRequest();
+            replay.setHttpMethod(HttpMethod.GET);
+            replay.setUri(uri);
+            assertEquals(response, replay.execute().getResponse());
+        }
+    }
+
+    @Test
+    void messagingRecordAndReplay() throws Exception
+    {
+        final var topic = "actuators/voltage_dc_out1";
+        final var recorder = new TrafficRecorder(new TrafficRecording());
+
+        try (var broker = new InProcessBroker())
+        {
+            final var simulator = broker.connect("simulator");
+            simulator.subscribe(topic, null, command -> {
+                if ("read".equals(command.get().getPayload()))
+                {
+                    simulator.sendSync(topic, Message.of("22.2"));
+                }
+            }, true);
+
+            final var client = recorder.messaging("wago", broker).create(null);
+            final var received = new CopyOnWriteArrayList<String>();
+            client.subscribe("sensors/voltage_dc_in1", null, result -> received.add(result.get().getPayload()));
+            assertEquals("22.2", client.readSync(topic, Message.of("read"), topic, null, 1000).get().getPayload());
+
+            TimeUnit.MILLISECONDS.sleep(RESPONSE_TIME_MS);
+            broker.publish("sensors/voltage_dc_in1", Message.of("11.1"), false);
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> received.size() == 1);
+        }
+
+        final var file = save(recorder.getRecording());
+
+        try (var replayer = new TrafficReplayer(TrafficRecording.load(file), 1.0))
+        {
+            final var client = replayer.messaging("wago").create(null);
+            final var received = new CopyOnWriteArrayList<String>();
+            final var startNs = System.nanoTime();
+            client.subscribe("sensors/voltage_dc_in1", null, result -> received.add(result.get().getPayload()));
+            assertEquals("22.2", client.readSync(topic, Message.of("read"), topic, null, 1000).get().getPayload());
+
+            // the message arrives at its recorded offset to the subscription
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> received.size() == 1);
+            assertEquals("11.1", received.get(0));
+            assertTrue(System.nanoTime() - startNs >= TimeUnit.MILLISECONDS.toNanos(RESPONSE_TIME_MS));
+        }
+    }
+
+    private Path save(TrafficRecording recording) throws Exception
+    {
+        final var file = Files.createTempFile("traffic", ".sgrr");
+        file.toFile().deleteOnExit();
+        recording.save(file);
+        LOG.info("Recorded {} exchanges in {} bytes: {}", recording.size(), Files.size(file), recording.getExchanges());
+        return file;
+    }
+}
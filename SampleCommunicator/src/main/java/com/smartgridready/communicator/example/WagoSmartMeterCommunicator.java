@@ -50,6 +50,8 @@ public class WagoSmartMeterCommunicator
 			final var configProperties = new Properties();
 			configProperties.setProperty("serial_port", SERIAL_PORT_NAME);
 
+			// The RTU transport is shared with other devices on the same COM port. To schedule the transactions
+			// of many devices on one line by priority, see ModbusRtuBusArbiter and SharedRtuBusSampleCommunicatorTest.
 			final var device = new SGrDeviceBuilder()
 					.useSharedModbusRtu(true)
 					.eid(EidLoader.getDeviceDescriptionInputStream(DEVICE_DESCRIPTION_FILE_NAME))
@@ -58,11 +60,14 @@ public class WagoSmartMeterCommunicator
 
 			device.connect();
 
-			LOG.info("Device-name {}", device.getDeviceInfo().getName());
-			LOG.info("Device-interface {}", device.getDeviceInfo().getInterfaceType());
+			// getDeviceInfo() builds the device information from the EID on each call, therefore it is called once.
+			// To share the metadata of many devices with the same EID, see DeviceMetadataCache.
+			final var deviceInfo = device.getDeviceInfo();
+			LOG.info("Device-name {}", deviceInfo.getName());
+			LOG.info("Device-interface {}", deviceInfo.getInterfaceType());
 
 			// Read the values from all data points and log them
-			final var deviceData = device.getDeviceInfo().getValues();
+			final var deviceData = device.getValues();
 			deviceData.forEach(dataPointValue -> LOG.info(dataPointValue.toString()));
 
 			// close transport
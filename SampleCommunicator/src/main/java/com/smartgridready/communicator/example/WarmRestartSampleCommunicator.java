@@ -0,0 +1,175 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.example.helper.load.LatencyHistogram;
+import com.smartgridready.communicator.example.helper.snapshot.LastValueCache;
+import com.smartgridready.communicator.example.helper.snapshot.ValueSnapshot;
+
+/**
+ * This class measures the time to first value of a dashboard after a gateway restart, without and with a
+ * {@link ValueSnapshot} of the last known values.
+ * <p>
+ * The gateway polls {@value #DEVICES} meters with {@value #DATA_POINTS} data points each over a single RTU line,
+ * taking {@value #READ_TIME_MS}ms per read, i.e. about two seconds per polling cycle. The dashboard shows every data
+ * point and waits until it has a value. After a cold start, it waits for the polling cycle. After a warm restart, the
+ * snapshot written before the restart provides stale values right away, and the fresh values follow with the polling.
+ * <p>
+ * The program logs the time to the first value and to the first fresh value of all data points, and the size and
+ * duration of a snapshot. It works without an attached device/product.
+ */
+public class WarmRestartSampleCommunicator
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WarmRestartSampleCommunicator.class);
+
+    private static final int DEVICES = 20;
+    private static final int DATA_POINTS = 5;
+    private static final long READ_TIME_MS = 20;
+    private static final Duration SNAPSHOT_PERIOD = Duration.ofMillis(500);
+
+    public static void main(String[] argv) throws Exception
+    {
+        final var file = Files.createTempFile("gateway", ".snapshot");
+        file.toFile().deleteOnExit();
+
+        // cold start with an empty snapshot file, the snapshot is written while polling and on shutdown
+        run("Cold start", file);
+
+        // warm restart from the snapshot
+        run("Warm restart", file);
+    }
+
+    private static void run(String label, Path file) throws IOException, InterruptedException
+    {
+        final var startNs = System.nanoTime();
+        final var cache = new LastValueCache();
+
+        try (var snapshot = new ValueSnapshot(cache, file))
+        {
+            final var restored = snapshot.load();
+            snapshot.start(SNAPSHOT_PERIOD);
+
+            final var running = new AtomicBoolean(true);
+            final var poller = new Thread(() -> poll(cache, running), "rtu-poller");
+            poller.start();
+
+            final var firstValue = new LatencyHistogram();
+            final var firstFreshValue = new LatencyHistogram();
+            awaitDashboard(cache, startNs, firstValue, firstFreshValue);
+
+            running.set(false);
+            poller.join();
+
+            final var values = firstValue.snapshotAndReset();
+            final var freshValues = firstFreshValue.snapshotAndReset();
+            LOG.info("{}: {} values restored, first value p50 {}ms max {}ms, first fresh value p50 {}ms max {}ms",
+                     label, restored, values.getPercentileMs(50), values.getMaxMs(),
+                     freshValues.getPercentileMs(50), freshValues.getMaxMs());
+            LOG.info("{}: {} snapshots, last {} bytes in {}us",
+                     label, snapshot.getSnapshotCount(), snapshot.getLastSnapshotBytes(), snapshot.getLastSnapshotNs() / 1000);
+        }
+    }
+
+    /**
+     * Polls all data points over the RTU line, one read at a time.
+     */
+    private static void poll(LastValueCache cache, AtomicBoolean running)
+    {
+        var cycle = 0;
+        while (running.get())
+        {
+            for (int device = 0; device < DEVICES && running.get(); device++)
+            {
+                for (int dataPoint = 0; dataPoint < DATA_POINTS && running.get(); dataPoint++)
+                {
+                    sleep(READ_TIME_MS);
+                    cache.put(deviceId(device), "VoltageAC", dataPointName(dataPoint), Float32Value.of(230f + cycle));
+                }
+            }
+            cycle++;
+        }
+    }
+
+    /**
+     * Checks the cache every millisecond, as a dashboard refreshing its view, until all data points have a fresh value.
+     */
+    private static void awaitDashboard(LastValueCache cache, long startNs, LatencyHistogram firstValue,
+                                       LatencyHistogram firstFreshValue)
+    {
+        final var seen = new boolean[DEVICES][DATA_POINTS];
+        final var fresh = new boolean[DEVICES][DATA_POINTS];
+        var freshCount = 0;
+
+        while (freshCount < DEVICES * DATA_POINTS)
+        {
+            for (int device = 0; device < DEVICES; device++)
+            {
+                for (int dataPoint = 0; dataPoint < DATA_POINTS; dataPoint++)
+                {
+                    final var entry = cache.get(deviceId(device), "VoltageAC", dataPointName(dataPoint));
+                    if (entry != null && !seen[device][dataPoint])
+                    {
+                        seen[device][dataPoint] = true;
+                        firstValue.record(System.nanoTime() - startNs);
+                    }
+                    if (entry != null && !entry.isStale() && !fresh[device][dataPoint])
+                    {
+                        fresh[device][dataPoint] = true;
+                        firstFreshValue.record(System.nanoTime() - startNs);
+                        freshCount++;
+                    }
+                }
+            }
+            sleep(1);
+        }
+    }
+
+    private static String deviceId(int device)
+    {
+        return "wago-meter-" + device;
+    }
+
+    private static String dataPointName(int dataPoint)
+    {
+        return "VoltageL" + (dataPoint + 1);
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
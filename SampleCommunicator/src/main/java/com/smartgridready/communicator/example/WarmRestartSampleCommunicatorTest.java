@@ -0,0 +1,239 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.BitmapValue;
+import com.smartgridready.communicator.common.api.values.EnumValue;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.StringValue;
+import com.smartgridready.communicator.example.helper.snapshot.LastValueCache;
+import com.smartgridready.communicator.example.helper.snapshot.ValueSnapshot;
+
+/**
+ * This test class provides an example on how to serve the last known device values right after a restart, using
+ * the {@link LastValueCache} and the {@link ValueSnapshot}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * The cache is written to a memory-mapped file periodically. On startup, the file is loaded into a new cache, where the
+ * values are marked stale until they are read again. The tests show that all value types survive the restart, that
+ * an interrupted snapshot falls back to the previous one, also right after the file has grown, that unchanged caches
+ * are not written again and that values too large for the file format are skipped.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class WarmRestartSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WarmRestartSampleCommunicatorTest.class);
+
+    @Test
+    void restoresValuesAsStale() throws Exception
+    {
+        final var file = snapshotFile();
+
+        final var cache = new LastValueCache();
+        cache.put("wago", "VoltageAC", "VoltageL1", Float32Value.of(230.5f), 1_000L);
+        cache.put("wago", "VoltageAC", "VoltageL2", Float32Value.of(229.8f), 1_000L);
+        cache.put("heatpump", "HeatPumpBase", "HPOpModeCmd", EnumValue.of("WP_DOM_WATER_OP"), 2_000L);
+        cache.put("heatpump", "HeatPumpBase", "HPOpState", BitmapValue.of(Map.of("ERROR", false, "RUNNING", true)), 2_000L);
+        cache.put("shelly", "Thermostat", "Name", StringValue.of("Living room"), 3_000L);
+        try (var snapshot = new ValueSnapshot(cache, file))
+        {
+            assertTrue(snapshot.write());
+            LOG.info("Snapshot of {} values: {} bytes", cache.size(), snapshot.getLastSnapshotBytes());
+        }
+
+        // restart: the values are available before the first read, marked stale
+        final var restarted = new LastValueCache();
+        restarted.put("wago", "VoltageAC", "VoltageL2", Float32Value.of(231.0f));
+        try (var snapshot = new ValueSnapshot(restarted, file))
+        {
+            assertEquals(4, snapshot.load());
+        }
+        LOG.info("Restored {}", restarted.getEntries());
+
+        final var voltage = restarted.get("wago", "VoltageAC", "VoltageL1");
+        assertTrue(voltage.isStale());
+        assertEquals(230.5f, voltage.getValue().getFloat32());
+        assertEquals(1_000L, voltage.getTimestampMs());
+        assertEquals("WP_DOM_WATER_OP", restarted.get("heatpump", "HeatPumpBase", "HPOpModeCmd").getValue().getString());
+        assertEquals(true, restarted.get("heatpump", "HeatPumpBase", "HPOpState").getValue().getBitmap().get("RUNNING"));
+        assertEquals("Living room", restarted.get("shelly", "Thermostat", "Name").getValue().getString());
+
+        // a value read before loading is kept, a fresh read replaces the stale value
+        assertFalse(restarted.get("wago", "VoltageAC", "VoltageL2").isStale());
+        assertEquals(231.0f, restarted.get("wago", "VoltageAC", "VoltageL2").getValue().getFloat32());
+        restarted.put("wago", "VoltageAC", "VoltageL1", Float32Value.of(232.0f));
+        assertFalse(restarted.get("wago", "VoltageAC", "VoltageL1").isStale());
+        assertEquals(3, restarted.getStaleCount());
+        assertNull(restarted.get("wago", "VoltageAC", "VoltageL3"));
+    }
+
+    @Test
+    void interruptedSnapshotFallsBackToPrevious() throws Exception
+    {
+        final var file = snapshotFile();
+
+        final var cache = new LastValueCache();
+        try (var snapshot = new ValueSnapshot(cache, file))
+        {
+            cache.put("wago", "VoltageAC", "VoltageL1", Float32Value.of(230f));
+            snapshot.write();
+            cache.put("wago", "VoltageAC", "VoltageL1", Float32Value.of(240f));
+            snapshot.write();
+        }
+
+        // damage the data of the second snapshot, as if the gateway stopped while writing it
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            final var secondSlotData = 16 + (24 + ValueSnapshot.DEFAULT_SLOT_CAPACITY) + 24;
+            channel.write(ByteBuffer.wrap(new byte[] { 0x55, 0x55 }), secondSlotData + 8);
+        }
+
+        final var restarted = new LastValueCache();
+        try (var snapshot = new ValueSnapshot(restarted, file))
+        {
+            assertEquals(1, snapshot.load());
+        }
+        assertEquals(230f, restarted.get("wago", "VoltageAC", "VoltageL1").getValue().getFloat32());
+    }
+
+    @Test
+    void periodicSnapshotSkipsUnchangedCache() throws Exception
+    {
+        final var file = snapshotFile();
+        final var cache = new LastValueCache();
+
+        // more values than fit into the initial file size
+        for (int device = 0; device < 200; device++)
+        {
+            for (int phase = 1; phase <= 3; phase++)
+            {
+                cache.put("wago-meter-" + device, "VoltageAC", "VoltageL" + phase, Float32Value.of(230f + phase));
+                cache.put("wago-meter-" + device, "CurrentAC", "CurrentL" + phase, Float32Value.of(10f + phase));
+                cache.put("wago-meter-" + device, "ActivePowerAC", "ActivePowerL" + phase, Float32Value.of(2.3f));
+            }
+        }
+
+        try (var snapshot = new ValueSnapshot(cache, file).start(Duration.ofMillis(20)))
+        {
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> snapshot.getSnapshotCount() == 1);
+            LOG.info("Snapshot of {} values: {} bytes in {}us", cache.size(), snapshot.getLastSnapshotBytes(),
+                     snapshot.getLastSnapshotNs() / 1000);
+            assertTrue(snapshot.getLastSnapshotBytes() > ValueSnapshot.DEFAULT_SLOT_CAPACITY);
+
+            // nothing changed, nothing written
+            Thread.sleep(100);
+            assertEquals(1, snapshot.getSnapshotCount());
+
+            cache.put("wago-meter-0", "VoltageAC", "VoltageL1", Float32Value.of(225f));
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> snapshot.getSnapshotCount() == 2);
+        }
+
+        final var restarted = new LastValueCache();
+        try (var snapshot = new ValueSnapshot(restarted, file))
+        {
+            assertEquals(1800, snapshot.load());
+        }
+        assertEquals(225f, restarted.get("wago-meter-0", "VoltageAC", "VoltageL1").getValue().getFloat32());
+    }
+
+    @Test
+    void interruptedSnapshotAfterGrowthFallsBackToPrevious() throws Exception
+    {
+        final var file = snapshotFile();
+
+        final var cache = new LastValueCache();
+        try (var snapshot = new ValueSnapshot(cache, file))
+        {
+            cache.put("wago", "VoltageAC", "VoltageL1", Float32Value.of(230f));
+            snapshot.write();
+            // the second snapshot is in slot 1, which moves when the file grows
+            cache.put("wago", "VoltageAC", "VoltageL1", Float32Value.of(240f));
+            snapshot.write();
+
+            for (int device = 0; device < 2000; device++)
+            {
+                cache.put("wago-meter-" + device, "VoltageAC", "VoltageL1", Float32Value.of(230f));
+            }
+            snapshot.write();
+            assertTrue(snapshot.getLastSnapshotBytes() > ValueSnapshot.DEFAULT_SLOT_CAPACITY);
+        }
+
+        // damage the data of the third snapshot, written into slot 1 of the enlarged file
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE))
+        {
+            final var secondSlotData = 16 + (24 + 2 * ValueSnapshot.DEFAULT_SLOT_CAPACITY) + 24;
+            channel.write(ByteBuffer.wrap(new byte[] { 0x55, 0x55 }), secondSlotData + 8);
+        }
+
+        final var restarted = new LastValueCache();
+        try (var snapshot = new ValueSnapshot(restarted, file))
+        {
+            assertEquals(1, snapshot.load());
+        }
+        assertEquals(240f, restarted.get("wago", "VoltageAC", "VoltageL1").getValue().getFloat32());
+    }
+
+    @Test
+    void tooLongStringIsSkipped() throws Exception
+    {
+        final var file = snapshotFile();
+
+        final var cache = new LastValueCache();
+        cache.put("shelly", "Thermostat", "Name", StringValue.of("x".repeat(70_000)));
+        cache.put("wago", "VoltageAC", "VoltageL1", Float32Value.of(230f));
+        try (var snapshot = new ValueSnapshot(cache, file))
+        {
+            assertTrue(snapshot.write());
+        }
+
+        final var restarted = new LastValueCache();
+        try (var snapshot = new ValueSnapshot(restarted, file))
+        {
+            assertEquals(1, snapshot.load());
+        }
+        assertNull(restarted.get("shelly", "Thermostat", "Name"));
+        assertEquals(230f, restarted.get("wago", "VoltageAC", "VoltageL1").getValue().getFloat32());
+    }
+
+    private static Path snapshotFile() throws Exception
+    {
+        final var file = Files.createTempFile("values", ".snapshot");
+        file.toFile().deleteOnExit();
+        return file;
+    }
+}
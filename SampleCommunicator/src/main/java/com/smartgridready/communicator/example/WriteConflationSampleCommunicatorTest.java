@@ -0,0 +1,265 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.load.LatencyHistogram;
+import com.smartgridready.communicator.example.helper.write.ConflatingWriteQueue;
+
+/**
+ * This test class provides an example on how to write set points faster than a slow device link can apply them,
+ * using the {@link ConflatingWriteQueue}.
+ * <p>
+ * The demo can be run as Junit5 unit-test.
+ * <p>
+ * An optimiser sets the {@code Curtailment/HemsCurrentLimit} of a wallbox, as the {@code WriteExec} of the
+ * {@code AsynchronousSampleCommunicatorTest}, every few milliseconds, while a write over the Modbus link takes
+ * 20ms. The queue keeps only the newest pending value per data point, so the wallbox always receives the latest
+ * set point after at most two writes. The last test compares the latency from submit to applied with a plain
+ * FIFO queue under this overload.
+ */
+@SuppressWarnings({"java:S2629", "java:S112", "java:S1192"}) // since we are not in a 'test' folder
+public class WriteConflationSampleCommunicatorTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WriteConflationSampleCommunicatorTest.class);
+
+    private static final long WRITE_TIME_MS = 20;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void lastWriteWins() throws Exception
+    {
+        final List<Float> applied = new ArrayList<>();
+        final var queue = new ConflatingWriteQueue((profileName, dataPointName, value) -> {
+            sleep(WRITE_TIME_MS);
+            synchronized (applied)
+            {
+                applied.add(value.getFloat32());
+            }
+        }, executor, 1);
+
+        final var futures = new ArrayList<CompletableFuture<Value>>();
+        for (int limit = 1; limit <= 100; limit++)
+        {
+            futures.add(queue.submit("Curtailment", "HemsCurrentLimit", Float32Value.of(limit)));
+            sleep(1);
+        }
+        queue.flush().get(1, TimeUnit.SECONDS);
+
+        LOG.info("Submitted {}, written {}, conflated {}: {}",
+                 queue.getSubmittedCount(), queue.getWrittenCount(), queue.getConflatedCount(), applied);
+
+        // every future completes with its own or a newer value, the newest value is applied last
+        for (int i = 0; i < futures.size(); i++)
+        {
+            assertTrue(futures.get(i).get().getFloat32() >= i + 1);
+        }
+        assertEquals(100f, applied.get(applied.size() - 1));
+        assertTrue(applied.size() < 20, "written " + applied.size() + " times");
+        assertEquals(100, queue.getSubmittedCount());
+        assertEquals(100, queue.getWrittenCount() + queue.getConflatedCount());
+
+        // the values are applied in submission order
+        for (int i = 1; i < applied.size(); i++)
+        {
+            assertTrue(applied.get(i) > applied.get(i - 1));
+        }
+    }
+
+    @Test
+    void flushWaitsForWriteInFlight() throws Exception
+    {
+        final var applied = new AtomicBoolean();
+        final var queue = new ConflatingWriteQueue((profileName, dataPointName, value) -> {
+            sleep(WRITE_TIME_MS);
+            applied.set(true);
+        }, executor, 1);
+
+        // the write is already in flight when flush is called
+        queue.submit("Curtailment", "HemsCurrentLimit", Float32Value.of(16f));
+        queue.flush().get(1, TimeUnit.SECONDS);
+
+        assertTrue(applied.get(), "flush completed before the write was applied");
+        assertEquals(1, queue.getWrittenCount());
+    }
+
+    @Test
+    void concurrencyIsBounded() throws Exception
+    {
+        final var inFlight = new AtomicInteger();
+        final var maxInFlight = new AtomicInteger();
+        final var perDataPoint = new ConcurrentHashMap<String, AtomicInteger>();
+        final var overlapping = new AtomicBoolean();
+
+        final var queue = new ConflatingWriteQueue((profileName, dataPointName, value) -> {
+            final var dataPointWrites = perDataPoint.computeIfAbsent(dataPointName, key -> new AtomicInteger());
+            if (dataPointWrites.incrementAndGet() > 1)
+            {
+                overlapping.set(true);
+            }
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            sleep(5);
+            inFlight.decrementAndGet();
+            dataPointWrites.decrementAndGet();
+        }, executor, 3);
+
+        for (int round = 0; round < 20; round++)
+        {
+            for (int dataPoint = 0; dataPoint < 10; dataPoint++)
+            {
+                queue.submit("Curtailment", "Limit" + dataPoint, Float32Value.of(round));
+            }
+        }
+        queue.flush().get(2, TimeUnit.SECONDS);
+
+        LOG.info("Max writes in flight {}, written {}, conflated {}",
+                 maxInFlight.get(), queue.getWrittenCount(), queue.getConflatedCount());
+        assertEquals(3, maxInFlight.get());
+        assertTrue(!overlapping.get(), "overlapping writes of a data point");
+        assertEquals(0, queue.getPendingCount());
+        assertEquals(0, queue.getActiveWriteCount());
+    }
+
+    @Test
+    void failedWriteWaitsForNewerValue() throws Exception
+    {
+        final var firstWrite = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var calls = new AtomicInteger();
+
+        final var queue = new ConflatingWriteQueue((profileName, dataPointName, value) -> {
+            if (calls.incrementAndGet() == 1)
+            {
+                firstWrite.countDown();
+                release.await();
+                throw new IllegalStateException("Modbus timeout");
+            }
+        }, executor, 1);
+
+        final var first = queue.submit("Curtailment", "HemsCurrentLimit", Float32Value.of(16f));
+        firstWrite.await();
+        final var second = queue.submit("Curtailment", "HemsCurrentLimit", Float32Value.of(10f));
+        release.countDown();
+
+        // the failed value has been superseded, both futures report the newer value
+        assertEquals(10f, first.get(1, TimeUnit.SECONDS).getFloat32());
+        assertEquals(10f, second.get(1, TimeUnit.SECONDS).getFloat32());
+        assertEquals(1, queue.getFailedCount());
+
+        // without a newer value, the failure is reported
+        calls.set(0);
+        final var failed = queue.submit("Curtailment", "HemsCurrentLimit", Float32Value.of(8f));
+        final var error = assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+        LOG.info("Write failed: {}", error.getCause().getMessage());
+    }
+
+    @Test
+    void latencyUnderOverload() throws Exception
+    {
+        final var submitInterval = 5;
+        final var submitCount = 100;
+
+        // plain FIFO queue: every set point is written
+        final var fifoLatency = new LatencyHistogram();
+        final var fifo = Executors.newSingleThreadExecutor();
+        try
+        {
+            final var futures = new ArrayList<CompletableFuture<Void>>();
+            for (int i = 0; i < submitCount; i++)
+            {
+                final var submittedNs = System.nanoTime();
+                futures.add(CompletableFuture.runAsync(() -> {
+                    sleep(WRITE_TIME_MS);
+                    fifoLatency.record(System.nanoTime() - submittedNs);
+                }, fifo));
+                sleep(submitInterval);
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        }
+        finally
+        {
+            fifo.shutdown();
+        }
+
+        // conflating queue: only the newest pending set point is written
+        final var conflatedLatency = new LatencyHistogram();
+        final var queue = new ConflatingWriteQueue((profileName, dataPointName, value) -> sleep(WRITE_TIME_MS),
+                                                   executor, 1);
+        for (int i = 0; i < submitCount; i++)
+        {
+            final var submittedNs = System.nanoTime();
+            queue.submit("Curtailment", "HemsCurrentLimit", Float32Value.of(i))
+                    .thenRun(() -> conflatedLatency.record(System.nanoTime() - submittedNs));
+            sleep(submitInterval);
+        }
+        queue.flush().get(1, TimeUnit.SECONDS);
+
+        final var fifoSnapshot = fifoLatency.snapshotAndReset();
+        final var conflatedSnapshot = conflatedLatency.snapshotAndReset();
+        LOG.info("FIFO:       {} writes, p50 {}ms, p99 {}ms, max {}ms", submitCount,
+                 fifoSnapshot.getPercentileMs(50), fifoSnapshot.getPercentileMs(99), fifoSnapshot.getMaxMs());
+        LOG.info("Conflating: {} writes, p50 {}ms, p99 {}ms, max {}ms", queue.getWrittenCount(),
+                 conflatedSnapshot.getPercentileMs(50), conflatedSnapshot.getPercentileMs(99), conflatedSnapshot.getMaxMs());
+
+        // each set point is applied within two writes instead of waiting behind all older ones
+        assertTrue(conflatedSnapshot.getMaxMs() < 4 * WRITE_TIME_MS + 20, "max " + conflatedSnapshot.getMaxMs() + "ms");
+        assertTrue(conflatedSnapshot.getPercentileMs(99) * 10 < fifoSnapshot.getPercentileMs(99));
+    }
+
+    private static void sleep(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bit layout of a bitmap data point, precomputed once from the EID.
+ * <p>
+ * Each literal of the bitmap is assigned an index in EID order, and the bit mask of each literal is held
+ * in a primitive array. Resolve the index of the literals you need once with {@link #indexOf(String)},
+ * then test and modify {@link PrimitiveBitmap}s by index without any string or map access.
+ * <p>
+ * A mask may cover several bits, e.g. {@code 0x03} for two pumps. Such a literal is considered set if
+ * any of its bits is set. Setting it sets all of its bits, clearing it clears all of its bits.
+ */
+public final class BitmapLayout
+{
+    private static final double TWO_POW_63 = 0x1p63;
+
+    private final DataPointKey key;
+    private final String[] literals;
+    private final long[] masks;
+    private final Map<String, Integer> indexOfLiteral = new HashMap<>();
+
+    private BitmapLayout(DataPointKey key, Map<String, Long> bitmapMasks)
+    {
+        this.key = key;
+        this.literals = new String[bitmapMasks.size()];
+        this.masks = new long[bitmapMasks.size()];
+
+        var i = 0;
+        for (var entry : bitmapMasks.entrySet())
+        {
+            literals[i] = entry.getKey();
+            masks[i] = entry.getValue();
+            indexOfLiteral.put(entry.getKey(), i);
+            i++;
+        }
+    }
+
+    /**
+     * Creates the layout of a bitmap data point.
+     *
+     * @param dataPoint
+     *        the data point
+     * @return the layout
+     * @throws IllegalArgumentException
+     *         if the data point is no bitmap
+     */
+    public static BitmapLayout of(EidDataPoint dataPoint)
+    {
+        if (dataPoint.getBitmapMasks().isEmpty())
+        {
+            throw new IllegalArgumentException("Data point is no bitmap: " + dataPoint.getKey());
+        }
+        return new BitmapLayout(dataPoint.getKey(), dataPoint.getBitmapMasks());
+    }
+
+    /**
+     * @return the data point of this layout
+     */
+    public DataPointKey getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @return number of literals
+     */
+    public int size()
+    {
+        return literals.length;
+    }
+
+    /**
+     * Returns the index of a literal, to be resolved once and used for all subsequent bit accesses.
+     *
+     * @param literal
+     *        the literal as defined in the EID
+     * @return the index
+     * @throws IllegalArgumentException
+     *         if the literal is not defined
+     */
+    public int indexOf(String literal)
+    {
+        final var index = indexOfLiteral.get(literal);
+        if (index == null)
+        {
+            throw new IllegalArgumentException("Bitmap literal '" + literal + "' not defined for " + key);
+        }
+        return index;
+    }
+
+    /**
+     * @param index
+     *        index of the literal
+     * @return the literal
+     */
+    public String getLiteral(int index)
+    {
+        return literals[index];
+    }
+
+    /**
+     * @param index
+     *        index of the literal
+     * @return the bit mask of the literal
+     */
+    public long getMask(int index)
+    {
+        return masks[index];
+    }
+
+    /**
+     * Creates a bitmap from the raw register value.
+     *
+     * @param bits
+     *        the raw value
+     * @return the bitmap
+     */
+    public PrimitiveBitmap valueOf(long bits)
+    {
+        return new PrimitiveBitmap(this, bits);
+    }
+
+    /**
+     * Creates a bitmap from a value read through a {@link DataPointHandle}.
+     *
+     * @param value
+     *        the raw value as {@code double}, unsigned 64 bit values may exceed {@link Long#MAX_VALUE}
+     * @return the bitmap
+     */
+    public PrimitiveBitmap valueOf(double value)
+    {
+        // the cast saturates at Long.MAX_VALUE, which would set all bits except the highest one
+        final var bits = value >= TWO_POW_63 ? (long) (value - TWO_POW_63) | Long.MIN_VALUE : (long) value;
+        return new PrimitiveBitmap(this, bits);
+    }
+
+    /**
+     * Creates a bitmap from a map of literals, as returned by {@code Value.getBitmap()}.
+     * Literals missing in the map are cleared.
+     *
+     * @param bitmap
+     *        literals and whether they are set
+     * @return the bitmap
+     * @throws IllegalArgumentException
+     *         if the map contains an undefined literal
+     */
+    public PrimitiveBitmap valueOf(Map<String, Boolean> bitmap)
+    {
+        var bits = 0L;
+        for (var entry : bitmap.entrySet())
+        {
+            final var index = indexOf(entry.getKey());
+            if (Boolean.TRUE.equals(entry.getValue()))
+            {
+                bits |= masks[index];
+            }
+        }
+        return new PrimitiveBitmap(this, bits);
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Change-of-value filter for data point values.
+ * <p>
+ * A value is reported if it differs from the last reported value by at least the configured deadband, or by any
+ * amount if the deadband is zero, and the minimum reporting interval has passed. Independent of the deadband, a value is reported when
+ * the maximum reporting interval has passed since the last report (heartbeat). The first value of a data
+ * point is always reported.
+ * <p>
+ * A percent deadband is relative to the scale of the data point, i.e. {@code maximumValue - minimumValue}
+ * as defined in the EID. If the EID does not define a scale, the percent deadband is relative to the last
+ * reported value.
+ * <p>
+ * Non-numeric values (enums, bitmaps, strings) are reported when they are not equal to the last reported
+ * value, honoring the reporting intervals as well.
+ */
+public class ChangeOfValueFilter
+{
+    /** Default configuration used for data points that have not been configured explicitly. */
+    private final Config defaultConfig;
+
+    private final LongSupplier clockMs;
+
+    private final Map<String, Config> configs = new ConcurrentHashMap<>();
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    private final LongAdder reportedCount = new LongAdder();
+
+    private final LongAdder suppressedCount = new LongAdder();
+
+    /**
+     * Constructor using the system clock.
+     *
+     * @param defaultConfig
+     *        configuration used for data points without explicit configuration
+     */
+    public ChangeOfValueFilter(Config defaultConfig)
+    {
+        this(defaultConfig, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param defaultConfig
+     *        configuration used for data points without explicit configuration
+     * @param clockMs
+     *        clock returning the current time in milliseconds
+     */
+    public ChangeOfValueFilter(Config defaultConfig, LongSupplier clockMs)
+    {
+        this.defaultConfig = Objects.requireNonNull(defaultConfig);
+        this.clockMs = Objects.requireNonNull(clockMs);
+    }
+
+    /**
+     * Sets the configuration of a single data point.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param config
+     *        the filter configuration
+     * @return this filter
+     */
+    public ChangeOfValueFilter configure(String profileName, String dataPointName, Config config)
+    {
+        final var key = key(profileName, dataPointName);
+        configs.put(key, Objects.requireNonNull(config));
+        channels.remove(key);
+        return this;
+    }
+
+    /**
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return {@code true} if the data point has its own configuration
+     */
+    public boolean isConfigured(String profileName, String dataPointName)
+    {
+        return configs.containsKey(key(profileName, dataPointName));
+    }
+
+    /**
+     * @return the configuration used for data points without explicit configuration
+     */
+    public Config getDefaultConfig()
+    {
+        return defaultConfig;
+    }
+
+    /**
+     * Returns whether a numeric value shall be reported, and records it as last reported value if so.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the decoded value
+     * @return {@code true} if the value shall be passed downstream
+     */
+    public boolean test(String profileName, String dataPointName, double value)
+    {
+        final var channel = channel(profileName, dataPointName);
+        final var now = clockMs.getAsLong();
+
+        synchronized (channel)
+        {
+            final boolean report;
+
+            if (!channel.hasReported || Double.isNaN(channel.lastNumber))
+            {
+                report = true;
+            }
+            else
+            {
+                final var elapsed = now - channel.lastReportMs;
+                report = channel.config.isHeartbeatDue(elapsed)
+                        || (channel.config.isMinIntervalOver(elapsed)
+                            && channel.config.deadband.isExceeded(channel.config, channel.lastNumber, value));
+            }
+
+            if (report)
+            {
+                channel.lastNumber = value;
+                channel.lastObject = null;
+                channel.markReported(now);
+            }
+            return count(report);
+        }
+    }
+
+    /**
+     * Returns whether a non-numeric value shall be reported, and records it as last reported value if so.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the decoded value, compared using {@code equals()}
+     * @return {@code true} if the value shall be passed downstream
+     */
+    public boolean test(String profileName, String dataPointName, Object value)
+    {
+        final var channel = channel(profileName, dataPointName);
+        final var now = clockMs.getAsLong();
+
+        synchronized (channel)
+        {
+            final boolean report;
+
+            if (!channel.hasReported)
+            {
+                report = true;
+            }
+            else
+            {
+                final var elapsed = now - channel.lastReportMs;
+                report = channel.config.isHeartbeatDue(elapsed)
+                        || (channel.config.isMinIntervalOver(elapsed) && !Objects.equals(value, channel.lastObject));
+            }
+
+            if (report)
+            {
+                channel.lastObject = value;
+                channel.lastNumber = Double.NaN;
+                channel.markReported(now);
+            }
+            return count(report);
+        }
+    }
+
+    /**
+     * Forgets the last reported value of all data points, so that the next value of each is reported.
+     */
+    public void reset()
+    {
+        channels.clear();
+    }
+
+    /**
+     * @return number of values that passed the filter
+     */
+    public long getReportedCount()
+    {
+        return reportedCount.sum();
+    }
+
+    /**
+     * @return number of values that were suppressed by the filter
+     */
+    public long getSuppressedCount()
+    {
+        return suppressedCount.sum();
+    }
+
+    private boolean count(boolean report)
+    {
+        if (report)
+        {
+            reportedCount.increment();
+        }
+        else
+        {
+            suppressedCount.increment();
+        }
+        return report;
+    }
+
+    private Channel channel(String profileName, String dataPointName)
+    {
+        final var key = key(profileName, dataPointName);
+        return channels.computeIfAbsent(key, k -> new Channel(configs.getOrDefault(k, defaultConfig)));
+    }
+
+    private static String key(String profileName, String dataPointName)
+    {
+        return profileName + '/' + dataPointName;
+    }
+
+    /**
+     * Filter state of a single data point.
+     */
+    private static final class Channel
+    {
+        private final Config config;
+        private boolean hasReported = false;
+        private long lastReportMs;
+        private double lastNumber = Double.NaN;
+        private Object lastObject;
+
+        private Channel(Config config)
+        {
+            this.config = config;
+        }
+
+        private void markReported(long now)
+        {
+            hasReported = true;
+            lastReportMs = now;
+        }
+    }
+
+    /**
+     * Deadband of a data point, either absolute (in the unit of the data point) or in percent of its scale.
+     */
+    public static final class Deadband
+    {
+        private static final Deadband NONE = new Deadband(0.0, false);
+
+        private final double amount;
+        private final boolean percent;
+
+        private Deadband(double amount, boolean percent)
+        {
+            if (amount < 0.0 || Double.isNaN(amount))
+            {
+                throw new IllegalArgumentException("Deadband must not be negative: " + amount);
+            }
+            this.amount = amount;
+            this.percent = percent;
+        }
+
+        /**
+         * @param amount
+         *        absolute deadband in the unit of the data point
+         * @return the deadband
+         */
+        public static Deadband absolute(double amount)
+        {
+            return new Deadband(amount, false);
+        }
+
+        /**
+         * @param percent
+         *        deadband in percent of the data point scale
+         * @return the deadband
+         */
+        public static Deadband percent(double percent)
+        {
+            return new Deadband(percent, true);
+        }
+
+        /**
+         * @return a deadband that reports every change
+         */
+        public static Deadband none()
+        {
+            return NONE;
+        }
+
+        /**
+         * @return whether the value differs from the last reported value by at least the deadband, or at all if the
+         *         threshold is zero (no deadband, or a percent deadband without scale and a last value of zero)
+         */
+        private boolean isExceeded(Config config, double lastReported, double value)
+        {
+            final var delta = Math.abs(value - lastReported);
+            final var threshold = threshold(config, lastReported);
+            return threshold > 0.0 ? delta >= threshold : delta > 0.0;
+        }
+
+        private double threshold(Config config, double lastReported)
+        {
+            if (!percent)
+            {
+                return amount;
+            }
+
+            final var span = config.scaleMax - config.scaleMin;
+            final var reference = Double.isFinite(span) && span > 0.0 ? span : Math.abs(lastReported);
+            return reference * amount / 100.0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return percent ? amount + "%" : String.valueOf(amount);
+        }
+    }
+
+    /**
+     * Filter configuration of a data point.
+     */
+    public static final class Config
+    {
+        private final Deadband deadband;
+        private final long minIntervalMs;
+        private final long maxIntervalMs;
+        private final double scaleMin;
+        private final double scaleMax;
+
+        /**
+         * Constructor.
+         *
+         * @param deadband
+         *        the deadband
+         * @param minIntervalMs
+         *        minimum time between two reports, {@code 0} to report changes immediately
+         * @param maxIntervalMs
+         *        maximum time between two reports, {@code 0} to disable the heartbeat
+         * @param scaleMin
+         *        lower end of the scale for percent deadbands, {@code NaN} if unknown
+         * @param scaleMax
+         *        upper end of the scale for percent deadbands, {@code NaN} if unknown
+         */
+        public Config(Deadband deadband, long minIntervalMs, long maxIntervalMs, double scaleMin, double scaleMax)
+        {
+            if (minIntervalMs < 0 || maxIntervalMs < 0 || (maxIntervalMs > 0 && maxIntervalMs < minIntervalMs))
+            {
+                throw new IllegalArgumentException(
+                        "Invalid reporting interval: min=" + minIntervalMs + "ms, max=" + maxIntervalMs + "ms");
+            }
+            this.deadband = Objects.requireNonNull(deadband);
+            this.minIntervalMs = minIntervalMs;
+            this.maxIntervalMs = maxIntervalMs;
+            this.scaleMin = scaleMin;
+            this.scaleMax = scaleMax;
+        }
+
+        /**
+         * Constructor without scale.
+         *
+         * @param deadband
+         *        the deadband
+         * @param minIntervalMs
+         *        minimum time between two reports, {@code 0} to report changes immediately
+         * @param maxIntervalMs
+         *        maximum time between two reports, {@code 0} to disable the heartbeat
+         */
+        public Config(Deadband deadband, long minIntervalMs, long maxIntervalMs)
+        {
+            this(deadband, minIntervalMs, maxIntervalMs, Double.NaN, Double.NaN);
+        }
+
+        /**
+         * Returns a copy of this configuration with the given scale, as taken from the
+         * {@code minimumValue}/{@code maximumValue} of a data point.
+         *
+         * @param scaleMin
+         *        lower end of the scale, {@code NaN} if unknown
+         * @param scaleMax
+         *        upper end of the scale, {@code NaN} if unknown
+         * @return the new configuration
+         */
+        public Config withScale(double scaleMin, double scaleMax)
+        {
+            return new Config(deadband, minIntervalMs, maxIntervalMs, scaleMin, scaleMax);
+        }
+
+        private boolean isMinIntervalOver(long elapsedMs)
+        {
+            return elapsedMs >= minIntervalMs;
+        }
+
+        private boolean isHeartbeatDue(long elapsedMs)
+        {
+            return maxIntervalMs > 0 && elapsedMs >= maxIntervalMs;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Config [deadband=" + deadband + ", minIntervalMs=" + minIntervalMs + ", maxIntervalMs="
+                    + maxIntervalMs + ", scale=" + scaleMin + ".." + scaleMax + "]";
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.Objects;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.BitmapValue;
+import com.smartgridready.communicator.common.api.values.EnumValue;
+import com.smartgridready.communicator.common.api.values.StringValue;
+import com.smartgridready.communicator.common.api.values.Value;
+
+/**
+ * Reads data point values from a device and passes them through a {@link ChangeOfValueFilter}
+ * right after decoding.
+ * <p>
+ * Only values that pass the filter are handed over to the {@link Listener}, so unchanged values
+ * do not generate any events, storage writes or callbacks downstream.
+ */
+public class ChangeOfValueReader
+{
+    private final GenDeviceApi device;
+    private final ChangeOfValueFilter filter;
+    private final Listener listener;
+
+    /**
+     * Receives the values that passed the filter.
+     */
+    @FunctionalInterface
+    public interface Listener
+    {
+        /**
+         * Called for each reported value.
+         *
+         * @param profileName
+         *        name of the functional profile
+         * @param dataPointName
+         *        name of the data point
+         * @param value
+         *        the value read from the device
+         */
+        void onValue(String profileName, String dataPointName, Value value);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param device
+     *        the device to read from
+     * @param filter
+     *        the change-of-value filter
+     * @param listener
+     *        receives the values that passed the filter
+     */
+    public ChangeOfValueReader(GenDeviceApi device, ChangeOfValueFilter filter, Listener listener)
+    {
+        this.device = Objects.requireNonNull(device);
+        this.filter = Objects.requireNonNull(filter);
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Configures the filter of a data point, using the {@code minimumValue}/{@code maximumValue}
+     * of the data point in the EID as scale for percent deadbands.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param config
+     *        the filter configuration, its scale is replaced by the EID scale
+     * @return this reader
+     * @throws Exception
+     *         if the data point does not exist
+     */
+    public ChangeOfValueReader configure(String profileName, String dataPointName, ChangeOfValueFilter.Config config)
+            throws Exception
+    {
+        final var dataPoint = device.getDataPoint(profileName, dataPointName);
+        filter.configure(profileName,
+                         dataPointName,
+                         config.withScale(toDouble(dataPoint.getMinimumValue()), toDouble(dataPoint.getMaximumValue())));
+        return this;
+    }
+
+    /**
+     * Reads a data point value and notifies the listener if the value passed the filter. A data point that has not
+     * been configured gets the default configuration of the filter, with the EID scale, on its first poll.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return {@code true} if the value was reported to the listener
+     * @throws Exception
+     *         if the device could not be read
+     */
+    public boolean poll(String profileName, String dataPointName) throws Exception
+    {
+        if (!filter.isConfigured(profileName, dataPointName))
+        {
+            configure(profileName, dataPointName, filter.getDefaultConfig());
+        }
+
+        final var value = device.getVal(profileName, dataPointName);
+
+        if (filter(profileName, dataPointName, value))
+        {
+            listener.onValue(profileName, dataPointName, value);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean filter(String profileName, String dataPointName, Value value)
+    {
+        if (value instanceof EnumValue || value instanceof BitmapValue || value instanceof StringValue)
+        {
+            return filter.test(profileName, dataPointName, (Object) value.getString());
+        }
+
+        try
+        {
+            return filter.test(profileName, dataPointName, value.getFloat64());
+        }
+        catch (RuntimeException e)
+        {
+            // value type without numeric representation
+            return filter.test(profileName, dataPointName, (Object) value.getString());
+        }
+    }
+
+    private static double toDouble(Object eidValue)
+    {
+        return eidValue instanceof Number ? ((Number) eidValue).doubleValue() : Double.NaN;
+    }
+}
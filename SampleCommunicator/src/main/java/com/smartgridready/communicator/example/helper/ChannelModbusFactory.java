@@ -0,0 +1,137 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import com.smartgridready.communicator.example.helper.tcp.TcpModbusFactory;
+import com.smartgridready.driver.api.modbus.DataBits;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
+import com.smartgridready.driver.api.modbus.Parity;
+import com.smartgridready.driver.api.modbus.StopBits;
+
+/**
+ * Base class of Modbus factory decorators, naming the channel of a transport after the serial port or the address
+ * of the device, e.g. {@code rtu:COM1} or {@code tcp:192.168.1.10:502}. All transports of a channel share the same
+ * serial bus or TCP connection. TCP and UDP channels always include the port, the default port if none is given.
+ */
+public abstract class ChannelModbusFactory implements GenDriverAPI4ModbusFactory
+{
+    /**
+     * Creates the transport of a channel.
+     *
+     * @param channel
+     *        name of the channel
+     * @param factory
+     *        creates the transport with the wrapped factory, if any
+     * @return the transport
+     */
+    protected abstract GenDriverAPI4Modbus create(String channel, TransportCreator factory);
+
+    /**
+     * Creates a transport with the wrapped factory.
+     */
+    @FunctionalInterface
+    public interface TransportCreator
+    {
+        GenDriverAPI4Modbus create(GenDriverAPI4ModbusFactory factory);
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createRtuTransport(String comPort)
+    {
+        return create("rtu:" + comPort, factory -> factory.createRtuTransport(comPort));
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createRtuTransport(String comPort, int baudRate)
+    {
+        return create("rtu:" + comPort, factory -> factory.createRtuTransport(comPort, baudRate));
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createRtuTransport(String comPort, int baudRate, Parity parity)
+    {
+        return create("rtu:" + comPort, factory -> factory.createRtuTransport(comPort, baudRate, parity));
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createRtuTransport(String comPort, int baudRate, Parity parity, DataBits dataBits)
+    {
+        return create("rtu:" + comPort, factory -> factory.createRtuTransport(comPort, baudRate, parity, dataBits));
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createRtuTransport(String comPort,
+                                                  int baudRate,
+                                                  Parity parity,
+                                                  DataBits dataBits,
+                                                  StopBits stopBits)
+    {
+        return create("rtu:" + comPort,
+                      factory -> factory.createRtuTransport(comPort, baudRate, parity, dataBits, stopBits));
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createTcpTransport(String ipAddress)
+    {
+        return create(tcpChannel(ipAddress, TcpModbusFactory.DEFAULT_PORT), factory -> factory.createTcpTransport(ipAddress));
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createTcpTransport(String ipAddress, int port)
+    {
+        return create(tcpChannel(ipAddress, port), factory -> factory.createTcpTransport(ipAddress, port));
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createUdpTransport(String ipAddress)
+    {
+        return create(udpChannel(ipAddress, TcpModbusFactory.DEFAULT_PORT), factory -> factory.createUdpTransport(ipAddress));
+    }
+
+    @Override
+    public GenDriverAPI4Modbus createUdpTransport(String ipAddress, int port)
+    {
+        return create(udpChannel(ipAddress, port), factory -> factory.createUdpTransport(ipAddress, port));
+    }
+
+    /**
+     * @param ipAddress
+     *        address of the device
+     * @param port
+     *        the port
+     * @return the name of the Modbus TCP channel, e.g. {@code tcp:192.168.1.10:502}
+     */
+    public static String tcpChannel(String ipAddress, int port)
+    {
+        return "tcp:" + ipAddress + ':' + port;
+    }
+
+    /**
+     * @param ipAddress
+     *        address of the device
+     * @param port
+     *        the port
+     * @return the name of the Modbus UDP channel, e.g. {@code udp:192.168.1.10:502}
+     */
+    public static String udpChannel(String ipAddress, int port)
+    {
+        return "udp:" + ipAddress + ':' + port;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Float64Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.EidDataPoint.RegisterType;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec.WordOrder;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * A data point that has been resolved once by a {@link DataPointResolver}.
+ * <p>
+ * For Modbus data points the handle holds the transport address, register type, quantity and conversion
+ * taken from the EID, so reads and writes go straight to the Modbus transport without any name lookup.
+ * All other data points are accessed through the device API, using the names of the data point.
+ * <p>
+ * Numeric values are exchanged as {@code double}: enums as ordinal, bitmaps as bit mask, with the
+ * scaling factor of the EID applied.
+ */
+public final class DataPointHandle
+{
+    private final EidDataPoint dataPoint;
+    private final GenDeviceApi device;
+    private final GenDriverAPI4Modbus modbusTransport;
+    private final RegisterType registerType;
+    private final int transportAddress;
+    private final int quantity;
+    private final WordOrder wordOrder;
+
+    DataPointHandle(EidDataPoint dataPoint,
+                    GenDeviceApi device,
+                    GenDriverAPI4Modbus modbusTransport,
+                    int transportAddress,
+                    WordOrder wordOrder)
+    {
+        this.dataPoint = dataPoint;
+        this.device = device;
+        this.modbusTransport = modbusTransport;
+        this.registerType = dataPoint.getRegisterType();
+        this.transportAddress = transportAddress;
+        this.quantity = modbusTransport != null ? dataPoint.getNumberOfRegisters() : 0;
+        this.wordOrder = wordOrder;
+    }
+
+    /**
+     * @return the data point description from the EID
+     */
+    public EidDataPoint getDataPoint()
+    {
+        return dataPoint;
+    }
+
+    /**
+     * @return {@code true} if the data point is accessed directly on the Modbus transport
+     */
+    public boolean isDirect()
+    {
+        return modbusTransport != null;
+    }
+
+    /**
+     * Reads the numeric value of the data point.
+     *
+     * @return the value
+     * @throws Exception
+     *         if the value could not be read or has no numeric representation
+     */
+    public double readDouble() throws Exception
+    {
+        if (modbusTransport == null)
+        {
+            return device.getVal(dataPoint.getProfileName(), dataPoint.getDataPointName()).getFloat64();
+        }
+
+        switch (registerType)
+        {
+            case COIL:
+                return ModbusRegisterCodec.decode(modbusTransport.ReadCoils(transportAddress, 1), 0);
+            case DISCRETE_INPUT:
+                return ModbusRegisterCodec.decode(modbusTransport.ReadDiscreteInputs(transportAddress, 1), 0);
+            case INPUT_REGISTER:
+                return ModbusRegisterCodec.decode(dataPoint, modbusTransport.ReadInputRegisters(transportAddress, quantity), 0, wordOrder);
+            default:
+                return ModbusRegisterCodec.decode(dataPoint, modbusTransport.ReadHoldingRegisters(transportAddress, quantity), 0, wordOrder);
+        }
+    }
+
+    /**
+     * Reads the value of the data point. Direct data points return their numeric value.
+     *
+     * @return the value
+     * @throws Exception
+     *         if the value could not be read
+     */
+    public Value read() throws Exception
+    {
+        if (modbusTransport == null)
+        {
+            return device.getVal(dataPoint.getProfileName(), dataPoint.getDataPointName());
+        }
+        return Float64Value.of(readDouble());
+    }
+
+    /**
+     * Writes a numeric value to the data point.
+     *
+     * @param value
+     *        the value
+     * @throws IllegalArgumentException
+     *         if the value is out of range of the Modbus data type
+     * @throws Exception
+     *         if the value could not be written
+     */
+    public void write(double value) throws Exception
+    {
+        if (modbusTransport == null)
+        {
+            device.setVal(dataPoint.getProfileName(), dataPoint.getDataPointName(), Float64Value.of(value));
+            return;
+        }
+
+        switch (registerType)
+        {
+            case COIL:
+                modbusTransport.WriteSingleCoil(transportAddress, value != 0.0);
+                break;
+            case HOLD_REGISTER:
+                final var registers = new int[quantity];
+                ModbusRegisterCodec.encode(dataPoint, value, wordOrder, registers, 0);
+                if (quantity == 1)
+                {
+                    modbusTransport.WriteSingleRegister(transportAddress, registers[0]);
+                }
+                else
+                {
+                    modbusTransport.WriteMultipleRegisters(transportAddress, registers);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Data point is not writable: " + dataPoint.getKey());
+        }
+    }
+
+    /**
+     * Writes a value to the data point through the device API.
+     *
+     * @param value
+     *        the value
+     * @throws Exception
+     *         if the value could not be written
+     */
+    public void write(Value value) throws Exception
+    {
+        device.setVal(dataPoint.getProfileName(), dataPoint.getDataPointName(), value);
+    }
+
+    @Override
+    public String toString()
+    {
+        return isDirect()
+                ? dataPoint.getKey() + " -> " + registerType + '@' + transportAddress + '[' + quantity + ']'
+                : dataPoint.getKey() + " -> device API";
+    }
+}
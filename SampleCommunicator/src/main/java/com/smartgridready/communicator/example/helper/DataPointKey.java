@@ -0,0 +1,87 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.Objects;
+
+/**
+ * Immutable key of a data point, consisting of the functional profile name and the data point name.
+ */
+public final class DataPointKey
+{
+    private final String profileName;
+    private final String dataPointName;
+
+    private DataPointKey(String profileName, String dataPointName)
+    {
+        this.profileName = Objects.requireNonNull(profileName);
+        this.dataPointName = Objects.requireNonNull(dataPointName);
+    }
+
+    /**
+     * Creates a data point key.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return the key
+     */
+    public static DataPointKey of(String profileName, String dataPointName)
+    {
+        return new DataPointKey(profileName, dataPointName);
+    }
+
+    public String getProfileName()
+    {
+        return profileName;
+    }
+
+    public String getDataPointName()
+    {
+        return dataPointName;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof DataPointKey))
+        {
+            return false;
+        }
+        final var other = (DataPointKey) obj;
+        return profileName.equals(other.profileName) && dataPointName.equals(other.dataPointName);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * profileName.hashCode() + dataPointName.hashCode();
+    }
+
+    @Override
+    public String toString()
+    {
+        return profileName + '/' + dataPointName;
+    }
+}
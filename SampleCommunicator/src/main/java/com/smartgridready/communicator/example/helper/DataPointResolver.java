@@ -0,0 +1,105 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.Objects;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec.WordOrder;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * Resolves (functional profile, data point) name pairs once into {@link DataPointHandle}s.
+ * <p>
+ * Resolving looks up the data point in the EID index and precomputes its transport address and conversion.
+ * Resolve the handles at startup and keep them, instead of passing names to {@code getVal()} and
+ * {@code setVal()} on every call.
+ * <p>
+ * The Modbus transport must be the one used by the device, and callers must not access the device
+ * concurrently through a handle and the device API.
+ */
+public class DataPointResolver
+{
+    private final GenDeviceApi device;
+    private final EidDataPointIndex index;
+    private final GenDriverAPI4Modbus modbusTransport;
+    private final WordOrder wordOrder;
+
+    /**
+     * Constructor.
+     *
+     * @param device
+     *        the device
+     * @param index
+     *        the data point index of the device EID
+     * @param modbusTransport
+     *        the Modbus transport used by the device, {@code null} to access all data points via the device API
+     */
+    public DataPointResolver(GenDeviceApi device, EidDataPointIndex index, GenDriverAPI4Modbus modbusTransport)
+    {
+        this.device = Objects.requireNonNull(device);
+        this.index = Objects.requireNonNull(index);
+        this.modbusTransport = modbusTransport;
+        this.wordOrder = WordOrder.fromEid(index.getBitOrder());
+    }
+
+    /**
+     * Resolves a data point.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return the handle
+     * @throws IllegalArgumentException
+     *         if the data point does not exist in the EID
+     */
+    public DataPointHandle resolve(String profileName, String dataPointName)
+    {
+        return resolve(index.get(profileName, dataPointName));
+    }
+
+    /**
+     * Resolves a data point.
+     *
+     * @param key
+     *        the data point
+     * @return the handle
+     * @throws IllegalArgumentException
+     *         if the data point does not exist in the EID
+     */
+    public DataPointHandle resolve(DataPointKey key)
+    {
+        return resolve(index.get(key));
+    }
+
+    private DataPointHandle resolve(EidDataPoint dataPoint)
+    {
+        // a data point with fewer registers than its data type is left to the driver
+        if (modbusTransport == null
+                || !ModbusRegisterCodec.isSupported(dataPoint)
+                || dataPoint.getNumberOfRegisters() < ModbusRegisterCodec.registerCount(dataPoint))
+        {
+            return new DataPointHandle(dataPoint, device, null, -1, wordOrder);
+        }
+
+        final var transportAddress = dataPoint.getAddress() - (index.isFirstRegisterAddressIsOne() ? 1 : 0);
+        return new DataPointHandle(dataPoint, device, modbusTransport, transportAddress, wordOrder);
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable description of a single data point, as defined in an EID.
+ * <p>
+ * Besides the generic attributes of the data point, it contains the transport specific configuration
+ * needed to access the data point without name resolution, i.e. the Modbus register layout or the
+ * REST read request.
+ *
+ * @see EidDataPointIndex
+ */
+public final class EidDataPoint
+{
+    /**
+     * Modbus register types as defined in the EID.
+     */
+    public enum RegisterType
+    {
+        HOLD_REGISTER("HoldRegister"),
+        INPUT_REGISTER("InputRegister"),
+        COIL("Coil"),
+        DISCRETE_INPUT("DiscreteInput");
+
+        private final String eidName;
+
+        RegisterType(String eidName)
+        {
+            this.eidName = eidName;
+        }
+
+        /**
+         * @return {@code true} for coils and discrete inputs
+         */
+        public boolean isBit()
+        {
+            return this == COIL || this == DISCRETE_INPUT;
+        }
+
+        static RegisterType fromEid(String eidName)
+        {
+            for (var registerType : values())
+            {
+                if (registerType.eidName.equals(eidName))
+                {
+                    return registerType;
+                }
+            }
+            throw new IllegalArgumentException("Unknown register type: " + eidName);
+        }
+    }
+
+    private final int index;
+    private final DataPointKey key;
+    private final String dataType;
+    private final String unit;
+    private final String dataDirection;
+    private final double minimumValue;
+    private final double maximumValue;
+    private final Map<String, Integer> enumOrdinals;
+    private final Map<String, Long> bitmapMasks;
+
+    private final RegisterType registerType;
+    private final int address;
+    private final int numberOfRegisters;
+    private final String modbusDataType;
+    private final double scalingFactor;
+
+    private final String restRequestMethod;
+    private final String restRequestPath;
+
+    private EidDataPoint(Builder builder)
+    {
+        this.index = builder.index;
+        this.key = DataPointKey.of(builder.profileName, builder.dataPointName);
+        this.dataType = builder.dataType;
+        this.unit = builder.unit;
+        this.dataDirection = builder.dataDirection;
+        this.minimumValue = builder.minimumValue;
+        this.maximumValue = builder.maximumValue;
+        this.enumOrdinals = Collections.unmodifiableMap(new LinkedHashMap<>(builder.enumOrdinals));
+        this.bitmapMasks = Collections.unmodifiableMap(new LinkedHashMap<>(builder.bitmapMasks));
+        this.registerType = builder.registerType;
+        this.address = builder.address;
+        this.numberOfRegisters = builder.numberOfRegisters;
+        this.modbusDataType = builder.modbusDataType;
+        this.scalingFactor = builder.scalingFactor;
+        this.restRequestMethod = builder.restRequestMethod;
+        this.restRequestPath = builder.restRequestPath;
+    }
+
+    /**
+     * @return position of the data point within the EID, starting at {@code 0}
+     */
+    public int getIndex()
+    {
+        return index;
+    }
+
+    public DataPointKey getKey()
+    {
+        return key;
+    }
+
+    public String getProfileName()
+    {
+        return key.getProfileName();
+    }
+
+    public String getDataPointName()
+    {
+        return key.getDataPointName();
+    }
+
+    /**
+     * @return generic data type, e.g. {@code float64}, {@code enum} or {@code bitmap}
+     */
+    public String getDataType()
+    {
+        return dataType;
+    }
+
+    public String getUnit()
+    {
+        return unit;
+    }
+
+    /**
+     * @return data direction, e.g. {@code R}, {@code W} or {@code RW}
+     */
+    public String getDataDirection()
+    {
+        return dataDirection;
+    }
+
+    /**
+     * @return minimum value, {@code NaN} if not defined
+     */
+    public double getMinimumValue()
+    {
+        return minimumValue;
+    }
+
+    /**
+     * @return maximum value, {@code NaN} if not defined
+     */
+    public double getMaximumValue()
+    {
+        return maximumValue;
+    }
+
+    /**
+     * @return enum literals and their ordinals in EID order, empty if the data point is no enum
+     */
+    public Map<String, Integer> getEnumOrdinals()
+    {
+        return enumOrdinals;
+    }
+
+    /**
+     * @return bitmap literals and their masks in EID order, empty if the data point is no bitmap
+     */
+    public Map<String, Long> getBitmapMasks()
+    {
+        return bitmapMasks;
+    }
+
+    /**
+     * @return {@code true} if the data point has a Modbus configuration
+     */
+    public boolean isModbus()
+    {
+        return registerType != null;
+    }
+
+    /**
+     * @return Modbus register type, {@code null} if the data point has no Modbus configuration
+     */
+    public RegisterType getRegisterType()
+    {
+        return registerType;
+    }
+
+    /**
+     * @return Modbus address as defined in the EID
+     */
+    public int getAddress()
+    {
+        return address;
+    }
+
+    public int getNumberOfRegisters()
+    {
+        return numberOfRegisters;
+    }
+
+    /**
+     * @return Modbus data type, e.g. {@code float32} or {@code int16U}
+     */
+    public String getModbusDataType()
+    {
+        return modbusDataType;
+    }
+
+    /**
+     * @return factor applied to the raw Modbus value, {@code multiplicator * 10^powerof10}
+     */
+    public double getScalingFactor()
+    {
+        return scalingFactor;
+    }
+
+    /**
+     * @return {@code true} if the data point has a REST read service call
+     */
+    public boolean isRestApi()
+    {
+        return restRequestPath != null;
+    }
+
+    public String getRestRequestMethod()
+    {
+        return restRequestMethod;
+    }
+
+    public String getRestRequestPath()
+    {
+        return restRequestPath;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "EidDataPoint [" + key + ", dataType=" + dataType
+                + (isModbus() ? ", " + registerType + "@" + address + "x" + numberOfRegisters + ", " + modbusDataType : "")
+                + (isRestApi() ? ", " + restRequestMethod + " " + restRequestPath : "") + "]";
+    }
+
+    /**
+     * Builder used by {@link EidDataPointIndex}.
+     */
+    static final class Builder
+    {
+        private int index;
+        private String profileName;
+        private String dataPointName;
+        private String dataType;
+        private String unit;
+        private String dataDirection;
+        private double minimumValue = Double.NaN;
+        private double maximumValue = Double.NaN;
+        private final Map<String, Integer> enumOrdinals = new LinkedHashMap<>();
+        private final Map<String, Long> bitmapMasks = new LinkedHashMap<>();
+        private RegisterType registerType;
+        private int address;
+        private int numberOfRegisters;
+        private String modbusDataType;
+        private double scalingFactor = 1.0;
+        private String restRequestMethod;
+        private String restRequestPath;
+
+        Builder index(int index)
+        {
+            this.index = index;
+            return this;
+        }
+
+        Builder name(String profileName, String dataPointName)
+        {
+            this.profileName = profileName;
+            this.dataPointName = dataPointName;
+            return this;
+        }
+
+        Builder dataType(String dataType, String unit, String dataDirection)
+        {
+            this.dataType = dataType;
+            this.unit = unit;
+            this.dataDirection = dataDirection;
+            return this;
+        }
+
+        Builder range(double minimumValue, double maximumValue)
+        {
+            this.minimumValue = minimumValue;
+            this.maximumValue = maximumValue;
+            return this;
+        }
+
+        Builder enumEntry(String literal, int ordinal)
+        {
+            enumOrdinals.put(literal, ordinal);
+            return this;
+        }
+
+        Builder bitmapEntry(String literal, long mask)
+        {
+            bitmapMasks.put(literal, mask);
+            return this;
+        }
+
+        Builder modbus(RegisterType registerType, int address, int numberOfRegisters, String modbusDataType, double scalingFactor)
+        {
+            this.registerType = registerType;
+            this.address = address;
+            this.numberOfRegisters = numberOfRegisters;
+            this.modbusDataType = modbusDataType;
+            this.scalingFactor = scalingFactor;
+            return this;
+        }
+
+        Builder restApi(String requestMethod, String requestPath)
+        {
+            this.restRequestMethod = requestMethod;
+            this.restRequestPath = requestPath;
+            return this;
+        }
+
+        EidDataPoint build()
+        {
+            return new EidDataPoint(this);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Index of all data points of an EID, parsed once from the EID-XML.
+ * <p>
+ * The commhandler resolves functional profile and data point names on each {@code getVal()}/{@code setVal()}
+ * call. This index resolves them once into {@link EidDataPoint} instances, which hold the transport specific
+ * configuration (e.g. Modbus register type, address and data type) and can be used to plan and execute
+ * transport calls directly.
+ */
+public final class EidDataPointIndex
+{
+    private final String deviceName;
+    private final boolean firstRegisterAddressIsOne;
+    private final String bitOrder;
+    private final List<EidDataPoint> dataPoints;
+    private final Map<DataPointKey, EidDataPoint> dataPointsByKey;
+
+    private EidDataPointIndex(String deviceName, boolean firstRegisterAddressIsOne, String bitOrder, List<EidDataPoint> dataPoints)
+    {
+        this.deviceName = deviceName;
+        this.firstRegisterAddressIsOne = firstRegisterAddressIsOne;
+        this.bitOrder = bitOrder;
+        this.dataPoints = Collections.unmodifiableList(dataPoints);
+
+        final var byKey = new HashMap<DataPointKey, EidDataPoint>();
+        dataPoints.forEach(dataPoint -> byKey.put(dataPoint.getKey(), dataPoint));
+        this.dataPointsByKey = Collections.unmodifiableMap(byKey);
+    }
+
+    /**
+     * Loads the index from an EID-XML file on the class path.
+     *
+     * @param fileName
+     *        name of the EID-XML file
+     * @return the index
+     * @throws IOException
+     *         if the file cannot be read or parsed
+     */
+    public static EidDataPointIndex load(String fileName) throws IOException
+    {
+        try (var eid = EidLoader.getDeviceDescriptionInputStream(fileName))
+        {
+            return load(eid);
+        }
+    }
+
+    /**
+     * Loads the index from an EID-XML input stream.
+     *
+     * @param eid
+     *        the EID-XML content, not closed by this method
+     * @return the index
+     * @throws IOException
+     *         if the stream cannot be read or parsed
+     */
+    public static EidDataPointIndex load(InputStream eid) throws IOException
+    {
+        final Element root;
+
+        try
+        {
+            final var factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+            factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+            root = factory.newDocumentBuilder().parse(eid).getDocumentElement();
+        }
+        catch (ParserConfigurationException | SAXException e)
+        {
+            throw new IOException("Unable to parse device description", e);
+        }
+
+        final var modbusDescription = findFirst(root, "modbusInterfaceDescription");
+        final var firstRegisterAddressIsOne = modbusDescription != null
+                && Boolean.parseBoolean(text(modbusDescription, "firstRegisterAddressIsOne"));
+        final var bitOrder = modbusDescription != null ? text(modbusDescription, "bitOrder") : null;
+
+        final var dataPoints = new ArrayList<EidDataPoint>();
+        final var elements = root.getElementsByTagName("dataPointListElement");
+
+        for (int i = 0; i < elements.getLength(); i++)
+        {
+            dataPoints.add(parseDataPoint(dataPoints.size(), (Element) elements.item(i)));
+        }
+
+        return new EidDataPointIndex(text(root, "deviceName"), firstRegisterAddressIsOne, bitOrder, dataPoints);
+    }
+
+    /**
+     * Returns the data point with the given names.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return the data point
+     * @throws IllegalArgumentException
+     *         if the EID does not contain the data point
+     */
+    public EidDataPoint get(String profileName, String dataPointName)
+    {
+        return get(DataPointKey.of(profileName, dataPointName));
+    }
+
+    /**
+     * Returns the data point with the given key.
+     *
+     * @param key
+     *        key of the data point
+     * @return the data point
+     * @throws IllegalArgumentException
+     *         if the EID does not contain the data point
+     */
+    public EidDataPoint get(DataPointKey key)
+    {
+        final var dataPoint = dataPointsByKey.get(key);
+
+        if (dataPoint == null)
+        {
+            throw new IllegalArgumentException("Data point not found in EID of '" + deviceName + "': " + key);
+        }
+        return dataPoint;
+    }
+
+    /**
+     * @return all data points in EID order
+     */
+    public List<EidDataPoint> getDataPoints()
+    {
+        return dataPoints;
+    }
+
+    public String getDeviceName()
+    {
+        return deviceName;
+    }
+
+    /**
+     * @return {@code true} if Modbus addresses in the EID start at {@code 1}
+     */
+    public boolean isFirstRegisterAddressIsOne()
+    {
+        return firstRegisterAddressIsOne;
+    }
+
+    /**
+     * @return Modbus bit order as defined in the EID, {@code null} if not defined
+     */
+    public String getBitOrder()
+    {
+        return bitOrder;
+    }
+
+    private static EidDataPoint parseDataPoint(int index, Element element)
+    {
+        final var builder = new EidDataPoint.Builder().index(index);
+
+        final var profileElement = (Element) element.getParentNode().getParentNode();
+        final var dataPoint = child(element, "dataPoint");
+        builder.name(text(child(profileElement, "functionalProfile"), "functionalProfileName"), text(dataPoint, "dataPointName"));
+
+        final var dataType = firstChild(child(dataPoint, "dataType"));
+        builder.dataType(dataType != null ? dataType.getTagName() : null, text(dataPoint, "unit"), text(dataPoint, "dataDirection"));
+        builder.range(parseDouble(text(dataPoint, "minimumValue")), parseDouble(text(dataPoint, "maximumValue")));
+
+        if (dataType != null)
+        {
+            forEachChild(dataType, "enumEntry", entry ->
+                builder.enumEntry(text(entry, "literal"), Integer.parseInt(text(entry, "ordinal"))));
+            forEachChild(dataType, "bitmapEntry", entry ->
+                builder.bitmapEntry(text(entry, "literal"), Long.parseUnsignedLong(text(entry, "hexMask"), 16)));
+        }
+
+        final var modbus = child(element, "modbusDataPointConfiguration");
+        if (modbus != null)
+        {
+            final var modbusDataType = firstChild(child(modbus, "modbusDataType"));
+            final var scaling = child(child(element, "modbusAttributes"), "scalingFactor");
+            var scalingFactor = 1.0;
+
+            if (scaling != null)
+            {
+                final var multiplicator = parseDouble(text(scaling, "multiplicator"));
+                final var powerOf10 = parseDouble(text(scaling, "powerof10"));
+                scalingFactor = (Double.isNaN(multiplicator) ? 1.0 : multiplicator)
+                        * Math.pow(10.0, Double.isNaN(powerOf10) ? 0.0 : powerOf10);
+            }
+
+            builder.modbus(EidDataPoint.RegisterType.fromEid(text(modbus, "registerType")),
+                           Integer.parseInt(text(modbus, "address")),
+                           Integer.parseInt(text(modbus, "numberOfRegisters")),
+                           modbusDataType != null ? modbusDataType.getTagName() : null,
+                           scalingFactor);
+        }
+
+        final var restRead = child(child(element, "restApiDataPointConfiguration"), "restApiReadServiceCall");
+        if (restRead != null)
+        {
+            builder.restApi(text(restRead, "requestMethod"), text(restRead, "requestPath"));
+        }
+
+        return builder.build();
+    }
+
+    private static Element findFirst(Element root, String tagName)
+    {
+        final var nodes = root.getElementsByTagName(tagName);
+        return nodes.getLength() > 0 ? (Element) nodes.item(0) : null;
+    }
+
+    private static Element child(Element parent, String tagName)
+    {
+        if (parent == null)
+        {
+            return null;
+        }
+
+        for (var node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+        {
+            if (node.getNodeType() == Node.ELEMENT_NODE && tagName.equals(node.getNodeName()))
+            {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static Element firstChild(Element parent)
+    {
+        if (parent == null)
+        {
+            return null;
+        }
+
+        for (var node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+        {
+            if (node.getNodeType() == Node.ELEMENT_NODE)
+            {
+                return (Element) node;
+            }
+        }
+        return null;
+    }
+
+    private static void forEachChild(Element parent, String tagName, Consumer<Element> consumer)
+    {
+        for (var node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+        {
+            if (node.getNodeType() == Node.ELEMENT_NODE && tagName.equals(node.getNodeName()))
+            {
+                consumer.accept((Element) node);
+            }
+        }
+    }
+
+    private static String text(Element parent, String tagName)
+    {
+        final var element = child(parent, tagName);
+        return element != null ? element.getTextContent().trim() : null;
+    }
+
+    private static double parseDouble(String text)
+    {
+        return text != null && !text.isEmpty() ? Double.parseDouble(text) : Double.NaN;
+    }
+}
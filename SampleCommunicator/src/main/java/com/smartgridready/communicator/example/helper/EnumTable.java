@@ -0,0 +1,157 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Ordinal-indexed table of the literals of an enum data point, precomputed once from the EID.
+ * <p>
+ * Looking up the literal of an ordinal read from the device is an array access. Ordinals far beyond the number
+ * of literals are kept in a map instead. Resolve the ordinals of the literals you need to write once with
+ * {@link #ordinalOf(String)}.
+ */
+public final class EnumTable
+{
+    private static final int MIN_ARRAY_LENGTH = 256;
+
+    private final DataPointKey key;
+    private final String[] literalOfOrdinal;
+    private final Map<Integer, String> sparseLiteralOfOrdinal = new TreeMap<>();
+    private final Map<String, Integer> ordinalOfLiteral;
+
+    private EnumTable(DataPointKey key, Map<String, Integer> enumOrdinals)
+    {
+        this.key = key;
+        this.ordinalOfLiteral = new HashMap<>(enumOrdinals);
+
+        var maxOrdinal = -1;
+        for (var ordinal : enumOrdinals.values())
+        {
+            if (ordinal < 0)
+            {
+                throw new IllegalArgumentException("Negative enum ordinal " + ordinal + " of " + key);
+            }
+            maxOrdinal = Math.max(maxOrdinal, ordinal);
+        }
+
+        // ordinals like 0xFFFF or flag values would make the array huge, those are looked up in the sparse map
+        final var arrayLength = Math.min(maxOrdinal, Math.max(MIN_ARRAY_LENGTH, 4 * enumOrdinals.size()) - 1) + 1;
+        this.literalOfOrdinal = new String[arrayLength];
+        enumOrdinals.forEach((literal, ordinal) -> {
+            if (ordinal < literalOfOrdinal.length)
+            {
+                literalOfOrdinal[ordinal] = literal;
+            }
+            else
+            {
+                sparseLiteralOfOrdinal.put(ordinal, literal);
+            }
+        });
+    }
+
+    /**
+     * Creates the table of an enum data point.
+     *
+     * @param dataPoint
+     *        the data point
+     * @return the table
+     * @throws IllegalArgumentException
+     *         if the data point is no enum
+     */
+    public static EnumTable of(EidDataPoint dataPoint)
+    {
+        if (dataPoint.getEnumOrdinals().isEmpty())
+        {
+            throw new IllegalArgumentException("Data point is no enum: " + dataPoint.getKey());
+        }
+        return new EnumTable(dataPoint.getKey(), dataPoint.getEnumOrdinals());
+    }
+
+    /**
+     * @return the data point of this table
+     */
+    public DataPointKey getKey()
+    {
+        return key;
+    }
+
+    /**
+     * @param ordinal
+     *        the ordinal
+     * @return {@code true} if the ordinal is defined in the EID
+     */
+    public boolean isDefined(int ordinal)
+    {
+        return getLiteral(ordinal) != null;
+    }
+
+    /**
+     * @param ordinal
+     *        the ordinal
+     * @return the literal, {@code null} if the ordinal is not defined in the EID
+     */
+    public String getLiteral(int ordinal)
+    {
+        if (ordinal >= 0 && ordinal < literalOfOrdinal.length)
+        {
+            return literalOfOrdinal[ordinal];
+        }
+        return ordinal >= 0 && !sparseLiteralOfOrdinal.isEmpty() ? sparseLiteralOfOrdinal.get(ordinal) : null;
+    }
+
+    /**
+     * @param literal
+     *        the literal as defined in the EID
+     * @return the ordinal
+     * @throws IllegalArgumentException
+     *         if the literal is not defined
+     */
+    public int ordinalOf(String literal)
+    {
+        final var ordinal = ordinalOfLiteral.get(literal);
+        if (ordinal == null)
+        {
+            throw new IllegalArgumentException("Enum literal '" + literal + "' not defined for " + key);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Builds a map view of all literals and their ordinals, in ordinal order.
+     *
+     * @return a new, modifiable map
+     */
+    public Map<String, Integer> toMap()
+    {
+        final var map = new LinkedHashMap<String, Integer>();
+        for (int ordinal = 0; ordinal < literalOfOrdinal.length; ordinal++)
+        {
+            if (literalOfOrdinal[ordinal] != null)
+            {
+                map.put(literalOfOrdinal[ordinal], ordinal);
+            }
+        }
+        sparseLiteralOfOrdinal.forEach((ordinal, literal) -> map.put(literal, ordinal));
+        return map;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Mock for a {@code GenDriverAPI4Modbus} of a slave device on a serial RS-485 line, with a latency model.
+ * <p>
+ * Each transaction takes the transmission time of the request and response frames at the baud rate of the
+ * line (11 bits per character), plus the response delay of the slave. Several mocks share a {@link SerialLine},
+ * which detects overlapping transactions (collisions on a real line), measures the gap between frames and
+ * logs the order of the transactions.
+ * <p>
+ * Register reads return the values of {@link GenDriverAPI4ModbusMock}, bit reads return {@code false}.
+ */
+public class LatencyModbusMock extends GenDriverAPI4ModbusMock
+{
+    private static final int BITS_PER_CHAR = 11;
+
+    /** Request frame size of read and single write functions: address, function, 4 data bytes, CRC. */
+    private static final int REQUEST_FRAME_BYTES = 8;
+
+    /** Response frame overhead: address, function, byte count, CRC. */
+    private static final int RESPONSE_OVERHEAD_BYTES = 5;
+
+    private final SerialLine line;
+    private final String slaveName;
+    private final long responseDelayNs;
+
+    /**
+     * A serial line shared by several slaves.
+     */
+    public static final class SerialLine
+    {
+        private final int baudRate;
+        private final AtomicInteger activeTransactions = new AtomicInteger();
+        private final AtomicInteger collisionCount = new AtomicInteger();
+        private final AtomicLong lastFrameEndNs = new AtomicLong(-1);
+        private final AtomicLong minGapNs = new AtomicLong(Long.MAX_VALUE);
+        private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+        /**
+         * Constructor.
+         *
+         * @param baudRate
+         *        the baud rate of the line
+         */
+        public SerialLine(int baudRate)
+        {
+            this.baudRate = baudRate;
+        }
+
+        /**
+         * @return the baud rate of the line
+         */
+        public int getBaudRate()
+        {
+            return baudRate;
+        }
+
+        /**
+         * @return number of transactions that started while another transaction was active
+         */
+        public int getCollisionCount()
+        {
+            return collisionCount.get();
+        }
+
+        /**
+         * @return shortest gap between the end of a transaction and the start of the next one,
+         *         {@code Long.MAX_VALUE} if less than two transactions happened
+         */
+        public long getMinGapNs()
+        {
+            return minGapNs.get();
+        }
+
+        /**
+         * @return the transactions in order of execution, as {@code slave:function}
+         */
+        public List<String> getLog()
+        {
+            synchronized (log)
+            {
+                return new ArrayList<>(log);
+            }
+        }
+
+        private void transmit(String slaveName, String function, int bytes, long responseDelayNs)
+        {
+            final var startNs = System.nanoTime();
+            if (activeTransactions.incrementAndGet() > 1)
+            {
+                collisionCount.incrementAndGet();
+            }
+
+            final var lastEnd = lastFrameEndNs.get();
+            if (lastEnd >= 0)
+            {
+                minGapNs.accumulateAndGet(startNs - lastEnd, Math::min);
+            }
+            log.add(slaveName + ':' + function);
+
+            final var durationNs = TimeUnit.SECONDS.toNanos(bytes * (long) BITS_PER_CHAR) / baudRate + responseDelayNs;
+            final var endNs = startNs + durationNs;
+            for (var remaining = durationNs; remaining > 0; remaining = endNs - System.nanoTime())
+            {
+                LockSupport.parkNanos(remaining);
+            }
+
+            lastFrameEndNs.set(System.nanoTime());
+            activeTransactions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param line
+     *        the serial line the slave is attached to
+     * @param slaveName
+     *        name of the slave, used in the transaction log of the line
+     * @param responseDelayMs
+     *        time the slave needs to respond to a request
+     */
+    public LatencyModbusMock(SerialLine line, String slaveName, long responseDelayMs)
+    {
+        super(true);
+        this.line = line;
+        this.slaveName = slaveName;
+        this.responseDelayNs = TimeUnit.MILLISECONDS.toNanos(responseDelayMs);
+    }
+
+    @Override
+    public int[] ReadInputRegisters(int startingAddress, int quantity)
+    {
+        line.transmit(slaveName, "ReadInputRegisters", REQUEST_FRAME_BYTES + RESPONSE_OVERHEAD_BYTES + 2 * quantity, responseDelayNs);
+        return super.ReadInputRegisters(startingAddress, quantity);
+    }
+
+    @Override
+    public int[] ReadHoldingRegisters(int startingAddress, int quantity)
+    {
+        line.transmit(slaveName, "ReadHoldingRegisters", REQUEST_FRAME_BYTES + RESPONSE_OVERHEAD_BYTES + 2 * quantity, responseDelayNs);
+        return super.ReadHoldingRegisters(startingAddress, quantity);
+    }
+
+    @Override
+    public boolean[] ReadDiscreteInputs(int startingAddress, int quantity)
+    {
+        line.transmit(slaveName, "ReadDiscreteInputs", REQUEST_FRAME_BYTES + RESPONSE_OVERHEAD_BYTES + (quantity + 7) / 8, responseDelayNs);
+        return new boolean[quantity];
+    }
+
+    @Override
+    public boolean[] ReadCoils(int startingAddress, int quantity)
+    {
+        line.transmit(slaveName, "ReadCoils", REQUEST_FRAME_BYTES + RESPONSE_OVERHEAD_BYTES + (quantity + 7) / 8, responseDelayNs);
+        return new boolean[quantity];
+    }
+
+    @Override
+    public void WriteMultipleCoils(int startingAdress, boolean[] values)
+    {
+        line.transmit(slaveName, "WriteMultipleCoils", 2 * REQUEST_FRAME_BYTES + 1 + (values.length + 7) / 8, responseDelayNs);
+    }
+
+    @Override
+    public void WriteSingleCoil(int startingAdress, boolean value)
+    {
+        line.transmit(slaveName, "WriteSingleCoil", 2 * REQUEST_FRAME_BYTES, responseDelayNs);
+    }
+
+    @Override
+    public void WriteMultipleRegisters(int startingAdress, int[] values)
+    {
+        line.transmit(slaveName, "WriteMultipleRegisters", 2 * REQUEST_FRAME_BYTES + 1 + 2 * values.length, responseDelayNs);
+    }
+
+    @Override
+    public void WriteSingleRegister(int startingAdress, int value)
+    {
+        line.transmit(slaveName, "WriteSingleRegister", 2 * REQUEST_FRAME_BYTES, responseDelayNs);
+    }
+}
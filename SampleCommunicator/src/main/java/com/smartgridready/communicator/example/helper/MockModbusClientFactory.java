@@ -18,6 +18,8 @@
 
 package com.smartgridready.communicator.example.helper;
 
+import java.util.function.Supplier;
+
 import com.smartgridready.driver.api.modbus.DataBits;
 import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
 import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
@@ -25,11 +27,12 @@ import com.smartgridready.driver.api.modbus.Parity;
 import com.smartgridready.driver.api.modbus.StopBits;
 
 /**
- * Mock for a {@code ModbusClientFactory} that returns {@link GenDriverAPI4ModbusMock}.
+ * Mock for a {@code ModbusClientFactory} that returns {@link GenDriverAPI4ModbusMock} or any other
+ * mocked transport provided by a supplier.
  */
 public class MockModbusClientFactory implements GenDriverAPI4ModbusFactory
 {
-    private final boolean returnInteger;
+    private final Supplier<GenDriverAPI4Modbus> transportSupplier;
     
     /**
      * Constructor.
@@ -40,25 +43,36 @@ public class MockModbusClientFactory implements GenDriverAPI4ModbusFactory
      */
     public MockModbusClientFactory(boolean returnInteger)
     {
-        this.returnInteger = returnInteger;
+        this(() -> new GenDriverAPI4ModbusMock(returnInteger));
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param transportSupplier
+     *        creates a new mocked transport for each call of a {@code create...Transport()} method
+     */
+    public MockModbusClientFactory(Supplier<GenDriverAPI4Modbus> transportSupplier)
+    {
+        this.transportSupplier = transportSupplier;
     }
     
     @Override
     public GenDriverAPI4Modbus createRtuTransport(String comPort)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 
     @Override
     public GenDriverAPI4Modbus createRtuTransport(String comPort, int baudRate)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 
     @Override
     public GenDriverAPI4Modbus createRtuTransport(String comPort, int baudRate, Parity parity)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 
     @Override
@@ -67,7 +81,7 @@ public class MockModbusClientFactory implements GenDriverAPI4ModbusFactory
                                                   Parity parity,
                                                   DataBits dataBits)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 
     @Override
@@ -77,30 +91,30 @@ public class MockModbusClientFactory implements GenDriverAPI4ModbusFactory
                                                   DataBits dataBits,
                                                   StopBits stopBits)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 
     @Override
     public GenDriverAPI4Modbus createTcpTransport(String ipAddress)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 
     @Override
     public GenDriverAPI4Modbus createTcpTransport(String ipAddress, int port)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 
     @Override
     public GenDriverAPI4Modbus createUdpTransport(String ipAddress)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 
     @Override
     public GenDriverAPI4Modbus createUdpTransport(String ipAddress, int port)
     {
-        return new GenDriverAPI4ModbusMock(returnInteger);
+        return transportSupplier.get();
     }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.Set;
+
+/**
+ * Utility class to decode Modbus register words into values and encode values into register words,
+ * according to the Modbus data type and scaling factor of an {@link EidDataPoint}.
+ * <p>
+ * Registers are passed as {@code int[]} containing one 16-bit word per element, as returned by the
+ * {@code GenDriverAPI4Modbus} read methods.
+ */
+public final class ModbusRegisterCodec
+{
+    private static final Set<String> SUPPORTED_TYPES = Set.of(
+            "boolean", "int8", "int8U", "int16", "int16U", "int32", "int32U", "int64", "int64U", "float32", "float64");
+
+    /**
+     * Order of the 16-bit words of multi-register values.
+     */
+    public enum WordOrder
+    {
+        /** Most significant word first. */
+        BIG_ENDIAN,
+        /** Least significant word first. */
+        LITTLE_ENDIAN;
+
+        /**
+         * Returns the word order for the {@code bitOrder} of an EID.
+         *
+         * @param bitOrder
+         *        the bit order, {@code null} for the default
+         * @return the word order
+         * @throws IllegalArgumentException
+         *         if the bit order is not supported
+         */
+        public static WordOrder fromEid(String bitOrder)
+        {
+            if (bitOrder == null || "BigEndian".equals(bitOrder))
+            {
+                return BIG_ENDIAN;
+            }
+            if ("LittleEndian".equals(bitOrder))
+            {
+                return LITTLE_ENDIAN;
+            }
+            throw new IllegalArgumentException("Unsupported bit order: " + bitOrder);
+        }
+    }
+
+    /**
+     * Returns whether the Modbus data type of a data point can be decoded by this codec.
+     *
+     * @param dataPoint
+     *        the data point
+     * @return {@code true} if supported
+     */
+    public static boolean isSupported(EidDataPoint dataPoint)
+    {
+        return dataPoint.isModbus() && SUPPORTED_TYPES.contains(dataPoint.getModbusDataType());
+    }
+
+    /**
+     * Decodes the value of a data point, including its scaling factor.
+     *
+     * @param dataPoint
+     *        the data point
+     * @param registers
+     *        the register words
+     * @param offset
+     *        index of the first register word of the data point
+     * @param wordOrder
+     *        order of the words of multi-register values
+     * @return the decoded value
+     */
+    public static double decode(EidDataPoint dataPoint, int[] registers, int offset, WordOrder wordOrder)
+    {
+        final double raw;
+
+        switch (dataPoint.getModbusDataType())
+        {
+            case "boolean":
+                raw = (registers[offset] & 0xffff) != 0 ? 1.0 : 0.0;
+                break;
+            case "int8":
+                raw = (byte) registers[offset];
+                break;
+            case "int8U":
+                raw = registers[offset] & 0xff;
+                break;
+            case "int16":
+                raw = (short) registers[offset];
+                break;
+            case "int16U":
+                raw = registers[offset] & 0xffff;
+                break;
+            case "int32":
+                raw = (int) toLong(registers, offset, 2, wordOrder);
+                break;
+            case "int32U":
+                raw = toLong(registers, offset, 2, wordOrder);
+                break;
+            case "int64":
+                raw = toLong(registers, offset, 4, wordOrder);
+                break;
+            case "int64U":
+                raw = unsignedToDouble(toLong(registers, offset, 4, wordOrder));
+                break;
+            case "float32":
+                raw = Float.intBitsToFloat((int) toLong(registers, offset, 2, wordOrder));
+                break;
+            case "float64":
+                raw = Double.longBitsToDouble(toLong(registers, offset, 4, wordOrder));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported Modbus data type: " + dataPoint.getModbusDataType());
+        }
+
+        return dataPoint.getScalingFactor() == 1.0 ? raw : raw * dataPoint.getScalingFactor();
+    }
+
+    /**
+     * Decodes the value of a coil or discrete input.
+     *
+     * @param bits
+     *        the bits read
+     * @param offset
+     *        index of the bit of the data point
+     * @return {@code 1.0} if the bit is set, {@code 0.0} otherwise
+     */
+    public static double decode(boolean[] bits, int offset)
+    {
+        return bits[offset] ? 1.0 : 0.0;
+    }
+
+    /**
+     * Encodes the value of a data point, including its scaling factor, into register words.
+     *
+     * @param dataPoint
+     *        the data point
+     * @param value
+     *        the value to encode
+     * @param wordOrder
+     *        order of the words of multi-register values
+     * @param registers
+     *        the target register words
+     * @param offset
+     *        index of the first register word of the data point
+     * @throws IllegalArgumentException
+     *         if the value does not fit into the Modbus data type
+     */
+    public static void encode(EidDataPoint dataPoint, double value, WordOrder wordOrder, int[] registers, int offset)
+    {
+        final var raw = dataPoint.getScalingFactor() == 1.0 ? value : value / dataPoint.getScalingFactor();
+
+        switch (dataPoint.getModbusDataType())
+        {
+            case "boolean":
+                registers[offset] = raw != 0.0 ? 1 : 0;
+                break;
+            case "int8":
+                registers[offset] = (int) checkedRound(dataPoint, raw, Byte.MIN_VALUE, Byte.MAX_VALUE) & 0xffff;
+                break;
+            case "int8U":
+                registers[offset] = (int) checkedRound(dataPoint, raw, 0, 0xff);
+                break;
+            case "int16":
+                registers[offset] = (int) checkedRound(dataPoint, raw, Short.MIN_VALUE, Short.MAX_VALUE) & 0xffff;
+                break;
+            case "int16U":
+                registers[offset] = (int) checkedRound(dataPoint, raw, 0, 0xffff);
+                break;
+            case "int32":
+                fromLong(checkedRound(dataPoint, raw, Integer.MIN_VALUE, Integer.MAX_VALUE), registers, offset, 2, wordOrder);
+                break;
+            case "int32U":
+                fromLong(checkedRound(dataPoint, raw, 0, 0xffffffffL), registers, offset, 2, wordOrder);
+                break;
+            case "int64":
+                fromLong(checkedRound(dataPoint, raw, Long.MIN_VALUE, Long.MAX_VALUE), registers, offset, 4, wordOrder);
+                break;
+            case "int64U":
+                fromLong(checkedRound(dataPoint, raw, 0, Long.MAX_VALUE), registers, offset, 4, wordOrder);
+                break;
+            case "float32":
+                fromLong(Float.floatToIntBits((float) raw), registers, offset, 2, wordOrder);
+                break;
+            case "float64":
+                fromLong(Double.doubleToLongBits(raw), registers, offset, 4, wordOrder);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported Modbus data type: " + dataPoint.getModbusDataType());
+        }
+    }
+
+    /**
+     * @param dataPoint
+     *        the data point
+     * @return number of register words of the Modbus data type of the data point
+     */
+    public static int registerCount(EidDataPoint dataPoint)
+    {
+        switch (dataPoint.getModbusDataType())
+        {
+            case "int32":
+            case "int32U":
+            case "float32":
+                return 2;
+            case "int64":
+            case "int64U":
+            case "float64":
+                return 4;
+            default:
+                return 1;
+        }
+    }
+
+    private static long checkedRound(EidDataPoint dataPoint, double raw, long min, long max)
+    {
+        final var rounded = Math.round(raw);
+
+        if (Double.isNaN(raw) || rounded < min || rounded > max)
+        {
+            throw new IllegalArgumentException("Value " + raw + " out of range of " + dataPoint.getModbusDataType()
+                    + " for data point " + dataPoint.getKey());
+        }
+        return rounded;
+    }
+
+    private static void fromLong(long value, int[] registers, int offset, int words, WordOrder wordOrder)
+    {
+        for (int i = 0; i < words; i++)
+        {
+            final var word = (int) (value >>> (16 * (words - 1 - i))) & 0xffff;
+            registers[wordOrder == WordOrder.BIG_ENDIAN ? offset + i : offset + words - 1 - i] = word;
+        }
+    }
+
+    private static long toLong(int[] registers, int offset, int words, WordOrder wordOrder)
+    {
+        long result = 0;
+
+        for (int i = 0; i < words; i++)
+        {
+            final var word = wordOrder == WordOrder.BIG_ENDIAN ? registers[offset + i] : registers[offset + words - 1 - i];
+            result = (result << 16) | (word & 0xffff);
+        }
+        return result;
+    }
+
+    private static double unsignedToDouble(long value)
+    {
+        final var high = (double) (value >>> 1) * 2.0;
+        return high + (value & 1L);
+    }
+
+    /**
+     * Hide constructor of this utility class.
+     */
+    private ModbusRegisterCodec()
+    {
+
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process stand-in for a Modbus TCP gateway, listening on a free port of the loopback interface.
+ * <p>
+ * The server keeps 65536 registers and coils per unit ID. Holding and input registers share the same register
+ * space, as do coils and discrete inputs. Each response is sent after the configured response delay plus a random
+ * jitter, independent of the other requests, so pipelined requests are processed concurrently and responses may
+ * be sent in a different order than the requests were received.
+ */
+public class ModbusTcpServerMock implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ModbusTcpServerMock.class);
+
+    // large enough for many clients connecting at the same time
+    private static final int ACCEPT_BACKLOG = 1024;
+    private static final int MAX_READ_REGISTERS = 125;
+    private static final int MAX_READ_BITS = 2000;
+    private static final int ILLEGAL_FUNCTION = 0x01;
+    private static final int ILLEGAL_DATA_VALUE = 0x03;
+
+    private final long responseDelayUs;
+    private final long responseJitterUs;
+    private final ServerSocket serverSocket;
+    private final ScheduledExecutorService responder;
+    private final Map<Integer, int[]> registers = new ConcurrentHashMap<>();
+    private final Map<Integer, boolean[]> coils = new ConcurrentHashMap<>();
+    private final List<Socket> connections = new CopyOnWriteArrayList<>();
+    private final AtomicInteger acceptedCount = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Constructor. Starts the server.
+     *
+     * @param responseDelayMs
+     *        time the gateway needs to respond to a request
+     * @param responseJitterMs
+     *        maximum random time added to the response delay
+     * @throws IOException
+     *         if the server socket cannot be opened
+     */
+    public ModbusTcpServerMock(double responseDelayMs, double responseJitterMs) throws IOException
+    {
+        this.responseDelayUs = (long) (responseDelayMs * 1000);
+        this.responseJitterUs = (long) (responseJitterMs * 1000);
+        this.serverSocket = new ServerSocket(0, ACCEPT_BACKLOG, InetAddress.getLoopbackAddress());
+        this.responder = Executors.newScheduledThreadPool(2, runnable -> {
+            final var thread = new Thread(runnable, "modbus-tcp-server-responder");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final var acceptor = new Thread(this::accept, "modbus-tcp-server-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the host name of the server
+     */
+    public String getHost()
+    {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * @return the port of the server
+     */
+    public int getPort()
+    {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @param unitId
+     *        the unit ID
+     * @param address
+     *        the register address
+     * @return the register value
+     */
+    public int getRegister(int unitId, int address)
+    {
+        final var unitRegisters = registers(unitId);
+        synchronized (unitRegisters)
+        {
+            return unitRegisters[address];
+        }
+    }
+
+    /**
+     * @param unitId
+     *        the unit ID
+     * @param address
+     *        the register address
+     * @param value
+     *        the register value
+     */
+    public void setRegister(int unitId, int address, int value)
+    {
+        final var unitRegisters = registers(unitId);
+        synchronized (unitRegisters)
+        {
+            unitRegisters[address] = value & 0xFFFF;
+        }
+    }
+
+    /**
+     * @return number of connections accepted so far
+     */
+    public int getAcceptedConnectionCount()
+    {
+        return acceptedCount.get();
+    }
+
+    /**
+     * @return number of requests received so far
+     */
+    public long getRequestCount()
+    {
+        return requestCount.get();
+    }
+
+    /**
+     * @return maximum number of requests that were processed concurrently
+     */
+    public int getMaxInFlight()
+    {
+        return maxInFlight.get();
+    }
+
+    /**
+     * Closes all client connections, as a gateway restart would do.
+     */
+    public void dropConnections()
+    {
+        for (var socket : connections)
+        {
+            closeQuietly(socket);
+        }
+        connections.clear();
+    }
+
+    @Override
+    public void close()
+    {
+        closeQuietly(serverSocket);
+        dropConnections();
+        responder.shutdownNow();
+    }
+
+    private void accept()
+    {
+        while (!serverSocket.isClosed())
+        {
+            try
+            {
+                final var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                acceptedCount.incrementAndGet();
+
+                final var handler = new Thread(() -> serve(socket), "modbus-tcp-server-connection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+            catch (IOException e)
+            {
+                LOG.debug("Server socket closed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void serve(Socket socket)
+    {
+        try
+        {
+            final var in = new DataInputStream(socket.getInputStream());
+            final var out = new BufferedOutputStream(socket.getOutputStream());
+            while (true)
+            {
+                // the header is kept until the response is sent, so it must not be reused
+                final var header = new byte[7];
+                in.readFully(header);
+                final var length = ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
+                final var pdu = new byte[length - 1];
+                in.readFully(pdu);
+                requestCount.incrementAndGet();
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+
+                final var delayUs = responseDelayUs + (responseJitterUs > 0 ? ThreadLocalRandom.current().nextLong(responseJitterUs) : 0);
+                responder.schedule(() -> respond(out, header, pdu), delayUs, TimeUnit.MICROSECONDS);
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Connection closed: {}", e.getMessage());
+        }
+        finally
+        {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void respond(OutputStream out, byte[] header, byte[] request)
+    {
+        inFlight.decrementAndGet();
+        final var response = process(header[6] & 0xFF, request);
+
+        final var frame = new byte[7 + response.length];
+        System.arraycopy(header, 0, frame, 0, 4);
+        frame[4] = (byte) ((response.length + 1) >> 8);
+        frame[5] = (byte) (response.length + 1);
+        frame[6] = header[6];
+        System.arraycopy(response, 0, frame, 7, response.length);
+
+        try
+        {
+            synchronized (out)
+            {
+                out.write(frame);
+                out.flush();
+            }
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Response not sent: {}", e.getMessage());
+        }
+    }
+
+    private byte[] process(int unitId, byte[] request)
+    {
+        final var function = request[0] & 0xFF;
+        final var address = word(request, 1);
+
+        switch (function)
+        {
+            case 0x01:
+            case 0x02:
+                return readBits(function, unitId, address, word(request, 3));
+            case 0x03:
+            case 0x04:
+                return readRegisters(function, unitId, address, word(request, 3));
+            case 0x05:
+                setBits(unitId, address, new boolean[] { (request[3] & 0xFF) == 0xFF });
+                return request.clone();
+            case 0x06:
+                setRegisters(unitId, address, new int[] { word(request, 3) });
+                return request.clone();
+            case 0x0F:
+                final var bits = new boolean[word(request, 3)];
+                for (int i = 0; i < bits.length; i++)
+                {
+                    bits[i] = (request[6 + i / 8] & (1 << (i % 8))) != 0;
+                }
+                setBits(unitId, address, bits);
+                return new byte[] { request[0], request[1], request[2], request[3], request[4] };
+            case 0x10:
+                final var values = new int[word(request, 3)];
+                for (int i = 0; i < values.length; i++)
+                {
+                    values[i] = word(request, 6 + 2 * i);
+                }
+                setRegisters(unitId, address, values);
+                return new byte[] { request[0], request[1], request[2], request[3], request[4] };
+            default:
+                return new byte[] { (byte) (function | 0x80), ILLEGAL_FUNCTION };
+        }
+    }
+
+    private byte[] readRegisters(int function, int unitId, int address, int quantity)
+    {
+        if (quantity < 1 || quantity > MAX_READ_REGISTERS || address + quantity > 0x10000)
+        {
+            return new byte[] { (byte) (function | 0x80), ILLEGAL_DATA_VALUE };
+        }
+
+        final var response = new byte[2 + 2 * quantity];
+        response[0] = (byte) function;
+        response[1] = (byte) (2 * quantity);
+
+        final var unitRegisters = registers(unitId);
+        synchronized (unitRegisters)
+        {
+            for (int i = 0; i < quantity; i++)
+            {
+                response[2 + 2 * i] = (byte) (unitRegisters[address + i] >> 8);
+                response[3 + 2 * i] = (byte) unitRegisters[address + i];
+            }
+        }
+        return response;
+    }
+
+    private byte[] readBits(int function, int unitId, int address, int quantity)
+    {
+        if (quantity < 1 || quantity > MAX_READ_BITS || address + quantity > 0x10000)
+        {
+            return new byte[] { (byte) (function | 0x80), ILLEGAL_DATA_VALUE };
+        }
+
+        final var response = new byte[2 + (quantity + 7) / 8];
+        response[0] = (byte) function;
+        response[1] = (byte) ((quantity + 7) / 8);
+
+        final var unitCoils = coils.computeIfAbsent(unitId, id -> new boolean[0x10000]);
+        synchronized (unitCoils)
+        {
+            for (int i = 0; i < quantity; i++)
+            {
+                if (unitCoils[address + i])
+                {
+                    response[2 + i / 8] |= (byte) (1 << (i % 8));
+                }
+            }
+        }
+        return response;
+    }
+
+    private void setRegisters(int unitId, int address, int[] values)
+    {
+        final var unitRegisters = registers(unitId);
+        synchronized (unitRegisters)
+        {
+            System.arraycopy(values, 0, unitRegisters, address, Math.min(values.length, 0x10000 - address));
+        }
+    }
+
+    private void setBits(int unitId, int address, boolean[] values)
+    {
+        final var unitCoils = coils.computeIfAbsent(unitId, id -> new boolean[0x10000]);
+        synchronized (unitCoils)
+        {
+            System.arraycopy(values, 0, unitCoils, address, Math.min(values.length, 0x10000 - address));
+        }
+    }
+
+    private int[] registers(int unitId)
+    {
+        return registers.computeIfAbsent(unitId, id -> new int[0x10000]);
+    }
+
+    private static int word(byte[] data, int offset)
+    {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static void closeQuietly(Closeable closeable)
+    {
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Error closing: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.Random;
+
+/**
+ * Mock for a {@code GenDriverAPI4Modbus} that returns a noisy float signal, as delivered by a real meter.
+ * <p>
+ * Each read returns {@code nominalValue + drift + noise} encoded as big-endian float32 register pairs.
+ * The drift is a slow sine wave, the noise is gaussian. From time to time the signal performs a step,
+ * simulating a load change. The random generator is seeded, so the signal is reproducible.
+ */
+public class NoisySignalModbusMock extends GenDriverAPI4ModbusMock
+{
+    private static final double DRIFT_PERIOD_READS = 600.0;
+    private static final double STEP_PROBABILITY = 0.002;
+
+    private final double nominalValue;
+    private final double noiseStdDev;
+    private final double driftAmplitude;
+    private final Random random;
+
+    private long readCount = 0;
+    private double stepOffset = 0.0;
+
+    /**
+     * Constructor.
+     *
+     * @param nominalValue
+     *        the value the signal oscillates around
+     * @param noiseStdDev
+     *        standard deviation of the gaussian noise
+     * @param driftAmplitude
+     *        amplitude of the slow drift
+     * @param seed
+     *        seed of the random generator
+     */
+    public NoisySignalModbusMock(double nominalValue, double noiseStdDev, double driftAmplitude, long seed)
+    {
+        super(false);
+        this.nominalValue = nominalValue;
+        this.noiseStdDev = noiseStdDev;
+        this.driftAmplitude = driftAmplitude;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public synchronized int[] ReadInputRegisters(int startingAddress, int quantity)
+    {
+        return prepareNoisyValue(quantity);
+    }
+
+    @Override
+    public synchronized int[] ReadHoldingRegisters(int startingAddress, int quantity)
+    {
+        return prepareNoisyValue(quantity);
+    }
+
+    private int[] prepareNoisyValue(int quantity)
+    {
+        final var result = new int[quantity];
+
+        for (int i = 0; i + 1 < quantity; i += 2)
+        {
+            final var bits = Float.floatToIntBits((float) nextSample());
+            result[i] = bits >>> 16;
+            result[i + 1] = bits & 0xffff;
+        }
+
+        return result;
+    }
+
+    private double nextSample()
+    {
+        if (random.nextDouble() < STEP_PROBABILITY)
+        {
+            stepOffset = (random.nextDouble() - 0.5) * 10.0 * driftAmplitude;
+        }
+
+        final var drift = driftAmplitude * Math.sin(2.0 * Math.PI * readCount++ / DRIFT_PERIOD_READS);
+        return nominalValue + stepOffset + drift + random.nextGaussian() * noiseStdDev;
+    }
+}
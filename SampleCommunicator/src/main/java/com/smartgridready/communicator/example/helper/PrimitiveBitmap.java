@@ -0,0 +1,155 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.smartgridready.communicator.common.api.values.BitmapValue;
+
+/**
+ * Immutable bitmap value backed by a primitive {@code long}, created by a {@link BitmapLayout}.
+ * <p>
+ * Bits are tested and modified by literal index, which does not allocate any map or boxed boolean.
+ * A {@code Map<String, Boolean>} view is only built on demand by {@link #toMap()}.
+ */
+public final class PrimitiveBitmap
+{
+    private final BitmapLayout layout;
+    private final long bits;
+
+    PrimitiveBitmap(BitmapLayout layout, long bits)
+    {
+        this.layout = layout;
+        this.bits = bits;
+    }
+
+    /**
+     * @return the layout of this bitmap
+     */
+    public BitmapLayout getLayout()
+    {
+        return layout;
+    }
+
+    /**
+     * @return the raw register value
+     */
+    public long getBits()
+    {
+        return bits;
+    }
+
+    /**
+     * @param index
+     *        index of the literal, see {@link BitmapLayout#indexOf(String)}
+     * @return {@code true} if any bit of the literal is set
+     */
+    public boolean isSet(int index)
+    {
+        return (bits & layout.getMask(index)) != 0;
+    }
+
+    /**
+     * Convenience method resolving the literal on each call. Use {@link #isSet(int)} in polling loops.
+     *
+     * @param literal
+     *        the literal
+     * @return {@code true} if any bit of the literal is set
+     */
+    public boolean isSet(String literal)
+    {
+        return isSet(layout.indexOf(literal));
+    }
+
+    /**
+     * Returns a copy of this bitmap with all bits of a literal set or cleared.
+     *
+     * @param index
+     *        index of the literal, see {@link BitmapLayout#indexOf(String)}
+     * @param set
+     *        {@code true} to set, {@code false} to clear the bits
+     * @return the modified bitmap
+     */
+    public PrimitiveBitmap with(int index, boolean set)
+    {
+        final var mask = layout.getMask(index);
+        return new PrimitiveBitmap(layout, set ? bits | mask : bits & ~mask);
+    }
+
+    /**
+     * Builds a map view of all literals and whether they are set, in EID order.
+     *
+     * @return a new, modifiable map
+     */
+    public Map<String, Boolean> toMap()
+    {
+        final var map = new LinkedHashMap<String, Boolean>();
+        for (int i = 0; i < layout.size(); i++)
+        {
+            map.put(layout.getLiteral(i), isSet(i));
+        }
+        return map;
+    }
+
+    /**
+     * Converts this bitmap for writing through the device API.
+     *
+     * @return the bitmap value
+     */
+    public BitmapValue toBitmapValue()
+    {
+        return BitmapValue.of(toMap());
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof PrimitiveBitmap))
+        {
+            return false;
+        }
+        final var other = (PrimitiveBitmap) obj;
+        return bits == other.bits && layout == other.layout;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Long.hashCode(bits);
+    }
+
+    @Override
+    public String toString()
+    {
+        final var sb = new StringBuilder("[");
+        for (int i = 0; i < layout.size(); i++)
+        {
+            if (isSet(i))
+            {
+                sb.append(sb.length() > 1 ? ", " : "").append(layout.getLiteral(i));
+            }
+        }
+        return sb.append(']').toString();
+    }
+}
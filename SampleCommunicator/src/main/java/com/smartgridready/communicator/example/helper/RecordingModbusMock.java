@@ -0,0 +1,201 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Mock for a {@code GenDriverAPI4Modbus} that records all Modbus transactions, in order to verify the
+ * number and layout of the transactions issued by a communicator.
+ * <p>
+ * Register reads return the values of {@link GenDriverAPI4ModbusMock}, bit reads return {@code false}.
+ */
+public class RecordingModbusMock extends GenDriverAPI4ModbusMock
+{
+    private final List<Transaction> transactions = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * A recorded Modbus transaction.
+     */
+    public static final class Transaction
+    {
+        private final String function;
+        private final int address;
+        private final int quantity;
+        private final int[] registers;
+        private final boolean[] bits;
+
+        private Transaction(String function, int address, int quantity, int[] registers, boolean[] bits)
+        {
+            this.function = function;
+            this.address = address;
+            this.quantity = quantity;
+            this.registers = registers;
+            this.bits = bits;
+        }
+
+        /**
+         * @return name of the driver method, e.g. {@code ReadHoldingRegisters}
+         */
+        public String getFunction()
+        {
+            return function;
+        }
+
+        public int getAddress()
+        {
+            return address;
+        }
+
+        public int getQuantity()
+        {
+            return quantity;
+        }
+
+        /**
+         * @return registers written, {@code null} for reads and bit writes
+         */
+        public int[] getRegisters()
+        {
+            return registers != null ? registers.clone() : null;
+        }
+
+        /**
+         * @return bits written, {@code null} for reads and register writes
+         */
+        public boolean[] getBits()
+        {
+            return bits != null ? bits.clone() : null;
+        }
+
+        /**
+         * @return {@code true} if this is a write transaction
+         */
+        public boolean isWrite()
+        {
+            return function.startsWith("Write");
+        }
+
+        @Override
+        public String toString()
+        {
+            return function + "(" + address + ", " + quantity
+                    + (registers != null ? ", " + Arrays.toString(registers) : "")
+                    + (bits != null ? ", " + Arrays.toString(bits) : "") + ")";
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param returnInteger
+     *        indicates whether register reads return integer {@code true} or float {@code false} values
+     */
+    public RecordingModbusMock(boolean returnInteger)
+    {
+        super(returnInteger);
+    }
+
+    @Override
+    public int[] ReadInputRegisters(int startingAddress, int quantity)
+    {
+        record("ReadInputRegisters", startingAddress, quantity, null, null);
+        return super.ReadInputRegisters(startingAddress, quantity);
+    }
+
+    @Override
+    public int[] ReadHoldingRegisters(int startingAddress, int quantity)
+    {
+        record("ReadHoldingRegisters", startingAddress, quantity, null, null);
+        return super.ReadHoldingRegisters(startingAddress, quantity);
+    }
+
+    @Override
+    public boolean[] ReadDiscreteInputs(int startingAddress, int quantity)
+    {
+        record("ReadDiscreteInputs", startingAddress, quantity, null, null);
+        return new boolean[quantity];
+    }
+
+    @Override
+    public boolean[] ReadCoils(int startingAddress, int quantity)
+    {
+        record("ReadCoils", startingAddress, quantity, null, null);
+        return new boolean[quantity];
+    }
+
+    @Override
+    public void WriteMultipleCoils(int startingAdress, boolean[] values)
+    {
+        record("WriteMultipleCoils", startingAdress, values.length, null, values.clone());
+    }
+
+    @Override
+    public void WriteSingleCoil(int startingAdress, boolean value)
+    {
+        record("WriteSingleCoil", startingAdress, 1, null, new boolean[] { value });
+    }
+
+    @Override
+    public void WriteMultipleRegisters(int startingAdress, int[] values)
+    {
+        record("WriteMultipleRegisters", startingAdress, values.length, values.clone(), null);
+    }
+
+    @Override
+    public void WriteSingleRegister(int startingAdress, int value)
+    {
+        record("WriteSingleRegister", startingAdress, 1, new int[] { value }, null);
+    }
+
+    /**
+     * @return a copy of all transactions recorded so far
+     */
+    public List<Transaction> getTransactions()
+    {
+        synchronized (transactions)
+        {
+            return new ArrayList<>(transactions);
+        }
+    }
+
+    /**
+     * @return number of transactions recorded so far
+     */
+    public int getTransactionCount()
+    {
+        return transactions.size();
+    }
+
+    /**
+     * Clears the recorded transactions.
+     */
+    public void clear()
+    {
+        transactions.clear();
+    }
+
+    private void record(String function, int address, int quantity, int[] registers, boolean[] bits)
+    {
+        transactions.add(new Transaction(function, address, quantity, registers, bits));
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec.WordOrder;
+
+/**
+ * Decodes a block of equally typed values from Modbus register words into a primitive array in one pass.
+ * <p>
+ * {@link ModbusRegisterCodec} decodes one value at a time and selects the data type, word order and scaling for each
+ * of them. This decoder selects them once per block and assembles the bits of each value directly from its words,
+ * so the loop over the block contains nothing but shifts, the conversion and the optional {@code scale}/{@code shift}.
+ * Word order and byte swapping are loop invariants the JIT compiler hoists out of the loop. No intermediate buffer is
+ * used and nothing is allocated, so a decoder can be shared by all threads.
+ */
+public class RegisterBlockDecoder
+{
+    private final WordOrder wordOrder;
+    private final boolean swapBytes;
+
+    /**
+     * Constructor for devices with big-endian bytes in each word.
+     *
+     * @param wordOrder
+     *        order of the words of multi-register values
+     */
+    public RegisterBlockDecoder(WordOrder wordOrder)
+    {
+        this(wordOrder, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param wordOrder
+     *        order of the words of multi-register values
+     * @param swapBytes
+     *        {@code true} if the device puts the low byte of each word first
+     */
+    public RegisterBlockDecoder(WordOrder wordOrder, boolean swapBytes)
+    {
+        this.wordOrder = wordOrder;
+        this.swapBytes = swapBytes;
+    }
+
+    /**
+     * Decodes consecutive values of the Modbus data type of a data point, e.g. the elements of an array data point
+     * or a run of data points at consecutive addresses, including its scaling factor.
+     *
+     * @param dataPoint
+     *        the data point defining type and scaling factor
+     * @param registers
+     *        the register words
+     * @param offset
+     *        index of the first register word
+     * @param count
+     *        number of values
+     * @param target
+     *        receives the values
+     * @param targetOffset
+     *        index of the first value in the target
+     * @throws IllegalArgumentException
+     *         if the Modbus data type is not supported
+     */
+    public void decode(EidDataPoint dataPoint, int[] registers, int offset, int count, double[] target, int targetOffset)
+    {
+        final var scale = dataPoint.getScalingFactor();
+
+        switch (dataPoint.getModbusDataType())
+        {
+            case "int16":
+                decodeInt16(registers, offset, count, false, scale, 0.0, target, targetOffset);
+                break;
+            case "int16U":
+                decodeInt16(registers, offset, count, true, scale, 0.0, target, targetOffset);
+                break;
+            case "int32":
+                decodeInt32(registers, offset, count, false, scale, 0.0, target, targetOffset);
+                break;
+            case "int32U":
+                decodeInt32(registers, offset, count, true, scale, 0.0, target, targetOffset);
+                break;
+            case "int64":
+                decodeInt64(registers, offset, count, scale, 0.0, target, targetOffset);
+                break;
+            case "float32":
+                decodeFloat32(registers, offset, count, scale, 0.0, target, targetOffset);
+                break;
+            case "float64":
+                decodeFloat64(registers, offset, count, scale, 0.0, target, targetOffset);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported Modbus data type for block decoding: "
+                        + dataPoint.getModbusDataType());
+        }
+    }
+
+    /**
+     * Decodes float32 values without scaling.
+     *
+     * @param registers
+     *        the register words, two per value
+     * @param offset
+     *        index of the first register word
+     * @param count
+     *        number of values
+     * @return the values
+     */
+    public float[] decodeFloat32(int[] registers, int offset, int count)
+    {
+        final var target = new float[count];
+        decodeFloat32(registers, offset, count, 1.0f, 0.0f, target, 0);
+        return target;
+    }
+
+    /**
+     * Decodes float32 values into {@code value * scale + shift}, computed in single precision.
+     *
+     * @param registers
+     *        the register words, two per value
+     * @param offset
+     *        index of the first register word
+     * @param count
+     *        number of values
+     * @param scale
+     *        factor applied to each value
+     * @param shift
+     *        offset added to each scaled value
+     * @param target
+     *        receives the values
+     * @param targetOffset
+     *        index of the first value in the target
+     */
+    public void decodeFloat32(int[] registers, int offset, int count, float scale, float shift,
+                              float[] target, int targetOffset)
+    {
+        checkBlock(registers, offset, count, 2);
+        final var high = wordOrder == WordOrder.BIG_ENDIAN ? 0 : 1;
+        final var low = 1 - high;
+        final var scaled = scale != 1.0f || shift != 0.0f;
+
+        for (int i = 0, o = offset; i < count; i++, o += 2)
+        {
+            final var value = Float.intBitsToFloat((word(registers[o + high]) << 16) | word(registers[o + low]));
+            target[targetOffset + i] = scaled ? value * scale + shift : value;
+        }
+    }
+
+    /**
+     * Decodes float32 values into {@code value * scale + shift}, computed in double precision.
+     *
+     * @param registers
+     *        the register words, two per value
+     * @param offset
+     *        index of the first register word
+     * @param count
+     *        number of values
+     * @param scale
+     *        factor applied to each value
+     * @param shift
+     *        offset added to each scaled value
+     * @param target
+     *        receives the values
+     * @param targetOffset
+     *        index of the first value in the target
+     */
+    public void decodeFloat32(int[] registers, int offset, int count, double scale, double shift,
+                              double[] target, int targetOffset)
+    {
+        checkBlock(registers, offset, count, 2);
+        final var high = wordOrder == WordOrder.BIG_ENDIAN ? 0 : 1;
+        final var low = 1 - high;
+
+        for (int i = 0, o = offset; i < count; i++, o += 2)
+        {
+            final var value = Float.intBitsToFloat((word(registers[o + high]) << 16) | word(registers[o + low]));
+            target[targetOffset + i] = value * scale + shift;
+        }
+    }
+
+    /**
+     * Decodes float64 values into {@code value * scale + shift}.
+     *
+     * @param registers
+     *        the register words, four per value
+     * @param offset
+     *        index of the first register word
+     * @param count
+     *        number of values
+     * @param scale
+     *        factor applied to each value
+     * @param shift
+     *        offset added to each scaled value
+     * @param target
+     *        receives the values
+     * @param targetOffset
+     *        index of the first value in the target
+     */
+    public void decodeFloat64(int[] registers, int offset, int count, double scale, double shift,
+                              double[] target, int targetOffset)
+    {
+        checkBlock(registers, offset, count, 4);
+        for (int i = 0, o = offset; i < count; i++, o += 4)
+        {
+            target[targetOffset + i] = Double.longBitsToDouble(bits64(registers, o)) * scale + shift;
+        }
+    }
+
+    /**
+     * Decodes int32 or int32U values into {@code value * scale + shift}.
+     *
+     * @param registers
+     *        the register words, two per value
+     * @param offset
+     *        index of the first register word
+     * @param count
+     *        number of values
+     * @param unsigned
+     *        {@code true} for int32U
+     * @param scale
+     *        factor applied to each value
+     * @param shift
+     *        offset added to each scaled value
+     * @param target
+     *        receives the values
+     * @param targetOffset
+     *        index of the first value in the target
+     */
+    public void decodeInt32(int[] registers, int offset, int count, boolean unsigned, double scale, double shift,
+                            double[] target, int targetOffset)
+    {
+        checkBlock(registers, offset, count, 2);
+        final var high = wordOrder == WordOrder.BIG_ENDIAN ? 0 : 1;
+        final var low = 1 - high;
+        final var mask = unsigned ? 0xffffffffL : -1L;
+
+        for (int i = 0, o = offset; i < count; i++, o += 2)
+        {
+            final var bits = (word(registers[o + high]) << 16) | word(registers[o + low]);
+            target[targetOffset + i] = (bits & mask) * scale + shift;
+        }
+    }
+
+    /**
+     * Decodes int64 values into {@code value * scale + shift}.
+     *
+     * @param registers
+     *        the register words, four per value
+     * @param offset
+     *        index of the first register word
+     * @param count
+     *        number of values
+     * @param scale
+     *        factor applied to each value
+     * @param shift
+     *        offset added to each scaled value
+     * @param target
+     *        receives the values
+     * @param targetOffset
+     *        index of the first value in the target
+     */
+    public void decodeInt64(int[] registers, int offset, int count, double scale, double shift,
+                            double[] target, int targetOffset)
+    {
+        checkBlock(registers, offset, count, 4);
+        for (int i = 0, o = offset; i < count; i++, o += 4)
+        {
+            target[targetOffset + i] = bits64(registers, o) * scale + shift;
+        }
+    }
+
+    /**
+     * Decodes int16 or int16U values into {@code value * scale + shift}.
+     *
+     * @param registers
+     *        the register words, one per value
+     * @param offset
+     *        index of the first register word
+     * @param count
+     *        number of values
+     * @param unsigned
+     *        {@code true} for int16U
+     * @param scale
+     *        factor applied to each value
+     * @param shift
+     *        offset added to each scaled value
+     * @param target
+     *        receives the values
+     * @param targetOffset
+     *        index of the first value in the target
+     */
+    public void decodeInt16(int[] registers, int offset, int count, boolean unsigned, double scale, double shift,
+                            double[] target, int targetOffset)
+    {
+        checkBlock(registers, offset, count, 1);
+        for (int i = 0; i < count; i++)
+        {
+            final var word = word(registers[offset + i]);
+            target[targetOffset + i] = (unsigned ? word : (short) word) * scale + shift;
+        }
+    }
+
+    private int word(int register)
+    {
+        return swapBytes ? ((register & 0xff) << 8) | ((register >>> 8) & 0xff) : register & 0xffff;
+    }
+
+    private long bits64(int[] registers, int offset)
+    {
+        long bits = 0;
+        for (int w = 0; w < 4; w++)
+        {
+            final var index = wordOrder == WordOrder.BIG_ENDIAN ? offset + w : offset + 3 - w;
+            bits = (bits << 16) | word(registers[index]);
+        }
+        return bits;
+    }
+
+    private static void checkBlock(int[] registers, int offset, int count, int wordsPerValue)
+    {
+        if (offset < 0 || count < 0 || offset + count * wordsPerValue > registers.length)
+        {
+            throw new IndexOutOfBoundsException("Block of " + count + " values at register " + offset
+                    + " exceeds " + registers.length + " registers");
+        }
+    }
+}
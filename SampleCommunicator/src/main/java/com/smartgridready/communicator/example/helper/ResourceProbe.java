@@ -0,0 +1,106 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Utility class to measure wall time, CPU time and allocated bytes of the current thread,
+ * used by the benchmark samples.
+ * <p>
+ * CPU time and allocation counters are provided by the JVM on a best-effort basis. If a counter
+ * is not supported, the according figure is reported as {@code -1}.
+ */
+public final class ResourceProbe
+{
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final long startWallNs;
+    private final long startCpuNs;
+    private final long startAllocatedBytes;
+
+    private ResourceProbe()
+    {
+        startWallNs = System.nanoTime();
+        startCpuNs = currentThreadCpuNs();
+        startAllocatedBytes = currentThreadAllocatedBytes();
+    }
+
+    /**
+     * Starts a new measurement on the current thread.
+     *
+     * @return the probe
+     */
+    public static ResourceProbe start()
+    {
+        return new ResourceProbe();
+    }
+
+    /**
+     * @return wall time since start in nanoseconds
+     */
+    public long wallNs()
+    {
+        return System.nanoTime() - startWallNs;
+    }
+
+    /**
+     * @return CPU time of the current thread since start in nanoseconds, or {@code -1}
+     */
+    public long cpuNs()
+    {
+        final var now = currentThreadCpuNs();
+        return (now < 0 || startCpuNs < 0) ? -1 : now - startCpuNs;
+    }
+
+    /**
+     * @return bytes allocated by the current thread since start, or {@code -1}
+     */
+    public long allocatedBytes()
+    {
+        final var now = currentThreadAllocatedBytes();
+        return (now < 0 || startAllocatedBytes < 0) ? -1 : now - startAllocatedBytes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("wall=%.1fms, cpu=%.1fms, allocated=%.1fkB",
+                             wallNs() / 1e6, cpuNs() / 1e6, allocatedBytes() / 1024.0);
+    }
+
+    private static long currentThreadCpuNs()
+    {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long currentThreadAllocatedBytes()
+    {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean)
+        {
+            final var sunBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
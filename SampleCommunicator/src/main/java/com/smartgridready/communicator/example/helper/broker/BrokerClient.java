@@ -0,0 +1,215 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.broker;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.messaging.GenMessagingClient;
+import com.smartgridready.driver.api.messaging.MessageFilterHandler;
+import com.smartgridready.driver.api.messaging.model.Message;
+
+import io.vavr.control.Either;
+
+/**
+ * Client of an {@link InProcessBroker}. All methods are thread-safe.
+ * <p>
+ * {@link #readSync(String, Message, String, MessageFilterHandler, long)} subscribes to the response topic before it
+ * publishes the read command, so a fast response is not missed. The pending response ignores the messages published
+ * by this client, like an MQTT 5 subscription with the <i>no local</i> option, since some devices use the same topic
+ * for command and response. A retained message on the response topic answers the read immediately.
+ */
+public final class BrokerClient implements GenMessagingClient
+{
+    private final InProcessBroker broker;
+    private final String clientId;
+    private final List<InProcessBroker.Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    BrokerClient(InProcessBroker broker, String clientId)
+    {
+        this.broker = broker;
+        this.clientId = clientId;
+    }
+
+    public String getClientId()
+    {
+        return clientId;
+    }
+
+    @Override
+    public void sendSync(String topic, Message message)
+    {
+        checkOpen();
+        broker.publish(this, topic, message, false);
+    }
+
+    /**
+     * Publishes a message.
+     *
+     * @param topic
+     *        the topic, without wildcards
+     * @param message
+     *        the message
+     * @param retain
+     *        {@code true} to keep the message for later subscribers
+     */
+    public void publish(String topic, Message message, boolean retain)
+    {
+        checkOpen();
+        broker.publish(this, topic, message, retain);
+    }
+
+    @Override
+    public CompletableFuture<Either<Throwable, Void>> sendAsynch(String topic, Message message)
+    {
+        try
+        {
+            sendSync(topic, message);
+            return CompletableFuture.completedFuture(Either.right(null));
+        }
+        catch (RuntimeException e)
+        {
+            return CompletableFuture.completedFuture(Either.left(e));
+        }
+    }
+
+    @Override
+    public Either<Throwable, Message> readSync(String readCmdMessageTopic,
+                                               Message readCmdMessage,
+                                               String inMessageTopic,
+                                               MessageFilterHandler messageFilterHandler,
+                                               long timeoutMs)
+    {
+        checkOpen();
+
+        final var response = new CompletableFuture<Message>();
+        final var pending = broker.subscribe(this, inMessageTopic, messageFilterHandler, result -> {
+            if (result.isRight())
+            {
+                response.complete(result.get());
+            }
+        }, true);
+
+        try
+        {
+            if (readCmdMessageTopic != null && !response.isDone())
+            {
+                broker.publish(this, readCmdMessageTopic, readCmdMessage, false);
+            }
+            return Either.right(response.get(timeoutMs, TimeUnit.MILLISECONDS));
+        }
+        catch (TimeoutException e)
+        {
+            return Either.left(new TimeoutException("No response on '" + inMessageTopic + "' within " + timeoutMs + "ms"));
+        }
+        catch (ExecutionException e)
+        {
+            return Either.left(e.getCause());
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return Either.left(e);
+        }
+        finally
+        {
+            broker.unsubscribe(pending);
+        }
+    }
+
+    @Override
+    public void subscribe(String topic,
+                          MessageFilterHandler messageFilterHandler,
+                          Consumer<Either<Throwable, Message>> callback) throws GenDriverException
+    {
+        subscribe(topic, messageFilterHandler, callback, false);
+    }
+
+    /**
+     * Subscribes to a topic filter.
+     *
+     * @param topicFilter
+     *        the topic, may contain the wildcards {@code +} and {@code #}
+     * @param messageFilterHandler
+     *        selects the messages to deliver, {@code null} for all
+     * @param callback
+     *        receives the messages
+     * @param noLocal
+     *        {@code true} to ignore the messages published by this client
+     * @throws GenDriverException
+     *         if the client is closed
+     */
+    public void subscribe(String topicFilter,
+                          MessageFilterHandler messageFilterHandler,
+                          Consumer<Either<Throwable, Message>> callback,
+                          boolean noLocal) throws GenDriverException
+    {
+        if (closed)
+        {
+            throw new GenDriverException("Client " + clientId + " is closed");
+        }
+        subscriptions.add(broker.subscribe(this, topicFilter, messageFilterHandler, callback, noLocal));
+    }
+
+    @Override
+    public void unsubscribe(String topic) throws GenDriverException
+    {
+        for (var subscription : subscriptions)
+        {
+            if (subscription.getTopicFilter().equals(topic))
+            {
+                subscriptions.remove(subscription);
+                broker.unsubscribe(subscription);
+            }
+        }
+    }
+
+    /**
+     * Removes all subscriptions and disconnects from the broker.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        subscriptions.forEach(broker::unsubscribe);
+        subscriptions.clear();
+        broker.disconnected(this);
+    }
+
+    @Override
+    public String toString()
+    {
+        return clientId;
+    }
+
+    private void checkOpen()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Client " + clientId + " is closed");
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.broker;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.driver.api.messaging.GenMessagingClientFactory;
+import com.smartgridready.driver.api.messaging.MessageFilterHandler;
+import com.smartgridready.driver.api.messaging.model.Message;
+import com.smartgridready.driver.api.messaging.model.MessagingInterfaceDescription;
+import com.smartgridready.driver.api.messaging.model.MessagingPlatformType;
+
+import io.vavr.control.Either;
+
+/**
+ * In-process stand-in for an MQTT broker, to test and benchmark MQTT devices without a real broker.
+ * <p>
+ * As {@link GenMessagingClientFactory}, the broker hands out a new {@link BrokerClient} to each device built with
+ * {@code SGrDeviceBuilder.useMessagingClientFactory()}. Device simulators connect with {@link #connect(String)}.
+ * The broker supports any number of clients and topics, the {@code +} and {@code #} wildcards, retained messages and
+ * the request/response pattern of {@code readSync()}, with the response selected by a {@link MessageFilterHandler}.
+ * <p>
+ * The subscriptions of a topic are kept in copy-on-write lists: publishing does not lock, subscribing copies the
+ * list. By default, messages are delivered synchronously on the thread of the publisher. With
+ * {@link #withDeliveryLatency(Duration)} they are queued in a lock-free FIFO queue and delivered after the given
+ * latency by a single delivery thread, in publishing order. The delivery thread parks while the queue is empty.
+ * The queue is not bounded: publishers faster than the delivery thread increase the latency.
+ */
+public class InProcessBroker implements GenMessagingClientFactory, AutoCloseable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(InProcessBroker.class);
+
+    private final Map<String, List<Subscription>> exactSubscriptions = new ConcurrentHashMap<>();
+    private final List<Subscription> wildcardSubscriptions = new CopyOnWriteArrayList<>();
+    private final Map<String, Message> retainedMessages = new ConcurrentHashMap<>();
+    private final Set<BrokerClient> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger clientIds = new AtomicInteger();
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+
+    private final Queue<Delivery> pendingDeliveries = new ConcurrentLinkedQueue<>();
+
+    private volatile long deliveryLatencyNs;
+    private volatile Thread deliveryThread;
+    /** Whether the delivery thread is about to park until the next message is queued. */
+    private volatile boolean deliveryIdle;
+    private volatile boolean closed;
+
+    /**
+     * Delivers messages after the given latency, simulating the network and broker.
+     *
+     * @param latency
+     *        the latency, {@link Duration#ZERO} to deliver synchronously
+     * @return this broker
+     */
+    public synchronized InProcessBroker withDeliveryLatency(Duration latency)
+    {
+        deliveryLatencyNs = latency.toNanos();
+        if (deliveryLatencyNs > 0 && deliveryThread == null)
+        {
+            final var thread = new Thread(this::deliverPending, "broker-delivery");
+            thread.setDaemon(true);
+            deliveryThread = thread;
+            thread.start();
+        }
+        return this;
+    }
+
+    @Override
+    public BrokerClient create(MessagingInterfaceDescription interfaceDescription)
+    {
+        return connect("device-" + clientIds.incrementAndGet());
+    }
+
+    @Override
+    public Set<MessagingPlatformType> getSupportedPlatforms()
+    {
+        return Set.of(MessagingPlatformType.MQTT5);
+    }
+
+    /**
+     * Connects a new client, e.g. a device simulator.
+     *
+     * @param clientId
+     *        name of the client, used for logging
+     * @return the client
+     */
+    public BrokerClient connect(String clientId)
+    {
+        final var client = new BrokerClient(this, clientId);
+        clients.add(client);
+        return client;
+    }
+
+    /**
+     * Publishes a message on behalf of the broker, e.g. the initial state of a device.
+     *
+     * @param topic
+     *        the topic, without wildcards
+     * @param message
+     *        the message
+     * @param retain
+     *        {@code true} to keep the message and deliver it to later subscribers; a retained message with an empty
+     *        payload clears the retained message of the topic
+     */
+    public void publish(String topic, Message message, boolean retain)
+    {
+        publish(null, topic, message, retain);
+    }
+
+    /**
+     * @param topic
+     *        the topic
+     * @return the retained message of the topic, {@code null} if none
+     */
+    public Message getRetained(String topic)
+    {
+        return retainedMessages.get(topic);
+    }
+
+    /**
+     * @return number of published messages
+     */
+    public long getPublishedCount()
+    {
+        return publishedCount.sum();
+    }
+
+    /**
+     * @return number of messages delivered to subscribers, a message with several subscribers counts several times
+     */
+    public long getDeliveredCount()
+    {
+        return deliveredCount.sum();
+    }
+
+    /**
+     * @return number of connected clients
+     */
+    public int getClientCount()
+    {
+        return clients.size();
+    }
+
+    /**
+     * @return number of active subscriptions, including the pending responses of {@code readSync()}
+     */
+    public int getSubscriptionCount()
+    {
+        return exactSubscriptions.values().stream().mapToInt(List::size).sum() + wildcardSubscriptions.size();
+    }
+
+    /**
+     * Disconnects all clients and stops the delivery thread.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        clients.forEach(BrokerClient::close);
+        final var thread = deliveryThread;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    void publish(BrokerClient publisher, String topic, Message message, boolean retain)
+    {
+        Objects.requireNonNull(topic, "topic");
+        publishedCount.increment();
+
+        if (retain)
+        {
+            if (message.getPayload() == null || message.getPayload().isEmpty())
+            {
+                retainedMessages.remove(topic);
+            }
+            else
+            {
+                retainedMessages.put(topic, message);
+            }
+        }
+
+        final var exact = exactSubscriptions.get(topic);
+        if (exact != null)
+        {
+            for (var subscription : exact)
+            {
+                deliver(subscription, publisher, message);
+            }
+        }
+        for (var subscription : wildcardSubscriptions)
+        {
+            if (matches(subscription.topicFilter, topic))
+            {
+                deliver(subscription, publisher, message);
+            }
+        }
+    }
+
+    Subscription subscribe(BrokerClient client,
+                           String topicFilter,
+                           MessageFilterHandler filter,
+                           Consumer<Either<Throwable, Message>> callback,
+                           boolean noLocal)
+    {
+        final var subscription = new Subscription(client, topicFilter, filter, callback, noLocal);
+
+        if (isWildcard(topicFilter))
+        {
+            wildcardSubscriptions.add(subscription);
+            retainedMessages.forEach((topic, message) -> {
+                if (matches(topicFilter, topic))
+                {
+                    deliver(subscription, null, message);
+                }
+            });
+        }
+        else
+        {
+            exactSubscriptions.computeIfAbsent(topicFilter, key -> new CopyOnWriteArrayList<>()).add(subscription);
+            final var retained = retainedMessages.get(topicFilter);
+            if (retained != null)
+            {
+                deliver(subscription, null, retained);
+            }
+        }
+        return subscription;
+    }
+
+    void unsubscribe(Subscription subscription)
+    {
+        subscription.active = false;
+        if (isWildcard(subscription.topicFilter))
+        {
+            wildcardSubscriptions.remove(subscription);
+        }
+        else
+        {
+            final var exact = exactSubscriptions.get(subscription.topicFilter);
+            if (exact != null)
+            {
+                exact.remove(subscription);
+            }
+        }
+    }
+
+    void disconnected(BrokerClient client)
+    {
+        clients.remove(client);
+    }
+
+    private void deliver(Subscription subscription, BrokerClient publisher, Message message)
+    {
+        if (subscription.noLocal && subscription.client == publisher)
+        {
+            return;
+        }
+
+        final var latencyNs = deliveryLatencyNs;
+        if (latencyNs > 0)
+        {
+            pendingDeliveries.add(new Delivery(System.nanoTime() + latencyNs, subscription, message));
+            if (deliveryIdle)
+            {
+                LockSupport.unpark(deliveryThread);
+            }
+        }
+        else
+        {
+            deliverNow(subscription, message);
+        }
+    }
+
+    private void deliverNow(Subscription subscription, Message message)
+    {
+        if (!subscription.active)
+        {
+            return;
+        }
+
+        try
+        {
+            if (subscription.filter == null || subscription.filter.isFilterMatch(message.getPayload()))
+            {
+                deliveredCount.increment();
+                subscription.callback.accept(Either.right(message));
+            }
+        }
+        catch (RuntimeException e)
+        {
+            LOG.warn("Subscriber of {} on '{}' failed: {}", subscription.client, subscription.topicFilter, e.getMessage());
+        }
+    }
+
+    private void deliverPending()
+    {
+        while (!closed)
+        {
+            final var next = pendingDeliveries.peek();
+            if (next == null)
+            {
+                // park until deliver() queues a message, checking the queue again after announcing it
+                deliveryIdle = true;
+                if (pendingDeliveries.isEmpty() && !closed)
+                {
+                    LockSupport.park(this);
+                }
+                deliveryIdle = false;
+                continue;
+            }
+
+            final var waitNs = next.dueNs - System.nanoTime();
+            if (waitNs > 0)
+            {
+                LockSupport.parkNanos(waitNs);
+                continue;
+            }
+
+            pendingDeliveries.poll();
+            deliverNow(next.subscription, next.message);
+        }
+        pendingDeliveries.clear();
+    }
+
+    private static boolean isWildcard(String topicFilter)
+    {
+        return topicFilter.indexOf('+') >= 0 || topicFilter.indexOf('#') >= 0;
+    }
+
+    /**
+     * Matches a topic against a filter with MQTT wildcards: {@code +} matches one level, a trailing {@code #} any
+     * number of levels including the parent level. Topics starting with {@code $} are not matched by wildcards.
+     *
+     * @param topicFilter
+     *        the filter
+     * @param topic
+     *        the topic
+     * @return {@code true} if the topic matches
+     */
+    static boolean matches(String topicFilter, String topic)
+    {
+        if (topic.startsWith("$") && !topicFilter.startsWith("$"))
+        {
+            return false;
+        }
+
+        var f = 0;
+        var t = 0;
+        while (f < topicFilter.length())
+        {
+            final var c = topicFilter.charAt(f);
+            if (c == '#')
+            {
+                return true;
+            }
+            if (c == '+')
+            {
+                while (t < topic.length() && topic.charAt(t) != '/')
+                {
+                    t++;
+                }
+                f++;
+            }
+            else if (t < topic.length() && topic.charAt(t) == c)
+            {
+                f++;
+                t++;
+            }
+            else
+            {
+                // "a/#" also matches "a"
+                return t == topic.length() && topicFilter.startsWith("/#", f) && f + 2 == topicFilter.length();
+            }
+        }
+        return t == topic.length();
+    }
+
+    /**
+     * Message waiting for its delivery time.
+     */
+    private static final class Delivery
+    {
+        private final long dueNs;
+        private final Subscription subscription;
+        private final Message message;
+
+        private Delivery(long dueNs, Subscription subscription, Message message)
+        {
+            this.dueNs = dueNs;
+            this.subscription = subscription;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Subscription of a client to a topic filter.
+     */
+    static final class Subscription
+    {
+        private final BrokerClient client;
+        private final String topicFilter;
+        private final MessageFilterHandler filter;
+        private final Consumer<Either<Throwable, Message>> callback;
+        private final boolean noLocal;
+        private volatile boolean active = true;
+
+        private Subscription(BrokerClient client,
+                             String topicFilter,
+                             MessageFilterHandler filter,
+                             Consumer<Either<Throwable, Message>> callback,
+                             boolean noLocal)
+        {
+            this.client = client;
+            this.topicFilter = topicFilter;
+            this.filter = filter;
+            this.callback = callback;
+            this.noLocal = noLocal;
+        }
+
+        String getTopicFilter()
+        {
+            return topicFilter;
+        }
+    }
+}
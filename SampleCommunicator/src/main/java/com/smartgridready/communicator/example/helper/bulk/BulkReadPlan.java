@@ -0,0 +1,259 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import com.smartgridready.communicator.example.helper.DataPointKey;
+import com.smartgridready.communicator.example.helper.EidDataPoint;
+import com.smartgridready.communicator.example.helper.EidDataPoint.RegisterType;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec;
+
+/**
+ * Immutable plan of the transport calls needed to read a list of data points.
+ * <p>
+ * Modbus data points are sorted by register type and address and coalesced into blocks, each read with
+ * a single Modbus transaction. Two data points are put into the same block if the gap between them does
+ * not exceed the configured maximum gap and the block does not exceed the maximum PDU size (125 registers
+ * or 2000 bits). All other data points are read through the device API, each key once.
+ * <p>
+ * A plan is created once by {@link BulkReader#plan(List)} and can be executed any number of times.
+ */
+public final class BulkReadPlan
+{
+    /** Maximum number of registers of a single read transaction. */
+    public static final int MAX_REGISTERS_PER_READ = 125;
+
+    /** Maximum number of coils or discrete inputs of a single read transaction. */
+    public static final int MAX_BITS_PER_READ = 2000;
+
+    private final List<DataPointKey> keys;
+    private final EidDataPoint[] dataPoints;
+    private final List<Block> blocks;
+    private final int[] deviceReads;
+    private final int[] duplicateOf;
+
+    /**
+     * A block of registers or bits read with a single Modbus transaction.
+     */
+    static final class Block
+    {
+        final RegisterType registerType;
+        final int startAddress;
+        final int quantity;
+        final int[] members;
+        final int[] offsets;
+
+        private Block(RegisterType registerType, int startAddress, int quantity, int[] members, int[] offsets)
+        {
+            this.registerType = registerType;
+            this.startAddress = startAddress;
+            this.quantity = quantity;
+            this.members = members;
+            this.offsets = offsets;
+        }
+
+        @Override
+        public String toString()
+        {
+            return registerType + "@" + startAddress + "x" + quantity + " (" + members.length + " data points)";
+        }
+    }
+
+    private BulkReadPlan(List<DataPointKey> keys,
+                         EidDataPoint[] dataPoints,
+                         List<Block> blocks,
+                         int[] deviceReads,
+                         int[] duplicateOf)
+    {
+        this.keys = keys;
+        this.dataPoints = dataPoints;
+        this.blocks = blocks;
+        this.deviceReads = deviceReads;
+        this.duplicateOf = duplicateOf;
+    }
+
+    static BulkReadPlan create(EidDataPointIndex index, List<DataPointKey> keys, boolean useModbus, int maxGap)
+    {
+        final var size = keys.size();
+        final var dataPoints = new EidDataPoint[size];
+        final var duplicateOf = new int[size];
+        final var modbusMembers = new ArrayList<Integer>();
+        final var deviceReads = new ArrayList<Integer>();
+        final var firstIndexOfKey = new HashMap<DataPointKey, Integer>();
+
+        for (int i = 0; i < size; i++)
+        {
+            final var position = i;
+            dataPoints[i] = index.get(keys.get(i));
+            duplicateOf[i] = firstIndexOfKey.computeIfAbsent(keys.get(i), key -> position);
+
+            if (duplicateOf[i] != i)
+            {
+                continue;
+            }
+
+            if (useModbus && ModbusRegisterCodec.isSupported(dataPoints[i]))
+            {
+                modbusMembers.add(i);
+            }
+            else
+            {
+                deviceReads.add(i);
+            }
+        }
+
+        final var addressOffset = index.isFirstRegisterAddressIsOne() ? 1 : 0;
+        modbusMembers.sort(Comparator.<Integer, RegisterType>comparing(i -> dataPoints[i].getRegisterType())
+                .thenComparingInt(i -> dataPoints[i].getAddress()));
+
+        final var blocks = new ArrayList<Block>();
+        var blockMembers = new ArrayList<Integer>();
+
+        for (var member : modbusMembers)
+        {
+            if (!blockMembers.isEmpty() && !fitsIntoBlock(dataPoints, blockMembers, member, maxGap))
+            {
+                blocks.add(toBlock(dataPoints, blockMembers, addressOffset));
+                blockMembers = new ArrayList<>();
+            }
+            blockMembers.add(member);
+        }
+        if (!blockMembers.isEmpty())
+        {
+            blocks.add(toBlock(dataPoints, blockMembers, addressOffset));
+        }
+
+        return new BulkReadPlan(Collections.unmodifiableList(new ArrayList<>(keys)),
+                                dataPoints,
+                                Collections.unmodifiableList(blocks),
+                                deviceReads.stream().mapToInt(Integer::intValue).toArray(),
+                                duplicateOf);
+    }
+
+    /**
+     * @return number of data points of this plan
+     */
+    public int size()
+    {
+        return keys.size();
+    }
+
+    /**
+     * @return the keys of this plan, the result of data point {@code i} has index {@code i}
+     */
+    public List<DataPointKey> getKeys()
+    {
+        return keys;
+    }
+
+    /**
+     * @return number of Modbus transactions needed to execute this plan
+     */
+    public int getModbusTransactionCount()
+    {
+        return blocks.size();
+    }
+
+    /**
+     * @return number of data points read through the device API
+     */
+    public int getDeviceReadCount()
+    {
+        return deviceReads.length;
+    }
+
+    /**
+     * @return a new, empty result suitable for this plan
+     */
+    public BulkReadResult newResult()
+    {
+        return new BulkReadResult(keys);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BulkReadPlan [size=" + size() + ", modbusBlocks=" + blocks + ", deviceReads=" + deviceReads.length + "]";
+    }
+
+    List<Block> getBlocks()
+    {
+        return blocks;
+    }
+
+    int[] getDeviceReads()
+    {
+        return deviceReads;
+    }
+
+    int[] getDuplicateOf()
+    {
+        return duplicateOf;
+    }
+
+    EidDataPoint getDataPoint(int i)
+    {
+        return dataPoints[i];
+    }
+
+    private static boolean fitsIntoBlock(EidDataPoint[] dataPoints, List<Integer> blockMembers, int member, int maxGap)
+    {
+        final var first = dataPoints[blockMembers.get(0)];
+        final var candidate = dataPoints[member];
+
+        if (first.getRegisterType() != candidate.getRegisterType())
+        {
+            return false;
+        }
+
+        var end = 0;
+        for (var blockMember : blockMembers)
+        {
+            end = Math.max(end, dataPoints[blockMember].getAddress() + dataPoints[blockMember].getNumberOfRegisters());
+        }
+
+        final var maxQuantity = first.getRegisterType().isBit() ? MAX_BITS_PER_READ : MAX_REGISTERS_PER_READ;
+        final var newEnd = Math.max(end, candidate.getAddress() + candidate.getNumberOfRegisters());
+        return candidate.getAddress() - end <= maxGap && newEnd - first.getAddress() <= maxQuantity;
+    }
+
+    private static Block toBlock(EidDataPoint[] dataPoints, List<Integer> blockMembers, int addressOffset)
+    {
+        final var start = dataPoints[blockMembers.get(0)].getAddress();
+        final var members = new int[blockMembers.size()];
+        final var offsets = new int[blockMembers.size()];
+        var end = start;
+
+        for (int i = 0; i < members.length; i++)
+        {
+            final var dataPoint = dataPoints[blockMembers.get(i)];
+            members[i] = blockMembers.get(i);
+            offsets[i] = dataPoint.getAddress() - start;
+            end = Math.max(end, dataPoint.getAddress() + dataPoint.getNumberOfRegisters());
+        }
+
+        return new Block(dataPoints[members[0]].getRegisterType(), start - addressOffset, end - start, members, offsets);
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.bulk;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.smartgridready.communicator.common.api.values.Float64Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+
+/**
+ * Flat, preallocated result of a {@link BulkReadPlan}.
+ * <p>
+ * The result of data point {@code i} of the plan is stored at index {@code i}. Values read via Modbus are
+ * stored as primitive {@code double}, a {@link Value} instance is created on demand only. A result can be
+ * reused for subsequent executions of the same plan.
+ */
+public final class BulkReadResult
+{
+    private final List<DataPointKey> keys;
+    private final double[] values;
+    private final Value[] objects;
+    private final Throwable[] errors;
+
+    BulkReadResult(List<DataPointKey> keys)
+    {
+        this.keys = keys;
+        this.values = new double[keys.size()];
+        this.objects = new Value[keys.size()];
+        this.errors = new Throwable[keys.size()];
+    }
+
+    /**
+     * @return number of data points
+     */
+    public int size()
+    {
+        return values.length;
+    }
+
+    /**
+     * @param i
+     *        index of the data point within the plan
+     * @return key of the data point
+     */
+    public DataPointKey getKey(int i)
+    {
+        return keys.get(i);
+    }
+
+    /**
+     * @param i
+     *        index of the data point within the plan
+     * @return {@code true} if the data point was read successfully
+     */
+    public boolean isOk(int i)
+    {
+        return errors[i] == null;
+    }
+
+    /**
+     * @param i
+     *        index of the data point within the plan
+     * @return the error of the data point, {@code null} if read successfully
+     */
+    public Throwable getError(int i)
+    {
+        return errors[i];
+    }
+
+    /**
+     * Returns the numeric value of a data point without creating any objects for Modbus data points.
+     *
+     * @param i
+     *        index of the data point within the plan
+     * @return the value, {@code NaN} if the read failed
+     */
+    public double getDouble(int i)
+    {
+        if (errors[i] != null)
+        {
+            return Double.NaN;
+        }
+        return objects[i] != null ? objects[i].getFloat64() : values[i];
+    }
+
+    /**
+     * Returns the value of a data point, creating a {@link Value} instance for Modbus data points on demand.
+     *
+     * @param i
+     *        index of the data point within the plan
+     * @return the value, {@code null} if the read failed
+     */
+    public Value getValue(int i)
+    {
+        if (errors[i] != null)
+        {
+            return null;
+        }
+        if (objects[i] == null)
+        {
+            objects[i] = Float64Value.of(values[i]);
+        }
+        return objects[i];
+    }
+
+    @Override
+    public String toString()
+    {
+        final var sb = new StringBuilder("BulkReadResult [");
+
+        for (int i = 0; i < values.length; i++)
+        {
+            sb.append(i == 0 ? "" : ", ").append(keys.get(i)).append('=');
+            sb.append(errors[i] != null ? "ERROR(" + errors[i].getMessage() + ")" : String.valueOf(getDouble(i)));
+        }
+        return sb.append(']').toString();
+    }
+
+    void reset()
+    {
+        Arrays.fill(values, Double.NaN);
+        Arrays.fill(objects, null);
+        Arrays.fill(errors, null);
+    }
+
+    void setDouble(int i, double value)
+    {
+        values[i] = value;
+    }
+
+    void setValue(int i, Value value)
+    {
+        objects[i] = value;
+    }
+
+    void setError(int i, Throwable error)
+    {
+        errors[i] = error;
+    }
+
+    void copy(int from, int to)
+    {
+        values[to] = values[from];
+        objects[to] = objects[from];
+        errors[to] = errors[from];
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.bulk;
+
+import java.util.List;
+import java.util.Objects;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+import com.smartgridready.communicator.example.helper.EidDataPoint.RegisterType;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec.WordOrder;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * Reads a subset of the data points of a device with as few transport calls as possible.
+ * <p>
+ * The data points to read are planned once with {@link #plan(List)}. Modbus data points are read in
+ * coalesced register blocks directly from the Modbus transport and decoded according to the EID. All other
+ * data points (REST, messaging, or Modbus types that cannot be decoded here) are read once per key via the
+ * device API, which lets the commhandler handle the request and response mapping.
+ * <p>
+ * The Modbus transport must be the one used by the device, and callers must not access the device
+ * concurrently while a bulk read is running.
+ */
+public class BulkReader
+{
+    /** Default number of unused registers that may be read to merge two data points into one block. */
+    public static final int DEFAULT_MAX_GAP = 8;
+
+    private final GenDeviceApi device;
+    private final EidDataPointIndex index;
+    private final GenDriverAPI4Modbus modbusTransport;
+    private final WordOrder wordOrder;
+    private final int maxGap;
+
+    /**
+     * Constructor for devices without Modbus transport.
+     *
+     * @param device
+     *        the device
+     * @param index
+     *        the data point index of the device EID
+     */
+    public BulkReader(GenDeviceApi device, EidDataPointIndex index)
+    {
+        this(device, index, null, DEFAULT_MAX_GAP);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param device
+     *        the device
+     * @param index
+     *        the data point index of the device EID
+     * @param modbusTransport
+     *        the Modbus transport used by the device, {@code null} to read all data points via the device API
+     * @param maxGap
+     *        number of unused registers that may be read to merge two data points into one block
+     */
+    public BulkReader(GenDeviceApi device, EidDataPointIndex index, GenDriverAPI4Modbus modbusTransport, int maxGap)
+    {
+        this.device = Objects.requireNonNull(device);
+        this.index = Objects.requireNonNull(index);
+        this.modbusTransport = modbusTransport;
+        this.wordOrder = WordOrder.fromEid(index.getBitOrder());
+        this.maxGap = maxGap;
+    }
+
+    /**
+     * Plans the transport calls needed to read the given data points.
+     *
+     * @param keys
+     *        the data points to read, possibly spread over several functional profiles
+     * @return the plan
+     * @throws IllegalArgumentException
+     *         if a data point does not exist in the EID
+     */
+    public BulkReadPlan plan(List<DataPointKey> keys)
+    {
+        return BulkReadPlan.create(index, keys, modbusTransport != null, maxGap);
+    }
+
+    /**
+     * Executes a plan into a new result.
+     *
+     * @param plan
+     *        the plan
+     * @return the result
+     */
+    public BulkReadResult read(BulkReadPlan plan)
+    {
+        final var result = plan.newResult();
+        read(plan, result);
+        return result;
+    }
+
+    /**
+     * Executes a plan, reusing an existing result. Failures are reported per data point in the result.
+     *
+     * @param plan
+     *        the plan
+     * @param result
+     *        the result, created by {@link BulkReadPlan#newResult()}
+     */
+    public void read(BulkReadPlan plan, BulkReadResult result)
+    {
+        result.reset();
+
+        for (var block : plan.getBlocks())
+        {
+            readBlock(plan, block, result);
+        }
+
+        for (var i : plan.getDeviceReads())
+        {
+            final var key = plan.getKeys().get(i);
+            try
+            {
+                result.setValue(i, device.getVal(key.getProfileName(), key.getDataPointName()));
+            }
+            catch (Exception e)
+            {
+                result.setError(i, e);
+            }
+        }
+
+        final var duplicateOf = plan.getDuplicateOf();
+        for (int i = 0; i < duplicateOf.length; i++)
+        {
+            if (duplicateOf[i] != i)
+            {
+                result.copy(duplicateOf[i], i);
+            }
+        }
+    }
+
+    private void readBlock(BulkReadPlan plan, BulkReadPlan.Block block, BulkReadResult result)
+    {
+        try
+        {
+            if (block.registerType.isBit())
+            {
+                final var bits = block.registerType == RegisterType.COIL
+                        ? modbusTransport.ReadCoils(block.startAddress, block.quantity)
+                        : modbusTransport.ReadDiscreteInputs(block.startAddress, block.quantity);
+
+                for (int m = 0; m < block.members.length; m++)
+                {
+                    result.setDouble(block.members[m], ModbusRegisterCodec.decode(bits, block.offsets[m]));
+                }
+            }
+            else
+            {
+                final var registers = block.registerType == RegisterType.HOLD_REGISTER
+                        ? modbusTransport.ReadHoldingRegisters(block.startAddress, block.quantity)
+                        : modbusTransport.ReadInputRegisters(block.startAddress, block.quantity);
+
+                for (int m = 0; m < block.members.length; m++)
+                {
+                    final var member = block.members[m];
+                    result.setDouble(member, ModbusRegisterCodec.decode(plan.getDataPoint(member), registers, block.offsets[m], wordOrder));
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            for (var member : block.members)
+            {
+                result.setError(member, e);
+            }
+        }
+    }
+}
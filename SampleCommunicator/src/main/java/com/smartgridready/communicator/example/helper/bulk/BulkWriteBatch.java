@@ -0,0 +1,110 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+
+/**
+ * Collects the values of a coordinated set of data point writes, to be executed by a {@link BulkWriter}.
+ * <p>
+ * Numeric values are set as primitive {@code double}, using the ordinal for enums and the bit mask
+ * for bitmaps. Values set as {@link Value} are written through the device API. Setting a data point
+ * twice replaces the first value, keeping its position within the batch.
+ */
+public final class BulkWriteBatch
+{
+    private final Map<DataPointKey, Object> entries = new LinkedHashMap<>();
+
+    /**
+     * Sets a numeric value.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the value
+     * @return this batch
+     */
+    public BulkWriteBatch set(String profileName, String dataPointName, double value)
+    {
+        return set(DataPointKey.of(profileName, dataPointName), value);
+    }
+
+    /**
+     * Sets a numeric value.
+     *
+     * @param key
+     *        the data point
+     * @param value
+     *        the value
+     * @return this batch
+     */
+    public BulkWriteBatch set(DataPointKey key, double value)
+    {
+        entries.put(Objects.requireNonNull(key), value);
+        return this;
+    }
+
+    /**
+     * Sets a value that is written through the device API.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the value
+     * @return this batch
+     */
+    public BulkWriteBatch set(String profileName, String dataPointName, Value value)
+    {
+        entries.put(DataPointKey.of(profileName, dataPointName), Objects.requireNonNull(value));
+        return this;
+    }
+
+    /**
+     * @return number of data points of this batch
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return the data points of this batch, the outcome of data point {@code i} has index {@code i}
+     */
+    public List<DataPointKey> getKeys()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(entries.keySet()));
+    }
+
+    List<Object> getValues()
+    {
+        return new ArrayList<>(entries.values());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.bulk;
+
+import java.util.List;
+
+import com.smartgridready.communicator.example.helper.DataPointKey;
+
+/**
+ * Per data point outcome of a {@link BulkWriteBatch}.
+ * <p>
+ * The outcome of data point {@code i} of the batch is stored at index {@code i}.
+ */
+public final class BulkWriteResult
+{
+    private final List<DataPointKey> keys;
+    private final Throwable[] errors;
+    private final boolean[] written;
+    private int transactionCount = 0;
+
+    BulkWriteResult(List<DataPointKey> keys)
+    {
+        this.keys = keys;
+        this.errors = new Throwable[keys.size()];
+        this.written = new boolean[keys.size()];
+    }
+
+    /**
+     * @return number of data points
+     */
+    public int size()
+    {
+        return keys.size();
+    }
+
+    /**
+     * @param i
+     *        index of the data point within the batch
+     * @return key of the data point
+     */
+    public DataPointKey getKey(int i)
+    {
+        return keys.get(i);
+    }
+
+    /**
+     * @param i
+     *        index of the data point within the batch
+     * @return {@code true} if the value was written successfully
+     */
+    public boolean isOk(int i)
+    {
+        return written[i] && errors[i] == null;
+    }
+
+    /**
+     * @param i
+     *        index of the data point within the batch
+     * @return the error of the data point, {@code null} if written successfully
+     */
+    public Throwable getError(int i)
+    {
+        return errors[i];
+    }
+
+    /**
+     * @return {@code true} if all values were written successfully
+     */
+    public boolean isAllOk()
+    {
+        for (int i = 0; i < errors.length; i++)
+        {
+            if (!isOk(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of transport calls issued, Modbus transactions and device API writes
+     */
+    public int getTransactionCount()
+    {
+        return transactionCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        final var sb = new StringBuilder("BulkWriteResult [transactions=" + transactionCount);
+
+        for (int i = 0; i < errors.length; i++)
+        {
+            sb.append(", ").append(keys.get(i)).append('=');
+            sb.append(isOk(i) ? "OK" : "ERROR(" + (errors[i] != null ? errors[i].getMessage() : "not written") + ")");
+        }
+        return sb.append(']').toString();
+    }
+
+    void setWritten(int i)
+    {
+        written[i] = true;
+    }
+
+    void setError(int i, Throwable error)
+    {
+        if (errors[i] == null)
+        {
+            errors[i] = error;
+        }
+    }
+
+    boolean hasError(int i)
+    {
+        return errors[i] != null;
+    }
+
+    void countTransaction()
+    {
+        transactionCount++;
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.bulk;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Float64Value;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.EidDataPoint;
+import com.smartgridready.communicator.example.helper.EidDataPoint.RegisterType;
+import com.smartgridready.communicator.example.helper.EidDataPointIndex;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec;
+import com.smartgridready.communicator.example.helper.ModbusRegisterCodec.WordOrder;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * Writes a coordinated set of data point values with as few transport calls as possible.
+ * <p>
+ * Numeric values of Modbus data points are encoded according to the EID and sorted by address. Contiguous
+ * holding registers are merged into a single {@code WriteMultipleRegisters} transaction, contiguous coils
+ * into a single {@code WriteMultipleCoils} transaction. All other values are written through the device API.
+ * <p>
+ * In atomic mode (default), all values are validated and encoded before the first transaction is issued.
+ * If any value is invalid, nothing is written. If a transaction fails, the remaining transactions are not
+ * issued. The outcome of each data point is reported in the {@link BulkWriteResult}.
+ * <p>
+ * The Modbus transport must be the one used by the device, and callers must not access the device
+ * concurrently while a bulk write is running.
+ */
+public class BulkWriter
+{
+    /** Maximum number of registers of a single {@code WriteMultipleRegisters} transaction. */
+    public static final int MAX_REGISTERS_PER_WRITE = 123;
+
+    /** Maximum number of coils of a single {@code WriteMultipleCoils} transaction. */
+    public static final int MAX_COILS_PER_WRITE = 1968;
+
+    private final GenDeviceApi device;
+    private final EidDataPointIndex index;
+    private final GenDriverAPI4Modbus modbusTransport;
+    private final WordOrder wordOrder;
+
+    /**
+     * A Modbus value, encoded and ready to be written.
+     */
+    private static final class EncodedValue
+    {
+        private final int batchIndex;
+        private final EidDataPoint dataPoint;
+        private final int[] words;
+        private final boolean bit;
+
+        private EncodedValue(int batchIndex, EidDataPoint dataPoint, int[] words, boolean bit)
+        {
+            this.batchIndex = batchIndex;
+            this.dataPoint = dataPoint;
+            this.words = words;
+            this.bit = bit;
+        }
+
+        private int end()
+        {
+            return dataPoint.getAddress() + (dataPoint.getRegisterType().isBit() ? 1 : words.length);
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param device
+     *        the device
+     * @param index
+     *        the data point index of the device EID
+     * @param modbusTransport
+     *        the Modbus transport used by the device, {@code null} to write all values via the device API
+     */
+    public BulkWriter(GenDeviceApi device, EidDataPointIndex index, GenDriverAPI4Modbus modbusTransport)
+    {
+        this.device = Objects.requireNonNull(device);
+        this.index = Objects.requireNonNull(index);
+        this.modbusTransport = modbusTransport;
+        this.wordOrder = WordOrder.fromEid(index.getBitOrder());
+    }
+
+    /**
+     * Writes a batch in atomic mode.
+     *
+     * @param batch
+     *        the values to write
+     * @return the outcome per data point
+     */
+    public BulkWriteResult write(BulkWriteBatch batch)
+    {
+        return write(batch, true);
+    }
+
+    /**
+     * Writes a batch.
+     *
+     * @param batch
+     *        the values to write
+     * @param atomic
+     *        {@code true} to write nothing if any value is invalid and to stop at the first failed transaction,
+     *        {@code false} to write as many values as possible
+     * @return the outcome per data point
+     */
+    public BulkWriteResult write(BulkWriteBatch batch, boolean atomic)
+    {
+        final var keys = batch.getKeys();
+        final var values = batch.getValues();
+        final var result = new BulkWriteResult(keys);
+
+        final var modbusValues = new ArrayList<EncodedValue>();
+        final var deviceWrites = new ArrayList<Integer>();
+
+        // validate and encode all values before the first transaction
+        for (int i = 0; i < keys.size(); i++)
+        {
+            try
+            {
+                final var dataPoint = index.get(keys.get(i));
+                if (dataPoint.getDataDirection() != null && !dataPoint.getDataDirection().contains("W"))
+                {
+                    throw new IllegalArgumentException("Data point is not writable: " + dataPoint.getKey());
+                }
+
+                final var value = values.get(i);
+                if (value instanceof Double && isModbusWritable(dataPoint))
+                {
+                    modbusValues.add(encode(i, dataPoint, (Double) value));
+                }
+                else
+                {
+                    deviceWrites.add(i);
+                }
+            }
+            catch (IllegalArgumentException e)
+            {
+                result.setError(i, e);
+            }
+        }
+
+        if (atomic && hasAnyError(result))
+        {
+            abortAll(result, "Nothing written, batch contains invalid values");
+            return result;
+        }
+
+        var failed = false;
+
+        for (var transaction : coalesce(modbusValues))
+        {
+            if (failed && atomic)
+            {
+                transaction.forEach(value -> result.setError(value.batchIndex, notExecuted()));
+                continue;
+            }
+            failed |= !execute(transaction, result);
+        }
+
+        for (var i : deviceWrites)
+        {
+            if (failed && atomic)
+            {
+                result.setError(i, notExecuted());
+                continue;
+            }
+
+            try
+            {
+                final var key = keys.get(i);
+                final var value = values.get(i);
+                result.countTransaction();
+                device.setVal(key.getProfileName(), key.getDataPointName(),
+                              value instanceof Value ? (Value) value : Float64Value.of((Double) value));
+                result.setWritten(i);
+            }
+            catch (Exception e)
+            {
+                result.setError(i, e);
+                failed = true;
+            }
+        }
+
+        return result;
+    }
+
+    private boolean isModbusWritable(EidDataPoint dataPoint)
+    {
+        return modbusTransport != null
+                && ModbusRegisterCodec.isSupported(dataPoint)
+                && (dataPoint.getRegisterType() == RegisterType.HOLD_REGISTER || dataPoint.getRegisterType() == RegisterType.COIL);
+    }
+
+    private EncodedValue encode(int batchIndex, EidDataPoint dataPoint, double value)
+    {
+        if (dataPoint.getRegisterType() == RegisterType.COIL)
+        {
+            return new EncodedValue(batchIndex, dataPoint, null, value != 0.0);
+        }
+
+        final var words = new int[ModbusRegisterCodec.registerCount(dataPoint)];
+        ModbusRegisterCodec.encode(dataPoint, value, wordOrder, words, 0);
+        return new EncodedValue(batchIndex, dataPoint, words, false);
+    }
+
+    private static List<List<EncodedValue>> coalesce(List<EncodedValue> modbusValues)
+    {
+        modbusValues.sort(Comparator.<EncodedValue, RegisterType>comparing(value -> value.dataPoint.getRegisterType())
+                .thenComparingInt(value -> value.dataPoint.getAddress()));
+
+        final var transactions = new ArrayList<List<EncodedValue>>();
+        List<EncodedValue> current = null;
+
+        for (var value : modbusValues)
+        {
+            if (current != null && isContiguous(current, value))
+            {
+                current.add(value);
+            }
+            else
+            {
+                current = new ArrayList<>();
+                current.add(value);
+                transactions.add(current);
+            }
+        }
+        return transactions;
+    }
+
+    private static boolean isContiguous(List<EncodedValue> transaction, EncodedValue value)
+    {
+        final var first = transaction.get(0);
+        final var last = transaction.get(transaction.size() - 1);
+        final var maxQuantity = first.dataPoint.getRegisterType().isBit() ? MAX_COILS_PER_WRITE : MAX_REGISTERS_PER_WRITE;
+
+        return first.dataPoint.getRegisterType() == value.dataPoint.getRegisterType()
+                && last.end() == value.dataPoint.getAddress()
+                && value.end() - first.dataPoint.getAddress() <= maxQuantity;
+    }
+
+    private boolean execute(List<EncodedValue> transaction, BulkWriteResult result)
+    {
+        final var first = transaction.get(0);
+        final var address = first.dataPoint.getAddress() - (index.isFirstRegisterAddressIsOne() ? 1 : 0);
+
+        try
+        {
+            result.countTransaction();
+
+            if (first.dataPoint.getRegisterType() == RegisterType.COIL)
+            {
+                final var bits = new boolean[transaction.size()];
+                for (int i = 0; i < bits.length; i++)
+                {
+                    bits[i] = transaction.get(i).bit;
+                }
+
+                if (bits.length == 1)
+                {
+                    modbusTransport.WriteSingleCoil(address, bits[0]);
+                }
+                else
+                {
+                    modbusTransport.WriteMultipleCoils(address, bits);
+                }
+            }
+            else
+            {
+                final var registers = new int[transaction.get(transaction.size() - 1).end() - first.dataPoint.getAddress()];
+                for (var value : transaction)
+                {
+                    System.arraycopy(value.words, 0, registers, value.dataPoint.getAddress() - first.dataPoint.getAddress(), value.words.length);
+                }
+
+                if (registers.length == 1)
+                {
+                    modbusTransport.WriteSingleRegister(address, registers[0]);
+                }
+                else
+                {
+                    modbusTransport.WriteMultipleRegisters(address, registers);
+                }
+            }
+
+            transaction.forEach(value -> result.setWritten(value.batchIndex));
+            return true;
+        }
+        catch (Exception e)
+        {
+            transaction.forEach(value -> result.setError(value.batchIndex, e));
+            return false;
+        }
+    }
+
+    private static boolean hasAnyError(BulkWriteResult result)
+    {
+        for (int i = 0; i < result.size(); i++)
+        {
+            if (result.hasError(i))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void abortAll(BulkWriteResult result, String reason)
+    {
+        for (int i = 0; i < result.size(); i++)
+        {
+            result.setError(i, new IllegalStateException(reason));
+        }
+    }
+
+    private static IllegalStateException notExecuted()
+    {
+        return new IllegalStateException("Not written, a previous transaction of the batch failed");
+    }
+}
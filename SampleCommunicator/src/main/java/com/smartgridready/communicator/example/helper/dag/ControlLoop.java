@@ -0,0 +1,238 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.dag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Control loop reading data points, computing write values from them and writing the values, processed as one
+ * {@link TaskGraph} per cycle.
+ * <p>
+ * With the asynchronous API, the caller runs a read chain, sets the values of the {@code WriteExec}s from the
+ * results and then runs a write chain. A control loop instead wires the read results through a compute function
+ * into the writes: each write starts as soon as the reads it depends on have succeeded. A write is skipped if the
+ * computed value equals the value written last, compared by {@code equals()}, so the loop only talks to the devices
+ * whose set point changed. After a failed write, the value is written again in the next cycle.
+ */
+public class ControlLoop
+{
+    private final TaskGraph graph = new TaskGraph();
+    private final AtomicInteger writtenCount = new AtomicInteger();
+    private final AtomicInteger unchangedCount = new AtomicInteger();
+    private final List<AtomicReference<Object>> lastWritten = new ArrayList<>();
+
+    /**
+     * Writes a computed value to a device, e.g. {@code value -> device.setVal(profile, dataPoint, Float32Value.of(value))}.
+     *
+     * @param <V>
+     *        the value type
+     */
+    @FunctionalInterface
+    public interface Writer<V>
+    {
+        /**
+         * @param value
+         *        the value to write
+         * @throws Exception
+         *         if the write failed
+         */
+        void write(V value) throws Exception;
+    }
+
+    /**
+     * Defines the capacity of a resource used by reads and writes, see {@link TaskGraph#resource(String, int)}.
+     *
+     * @param resourceName
+     *        name of the resource
+     * @param capacity
+     *        number of concurrent users
+     * @return this loop
+     */
+    public ControlLoop resource(String resourceName, int capacity)
+    {
+        graph.resource(resourceName, capacity);
+        return this;
+    }
+
+    /**
+     * Adds a read to the loop.
+     *
+     * @param <T>
+     *        the result type
+     * @param name
+     *        name of the read, used in the report
+     * @param reader
+     *        the device call
+     * @return the read node, to be passed as input of writes and to get its result in compute functions
+     */
+    public <T> TaskNode<T> read(String name, Callable<T> reader)
+    {
+        return graph.node(name, reader);
+    }
+
+    /**
+     * Adds a write to the loop. The write value is computed after all inputs have been read and written unless it
+     * equals the value written last.
+     *
+     * @param <V>
+     *        the value type
+     * @param name
+     *        name of the write, used in the report
+     * @param compute
+     *        computes the value from the results of the inputs
+     * @param writer
+     *        the device call
+     * @param inputs
+     *        the reads (or other nodes) the value is computed from
+     * @return the write node, its result is the computed value
+     */
+    public <V> TaskNode<V> write(String name, Callable<V> compute, Writer<V> writer, TaskNode<?>... inputs)
+    {
+        Objects.requireNonNull(compute);
+        Objects.requireNonNull(writer);
+
+        final var last = new AtomicReference<Object>();
+        synchronized (lastWritten)
+        {
+            lastWritten.add(last);
+        }
+
+        return graph.node(name, () -> {
+            final var value = compute.call();
+            if (value != null && value.equals(last.get()))
+            {
+                unchangedCount.incrementAndGet();
+                return value;
+            }
+
+            // forget the last value first, so that a failed write is repeated in the next cycle
+            last.set(null);
+            writer.write(value);
+            last.set(value);
+            writtenCount.incrementAndGet();
+            return value;
+        }).dependsOn(inputs);
+    }
+
+    /**
+     * Forgets the values written last, so that all values are written in the next cycle, e.g. after a device
+     * has been restarted.
+     */
+    public void invalidate()
+    {
+        synchronized (lastWritten)
+        {
+            lastWritten.forEach(last -> last.set(null));
+        }
+    }
+
+    /**
+     * Runs one cycle using a shared thread pool, blocking until all reads and writes have finished or were skipped.
+     *
+     * @return the result of the cycle
+     */
+    public Cycle run()
+    {
+        return cycle(graph::process);
+    }
+
+    /**
+     * Runs one cycle, blocking until all reads and writes have finished or were skipped.
+     *
+     * @param executor
+     *        executor running the device calls
+     * @return the result of the cycle
+     */
+    public Cycle run(ExecutorService executor)
+    {
+        return cycle(() -> graph.process(executor));
+    }
+
+    private Cycle cycle(Supplier<TaskGraph.Report> process)
+    {
+        writtenCount.set(0);
+        unchangedCount.set(0);
+        final var report = process.get();
+        return new Cycle(report, writtenCount.get(), unchangedCount.get());
+    }
+
+    /**
+     * Result of a cycle of a control loop.
+     */
+    public static final class Cycle
+    {
+        private final TaskGraph.Report report;
+        private final int writtenCount;
+        private final int unchangedCount;
+
+        private Cycle(TaskGraph.Report report, int writtenCount, int unchangedCount)
+        {
+            this.report = report;
+            this.writtenCount = writtenCount;
+            this.unchangedCount = unchangedCount;
+        }
+
+        /**
+         * @return the report of the graph run, with the timing of each read and write
+         */
+        public TaskGraph.Report getReport()
+        {
+            return report;
+        }
+
+        /**
+         * @return duration of the cycle in milliseconds
+         */
+        public double getElapsedMs()
+        {
+            return report.getElapsedMs();
+        }
+
+        /**
+         * @return number of values written to the devices
+         */
+        public int getWrittenCount()
+        {
+            return writtenCount;
+        }
+
+        /**
+         * @return number of writes skipped because the value did not change
+         */
+        public int getUnchangedCount()
+        {
+            return unchangedCount;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Cycle [elapsed=" + String.format("%.1f", getElapsedMs()) + "ms, written=" + writtenCount
+                    + ", unchanged=" + unchangedCount + ", " + report.getCount(TaskNode.Status.ERROR) + " errors, "
+                    + report.getCount(TaskNode.Status.SKIPPED) + " skipped]";
+        }
+    }
+}
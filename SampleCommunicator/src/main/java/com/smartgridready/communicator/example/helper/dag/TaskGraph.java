@@ -0,0 +1,459 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.dag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.smartgridready.communicator.example.helper.dag.TaskNode.Status;
+
+/**
+ * Dependency graph of device calls, an alternative to nesting {@code Parallel} and {@code Sequence} of the
+ * asynchronous API.
+ * <p>
+ * A tree of parallel and sequential chains can only express "all of these, then all of those". With a graph, each
+ * {@link TaskNode} declares the nodes it depends on and the resources it uses, e.g. the serial bus shared by several
+ * Modbus RTU devices. {@link #process()} starts each node as soon as its dependencies have succeeded and its
+ * resources are free, so a write waits for exactly the reads it needs and not for unrelated slow devices. Nodes
+ * whose dependencies failed are {@link Status#SKIPPED}.
+ * <p>
+ * When several ready nodes compete for a resource, the node with the longest expected path to the end of the graph
+ * is started first. The {@link Report} of a run lists the critical path, i.e. the chain of dependencies and resource
+ * waits that determined the total duration.
+ * <p>
+ * A graph can be processed repeatedly, but not concurrently.
+ */
+public class TaskGraph
+{
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final var thread = new Thread(runnable, "task-graph-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<TaskNode<?>> nodes = new ArrayList<>();
+    private final Map<String, Integer> capacities = new HashMap<>();
+
+    // state of the current run, guarded by this
+    private final Map<String, Integer> resourcesInUse = new HashMap<>();
+    private final List<TaskNode<?>> ready = new ArrayList<>();
+    private ExecutorService executor;
+    private CompletableFuture<Void> done;
+    private int unfinished;
+
+    /**
+     * Defines the capacity of a resource, i.e. the number of nodes that may use it at the same time. Resources not
+     * defined have a capacity of 1.
+     *
+     * @param resourceName
+     *        name of the resource
+     * @param capacity
+     *        number of concurrent users
+     * @return this graph
+     */
+    public synchronized TaskGraph resource(String resourceName, int capacity)
+    {
+        if (capacity < 1)
+        {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        capacities.put(resourceName, capacity);
+        return this;
+    }
+
+    /**
+     * Adds a node to the graph.
+     *
+     * @param <T>
+     *        the result type
+     * @param name
+     *        name of the node, used in the report
+     * @param action
+     *        the device call
+     * @return the node, to declare its dependencies and resources
+     */
+    public synchronized <T> TaskNode<T> node(String name, Callable<T> action)
+    {
+        final var node = new TaskNode<>(this, name, action);
+        nodes.add(node);
+        return node;
+    }
+
+    /**
+     * @return the nodes of the graph, in the order they were added
+     */
+    public synchronized List<TaskNode<?>> getNodes()
+    {
+        return Collections.unmodifiableList(new ArrayList<>(nodes));
+    }
+
+    /**
+     * Processes the graph using a shared thread pool, blocking until all nodes have finished or were skipped.
+     *
+     * @return the report of the run
+     */
+    public Report process()
+    {
+        return process(DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Processes the graph, blocking until all nodes have finished or were skipped.
+     *
+     * @param executor
+     *        executor running the device calls, one thread per concurrent node; an executor running tasks on the
+     *        calling thread, e.g. with a caller-runs policy, serializes the nodes it runs
+     * @return the report of the run
+     */
+    public Report process(ExecutorService executor)
+    {
+        final long startNs;
+        final CompletableFuture<Void> finished;
+
+        synchronized (this)
+        {
+            if (done != null)
+            {
+                throw new IllegalStateException("Graph is already being processed");
+            }
+            startNs = System.nanoTime();
+            this.executor = executor;
+            done = new CompletableFuture<>();
+            finished = done;
+            start(startNs);
+        }
+
+        finished.join();
+
+        synchronized (this)
+        {
+            done = null;
+            this.executor = null;
+            return new Report(startNs, nodes);
+        }
+    }
+
+    private void start(long nowNs)
+    {
+        resourcesInUse.clear();
+        ready.clear();
+        unfinished = nodes.size();
+
+        for (var node : nodes)
+        {
+            node.reset();
+        }
+        for (var node : nodes)
+        {
+            prioritize(node);
+        }
+        for (var node : nodes)
+        {
+            if (node.missingDependencies == 0)
+            {
+                makeReady(node, null, nowNs);
+            }
+        }
+        dispatch(null, nowNs);
+        checkDone();
+    }
+
+    /**
+     * Computes the expected duration of the longest path from the start of the node to the end of the graph.
+     */
+    private static long prioritize(TaskNode<?> node)
+    {
+        if (node.priorityNs < 0)
+        {
+            long longestDependent = 0;
+            for (var dependent : node.dependents())
+            {
+                longestDependent = Math.max(longestDependent, prioritize(dependent));
+            }
+            node.priorityNs = node.estimateNs() + longestDependent;
+        }
+        return node.priorityNs;
+    }
+
+    private void makeReady(TaskNode<?> node, TaskNode<?> trigger, long nowNs)
+    {
+        node.readyNs = nowNs;
+        node.blockedBy = trigger;
+        ready.add(node);
+    }
+
+    /**
+     * Starts all ready nodes whose resources are free, by descending priority.
+     */
+    private void dispatch(TaskNode<?> trigger, long nowNs)
+    {
+        ready.sort(Comparator.comparingLong((TaskNode<?> node) -> node.priorityNs).reversed());
+
+        // the nodes are executed after the iteration, a caller-runs executor finishes them and changes the ready list
+        final var started = new ArrayList<TaskNode<?>>();
+        final var iterator = ready.iterator();
+        while (iterator.hasNext())
+        {
+            final var node = iterator.next();
+            if (!isAvailable(node))
+            {
+                continue;
+            }
+            iterator.remove();
+
+            if (node.readyNs != nowNs && trigger != null)
+            {
+                // the node was ready before and waited for the resource released by the trigger
+                node.blockedBy = trigger;
+            }
+            for (var resource : node.getResources())
+            {
+                resourcesInUse.merge(resource, 1, Integer::sum);
+            }
+            node.status = Status.RUNNING;
+            node.startNs = nowNs;
+            started.add(node);
+        }
+
+        for (var node : started)
+        {
+            try
+            {
+                executor.execute(() -> run(node));
+            }
+            catch (RejectedExecutionException e)
+            {
+                final var endNs = System.nanoTime();
+                node.fail(e);
+                release(node);
+                finish(node, false, endNs);
+                dispatch(node, endNs);
+            }
+        }
+    }
+
+    private boolean isAvailable(TaskNode<?> node)
+    {
+        for (var resource : node.getResources())
+        {
+            if (resourcesInUse.getOrDefault(resource, 0) >= capacities.getOrDefault(resource, 1))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void run(TaskNode<?> node)
+    {
+        boolean success = false;
+        try
+        {
+            success = node.call();
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                final var nowNs = System.nanoTime();
+                release(node);
+                finish(node, success, nowNs);
+                dispatch(node, nowNs);
+                checkDone();
+            }
+        }
+    }
+
+    private void release(TaskNode<?> node)
+    {
+        for (var resource : node.getResources())
+        {
+            resourcesInUse.merge(resource, -1, Integer::sum);
+        }
+    }
+
+    private void finish(TaskNode<?> node, boolean success, long nowNs)
+    {
+        node.status = success ? Status.SUCCESS : Status.ERROR;
+        node.endNs = nowNs;
+        unfinished--;
+
+        for (var dependent : node.dependents())
+        {
+            if (success)
+            {
+                if (--dependent.missingDependencies == 0 && dependent.status == Status.PENDING)
+                {
+                    makeReady(dependent, node, nowNs);
+                }
+            }
+            else
+            {
+                skip(dependent, nowNs);
+            }
+        }
+    }
+
+    private void skip(TaskNode<?> node, long nowNs)
+    {
+        if (node.status != Status.PENDING)
+        {
+            return;
+        }
+        node.status = Status.SKIPPED;
+        node.startNs = nowNs;
+        node.endNs = nowNs;
+        unfinished--;
+
+        for (var dependent : node.dependents())
+        {
+            skip(dependent, nowNs);
+        }
+    }
+
+    private void checkDone()
+    {
+        if (unfinished == 0)
+        {
+            done.complete(null);
+        }
+    }
+
+    /**
+     * Report of a run of a graph.
+     */
+    public static final class Report
+    {
+        private final long startNs;
+        private final long elapsedNs;
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<String> criticalPath = new ArrayList<>();
+        private final Map<Status, Integer> counts = new EnumMap<>(Status.class);
+
+        private Report(long startNs, List<TaskNode<?>> nodes)
+        {
+            this.startNs = startNs;
+
+            TaskNode<?> last = null;
+            long endNs = startNs;
+            for (var node : nodes)
+            {
+                entries.add(new Entry(node));
+                counts.merge(node.status, 1, Integer::sum);
+                if (node.status != Status.SKIPPED && (last == null || node.endNs - last.endNs > 0))
+                {
+                    last = node;
+                }
+                if (node.endNs - endNs > 0)
+                {
+                    endNs = node.endNs;
+                }
+            }
+            this.elapsedNs = endNs - startNs;
+
+            for (var node = last; node != null; node = node.blockedBy)
+            {
+                criticalPath.add(0, node.getName());
+            }
+        }
+
+        /**
+         * @return duration of the run in milliseconds
+         */
+        public double getElapsedMs()
+        {
+            return elapsedNs / 1e6;
+        }
+
+        /**
+         * @param status
+         *        the status
+         * @return number of nodes with the given status
+         */
+        public int getCount(Status status)
+        {
+            return counts.getOrDefault(status, 0);
+        }
+
+        /**
+         * Returns the critical path: the node that finished last, preceded by the dependency or resource holder it
+         * waited for last, and so on back to the start of the run. Shortening any other node does not shorten the
+         * run.
+         *
+         * @return names of the nodes on the critical path, in execution order
+         */
+        public List<String> getCriticalPath()
+        {
+            return Collections.unmodifiableList(criticalPath);
+        }
+
+        @Override
+        public String toString()
+        {
+            final var builder = new StringBuilder();
+            builder.append(String.format("Report [elapsed=%.1fms, %s]%n", getElapsedMs(), counts));
+            for (var entry : entries)
+            {
+                builder.append(String.format("  %c %-24s %-8s ready=%7.1fms start=%7.1fms end=%7.1fms%n",
+                                             criticalPath.contains(entry.name) ? '*' : ' ',
+                                             entry.name,
+                                             entry.status,
+                                             (entry.readyNs - startNs) / 1e6,
+                                             (entry.startNs - startNs) / 1e6,
+                                             (entry.endNs - startNs) / 1e6));
+            }
+            builder.append("  critical path: ").append(String.join(" -> ", criticalPath));
+            return builder.toString();
+        }
+
+        /**
+         * Timing of a node, copied at the end of the run.
+         */
+        private static final class Entry
+        {
+            private final String name;
+            private final Status status;
+            private final long readyNs;
+            private final long startNs;
+            private final long endNs;
+
+            private Entry(TaskNode<?> node)
+            {
+                this.name = node.getName();
+                this.status = node.status;
+                this.readyNs = node.status == Status.SKIPPED ? node.startNs : node.readyNs;
+                this.startNs = node.startNs;
+                this.endNs = node.endNs;
+            }
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.dag;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * A node of a {@link TaskGraph}: a device call that runs as soon as the nodes it depends on have succeeded and the
+ * resources it uses are free.
+ * <p>
+ * Nodes are created by {@link TaskGraph#node(String, Callable)}. The result of a node can be used by the nodes that
+ * depend on it, e.g. a write node computing its value from the results of read nodes.
+ *
+ * @param <T>
+ *        the result type
+ */
+public class TaskNode<T>
+{
+    private final TaskGraph graph;
+    private final String name;
+    private final Callable<T> action;
+    private final Set<TaskNode<?>> dependencies = new LinkedHashSet<>();
+    private final List<TaskNode<?>> dependents = new ArrayList<>();
+    private final Set<String> resources = new LinkedHashSet<>();
+    private long estimateNs = 1_000_000;
+
+    // state of the current run, guarded by the run of the graph
+    Status status = Status.PENDING;
+    int missingDependencies;
+    long readyNs;
+    long startNs;
+    long endNs;
+    TaskNode<?> blockedBy;
+    long priorityNs;
+
+    private volatile T result;
+    private volatile Throwable error;
+
+    /**
+     * Status of a node in the current run.
+     */
+    public enum Status
+    {
+        /** Waiting for dependencies or resources. */
+        PENDING,
+        /** The call is in progress. */
+        RUNNING,
+        /** The call succeeded. */
+        SUCCESS,
+        /** The call failed. */
+        ERROR,
+        /** Not called, because a dependency did not succeed. */
+        SKIPPED
+    }
+
+    TaskNode(TaskGraph graph, String name, Callable<T> action)
+    {
+        this.graph = graph;
+        this.name = Objects.requireNonNull(name);
+        this.action = Objects.requireNonNull(action);
+    }
+
+    /**
+     * Declares that this node runs only after the given nodes have succeeded.
+     *
+     * @param nodes
+     *        the nodes this node depends on, of the same graph
+     * @return this node
+     */
+    public TaskNode<T> dependsOn(TaskNode<?>... nodes)
+    {
+        for (var node : nodes)
+        {
+            if (node.graph != graph)
+            {
+                throw new IllegalArgumentException("Node " + node.name + " belongs to another graph");
+            }
+            if (node == this || node.dependsTransitivelyOn(this))
+            {
+                throw new IllegalArgumentException("Dependency " + name + " -> " + node.name + " creates a cycle");
+            }
+            if (dependencies.add(node))
+            {
+                node.dependents.add(this);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Declares that this node uses a resource, e.g. a shared serial bus. A resource is used by at most as many
+     * nodes at the same time as its capacity allows.
+     *
+     * @param resourceName
+     *        name of the resource, defined by {@link TaskGraph#resource(String, int)} or of capacity 1
+     * @return this node
+     */
+    public TaskNode<T> uses(String resourceName)
+    {
+        resources.add(Objects.requireNonNull(resourceName));
+        return this;
+    }
+
+    /**
+     * Sets the expected duration of the call. The scheduler starts the nodes with the longest expected remaining
+     * path first when several nodes compete for a resource.
+     *
+     * @param estimate
+     *        the expected duration
+     * @return this node
+     */
+    public TaskNode<T> estimate(Duration estimate)
+    {
+        this.estimateNs = estimate.toNanos();
+        return this;
+    }
+
+    /**
+     * @return name of the node
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return status in the current or last run
+     */
+    public Status getStatus()
+    {
+        synchronized (graph)
+        {
+            return status;
+        }
+    }
+
+    /**
+     * @return result of the call, {@code null} unless the status is {@link Status#SUCCESS}
+     */
+    public T getResult()
+    {
+        return result;
+    }
+
+    /**
+     * @return the error of the call, if the status is {@link Status#ERROR}
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    /**
+     * @return the nodes this node depends on
+     */
+    public Set<TaskNode<?>> getDependencies()
+    {
+        return Collections.unmodifiableSet(dependencies);
+    }
+
+    /**
+     * @return the resources this node uses
+     */
+    public Set<String> getResources()
+    {
+        return Collections.unmodifiableSet(resources);
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    List<TaskNode<?>> dependents()
+    {
+        return dependents;
+    }
+
+    long estimateNs()
+    {
+        return estimateNs;
+    }
+
+    void reset()
+    {
+        status = Status.PENDING;
+        missingDependencies = dependencies.size();
+        readyNs = 0;
+        startNs = 0;
+        endNs = 0;
+        blockedBy = null;
+        priorityNs = -1;
+        result = null;
+        error = null;
+    }
+
+    /**
+     * Executes the call, on a thread of the executor.
+     *
+     * @return {@code true} on success
+     */
+    boolean call()
+    {
+        try
+        {
+            result = action.call();
+            return true;
+        }
+        catch (Exception e)
+        {
+            error = e;
+            return false;
+        }
+    }
+
+    void fail(Throwable cause)
+    {
+        error = cause;
+    }
+
+    private boolean dependsTransitivelyOn(TaskNode<?> node)
+    {
+        for (var dependency : dependencies)
+        {
+            if (dependency == node || dependency.dependsTransitivelyOn(node))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
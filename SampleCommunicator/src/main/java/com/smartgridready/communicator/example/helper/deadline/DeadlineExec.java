@@ -0,0 +1,303 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.deadline;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A read of one data point with an optional timeout, executed by a {@link DeadlineProcessor}.
+ * <p>
+ * The counterpart of {@code ReadExec} of the asynchronous API. In addition, the read is abandoned when its own
+ * timeout or the deadline of its chain has passed: its status becomes {@link Status#TIMED_OUT} and the thread
+ * executing the transport call is interrupted. Transports waiting interruptibly, like the pooled and non-blocking
+ * Modbus TCP transports, then return immediately.
+ * <p>
+ * An instance can be processed repeatedly. A late result of an abandoned call does not change the status of a later run.
+ *
+ * @param <T>
+ *        the value type
+ */
+public class DeadlineExec<T>
+{
+    private final String profileName;
+    private final String dataPointName;
+    private final DataPointReader<T> reader;
+    private final long timeoutNs;
+
+    private volatile Attempt<T> attempt = new Attempt<>(System.nanoTime());
+
+    /**
+     * Status of a read.
+     */
+    public enum Status
+    {
+        /** Not started yet. */
+        PENDING,
+        /** The transport call is in progress. */
+        RUNNING,
+        /** The value has been read. */
+        SUCCESS,
+        /** The transport call failed. */
+        ERROR,
+        /** The transport call was abandoned when the timeout or the chain deadline passed. */
+        TIMED_OUT,
+        /** Not started, because the chain deadline had passed before. */
+        SKIPPED
+    }
+
+    /**
+     * Reads a data point, e.g. {@code device::getVal}.
+     *
+     * @param <T>
+     *        the value type
+     */
+    @FunctionalInterface
+    public interface DataPointReader<T>
+    {
+        /**
+         * @param profileName
+         *        name of the functional profile
+         * @param dataPointName
+         *        name of the data point
+         * @return the value
+         * @throws Exception
+         *         if the read failed
+         */
+        T read(String profileName, String dataPointName) throws Exception;
+    }
+
+    /**
+     * Constructor for a read limited by the chain deadline only.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param reader
+     *        the read function
+     */
+    public DeadlineExec(String profileName, String dataPointName, DataPointReader<T> reader)
+    {
+        this(profileName, dataPointName, reader, Duration.ZERO);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param reader
+     *        the read function
+     * @param timeout
+     *        maximum duration of the read, {@code Duration.ZERO} for no own timeout
+     */
+    public DeadlineExec(String profileName, String dataPointName, DataPointReader<T> reader, Duration timeout)
+    {
+        this.profileName = Objects.requireNonNull(profileName);
+        this.dataPointName = Objects.requireNonNull(dataPointName);
+        this.reader = Objects.requireNonNull(reader);
+        this.timeoutNs = timeout.toNanos();
+    }
+
+    /**
+     * @return status of the last run
+     */
+    public Status getStatus()
+    {
+        return attempt.status;
+    }
+
+    /**
+     * @return the value read, {@code null} unless the status is {@link Status#SUCCESS}
+     */
+    public T getValue()
+    {
+        return attempt.value;
+    }
+
+    /**
+     * @return the error, if the status is {@link Status#ERROR}
+     */
+    public Throwable getError()
+    {
+        return attempt.error;
+    }
+
+    /**
+     * @return duration from the start of the run until the read finished or was abandoned, in milliseconds
+     */
+    public double getLatencyMs()
+    {
+        final var current = attempt;
+        return current.endNs == 0 ? Double.NaN : (current.endNs - current.startNs) / 1e6;
+    }
+
+    /**
+     * @return name of the functional profile
+     */
+    public String getProfileName()
+    {
+        return profileName;
+    }
+
+    /**
+     * @return name of the data point
+     */
+    public String getDataPointName()
+    {
+        return dataPointName;
+    }
+
+    @Override
+    public String toString()
+    {
+        final var current = attempt;
+        return "DeadlineExec [" + profileName + '/' + dataPointName + ", status=" + current.status
+                + (current.status == Status.SUCCESS ? ", value=" + current.value : "")
+                + (current.status == Status.ERROR ? ", error=" + current.error : "")
+                + ", latency=" + String.format("%.1f", getLatencyMs()) + "ms]";
+    }
+
+    /**
+     * Resets the status for a new run.
+     */
+    void reset(long runStartNs)
+    {
+        attempt = new Attempt<>(runStartNs);
+    }
+
+    /**
+     * Starts the read unless the deadline has passed.
+     *
+     * @return completes when the read has finished, was abandoned or skipped
+     */
+    CompletableFuture<Void> start(ExecutorService executor, ScheduledExecutorService timer, long chainDeadlineNs)
+    {
+        final var current = attempt;
+        final var now = System.nanoTime();
+        final var deadlineNs = timeoutNs > 0 && now + timeoutNs - chainDeadlineNs < 0 ? now + timeoutNs : chainDeadlineNs;
+
+        if (now - deadlineNs >= 0)
+        {
+            current.finish(Status.SKIPPED, null, null);
+            return current.done;
+        }
+
+        synchronized (current)
+        {
+            if (current.status != Status.PENDING)
+            {
+                // abandoned by the chain deadline before it was started
+                return current.done;
+            }
+            current.status = Status.RUNNING;
+            current.task = executor.submit(() -> run(current));
+            current.timeout = timer.schedule(current::abandon, deadlineNs - now, TimeUnit.NANOSECONDS);
+        }
+        return current.done;
+    }
+
+    /**
+     * Abandons the read of the current run, if it has not finished yet.
+     */
+    void expire()
+    {
+        attempt.abandon();
+    }
+
+    private void run(Attempt<T> current)
+    {
+        try
+        {
+            current.finish(Status.SUCCESS, reader.read(profileName, dataPointName), null);
+        }
+        catch (InterruptedException e)
+        {
+            // abandoned, the status has been set already
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e)
+        {
+            current.finish(Status.ERROR, null, e);
+        }
+    }
+
+    /**
+     * State of one run.
+     */
+    private static final class Attempt<T>
+    {
+        private final long startNs;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile Status status = Status.PENDING;
+        private volatile T value;
+        private volatile Throwable error;
+        private volatile long endNs;
+        private Future<?> task;
+        private ScheduledFuture<?> timeout;
+
+        private Attempt(long startNs)
+        {
+            this.startNs = startNs;
+        }
+
+        private void abandon()
+        {
+            finish(null, null, null);
+        }
+
+        /**
+         * Sets the final status, unless set already. A {@code null} status abandons the run.
+         */
+        private void finish(Status newStatus, T newValue, Throwable newError)
+        {
+            synchronized (this)
+            {
+                if (status != Status.PENDING && status != Status.RUNNING)
+                {
+                    return;
+                }
+                value = newValue;
+                error = newError;
+                endNs = System.nanoTime();
+                status = newStatus != null ? newStatus : (status == Status.PENDING ? Status.SKIPPED : Status.TIMED_OUT);
+
+                if (timeout != null)
+                {
+                    timeout.cancel(false);
+                }
+                if (status == Status.TIMED_OUT && task != null)
+                {
+                    // interrupt the transport call
+                    task.cancel(true);
+                }
+            }
+            done.complete(null);
+        }
+    }
+}
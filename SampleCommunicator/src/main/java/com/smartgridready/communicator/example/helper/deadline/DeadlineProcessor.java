@@ -0,0 +1,279 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.deadline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.smartgridready.communicator.example.helper.deadline.DeadlineExec.Status;
+
+/**
+ * Processing chain with deadlines, the counterpart of {@code Parallel} and {@code Sequence} of the asynchronous API.
+ * <p>
+ * A chain executes its {@link DeadlineExec}s and nested chains either in parallel or in sequence. Each chain can
+ * have a timeout, which applies from the start of the chain to all reads below it, and each read can have its own
+ * timeout. {@link #process()} returns at the latest when the timeout of the outermost chain has passed, with the
+ * results available by then: reads still running are marked {@link Status#TIMED_OUT} and interrupted, reads not
+ * started yet are marked {@link Status#SKIPPED}. A sequence continues with the next read when a read timed out,
+ * as long as the chain deadline allows.
+ * <p>
+ * Nested chains are kept by reference, so reads added to a chain after it has been nested are processed as well.
+ */
+public class DeadlineProcessor
+{
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final var thread = new Thread(runnable, "deadline-exec-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final var thread = new Thread(runnable, "deadline-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final boolean parallel;
+    private final List<Object> children = new ArrayList<>();
+    private long timeoutNs = 0;
+
+    private DeadlineProcessor(boolean parallel)
+    {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @return a new chain executing its children in parallel
+     */
+    public static DeadlineProcessor parallel()
+    {
+        return new DeadlineProcessor(true);
+    }
+
+    /**
+     * @return a new chain executing its children one after the other
+     */
+    public static DeadlineProcessor sequence()
+    {
+        return new DeadlineProcessor(false);
+    }
+
+    /**
+     * @param exec
+     *        read to add to the chain
+     * @return this chain
+     */
+    public DeadlineProcessor add(DeadlineExec<?> exec)
+    {
+        children.add(exec);
+        return this;
+    }
+
+    /**
+     * @param chain
+     *        nested chain to add to this chain
+     * @return this chain
+     */
+    public DeadlineProcessor add(DeadlineProcessor chain)
+    {
+        if (chain.contains(this))
+        {
+            throw new IllegalArgumentException("A chain cannot be nested into itself");
+        }
+        children.add(chain);
+        return this;
+    }
+
+    /**
+     * Sets the timeout of this chain, measured from the start of the chain.
+     *
+     * @param timeout
+     *        the timeout, {@code Duration.ZERO} for none
+     * @return this chain
+     */
+    public DeadlineProcessor withTimeout(Duration timeout)
+    {
+        this.timeoutNs = timeout.toNanos();
+        return this;
+    }
+
+    /**
+     * Processes the chain using a shared thread pool, blocking until all reads have finished or the chain
+     * deadline has passed.
+     *
+     * @return the result summary
+     */
+    public Result process()
+    {
+        return process(DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Processes the chain, blocking until all reads have finished or the chain deadline has passed.
+     *
+     * @param executor
+     *        executor running the transport calls, one thread per concurrent read
+     * @return the result summary
+     */
+    public Result process(ExecutorService executor)
+    {
+        final var execs = execs();
+        final var startNs = System.nanoTime();
+        for (var exec : execs)
+        {
+            exec.reset(startNs);
+        }
+
+        start(executor, startNs + (timeoutNs > 0 ? timeoutNs : Long.MAX_VALUE / 2)).join();
+        return new Result(System.nanoTime() - startNs, execs);
+    }
+
+    /**
+     * @return the reads of this chain and of all nested chains
+     */
+    private List<DeadlineExec<?>> execs()
+    {
+        final var execs = new ArrayList<DeadlineExec<?>>();
+        for (var child : children)
+        {
+            if (child instanceof DeadlineExec)
+            {
+                execs.add((DeadlineExec<?>) child);
+            }
+            else
+            {
+                execs.addAll(((DeadlineProcessor) child).execs());
+            }
+        }
+        return execs;
+    }
+
+    private boolean contains(DeadlineProcessor chain)
+    {
+        return this == chain
+                || children.stream().anyMatch(child -> child instanceof DeadlineProcessor && ((DeadlineProcessor) child).contains(chain));
+    }
+
+    private CompletableFuture<Void> start(ExecutorService executor, long parentDeadlineNs)
+    {
+        final var now = System.nanoTime();
+        final var deadlineNs = timeoutNs > 0 && now + timeoutNs - parentDeadlineNs < 0 ? now + timeoutNs : parentDeadlineNs;
+
+        CompletableFuture<Void> done;
+        if (parallel)
+        {
+            final var started = new ArrayList<CompletableFuture<Void>>();
+            for (var child : children)
+            {
+                started.add(startChild(child, executor, deadlineNs));
+            }
+            done = CompletableFuture.allOf(started.toArray(new CompletableFuture<?>[0]));
+        }
+        else
+        {
+            done = CompletableFuture.completedFuture(null);
+            for (var child : children)
+            {
+                done = done.thenCompose(v -> startChild(child, executor, deadlineNs));
+            }
+        }
+
+        if (timeoutNs > 0)
+        {
+            // abandon whatever is left when the deadline of this chain has passed
+            final var execs = execs();
+            final ScheduledFuture<?> expiry = TIMER.schedule(() -> execs.forEach(DeadlineExec::expire),
+                                                             deadlineNs - now,
+                                                             TimeUnit.NANOSECONDS);
+            done.whenComplete((v, e) -> expiry.cancel(false));
+        }
+        return done;
+    }
+
+    private static CompletableFuture<Void> startChild(Object child, ExecutorService executor, long deadlineNs)
+    {
+        if (child instanceof DeadlineExec)
+        {
+            return ((DeadlineExec<?>) child).start(executor, TIMER, deadlineNs);
+        }
+        return ((DeadlineProcessor) child).start(executor, deadlineNs);
+    }
+
+    /**
+     * Summary of a run of a chain.
+     */
+    public static final class Result
+    {
+        private final long elapsedNs;
+        private final Map<Status, Integer> counts = new EnumMap<>(Status.class);
+
+        private Result(long elapsedNs, List<DeadlineExec<?>> execs)
+        {
+            this.elapsedNs = elapsedNs;
+            for (var exec : execs)
+            {
+                counts.merge(exec.getStatus(), 1, Integer::sum);
+            }
+        }
+
+        /**
+         * @return duration of the run in milliseconds
+         */
+        public double getElapsedMs()
+        {
+            return elapsedNs / 1e6;
+        }
+
+        /**
+         * @param status
+         *        the status
+         * @return number of reads with the given status
+         */
+        public int getCount(Status status)
+        {
+            return counts.getOrDefault(status, 0);
+        }
+
+        /**
+         * @return {@code true} if all reads have finished, successfully or not, before the deadline
+         */
+        public boolean isComplete()
+        {
+            return getCount(Status.TIMED_OUT) == 0 && getCount(Status.SKIPPED) == 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Result [elapsed=" + String.format("%.1f", getElapsedMs()) + "ms, " + counts + "]";
+        }
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.encode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.smartgridready.communicator.common.api.dto.DataPointValue;
+
+/**
+ * Base class of the streaming encoders for batches of {@link DataPointValue}, as returned by {@code getValues()}.
+ * <p>
+ * A batch is written directly to an {@link OutputStream}, through a buffer that is reused for all batches, or into
+ * a {@link ByteBuffer} provided by the caller. Primitive values are written without boxing and without intermediate
+ * strings. An encoder is not thread-safe, use one encoder per northbound connection.
+ */
+public abstract class BatchEncoder
+{
+    /** Default size of the reused buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private static final int MIN_BUFFER_SIZE = 64;
+
+    private final ByteBuffer buffer;
+    private final byte[] digits = new byte[20];
+
+    private ByteBuffer target;
+    private OutputStream out;
+    private long encodedBytes;
+    private long batchCount;
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize
+     *        size of the buffer reused when writing to an output stream
+     */
+    protected BatchEncoder(int bufferSize)
+    {
+        if (bufferSize < MIN_BUFFER_SIZE)
+        {
+            throw new IllegalArgumentException("bufferSize must be at least " + MIN_BUFFER_SIZE + ": " + bufferSize);
+        }
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Writes a batch to an output stream. The stream is neither flushed nor closed.
+     *
+     * @param batch
+     *        the values
+     * @param outputStream
+     *        the stream
+     * @throws IOException
+     *         if the stream cannot be written
+     */
+    public void encode(List<DataPointValue> batch, OutputStream outputStream) throws IOException
+    {
+        out = outputStream;
+        target = buffer;
+        buffer.clear();
+        try
+        {
+            writeBatch(batch);
+            flush();
+            batchCount++;
+        }
+        finally
+        {
+            out = null;
+            target = null;
+        }
+    }
+
+    /**
+     * Writes a batch into a byte buffer, starting at its position.
+     *
+     * @param batch
+     *        the values
+     * @param byteBuffer
+     *        the buffer, its position is advanced by the number of bytes written
+     * @return the number of bytes written
+     * @throws BufferOverflowException
+     *         if the batch does not fit into the buffer, the position of the buffer is undefined then
+     */
+    public int encode(List<DataPointValue> batch, ByteBuffer byteBuffer)
+    {
+        final var start = byteBuffer.position();
+        target = byteBuffer;
+        try
+        {
+            writeBatch(batch);
+            batchCount++;
+        }
+        catch (IOException e)
+        {
+            // cannot happen without output stream
+            throw new UncheckedIOException(e);
+        }
+        finally
+        {
+            target = null;
+        }
+
+        final var written = byteBuffer.position() - start;
+        encodedBytes += written;
+        return written;
+    }
+
+    /**
+     * @return total number of bytes written
+     */
+    public long getEncodedBytes()
+    {
+        return encodedBytes;
+    }
+
+    /**
+     * @return total number of batches written
+     */
+    public long getBatchCount()
+    {
+        return batchCount;
+    }
+
+    /**
+     * Writes a batch using the {@code put...()} methods.
+     *
+     * @param batch
+     *        the values
+     * @throws IOException
+     *         if the output stream cannot be written
+     */
+    protected abstract void writeBatch(List<DataPointValue> batch) throws IOException;
+
+    protected void putByte(int value) throws IOException
+    {
+        ensure(1);
+        target.put((byte) value);
+    }
+
+    protected void putFloat(float value) throws IOException
+    {
+        ensure(Float.BYTES);
+        target.putFloat(value);
+    }
+
+    protected void putDouble(double value) throws IOException
+    {
+        ensure(Double.BYTES);
+        target.putDouble(value);
+    }
+
+    protected void putLong(long value) throws IOException
+    {
+        ensure(Long.BYTES);
+        target.putLong(value);
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint.
+     *
+     * @param value
+     *        the value, treated as unsigned
+     * @throws IOException
+     *         if the output stream cannot be written
+     */
+    protected void putVarLong(long value) throws IOException
+    {
+        // 7 bits per byte, at least one byte
+        ensure(Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7));
+        var remaining = value;
+        while ((remaining & ~0x7fL) != 0)
+        {
+            target.put((byte) ((remaining & 0x7f) | 0x80));
+            remaining >>>= 7;
+        }
+        target.put((byte) remaining);
+    }
+
+    /**
+     * Writes the decimal digits of a long in ASCII.
+     *
+     * @param value
+     *        the value
+     * @throws IOException
+     *         if the output stream cannot be written
+     */
+    protected void putDecimal(long value) throws IOException
+    {
+        if (value == Long.MIN_VALUE)
+        {
+            putAscii("-9223372036854775808");
+            return;
+        }
+        if (value < 0)
+        {
+            putByte('-');
+        }
+
+        var remaining = Math.abs(value);
+        var count = 0;
+        do
+        {
+            digits[count++] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        while (remaining != 0);
+
+        ensure(count);
+        while (count > 0)
+        {
+            target.put(digits[--count]);
+        }
+    }
+
+    /**
+     * Writes the digits of a non-negative long in ASCII, left padded with zeros.
+     *
+     * @param value
+     *        the value
+     * @param width
+     *        minimum number of digits
+     * @throws IOException
+     *         if the output stream cannot be written
+     */
+    protected void putDigits(long value, int width) throws IOException
+    {
+        var remaining = value;
+        var count = 0;
+        while (remaining != 0 || count < width)
+        {
+            digits[count++] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+
+        ensure(count);
+        while (count > 0)
+        {
+            target.put(digits[--count]);
+        }
+    }
+
+    /**
+     * Writes a string consisting of ASCII characters only.
+     *
+     * @param text
+     *        the text
+     * @throws IOException
+     *         if the output stream cannot be written
+     */
+    protected void putAscii(String text) throws IOException
+    {
+        if (text.length() > buffer.capacity())
+        {
+            for (int i = 0; i < text.length(); i++)
+            {
+                putByte(text.charAt(i));
+            }
+            return;
+        }
+
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            target.put((byte) text.charAt(i));
+        }
+    }
+
+    /**
+     * Writes pre-encoded bytes, e.g. constant field names.
+     *
+     * @param bytes
+     *        the bytes
+     * @throws IOException
+     *         if the output stream cannot be written
+     */
+    protected void putBytes(byte[] bytes) throws IOException
+    {
+        if (bytes.length > buffer.capacity())
+        {
+            for (var b : bytes)
+            {
+                putByte(b);
+            }
+            return;
+        }
+
+        ensure(bytes.length);
+        target.put(bytes);
+    }
+
+    /**
+     * Writes a character in UTF-8.
+     *
+     * @param text
+     *        the text containing the character
+     * @param index
+     *        index of the character, a high surrogate is combined with the following low surrogate
+     * @return number of chars consumed
+     * @throws IOException
+     *         if the output stream cannot be written
+     */
+    protected int putUtf8(String text, int index) throws IOException
+    {
+        final var c = text.charAt(index);
+
+        // ensure only the width of this character, a caller-supplied buffer may end right after it
+        if (c < 0x80)
+        {
+            ensure(1);
+            target.put((byte) c);
+            return 1;
+        }
+        if (c < 0x800)
+        {
+            ensure(2);
+            target.put((byte) (0xc0 | (c >> 6)));
+            target.put((byte) (0x80 | (c & 0x3f)));
+            return 1;
+        }
+        if (Character.isHighSurrogate(c) && index + 1 < text.length() && Character.isLowSurrogate(text.charAt(index + 1)))
+        {
+            final var codePoint = Character.toCodePoint(c, text.charAt(index + 1));
+            ensure(4);
+            target.put((byte) (0xf0 | (codePoint >> 18)));
+            target.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+            target.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+            target.put((byte) (0x80 | (codePoint & 0x3f)));
+            return 2;
+        }
+        // unpaired surrogates are written as is, like modified UTF-8
+        ensure(3);
+        target.put((byte) (0xe0 | (c >> 12)));
+        target.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+        target.put((byte) (0x80 | (c & 0x3f)));
+        return 1;
+    }
+
+    /**
+     * Computes the number of bytes of a string in UTF-8, as written by {@link #putUtf8(String, int)}.
+     *
+     * @param text
+     *        the text
+     * @return the length in bytes
+     */
+    protected static int utf8Length(String text)
+    {
+        var length = 0;
+        for (int i = 0; i < text.length(); i++)
+        {
+            final var c = text.charAt(i);
+            if (c < 0x80)
+            {
+                length += 1;
+            }
+            else if (c < 0x800)
+            {
+                length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1)))
+            {
+                length += 4;
+                i++;
+            }
+            else
+            {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private void ensure(int count) throws IOException
+    {
+        if (target.remaining() < count)
+        {
+            if (out == null)
+            {
+                throw new BufferOverflowException();
+            }
+            flush();
+        }
+    }
+
+    private void flush() throws IOException
+    {
+        buffer.flip();
+        out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+        encodedBytes += buffer.limit();
+        buffer.clear();
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.encode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.smartgridready.communicator.common.api.dto.DataPointValue;
+import com.smartgridready.communicator.common.api.values.Value;
+
+/**
+ * Encodes batches of {@link DataPointValue} in a compact binary format.
+ * <p>
+ * Data point names are sent once per stream: the first time a data point occurs, it is defined with its names and
+ * gets the next id, starting at {@code 1}. Later occurrences refer to it by id only. A decoder therefore has to read
+ * the stream from the start, or from the first batch after {@link #reset()}.
+ *
+ * <pre>
+ * batch    = version:byte count:varint entry*
+ * entry    = 0:varint profile:string dataPoint:string value    (definition of the next id)
+ *          | id:varint value
+ * value    = NULL | FLOAT32 float32 | FLOAT64 float64 | INTEGER zigzag-varint
+ *          | FALSE | TRUE | ENUM ordinal:varint literal:string
+ *          | BITMAP count:varint (name:string flag:byte)* | STRING string
+ * string   = length:varint utf-8-bytes
+ * </pre>
+ *
+ * Floats are big-endian IEEE 754, varints are unsigned LEB128. Values without a binary representation, e.g.
+ * unsigned 64 bit integers, are written as {@code STRING}.
+ */
+public class BinaryBatchEncoder extends BatchEncoder
+{
+    /** Format version, first byte of each batch. */
+    public static final int VERSION = 1;
+
+    public static final int TAG_NULL = 0;
+    public static final int TAG_FLOAT32 = 1;
+    public static final int TAG_FLOAT64 = 2;
+    public static final int TAG_INTEGER = 3;
+    public static final int TAG_FALSE = 4;
+    public static final int TAG_TRUE = 5;
+    public static final int TAG_ENUM = 6;
+    public static final int TAG_BITMAP = 7;
+    public static final int TAG_STRING = 8;
+
+    private final Map<String, Map<String, Integer>> ids = new HashMap<>();
+    private int nextId = 1;
+
+    /**
+     * Constructor using {@link #DEFAULT_BUFFER_SIZE}.
+     */
+    public BinaryBatchEncoder()
+    {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize
+     *        size of the buffer reused when writing to an output stream
+     */
+    public BinaryBatchEncoder(int bufferSize)
+    {
+        super(bufferSize);
+    }
+
+    /**
+     * Forgets the data point ids, e.g. when a new consumer connects. The next batch defines its data points again.
+     */
+    public void reset()
+    {
+        ids.clear();
+        nextId = 1;
+    }
+
+    /**
+     * @return number of data points defined on the stream
+     */
+    public int getDefinedCount()
+    {
+        return nextId - 1;
+    }
+
+    @Override
+    protected void writeBatch(List<DataPointValue> batch) throws IOException
+    {
+        putByte(VERSION);
+        putVarLong(batch.size());
+
+        for (int i = 0; i < batch.size(); i++)
+        {
+            final var dataPointValue = batch.get(i);
+            putName(dataPointValue.getFunctionalProfileName(), dataPointValue.getDataPointName());
+            putValue(dataPointValue.getValue());
+        }
+    }
+
+    private void putName(String profileName, String dataPointName) throws IOException
+    {
+        final var byDataPoint = ids.computeIfAbsent(profileName, key -> new HashMap<>());
+        final var id = byDataPoint.get(dataPointName);
+
+        if (id != null)
+        {
+            putVarLong(id);
+            return;
+        }
+
+        byDataPoint.put(dataPointName, nextId++);
+        putVarLong(0);
+        putString(profileName);
+        putString(dataPointName);
+    }
+
+    private void putValue(Value value) throws IOException
+    {
+        final var kind = ValueKind.of(value);
+        if (kind == null)
+        {
+            putByte(TAG_NULL);
+            return;
+        }
+
+        switch (kind)
+        {
+            case FLOAT32:
+                putByte(TAG_FLOAT32);
+                putFloat(value.getFloat32());
+                break;
+            case FLOAT64:
+                putByte(TAG_FLOAT64);
+                putDouble(value.getFloat64());
+                break;
+            case INTEGER:
+                putByte(TAG_INTEGER);
+                putZigZag(value.getInt64());
+                break;
+            case BOOLEAN:
+                putByte("true".equalsIgnoreCase(value.getString()) ? TAG_TRUE : TAG_FALSE);
+                break;
+            case ENUM:
+                putByte(TAG_ENUM);
+                putEnum(value);
+                break;
+            case BITMAP:
+                putByte(TAG_BITMAP);
+                putBitmap(value.getBitmap());
+                break;
+            default:
+                putByte(TAG_STRING);
+                putString(value.getString());
+                break;
+        }
+    }
+
+    private void putZigZag(long value) throws IOException
+    {
+        putVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void putEnum(Value value) throws IOException
+    {
+        final var enumRecord = value.getEnum();
+        putVarLong(enumRecord.getOrdinal());
+        putString(enumRecord.getLiteral());
+    }
+
+    private void putBitmap(Map<String, Boolean> bitmap) throws IOException
+    {
+        putVarLong(bitmap.size());
+        for (var entry : bitmap.entrySet())
+        {
+            putString(entry.getKey());
+            putByte(Boolean.TRUE.equals(entry.getValue()) ? 1 : 0);
+        }
+    }
+
+    private void putString(String text) throws IOException
+    {
+        final var nonNull = text != null ? text : "";
+        final var length = utf8Length(nonNull);
+        putVarLong(length);
+
+        if (length == nonNull.length())
+        {
+            putAscii(nonNull);
+            return;
+        }
+        for (int i = 0; i < nonNull.length();)
+        {
+            i += putUtf8(nonNull, i);
+        }
+    }
+}
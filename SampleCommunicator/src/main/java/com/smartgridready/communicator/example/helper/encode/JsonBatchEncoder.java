@@ -0,0 +1,269 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.encode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.smartgridready.communicator.common.api.dto.DataPointValue;
+import com.smartgridready.communicator.common.api.values.Value;
+
+/**
+ * Encodes batches of {@link DataPointValue} as JSON, one array per batch, terminated by a newline (JSON lines):
+ *
+ * <pre>
+ * [{"functionalProfile":"VoltageAC","dataPoint":"VoltageL1","value":230.1},...]
+ * </pre>
+ *
+ * Numbers are written with up to 7 (float32) or 15 (float64) significant digits, NaN and infinity as {@code null}.
+ * Integers are written as numbers, enums by their literal, bitmaps as object of booleans and all other values by
+ * their string representation.
+ */
+public class JsonBatchEncoder extends BatchEncoder
+{
+    private static final int FLOAT32_DIGITS = 7;
+    private static final int FLOAT64_DIGITS = 15;
+    private static final int MAX_FRACTION_DIGITS = 18;
+
+    private static final byte[] PROFILE_FIELD = "{\"functionalProfile\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DATA_POINT_FIELD = ",\"dataPoint\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUE_FIELD = ",\"value\":".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long[] POWERS_OF_10 = new long[MAX_FRACTION_DIGITS + 1];
+
+    static
+    {
+        POWERS_OF_10[0] = 1;
+        for (int i = 1; i < POWERS_OF_10.length; i++)
+        {
+            POWERS_OF_10[i] = POWERS_OF_10[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Constructor using {@link #DEFAULT_BUFFER_SIZE}.
+     */
+    public JsonBatchEncoder()
+    {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize
+     *        size of the buffer reused when writing to an output stream
+     */
+    public JsonBatchEncoder(int bufferSize)
+    {
+        super(bufferSize);
+    }
+
+    @Override
+    protected void writeBatch(List<DataPointValue> batch) throws IOException
+    {
+        putByte('[');
+        for (int i = 0; i < batch.size(); i++)
+        {
+            final var dataPointValue = batch.get(i);
+            if (i > 0)
+            {
+                putByte(',');
+            }
+            putBytes(PROFILE_FIELD);
+            putString(dataPointValue.getFunctionalProfileName());
+            putBytes(DATA_POINT_FIELD);
+            putString(dataPointValue.getDataPointName());
+            putBytes(VALUE_FIELD);
+            putValue(dataPointValue.getValue());
+            putByte('}');
+        }
+        putByte(']');
+        putByte('\n');
+    }
+
+    private void putValue(Value value) throws IOException
+    {
+        final var kind = ValueKind.of(value);
+        if (kind == null)
+        {
+            putAscii("null");
+            return;
+        }
+
+        switch (kind)
+        {
+            case FLOAT32:
+                putNumber(value.getFloat32(), FLOAT32_DIGITS);
+                break;
+            case FLOAT64:
+                putNumber(value.getFloat64(), FLOAT64_DIGITS);
+                break;
+            case INTEGER:
+                putDecimal(value.getInt64());
+                break;
+            case BOOLEAN:
+                putAscii("true".equalsIgnoreCase(value.getString()) ? "true" : "false");
+                break;
+            case ENUM:
+                putString(value.getEnum().getLiteral());
+                break;
+            case BITMAP:
+                putBitmap(value);
+                break;
+            default:
+                putString(value.getString());
+                break;
+        }
+    }
+
+    private void putBitmap(Value value) throws IOException
+    {
+        putByte('{');
+        var first = true;
+        for (var entry : value.getBitmap().entrySet())
+        {
+            if (!first)
+            {
+                putByte(',');
+            }
+            first = false;
+            putString(entry.getKey());
+            putByte(':');
+            putAscii(Boolean.TRUE.equals(entry.getValue()) ? "true" : "false");
+        }
+        putByte('}');
+    }
+
+    private void putNumber(double value, int significantDigits) throws IOException
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            putAscii("null");
+            return;
+        }
+        if (value == 0.0)
+        {
+            putByte('0');
+            return;
+        }
+
+        final var magnitude = Math.abs(value);
+        final var exponent = exponent(magnitude);
+        var fractionDigits = Math.max(0, significantDigits - 1 - exponent);
+
+        if (exponent >= MAX_FRACTION_DIGITS || fractionDigits > MAX_FRACTION_DIGITS)
+        {
+            // very large or small values are rare, they are written in scientific notation
+            putAscii(Double.toString(value));
+            return;
+        }
+
+        final var scale = POWERS_OF_10[fractionDigits];
+        final var scaled = Math.round(magnitude * scale);
+        var fraction = scaled % scale;
+
+        if (value < 0)
+        {
+            putByte('-');
+        }
+        putDecimal(scaled / scale);
+
+        if (fraction != 0)
+        {
+            while (fraction % 10 == 0)
+            {
+                fraction /= 10;
+                fractionDigits--;
+            }
+            putByte('.');
+            putDigits(fraction, fractionDigits);
+        }
+    }
+
+    private static int exponent(double magnitude)
+    {
+        if (magnitude < 1.0)
+        {
+            return (int) Math.floor(Math.log10(magnitude));
+        }
+
+        var exponent = 0;
+        while (exponent + 1 < POWERS_OF_10.length && magnitude >= POWERS_OF_10[exponent + 1])
+        {
+            exponent++;
+        }
+        return exponent;
+    }
+
+    private void putString(String text) throws IOException
+    {
+        if (text == null)
+        {
+            putAscii("null");
+            return;
+        }
+
+        putByte('"');
+        if (isPlainAscii(text))
+        {
+            // fast path for names and literals, which usually do not need escaping
+            putAscii(text);
+            putByte('"');
+            return;
+        }
+
+        for (int i = 0; i < text.length();)
+        {
+            final var c = text.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                putByte('\\');
+                putByte(c);
+                i++;
+            }
+            else if (c < 0x20)
+            {
+                putAscii("\\u00");
+                putByte(Character.forDigit(c >> 4, 16));
+                putByte(Character.forDigit(c & 0xf, 16));
+                i++;
+            }
+            else
+            {
+                i += putUtf8(text, i);
+            }
+        }
+        putByte('"');
+    }
+
+    private static boolean isPlainAscii(String text)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            final var c = text.charAt(i);
+            if (c < 0x20 || c >= 0x80 || c == '"' || c == '\\')
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.encode;
+
+import java.util.List;
+
+import com.smartgridready.communicator.common.api.values.BitmapValue;
+import com.smartgridready.communicator.common.api.values.BooleanValue;
+import com.smartgridready.communicator.common.api.values.EnumValue;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Float64Value;
+import com.smartgridready.communicator.common.api.values.Int16UValue;
+import com.smartgridready.communicator.common.api.values.Int16Value;
+import com.smartgridready.communicator.common.api.values.Int32UValue;
+import com.smartgridready.communicator.common.api.values.Int32Value;
+import com.smartgridready.communicator.common.api.values.Int64Value;
+import com.smartgridready.communicator.common.api.values.Int8UValue;
+import com.smartgridready.communicator.common.api.values.Int8Value;
+import com.smartgridready.communicator.common.api.values.StringValue;
+import com.smartgridready.communicator.common.api.values.Value;
+
+/**
+ * Kind of a {@link Value}, determining how the encoders and the {@code ValueSnapshot} write it.
+ * <p>
+ * The kind is determined once per value class. The signed and unsigned integer values of all widths up to 32 bit
+ * and {@code Int64Value} are written as {@code long}. Unsigned 64 bit values may exceed a {@code long} and are
+ * written as text.
+ */
+public enum ValueKind
+{
+    FLOAT32,
+    FLOAT64,
+    INTEGER,
+    BOOLEAN,
+    ENUM,
+    BITMAP,
+    STRING,
+    OTHER;
+
+    private static final List<Class<? extends Value>> INTEGER_CLASSES = List.of(Int8Value.class,
+                                                                               Int8UValue.class,
+                                                                               Int16Value.class,
+                                                                               Int16UValue.class,
+                                                                               Int32Value.class,
+                                                                               Int32UValue.class,
+                                                                               Int64Value.class);
+
+    private static final ClassValue<ValueKind> KINDS = new ClassValue<>()
+    {
+        @Override
+        protected ValueKind computeValue(Class<?> type)
+        {
+            return classify(type);
+        }
+    };
+
+    /**
+     * @param value
+     *        the value, may be {@code null}
+     * @return the kind of the value, {@code null} if the value is {@code null}
+     */
+    public static ValueKind of(Value value)
+    {
+        return value != null ? KINDS.get(value.getClass()) : null;
+    }
+
+    private static ValueKind classify(Class<?> type)
+    {
+        if (Float32Value.class.isAssignableFrom(type))
+        {
+            return FLOAT32;
+        }
+        if (Float64Value.class.isAssignableFrom(type))
+        {
+            return FLOAT64;
+        }
+        if (EnumValue.class.isAssignableFrom(type))
+        {
+            return ENUM;
+        }
+        if (BitmapValue.class.isAssignableFrom(type))
+        {
+            return BITMAP;
+        }
+        if (StringValue.class.isAssignableFrom(type))
+        {
+            return STRING;
+        }
+        if (BooleanValue.class.isAssignableFrom(type))
+        {
+            return BOOLEAN;
+        }
+        for (var integerClass : INTEGER_CLASSES)
+        {
+            if (integerClass.isAssignableFrom(type))
+            {
+                return INTEGER;
+            }
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,735 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.fleet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * Owns the lifecycle of a fleet of devices and executes their calls on worker threads sharded by transport.
+ * <p>
+ * Each device is registered with a shard key naming its transport, i.e. the RTU line, the TCP host or the MQTT broker
+ * (see {@link #rtuShard(String)}, {@link #tcpShard(String)}, {@link #mqttShard(String)}). All devices of a shard are
+ * served by the same worker thread, so the calls to one transport never compete with each other, and a slow transport
+ * delays only the shards of its worker. Shards are assigned to the worker with the fewest devices.
+ * <p>
+ * {@link #connectAll()} builds and connects the devices in parallel, with a bounded number of concurrent connects so
+ * that gateways and brokers are not flooded at startup. Connects and disconnects are executed on the worker of the
+ * shard as well, so the devices of one transport connect one after the other and never while a call is running. The fleet-wide views ({@link #getConnectedCount()},
+ * {@link #getMaxLagMs()}, ...) are maintained incrementally and can be called at any rate.
+ */
+public class DeviceFleet implements AutoCloseable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceFleet.class);
+
+    private final Worker[] workers;
+    private final int maxConcurrentConnects;
+    private final Map<String, ManagedDevice> devices = new LinkedHashMap<>();
+    private final Map<String, Worker> shards = new LinkedHashMap<>();
+    private final Map<State, AtomicInteger> stateCounts = new EnumMap<>(State.class);
+    private boolean closed;
+
+    /**
+     * Lifecycle state of a device.
+     */
+    public enum State
+    {
+        /** Registered, not connected yet. */
+        REGISTERED,
+        /** Being built and connected. */
+        CONNECTING,
+        /** Connected. */
+        CONNECTED,
+        /** Building or connecting failed, see {@link DeviceFleet#getError(String)}. */
+        FAILED,
+        /** Disconnected. */
+        DISCONNECTED
+    }
+
+    /**
+     * Builds a device, e.g. using the {@code SGrDeviceBuilder}. Called once, on the first connect.
+     */
+    @FunctionalInterface
+    public interface DeviceFactory
+    {
+        /**
+         * @return the device, not connected yet
+         * @throws Exception
+         *         if the device could not be built
+         */
+        GenDeviceApi build() throws Exception;
+    }
+
+    /**
+     * Call of a device, executed on the worker of its shard.
+     *
+     * @param <T>
+     *        the result type
+     */
+    @FunctionalInterface
+    public interface DeviceTask<T>
+    {
+        /**
+         * @param device
+         *        the connected device
+         * @return the result
+         * @throws Exception
+         *         if the call failed
+         */
+        T run(GenDeviceApi device) throws Exception;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param workerCount
+     *        number of worker threads executing the device calls
+     * @param maxConcurrentConnects
+     *        maximum number of devices being built and connected at the same time
+     */
+    public DeviceFleet(int workerCount, int maxConcurrentConnects)
+    {
+        if (workerCount < 1 || maxConcurrentConnects < 1)
+        {
+            throw new IllegalArgumentException("workerCount and maxConcurrentConnects must be at least 1: "
+                    + workerCount + ", " + maxConcurrentConnects);
+        }
+        this.maxConcurrentConnects = maxConcurrentConnects;
+        this.workers = new Worker[workerCount];
+        for (int i = 0; i < workerCount; i++)
+        {
+            workers[i] = new Worker("fleet-worker-" + i);
+        }
+        for (var state : State.values())
+        {
+            stateCounts.put(state, new AtomicInteger());
+        }
+    }
+
+    /**
+     * @param serialPort
+     *        the serial port of an RTU line
+     * @return the shard key of the devices on the line
+     */
+    public static String rtuShard(String serialPort)
+    {
+        return "rtu:" + serialPort;
+    }
+
+    /**
+     * @param host
+     *        IP address or host name of a Modbus TCP device or gateway, or of a REST API
+     * @return the shard key of the devices behind the host
+     */
+    public static String tcpShard(String host)
+    {
+        return "tcp:" + host;
+    }
+
+    /**
+     * @param brokerUri
+     *        URI of an MQTT broker
+     * @return the shard key of the devices connected through the broker
+     */
+    public static String mqttShard(String brokerUri)
+    {
+        return "mqtt:" + brokerUri;
+    }
+
+    /**
+     * Registers a device, to be built and connected by {@link #connectAll()}.
+     *
+     * @param deviceId
+     *        unique ID of the device in the fleet
+     * @param shardKey
+     *        the transport of the device
+     * @param factory
+     *        builds the device
+     */
+    public synchronized void register(String deviceId, String shardKey, DeviceFactory factory)
+    {
+        Objects.requireNonNull(factory);
+        if (closed)
+        {
+            throw new IllegalStateException("Fleet is closed");
+        }
+        if (devices.containsKey(deviceId))
+        {
+            throw new IllegalArgumentException("Device already registered: " + deviceId);
+        }
+
+        final var worker = shards.computeIfAbsent(Objects.requireNonNull(shardKey), key -> leastLoadedWorker());
+        worker.deviceCount++;
+        devices.put(deviceId, new ManagedDevice(deviceId, shardKey, factory, worker));
+        stateCounts.get(State.REGISTERED).incrementAndGet();
+    }
+
+    /**
+     * Registers a device that has already been built.
+     *
+     * @param deviceId
+     *        unique ID of the device in the fleet
+     * @param shardKey
+     *        the transport of the device
+     * @param device
+     *        the device, connected by {@link #connectAll()}
+     */
+    public void register(String deviceId, String shardKey, GenDeviceApi device)
+    {
+        Objects.requireNonNull(device);
+        register(deviceId, shardKey, () -> device);
+    }
+
+    /**
+     * Builds and connects all devices that are not connected, at most {@code maxConcurrentConnects} at a time,
+     * blocking until all have been connected or failed.
+     *
+     * @return the startup report
+     */
+    public StartupReport connectAll()
+    {
+        final var pending = new ArrayList<ManagedDevice>();
+        synchronized (this)
+        {
+            for (var device : devices.values())
+            {
+                if (device.state != State.CONNECTED && device.state != State.CONNECTING)
+                {
+                    setState(device, State.CONNECTING);
+                    pending.add(device);
+                }
+            }
+        }
+
+        final var startNs = System.nanoTime();
+        runBounded(pending, this::connect);
+        return new StartupReport(System.nanoTime() - startNs, pending);
+    }
+
+    /**
+     * Disconnects all connected devices, at most {@code maxConcurrentConnects} at a time.
+     */
+    public void disconnectAll()
+    {
+        final var connected = new ArrayList<ManagedDevice>();
+        synchronized (this)
+        {
+            for (var device : devices.values())
+            {
+                if (device.state == State.CONNECTED)
+                {
+                    connected.add(device);
+                }
+            }
+        }
+        runBounded(connected, this::disconnect);
+    }
+
+    /**
+     * Executes a call of a device on the worker of its shard.
+     *
+     * @param <T>
+     *        the result type
+     * @param deviceId
+     *        ID of the device
+     * @param task
+     *        the call
+     * @return the result, completed exceptionally if the device is not connected or the call failed
+     */
+    public <T> CompletableFuture<T> submit(String deviceId, DeviceTask<T> task)
+    {
+        final ManagedDevice device;
+        synchronized (this)
+        {
+            if (closed)
+            {
+                throw new IllegalStateException("Fleet is closed");
+            }
+            device = devices.get(deviceId);
+        }
+        if (device == null)
+        {
+            throw new IllegalArgumentException("Unknown device: " + deviceId);
+        }
+
+        final var result = new CompletableFuture<T>();
+        device.worker.execute(result::completeExceptionally, () -> {
+            if (device.state != State.CONNECTED)
+            {
+                result.completeExceptionally(new GenDriverException("Device " + deviceId + " is " + device.state));
+                return;
+            }
+            try
+            {
+                result.complete(task.run(device.device));
+            }
+            catch (Exception e)
+            {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @param deviceId
+     *        ID of the device
+     * @return the device, {@code null} if it has not been built yet
+     */
+    public synchronized GenDeviceApi getDevice(String deviceId)
+    {
+        final var device = devices.get(deviceId);
+        return device != null ? device.device : null;
+    }
+
+    /**
+     * @param deviceId
+     *        ID of the device
+     * @return lifecycle state of the device
+     */
+    public synchronized State getState(String deviceId)
+    {
+        final var device = devices.get(deviceId);
+        if (device == null)
+        {
+            throw new IllegalArgumentException("Unknown device: " + deviceId);
+        }
+        return device.state;
+    }
+
+    /**
+     * @param deviceId
+     *        ID of the device
+     * @return the error of the last connect, {@code null} unless the state is {@link State#FAILED}
+     */
+    public synchronized Throwable getError(String deviceId)
+    {
+        final var device = devices.get(deviceId);
+        return device != null ? device.error : null;
+    }
+
+    /**
+     * @return number of registered devices
+     */
+    public synchronized int getDeviceCount()
+    {
+        return devices.size();
+    }
+
+    /**
+     * @param state
+     *        the state
+     * @return number of devices in the given state
+     */
+    public int getCount(State state)
+    {
+        return stateCounts.get(state).get();
+    }
+
+    /**
+     * @return number of connected devices
+     */
+    public int getConnectedCount()
+    {
+        return getCount(State.CONNECTED);
+    }
+
+    /**
+     * @return number of shards, i.e. distinct transports
+     */
+    public synchronized int getShardCount()
+    {
+        return shards.size();
+    }
+
+    /**
+     * @return number of worker threads
+     */
+    public int getWorkerCount()
+    {
+        return workers.length;
+    }
+
+    /**
+     * @return number of submitted calls not started yet
+     */
+    public int getPendingTaskCount()
+    {
+        int pending = 0;
+        for (var worker : workers)
+        {
+            pending += worker.queue.size();
+        }
+        return pending;
+    }
+
+    /**
+     * @return how long the oldest call not started yet has been waiting, over all workers, in milliseconds
+     */
+    public double getMaxLagMs()
+    {
+        final var now = System.nanoTime();
+        long maxLagNs = 0;
+        for (var worker : workers)
+        {
+            final var oldest = worker.queue.peek();
+            if (oldest != null)
+            {
+                maxLagNs = Math.max(maxLagNs, now - oldest.enqueueNs);
+            }
+        }
+        return maxLagNs / 1e6;
+    }
+
+    /**
+     * Disconnects all devices and stops the workers. Calls submitted but not started yet complete exceptionally.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+        }
+        disconnectAll();
+        for (var worker : workers)
+        {
+            worker.close();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DeviceFleet [devices=" + getDeviceCount() + ", shards=" + getShardCount() + ", workers="
+                + workers.length + ", " + stateCounts + ", pending=" + getPendingTaskCount() + ", maxLag="
+                + String.format("%.1f", getMaxLagMs()) + "ms]";
+    }
+
+    private Worker leastLoadedWorker()
+    {
+        var best = workers[0];
+        for (var worker : workers)
+        {
+            if (worker.deviceCount < best.deviceCount)
+            {
+                best = worker;
+            }
+        }
+        return best;
+    }
+
+    private void connect(ManagedDevice device)
+    {
+        final var startNs = System.nanoTime();
+        try
+        {
+            if (device.device == null)
+            {
+                device.device = device.factory.build();
+            }
+            device.device.connect();
+            device.error = null;
+            setState(device, State.CONNECTED);
+        }
+        catch (Exception e)
+        {
+            device.error = e;
+            setState(device, State.FAILED);
+        }
+        device.connectNs = System.nanoTime() - startNs;
+    }
+
+    private void disconnect(ManagedDevice device)
+    {
+        try
+        {
+            device.device.disconnect();
+        }
+        catch (GenDriverException | RuntimeException e)
+        {
+            // the transport is released anyway
+            LOG.debug("Disconnecting device {} failed", device.id, e);
+        }
+        setState(device, State.DISCONNECTED);
+    }
+
+    /**
+     * Executes a lifecycle action of each device on the worker of its shard, at most {@code maxConcurrentConnects}
+     * at a time, and waits until all have been executed.
+     */
+    private void runBounded(List<ManagedDevice> targets, Consumer<ManagedDevice> action)
+    {
+        final var permits = new Semaphore(maxConcurrentConnects);
+        final var futures = new ArrayList<CompletableFuture<Void>>(targets.size());
+
+        for (var target : targets)
+        {
+            permits.acquireUninterruptibly();
+            final var done = new CompletableFuture<Void>();
+            futures.add(done);
+            target.worker.execute(error -> {
+                permits.release();
+                done.complete(null);
+            }, () -> {
+                action.accept(target);
+                permits.release();
+                done.complete(null);
+            });
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    private void setState(ManagedDevice device, State state)
+    {
+        synchronized (device)
+        {
+            stateCounts.get(device.state).decrementAndGet();
+            device.state = state;
+            stateCounts.get(state).incrementAndGet();
+        }
+    }
+
+    /**
+     * A device of the fleet.
+     */
+    private static final class ManagedDevice
+    {
+        private final String id;
+        private final String shardKey;
+        private final DeviceFactory factory;
+        private final Worker worker;
+        private volatile GenDeviceApi device;
+        private volatile State state = State.REGISTERED;
+        private volatile Throwable error;
+        private volatile long connectNs;
+
+        private ManagedDevice(String id, String shardKey, DeviceFactory factory, Worker worker)
+        {
+            this.id = id;
+            this.shardKey = shardKey;
+            this.factory = factory;
+            this.worker = worker;
+        }
+    }
+
+    /**
+     * Worker thread executing the calls of its shards in submission order.
+     */
+    private static final class Worker
+    {
+        private final LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+        private final Thread thread;
+        private int deviceCount;
+        private boolean closed;
+
+        private Worker(String name)
+        {
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Queues a job, or rejects it right away if the worker is closed.
+         *
+         * @param failed
+         *        called instead of the job if the worker is closed before the job started, or with the error
+         *        thrown by the job
+         * @param runnable
+         *        the job
+         */
+        private void execute(Consumer<Throwable> failed, Runnable runnable)
+        {
+            synchronized (this)
+            {
+                if (!closed)
+                {
+                    queue.add(new Job(runnable, failed));
+                    return;
+                }
+            }
+            failed.accept(new IllegalStateException("Fleet is closed"));
+        }
+
+        /**
+         * Stops the thread and rejects the jobs not started yet.
+         */
+        private void close()
+        {
+            final var pending = new ArrayList<Job>();
+            synchronized (this)
+            {
+                closed = true;
+                queue.drainTo(pending);
+            }
+            thread.interrupt();
+            pending.forEach(job -> job.failed.accept(new IllegalStateException("Fleet is closed")));
+        }
+
+        private void run()
+        {
+            try
+            {
+                while (!Thread.currentThread().isInterrupted())
+                {
+                    runJob(queue.take());
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Runs a job, so that an unexpected error fails the job but not the other jobs of the shard.
+         */
+        private static void runJob(Job job)
+        {
+            try
+            {
+                job.runnable.run();
+            }
+            catch (Throwable e)
+            {
+                LOG.error("Unexpected error in fleet job", e);
+                job.failed.accept(e);
+            }
+        }
+    }
+
+    /**
+     * Submitted call with its submission time.
+     */
+    private static final class Job
+    {
+        private final long enqueueNs = System.nanoTime();
+        private final Runnable runnable;
+        private final Consumer<Throwable> failed;
+
+        private Job(Runnable runnable, Consumer<Throwable> failed)
+        {
+            this.runnable = runnable;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * Report of {@link DeviceFleet#connectAll()}.
+     */
+    public static final class StartupReport
+    {
+        private final long elapsedNs;
+        private final int connectedCount;
+        private final int failedCount;
+        private final long maxConnectNs;
+        private final List<String> failedDevices = new ArrayList<>();
+
+        private StartupReport(long elapsedNs, List<ManagedDevice> devices)
+        {
+            this.elapsedNs = elapsedNs;
+            int connected = 0;
+            long maxNs = 0;
+            for (var device : devices)
+            {
+                if (device.state == State.CONNECTED)
+                {
+                    connected++;
+                }
+                else
+                {
+                    failedDevices.add(device.id + " (" + device.shardKey + ")");
+                }
+                maxNs = Math.max(maxNs, device.connectNs);
+            }
+            this.connectedCount = connected;
+            this.failedCount = devices.size() - connected;
+            this.maxConnectNs = maxNs;
+        }
+
+        /**
+         * @return duration of the startup in milliseconds
+         */
+        public double getElapsedMs()
+        {
+            return elapsedNs / 1e6;
+        }
+
+        /**
+         * @return number of devices connected
+         */
+        public int getConnectedCount()
+        {
+            return connectedCount;
+        }
+
+        /**
+         * @return number of devices that failed to build or connect
+         */
+        public int getFailedCount()
+        {
+            return failedCount;
+        }
+
+        /**
+         * @return the devices that failed, with their shard key
+         */
+        public List<String> getFailedDevices()
+        {
+            return Collections.unmodifiableList(failedDevices);
+        }
+
+        /**
+         * @return longest time to build and connect a single device in milliseconds
+         */
+        public double getMaxConnectMs()
+        {
+            return maxConnectNs / 1e6;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "StartupReport [elapsed=" + String.format("%.1f", getElapsedMs()) + "ms, connected="
+                    + connectedCount + ", failed=" + failedCount + ", maxConnect="
+                    + String.format("%.1f", getMaxConnectMs()) + "ms]";
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.fleet;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.fleet.DeviceFleet.DeviceFactory;
+import com.smartgridready.communicator.example.helper.fleet.DeviceFleet.DeviceTask;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * Device that is built from its EID on first access, connects on demand and releases its transport when idle.
+ * <p>
+ * {@code SGrDeviceBuilder.build()} followed by {@code connect()} sets up the device model and the transport up front,
+ * which holds memory and a socket or serial handle per device even if the device is read only a few times per hour.
+ * A lazy device calls its {@link DeviceFactory} on the first call, connects before a call if not connected and
+ * disconnects after the configured idle time. Optionally, the device model is released as well and rebuilt on the
+ * next call, trading build time for memory.
+ * <p>
+ * Calls are serialized per device. The idle check runs on the given scheduler and never disconnects a device while
+ * a call is in progress; it does not wait for the call either, but checks again later, so that a slow device does not
+ * hold up the idle checks of the other devices on the scheduler.
+ */
+public class LazyDevice implements AutoCloseable
+{
+    private final String name;
+    private final DeviceFactory factory;
+    private final long idleTimeoutNs;
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean releaseModelWhenIdle;
+
+    // guarded by lock, volatile for the getters
+    private volatile GenDeviceApi device;
+    private volatile boolean connected;
+    private long lastUseNs;
+    // also set by the idle check while a call holds the lock
+    private volatile ScheduledFuture<?> idleCheck;
+    private volatile int buildCount;
+    private volatile int connectCount;
+    private boolean closed;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *        name of the device, used in error messages
+     * @param factory
+     *        builds the device, e.g. using the {@code SGrDeviceBuilder}
+     * @param idleTimeout
+     *        time without calls after which the device is disconnected
+     * @param scheduler
+     *        scheduler running the idle checks
+     */
+    public LazyDevice(String name, DeviceFactory factory, Duration idleTimeout, ScheduledExecutorService scheduler)
+    {
+        if (idleTimeout.isNegative() || idleTimeout.isZero())
+        {
+            throw new IllegalArgumentException("Idle timeout must be positive: " + idleTimeout);
+        }
+        this.name = Objects.requireNonNull(name);
+        this.factory = Objects.requireNonNull(factory);
+        this.idleTimeoutNs = idleTimeout.toNanos();
+        this.scheduler = Objects.requireNonNull(scheduler);
+    }
+
+    /**
+     * Releases the device model as well when the device is disconnected for being idle, so that it is rebuilt on
+     * the next call.
+     *
+     * @return this device
+     */
+    public LazyDevice releaseModelWhenIdle()
+    {
+        this.releaseModelWhenIdle = true;
+        return this;
+    }
+
+    /**
+     * Reads a data point value, building and connecting the device if needed.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return the value
+     * @throws Exception
+     *         if the device could not be built or connected, or the read failed
+     */
+    public Value getVal(String profileName, String dataPointName) throws Exception
+    {
+        return call(device -> device.getVal(profileName, dataPointName));
+    }
+
+    /**
+     * Writes a data point value, building and connecting the device if needed.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the value to write
+     * @throws Exception
+     *         if the device could not be built or connected, or the write failed
+     */
+    public void setVal(String profileName, String dataPointName, Value value) throws Exception
+    {
+        call(device -> {
+            device.setVal(profileName, dataPointName, value);
+            return null;
+        });
+    }
+
+    /**
+     * Executes a call of the device, building and connecting the device if needed.
+     *
+     * @param <T>
+     *        the result type
+     * @param task
+     *        the call
+     * @return the result
+     * @throws Exception
+     *         if the device could not be built or connected, or the call failed
+     */
+    public <T> T call(DeviceTask<T> task) throws Exception
+    {
+        lock.lock();
+        try
+        {
+            if (closed)
+            {
+                throw new GenDriverException("Device " + name + " is closed");
+            }
+
+            if (device == null)
+            {
+                device = factory.build();
+                buildCount++;
+            }
+            if (!connected)
+            {
+                device.connect();
+                connected = true;
+                connectCount++;
+                scheduleIdleCheck(idleTimeoutNs);
+            }
+
+            try
+            {
+                return task.run(device);
+            }
+            finally
+            {
+                lastUseNs = System.nanoTime();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if the device model is currently built
+     */
+    public boolean isBuilt()
+    {
+        return device != null;
+    }
+
+    /**
+     * @return {@code true} if the transport is currently connected
+     */
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * @return number of times the device has been built
+     */
+    public int getBuildCount()
+    {
+        return buildCount;
+    }
+
+    /**
+     * @return number of times the device has been connected
+     */
+    public int getConnectCount()
+    {
+        return connectCount;
+    }
+
+    /**
+     * Disconnects the device and releases the model, waiting for a call in progress to complete.
+     */
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try
+        {
+            closed = true;
+            release(true);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleIdleCheck(long delayNs)
+    {
+        idleCheck = scheduler.schedule(this::checkIdle, delayNs, TimeUnit.NANOSECONDS);
+    }
+
+    private void checkIdle()
+    {
+        if (!lock.tryLock())
+        {
+            // a call is in progress, so the device will not be idle before another timeout has passed
+            scheduleIdleCheck(idleTimeoutNs);
+            return;
+        }
+
+        try
+        {
+            if (!connected)
+            {
+                return;
+            }
+
+            final var idleNs = System.nanoTime() - lastUseNs;
+            if (idleNs >= idleTimeoutNs)
+            {
+                release(releaseModelWhenIdle);
+            }
+            else
+            {
+                scheduleIdleCheck(idleTimeoutNs - idleNs);
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void release(boolean releaseModel)
+    {
+        if (idleCheck != null)
+        {
+            idleCheck.cancel(false);
+            idleCheck = null;
+        }
+        if (connected)
+        {
+            connected = false;
+            try
+            {
+                device.disconnect();
+            }
+            catch (GenDriverException e)
+            {
+                // the transport is released anyway, the next call connects again
+            }
+        }
+        if (releaseModel)
+        {
+            device = null;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LazyDevice [" + name + ", built=" + (device != null) + ", connected=" + connected + ", builds="
+                + buildCount + ", connects=" + connectCount + "]";
+    }
+}
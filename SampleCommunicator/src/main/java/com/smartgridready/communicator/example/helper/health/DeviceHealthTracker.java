@@ -0,0 +1,436 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.health;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the health of devices and decides whether a device shall be called, probed or skipped (circuit breaker).
+ * <p>
+ * A device starts {@link State#CLOSED closed} and is called on every request. After the configured number of
+ * consecutive failures its circuit opens: requests fail fast without calling the device, so a dead device no
+ * longer costs a full timeout per poll and does not delay the devices polled after it. When the backoff has
+ * passed, a single request is let through as probe ({@link State#HALF_OPEN half-open}). If the probe succeeds,
+ * the circuit closes again, otherwise it opens with the backoff multiplied, up to the maximum backoff.
+ * <p>
+ * Use {@link #call(String, Callable)} to guard a call, or {@link #acquire(String)} and {@link #recordSuccess(String)}
+ * / {@link #recordFailure(String, Throwable)} to decide which executions to add to a processing chain and to
+ * record their results afterwards.
+ */
+public class DeviceHealthTracker
+{
+    private static final Logger LOG = LoggerFactory.getLogger(DeviceHealthTracker.class);
+
+    private final Config config;
+
+    private final LongSupplier clockMs;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+
+    /**
+     * State of the circuit of a device.
+     */
+    public enum State
+    {
+        /** The device is healthy and called on every request. */
+        CLOSED,
+        /** The device has failed, requests fail fast until the backoff has passed. */
+        OPEN,
+        /** A probe request is in progress, other requests fail fast. */
+        HALF_OPEN
+    }
+
+    /**
+     * Decision on a request to a device.
+     */
+    public enum Decision
+    {
+        /** Call the device. */
+        CALL,
+        /** Call the device as probe; its result decides whether the circuit closes. */
+        PROBE,
+        /** Do not call the device. */
+        FAST_FAIL
+    }
+
+    /**
+     * Constructor using the system clock.
+     *
+     * @param config
+     *        the configuration
+     */
+    public DeviceHealthTracker(Config config)
+    {
+        this(config, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param config
+     *        the configuration
+     * @param clockMs
+     *        clock returning the current time in milliseconds
+     */
+    public DeviceHealthTracker(Config config, LongSupplier clockMs)
+    {
+        this.config = Objects.requireNonNull(config);
+        this.clockMs = Objects.requireNonNull(clockMs);
+    }
+
+    /**
+     * Decides whether a device shall be called. A {@link Decision#PROBE} must be followed by
+     * {@link #recordSuccess(String)} or {@link #recordFailure(String, Throwable)}.
+     *
+     * @param deviceName
+     *        name of the device
+     * @return the decision
+     */
+    public Decision acquire(String deviceName)
+    {
+        final var channel = channel(deviceName);
+        final var now = clockMs.getAsLong();
+
+        synchronized (channel)
+        {
+            switch (channel.state)
+            {
+                case CLOSED:
+                    channel.callCount++;
+                    return Decision.CALL;
+
+                case OPEN:
+                    if (now - channel.nextProbeMs >= 0)
+                    {
+                        return startProbe(deviceName, channel, now);
+                    }
+                    break;
+
+                case HALF_OPEN:
+                default:
+                    // a probe that never reported back does not block the device forever
+                    if (now - channel.probeStartMs >= config.maxBackoffMs)
+                    {
+                        return startProbe(deviceName, channel, now);
+                    }
+                    break;
+            }
+
+            channel.fastFailCount++;
+            return Decision.FAST_FAIL;
+        }
+    }
+
+    /**
+     * Records a successful call of a device.
+     *
+     * @param deviceName
+     *        name of the device
+     */
+    public void recordSuccess(String deviceName)
+    {
+        final var channel = channel(deviceName);
+
+        synchronized (channel)
+        {
+            if (channel.state != State.CLOSED)
+            {
+                LOG.info("Device {} recovered after {} failures", deviceName, channel.consecutiveFailures);
+            }
+            channel.state = State.CLOSED;
+            channel.consecutiveFailures = 0;
+            channel.backoffMs = 0;
+            channel.lastError = null;
+        }
+    }
+
+    /**
+     * Records a failed call of a device.
+     *
+     * @param deviceName
+     *        name of the device
+     * @param error
+     *        the error of the call
+     */
+    public void recordFailure(String deviceName, Throwable error)
+    {
+        final var channel = channel(deviceName);
+        final var now = clockMs.getAsLong();
+
+        synchronized (channel)
+        {
+            channel.consecutiveFailures++;
+            channel.lastError = error;
+
+            // failures of calls started before the circuit opened do not extend the backoff
+            if (channel.state == State.HALF_OPEN
+                    || (channel.state == State.CLOSED && channel.consecutiveFailures >= config.failureThreshold))
+            {
+                channel.backoffMs = channel.backoffMs == 0
+                        ? config.initialBackoffMs
+                        : Math.min(config.maxBackoffMs, (long) (channel.backoffMs * config.backoffMultiplier));
+                channel.nextProbeMs = now + channel.backoffMs;
+
+                if (channel.state == State.CLOSED)
+                {
+                    LOG.warn("Device {} failed {} times, next probe in {}ms: {}",
+                             deviceName, channel.consecutiveFailures, channel.backoffMs, String.valueOf(error));
+                }
+                channel.state = State.OPEN;
+            }
+        }
+    }
+
+    /**
+     * Calls a device unless its circuit is open, and records the result.
+     *
+     * @param <T>
+     *        result type of the call
+     * @param deviceName
+     *        name of the device
+     * @param call
+     *        the call, e.g. {@code () -> device.getVal(profileName, dataPointName)}
+     * @return the result of the call
+     * @throws DeviceUnavailableException
+     *         without calling the device if its circuit is open
+     * @throws Exception
+     *         the exception thrown by the call
+     */
+    public <T> T call(String deviceName, Callable<T> call) throws Exception
+    {
+        if (acquire(deviceName) == Decision.FAST_FAIL)
+        {
+            final var channel = channel(deviceName);
+            synchronized (channel)
+            {
+                throw new DeviceUnavailableException(deviceName, channel.nextProbeMs, channel.lastError);
+            }
+        }
+
+        try
+        {
+            final var result = call.call();
+            recordSuccess(deviceName);
+            return result;
+        }
+        catch (Exception e)
+        {
+            recordFailure(deviceName, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @param deviceName
+     *        name of the device
+     * @return the current state of the circuit of the device
+     */
+    public State getState(String deviceName)
+    {
+        final var channel = channel(deviceName);
+        synchronized (channel)
+        {
+            return channel.state;
+        }
+    }
+
+    /**
+     * @return snapshot of the health of all devices, sorted by device name
+     */
+    public Map<String, Health> getHealth()
+    {
+        final var result = new TreeMap<String, Health>();
+        channels.forEach((deviceName, channel) -> {
+            synchronized (channel)
+            {
+                result.put(deviceName, new Health(channel));
+            }
+        });
+        return result;
+    }
+
+    private Decision startProbe(String deviceName, Channel channel, long now)
+    {
+        LOG.debug("Probing device {}", deviceName);
+        channel.state = State.HALF_OPEN;
+        channel.probeStartMs = now;
+        channel.probeCount++;
+        return Decision.PROBE;
+    }
+
+    private Channel channel(String deviceName)
+    {
+        return channels.computeIfAbsent(deviceName, k -> new Channel());
+    }
+
+    /**
+     * Health state of a single device.
+     */
+    private static final class Channel
+    {
+        private State state = State.CLOSED;
+        private int consecutiveFailures = 0;
+        private long backoffMs = 0;
+        private long nextProbeMs;
+        private long probeStartMs;
+        private long callCount = 0;
+        private long probeCount = 0;
+        private long fastFailCount = 0;
+        private Throwable lastError;
+    }
+
+    /**
+     * Snapshot of the health of a device.
+     */
+    public static final class Health
+    {
+        private final State state;
+        private final int consecutiveFailures;
+        private final long nextProbeMs;
+        private final long callCount;
+        private final long probeCount;
+        private final long fastFailCount;
+        private final Throwable lastError;
+
+        private Health(Channel channel)
+        {
+            this.state = channel.state;
+            this.consecutiveFailures = channel.consecutiveFailures;
+            this.nextProbeMs = channel.nextProbeMs;
+            this.callCount = channel.callCount;
+            this.probeCount = channel.probeCount;
+            this.fastFailCount = channel.fastFailCount;
+            this.lastError = channel.lastError;
+        }
+
+        /**
+         * @return state of the circuit
+         */
+        public State getState()
+        {
+            return state;
+        }
+
+        /**
+         * @return number of failures since the last success
+         */
+        public int getConsecutiveFailures()
+        {
+            return consecutiveFailures;
+        }
+
+        /**
+         * @return time of the next probe if the circuit is open, in milliseconds of the tracker clock
+         */
+        public long getNextProbeMs()
+        {
+            return nextProbeMs;
+        }
+
+        /**
+         * @return number of requests passed to the device while the circuit was closed
+         */
+        public long getCallCount()
+        {
+            return callCount;
+        }
+
+        /**
+         * @return number of probe requests
+         */
+        public long getProbeCount()
+        {
+            return probeCount;
+        }
+
+        /**
+         * @return number of requests that failed fast
+         */
+        public long getFastFailCount()
+        {
+            return fastFailCount;
+        }
+
+        /**
+         * @return the last error, {@code null} if the last call succeeded
+         */
+        public Throwable getLastError()
+        {
+            return lastError;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Health [state=" + state + ", consecutiveFailures=" + consecutiveFailures + ", calls=" + callCount
+                    + ", probes=" + probeCount + ", fastFails=" + fastFailCount + "]";
+        }
+    }
+
+    /**
+     * Configuration of the tracker.
+     */
+    public static final class Config
+    {
+        private final int failureThreshold;
+        private final long initialBackoffMs;
+        private final long maxBackoffMs;
+        private final double backoffMultiplier;
+
+        /**
+         * Constructor.
+         *
+         * @param failureThreshold
+         *        number of consecutive failures that open the circuit
+         * @param initialBackoffMs
+         *        time until the first probe after the circuit opened
+         * @param maxBackoffMs
+         *        maximum time between two probes
+         * @param backoffMultiplier
+         *        factor applied to the backoff after each failed probe
+         */
+        public Config(int failureThreshold, long initialBackoffMs, long maxBackoffMs, double backoffMultiplier)
+        {
+            if (failureThreshold < 1 || initialBackoffMs < 1 || maxBackoffMs < initialBackoffMs || backoffMultiplier < 1.0)
+            {
+                throw new IllegalArgumentException("Invalid health tracker configuration: threshold=" + failureThreshold
+                        + ", backoff=" + initialBackoffMs + ".." + maxBackoffMs + "ms, multiplier=" + backoffMultiplier);
+            }
+            this.failureThreshold = failureThreshold;
+            this.initialBackoffMs = initialBackoffMs;
+            this.maxBackoffMs = maxBackoffMs;
+            this.backoffMultiplier = backoffMultiplier;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Config [failureThreshold=" + failureThreshold + ", backoff=" + initialBackoffMs + ".." + maxBackoffMs
+                    + "ms, multiplier=" + backoffMultiplier + "]";
+        }
+    }
+}
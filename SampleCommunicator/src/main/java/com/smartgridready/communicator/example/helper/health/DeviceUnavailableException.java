@@ -0,0 +1,70 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.health;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * Thrown instead of calling a device whose circuit is open, i.e. which has failed repeatedly and is not due
+ * for a probe yet.
+ */
+public class DeviceUnavailableException extends GenDriverException
+{
+    private static final long serialVersionUID = 1L;
+
+    private final String deviceName;
+    private final long nextProbeMs;
+
+    /**
+     * Constructor.
+     *
+     * @param deviceName
+     *        name of the device
+     * @param nextProbeMs
+     *        time at which the device will be probed again, in milliseconds of the tracker clock
+     * @param lastError
+     *        the last error of the device, may be {@code null}
+     */
+    public DeviceUnavailableException(String deviceName, long nextProbeMs, Throwable lastError)
+    {
+        super("Device " + deviceName + " is unavailable, next probe at " + nextProbeMs + "ms");
+        this.deviceName = deviceName;
+        this.nextProbeMs = nextProbeMs;
+        if (lastError != null)
+        {
+            initCause(lastError);
+        }
+    }
+
+    /**
+     * @return name of the device
+     */
+    public String getDeviceName()
+    {
+        return deviceName;
+    }
+
+    /**
+     * @return time at which the device will be probed again, in milliseconds of the tracker clock
+     */
+    public long getNextProbeMs()
+    {
+        return nextProbeMs;
+    }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP server emulating REST devices, to load-test actual HTTP drivers end to end on one machine.
+ * <p>
+ * Each device is served below its own base URI {@code http://127.0.0.1:<port>/devices/<id>}, to be configured as
+ * {@code base_uri} of the device, and has its own {@link DeviceState}. The requests are answered by the
+ * {@link Endpoint}s registered per method and path, e.g. the {@link ShellyTrvEndpoint} for the Shelly TRV EID.
+ * <p>
+ * The emulator can delay the responses and inject errors. The delay is applied by a scheduler, not by sleeping in
+ * the request handler, so a few handler threads can serve many concurrent requests, like a fleet of real devices.
+ * The scheduler passes the delayed responses back to the handler threads, which write them.
+ * <p>
+ * The JDK server writes headers and body separately, so with Nagle's algorithm each response waits for a delayed
+ * ACK. For load tests, set the system property {@code sun.net.httpserver.nodelay=true} before the first server is
+ * created; it applies to all servers of the JVM.
+ */
+public class HttpDeviceEmulator implements AutoCloseable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HttpDeviceEmulator.class);
+
+    private static final String DEVICES_PATH = "/devices/";
+
+    private final HttpServer server;
+    private final ExecutorService handlerExecutor;
+    private final ScheduledExecutorService delayExecutor;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, DeviceState> devices = new ConcurrentHashMap<>();
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder errorCount = new LongAdder();
+
+    private volatile long latencyNs;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+
+    /**
+     * Answers the requests of one method and path.
+     */
+    @FunctionalInterface
+    public interface Endpoint
+    {
+        /**
+         * Handles a request.
+         *
+         * @param device
+         *        state of the addressed device
+         * @param query
+         *        the decoded query parameters
+         * @param body
+         *        the request body, empty if none
+         * @return the JSON response body
+         * @throws IllegalArgumentException
+         *         if the request is invalid, answered with status 400; other runtime exceptions are answered with
+         *         status 500
+         */
+        String handle(DeviceState device, Map<String, String> query, String body);
+    }
+
+    /**
+     * State of an emulated device, thread-safe.
+     */
+    public static final class DeviceState
+    {
+        private final String id;
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+
+        private DeviceState(String id)
+        {
+            this.id = id;
+        }
+
+        public String getId()
+        {
+            return id;
+        }
+
+        /**
+         * @param key
+         *        name of the value
+         * @param defaultValue
+         *        returned if the value has not been set
+         * @return the value
+         */
+        public String get(String key, String defaultValue)
+        {
+            return values.getOrDefault(key, defaultValue);
+        }
+
+        /**
+         * @param key
+         *        name of the value
+         * @param value
+         *        the new value
+         */
+        public void put(String key, String value)
+        {
+            values.put(key, value);
+        }
+    }
+
+    /**
+     * Starts the emulator on a free port of the loopback interface.
+     *
+     * @param handlerThreads
+     *        number of threads handling requests
+     * @throws IOException
+     *         if the server cannot be started
+     */
+    public HttpDeviceEmulator(int handlerThreads) throws IOException
+    {
+        final var threadCount = new AtomicInteger();
+        handlerExecutor = Executors.newFixedThreadPool(handlerThreads, runnable -> {
+            final var thread = new Thread(runnable, "http-emulator-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        delayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final var thread = new Thread(runnable, "http-emulator-delay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(handlerExecutor);
+        server.createContext(DEVICES_PATH, this::handle);
+        server.start();
+    }
+
+    /**
+     * Registers an endpoint.
+     *
+     * @param method
+     *        the HTTP method, e.g. {@code GET}
+     * @param path
+     *        the request path relative to the base URI of the device, e.g. {@code /thermostats/0}
+     * @param endpoint
+     *        answers the requests
+     * @return this emulator
+     */
+    public HttpDeviceEmulator route(String method, String path, Endpoint endpoint)
+    {
+        endpoints.put(method + ' ' + path, endpoint);
+        return this;
+    }
+
+    /**
+     * Delays all responses.
+     *
+     * @param latency
+     *        the delay, {@link Duration#ZERO} to respond immediately
+     * @return this emulator
+     */
+    public HttpDeviceEmulator withLatency(Duration latency)
+    {
+        latencyNs = latency.toNanos();
+        return this;
+    }
+
+    /**
+     * Answers a share of the requests with an error status instead of calling the endpoint.
+     *
+     * @param rate
+     *        share of failing requests, between 0 and 1
+     * @param status
+     *        the HTTP status of the failing requests, e.g. 503
+     * @return this emulator
+     */
+    public HttpDeviceEmulator withErrors(double rate, int status)
+    {
+        if (rate < 0 || rate > 1)
+        {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1: " + rate);
+        }
+        errorRate = rate;
+        errorStatus = status;
+        return this;
+    }
+
+    /**
+     * Adds a device.
+     *
+     * @param id
+     *        the device ID, used in the base URI
+     * @return the state of the device
+     */
+    public DeviceState addDevice(String id)
+    {
+        return devices.computeIfAbsent(id, DeviceState::new);
+    }
+
+    /**
+     * @param id
+     *        the device ID
+     * @return the base URI of the device, to be configured as {@code base_uri}
+     */
+    public String getBaseUri(String id)
+    {
+        return "http://" + server.getAddress().getHostString() + ':' + server.getAddress().getPort() + DEVICES_PATH + id;
+    }
+
+    /**
+     * @return number of requests received
+     */
+    public long getRequestCount()
+    {
+        return requestCount.sum();
+    }
+
+    /**
+     * @return number of requests answered with an error status
+     */
+    public long getErrorCount()
+    {
+        return errorCount.sum();
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close()
+    {
+        server.stop(0);
+        delayExecutor.shutdownNow();
+        handlerExecutor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        requestCount.increment();
+
+        // path: /devices/<id>/<endpoint path>
+        final var path = exchange.getRequestURI().getPath();
+        final var separator = path.indexOf('/', DEVICES_PATH.length());
+        final var deviceId = separator < 0 ? path.substring(DEVICES_PATH.length())
+                                           : path.substring(DEVICES_PATH.length(), separator);
+        final var endpointPath = separator < 0 ? "/" : path.substring(separator);
+
+        final var device = devices.get(deviceId);
+        final var endpoint = endpoints.get(exchange.getRequestMethod() + ' ' + endpointPath);
+
+        int status;
+        String response;
+        if (device == null || endpoint == null)
+        {
+            status = 404;
+            response = "{\"error\":\"not found\"}";
+        }
+        else if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate)
+        {
+            status = errorStatus;
+            response = "{\"error\":\"injected\"}";
+        }
+        else
+        {
+            try
+            {
+                final var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                status = 200;
+                response = endpoint.handle(device, parseQuery(exchange.getRequestURI().getRawQuery()), body);
+            }
+            catch (IllegalArgumentException e)
+            {
+                status = 400;
+                response = error(e.getMessage());
+            }
+            catch (RuntimeException e)
+            {
+                LOG.warn("Endpoint {} failed", exchange.getRequestURI(), e);
+                status = 500;
+                response = error(e.toString());
+            }
+        }
+
+        if (status != 200)
+        {
+            errorCount.increment();
+        }
+
+        final var delayNs = latencyNs;
+        if (delayNs > 0)
+        {
+            final var finalStatus = status;
+            final var finalResponse = response;
+            // the scheduler only hands the response over, a slow client must not hold up the responses of others
+            delayExecutor.schedule(() -> respondLater(exchange, finalStatus, finalResponse), delayNs,
+                    TimeUnit.NANOSECONDS);
+        }
+        else
+        {
+            respond(exchange, status, response);
+        }
+    }
+
+    private void respondLater(HttpExchange exchange, int status, String response)
+    {
+        try
+        {
+            handlerExecutor.execute(() -> respond(exchange, status, response));
+        }
+        catch (RejectedExecutionException e)
+        {
+            // closed meanwhile
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String response)
+    {
+        final var bytes = response.getBytes(StandardCharsets.UTF_8);
+        try
+        {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Sending response failed: {}", e.getMessage());
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    /**
+     * @return a JSON object with the message as {@code error}, escaped as a JSON string
+     */
+    private static String error(String message)
+    {
+        final var text = message != null ? message : "invalid request";
+        final var json = new StringBuilder(text.length() + 16).append("{\"error\":\"");
+        for (int i = 0; i < text.length(); i++)
+        {
+            final var c = text.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                json.append('\\').append(c);
+            }
+            else if (c < 0x20)
+            {
+                json.append(String.format("\\u%04x", (int) c));
+            }
+            else
+            {
+                json.append(c);
+            }
+        }
+        return json.append("\"}").toString();
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery)
+    {
+        if (rawQuery == null || rawQuery.isEmpty())
+        {
+            return Collections.emptyMap();
+        }
+
+        final var query = new HashMap<String, String>();
+        for (var parameter : rawQuery.split("&"))
+        {
+            final var equals = parameter.indexOf('=');
+            if (equals < 0)
+            {
+                query.put(URLDecoder.decode(parameter, StandardCharsets.UTF_8), "");
+            }
+            else
+            {
+                query.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                          URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+}
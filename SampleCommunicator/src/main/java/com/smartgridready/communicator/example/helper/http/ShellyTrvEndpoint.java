@@ -0,0 +1,104 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.http;
+
+import java.util.Map;
+
+/**
+ * Emulation of the endpoint {@code GET /thermostats/0} of the Shelly TRV, as described by the EID-XML
+ * "SGr_01_mmmm_dddd_Shelly_TRV_RestAPILocal_V0.1.xml".
+ * <p>
+ * The endpoint always returns the measured and the target temperature. The query parameter {@code target_t} sets
+ * the target temperature, the measured temperature follows the target temperature by a tenth of the difference per
+ * request. Optionally, the response is padded to the size of the full status of a real device.
+ */
+public class ShellyTrvEndpoint implements HttpDeviceEmulator.Endpoint
+{
+    /** Path of the endpoint. */
+    public static final String PATH = "/thermostats/0";
+
+    private static final String TEMPERATURE = "tmp";
+    private static final String TARGET_TEMPERATURE = "target_t";
+
+    private final String initialTemperature;
+    private final String padding;
+
+    /**
+     * Constructor.
+     *
+     * @param initialTemperature
+     *        measured and target temperature of a new device
+     * @param paddingBytes
+     *        size of an additional {@code padding} field, to emulate larger payloads
+     */
+    public ShellyTrvEndpoint(double initialTemperature, int paddingBytes)
+    {
+        this.initialTemperature = Double.toString(initialTemperature);
+        this.padding = "x".repeat(paddingBytes);
+    }
+
+    /**
+     * Registers the endpoint in an emulator.
+     *
+     * @param emulator
+     *        the emulator
+     * @return the emulator
+     */
+    public HttpDeviceEmulator install(HttpDeviceEmulator emulator)
+    {
+        return emulator.route("GET", PATH, this);
+    }
+
+    @Override
+    public String handle(HttpDeviceEmulator.DeviceState device, Map<String, String> query, String body)
+    {
+        final double target;
+        final double temperature;
+
+        synchronized (device)
+        {
+            final var newTarget = query.get(TARGET_TEMPERATURE);
+            if (newTarget != null)
+            {
+                try
+                {
+                    device.put(TARGET_TEMPERATURE, Double.toString(Double.parseDouble(newTarget)));
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IllegalArgumentException("Invalid " + TARGET_TEMPERATURE + ": " + newTarget);
+                }
+            }
+
+            target = Double.parseDouble(device.get(TARGET_TEMPERATURE, initialTemperature));
+            final var current = Double.parseDouble(device.get(TEMPERATURE, initialTemperature));
+            temperature = Math.round((current + (target - current) / 10) * 100) / 100.0;
+            device.put(TEMPERATURE, Double.toString(temperature));
+        }
+
+        final var response = new StringBuilder(64 + padding.length())
+                .append("{\"").append(TEMPERATURE).append("\":{\"value\":").append(temperature)
+                .append("},\"").append(TARGET_TEMPERATURE).append("\":{\"value\":").append(target).append('}');
+        if (!padding.isEmpty())
+        {
+            response.append(",\"padding\":\"").append(padding).append('"');
+        }
+        return response.append('}').toString();
+    }
+}
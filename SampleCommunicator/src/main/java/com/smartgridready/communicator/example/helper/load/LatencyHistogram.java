@@ -0,0 +1,158 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.load;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latencies with a resolution of 1/16 of the value, i.e. about 6%.
+ * <p>
+ * Latencies are recorded in microseconds into log-linear buckets: 16 buckets per power of two. Recording is
+ * lock-free and does not allocate, so many threads can record concurrently without distorting the measurement.
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param latencyNs
+     *        the latency in nanoseconds, negative values are recorded as {@code 0}
+     */
+    public void record(long latencyNs)
+    {
+        final var micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNs));
+        counts.incrementAndGet(index(micros));
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Returns the recorded latencies and resets the histogram. Latencies recorded concurrently are counted either
+     * in this or in the next snapshot.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshotAndReset()
+    {
+        final var copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+        {
+            copy[i] = counts.getAndSet(i, 0);
+        }
+        return new Snapshot(copy, maxMicros.getAndSet(0));
+    }
+
+    static int index(long micros)
+    {
+        if (micros < SUB_BUCKETS)
+        {
+            return (int) micros;
+        }
+
+        final var exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        final var subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long lowerBound(int index)
+    {
+        if (index < SUB_BUCKETS)
+        {
+            return index;
+        }
+
+        final var exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final var subBucket = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Latencies recorded in a period.
+     */
+    public static final class Snapshot
+    {
+        private final long[] counts;
+        private final long count;
+        private final long maxMicros;
+
+        private Snapshot(long[] counts, long maxMicros)
+        {
+            this.counts = counts;
+            this.maxMicros = maxMicros;
+
+            var sum = 0L;
+            for (var c : counts)
+            {
+                sum += c;
+            }
+            this.count = sum;
+        }
+
+        /**
+         * @return number of recorded latencies
+         */
+        public long getCount()
+        {
+            return count;
+        }
+
+        /**
+         * Returns a percentile, as the lower bound of the bucket containing it.
+         *
+         * @param percentile
+         *        the percentile, between {@code 0} and {@code 100}
+         * @return the latency in milliseconds, {@code 0} if nothing was recorded
+         */
+        public double getPercentileMs(double percentile)
+        {
+            if (count == 0)
+            {
+                return 0.0;
+            }
+
+            final var rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            var seen = 0L;
+            for (int i = 0; i < counts.length; i++)
+            {
+                seen += counts[i];
+                if (seen >= rank)
+                {
+                    return Math.min(lowerBound(i), maxMicros) / 1000.0;
+                }
+            }
+            return maxMicros / 1000.0;
+        }
+
+        /**
+         * @return the maximum latency in milliseconds
+         */
+        public double getMaxMs()
+        {
+            return maxMicros / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,546 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.load;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.example.helper.fleet.DeviceFleet.DeviceFactory;
+
+/**
+ * Generates polling load on simulated devices of several transports and ramps it up to find the saturation point
+ * of the JVM.
+ * <p>
+ * Each registered transport gets the same number of devices, built by its {@link DeviceFactory}. Every device reads
+ * one data point at the configured poll interval on a shared pool of worker threads. The latency of a poll is
+ * measured from the time it was due, not from the time it started, so polls delayed by a busy pool are accounted
+ * for. A step runs the load for a given duration and reports the throughput and latency percentiles per transport,
+ * the garbage collections and the threads of the JVM.
+ * <p>
+ * {@link #ramp(int, double, int, Duration)} multiplies the number of devices step by step until a step is saturated:
+ * the throughput falls below the offered rate or the p99 latency exceeds the poll interval (see
+ * {@link #saturation(double, Duration)}).
+ */
+public class LoadGenerator implements AutoCloseable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private static final double DEFAULT_MIN_THROUGHPUT_RATIO = 0.95;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final long pollIntervalNs;
+    private final Map<String, Transport> transports = new LinkedHashMap<>();
+
+    private double minThroughputRatio = DEFAULT_MIN_THROUGHPUT_RATIO;
+    private long maxP99Ns;
+
+    /**
+     * Constructor.
+     *
+     * @param workerCount
+     *        number of threads executing the polls
+     * @param pollInterval
+     *        interval at which each device is polled
+     */
+    public LoadGenerator(int workerCount, Duration pollInterval)
+    {
+        if (workerCount < 1)
+        {
+            throw new IllegalArgumentException("workerCount must be at least 1: " + workerCount);
+        }
+        if (pollInterval.isZero() || pollInterval.isNegative())
+        {
+            throw new IllegalArgumentException("pollInterval must be positive: " + pollInterval);
+        }
+
+        final var threadCount = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(workerCount, runnable -> {
+            final var thread = new Thread(runnable, "load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.pollIntervalNs = pollInterval.toNanos();
+        this.maxP99Ns = pollIntervalNs;
+    }
+
+    /**
+     * Registers a transport.
+     *
+     * @param name
+     *        name of the transport, e.g. {@code modbus}
+     * @param factory
+     *        builds a device of the transport, called once per device
+     * @param profileName
+     *        functional profile of the polled data point
+     * @param dataPointName
+     *        name of the polled data point
+     * @return this generator
+     */
+    public synchronized LoadGenerator transport(String name, DeviceFactory factory, String profileName, String dataPointName)
+    {
+        if (transports.containsKey(name))
+        {
+            throw new IllegalArgumentException("Transport already registered: " + name);
+        }
+        transports.put(name, new Transport(name, Objects.requireNonNull(factory), profileName, dataPointName));
+        return this;
+    }
+
+    /**
+     * Configures when a step counts as saturated. By default, a step is saturated if its throughput is below 95% of
+     * the offered rate or its p99 latency exceeds the poll interval.
+     *
+     * @param minThroughputRatio
+     *        minimum ratio of throughput to offered rate
+     * @param maxP99
+     *        maximum p99 latency
+     * @return this generator
+     */
+    public synchronized LoadGenerator saturation(double minThroughputRatio, Duration maxP99)
+    {
+        this.minThroughputRatio = minThroughputRatio;
+        this.maxP99Ns = maxP99.toNanos();
+        return this;
+    }
+
+    /**
+     * Runs steps with a growing number of devices until a step is saturated or the maximum number of steps is
+     * reached. Each step is logged when finished.
+     *
+     * @param initialDevicesPerTransport
+     *        number of devices per transport of the first step
+     * @param factor
+     *        factor applied to the number of devices from step to step, greater than {@code 1}
+     * @param maxSteps
+     *        maximum number of steps
+     * @param stepDuration
+     *        duration of each step
+     * @return the reports of the steps, the last one is saturated unless the maximum number of steps was reached
+     * @throws Exception
+     *         if a device cannot be built or connected
+     */
+    public List<StepReport> ramp(int initialDevicesPerTransport, double factor, int maxSteps, Duration stepDuration)
+            throws Exception
+    {
+        if (factor <= 1.0)
+        {
+            throw new IllegalArgumentException("factor must be greater than 1: " + factor);
+        }
+
+        final var reports = new ArrayList<StepReport>();
+        var devices = initialDevicesPerTransport;
+
+        for (int step = 0; step < maxSteps; step++)
+        {
+            final var report = runStep(devices, stepDuration);
+            reports.add(report);
+            LOG.info("Step {}: {}", step + 1, report);
+
+            if (report.isSaturated())
+            {
+                break;
+            }
+            devices = Math.max(devices + 1, (int) Math.ceil(devices * factor));
+        }
+        return reports;
+    }
+
+    /**
+     * Adds devices up to the given number per transport, runs the load for the given duration and reports it.
+     *
+     * @param devicesPerTransport
+     *        number of devices per transport
+     * @param duration
+     *        duration of the measurement, building and connecting the devices is not included
+     * @return the report of the step
+     * @throws Exception
+     *         if a device cannot be built or connected
+     */
+    public synchronized StepReport runStep(int devicesPerTransport, Duration duration) throws Exception
+    {
+        for (var transport : transports.values())
+        {
+            transport.grow(devicesPerTransport);
+        }
+
+        // discard the figures of the previous step and of the startup
+        transports.values().forEach(Transport::reset);
+        final var threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        final var gcBefore = gcTotals();
+        final var startNs = System.nanoTime();
+
+        Thread.sleep(duration.toMillis());
+
+        final var elapsedNs = System.nanoTime() - startNs;
+        final var gcAfter = gcTotals();
+        final var stats = new LinkedHashMap<String, TransportStats>();
+        transports.values().forEach(transport -> stats.put(transport.name, transport.stats(elapsedNs)));
+
+        final var memory = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return new StepReport(devicesPerTransport,
+                              getDeviceCount() * 1e9 / pollIntervalNs,
+                              stats,
+                              gcAfter[0] - gcBefore[0],
+                              gcAfter[1] - gcBefore[1],
+                              threads.getThreadCount(),
+                              threads.getPeakThreadCount(),
+                              memory.getUsed() / (1024.0 * 1024.0),
+                              minThroughputRatio,
+                              maxP99Ns / 1e6);
+    }
+
+    /**
+     * @return number of devices over all transports
+     */
+    public synchronized int getDeviceCount()
+    {
+        return transports.values().stream().mapToInt(transport -> transport.devices.size()).sum();
+    }
+
+    /**
+     * Stops polling and disconnects all devices.
+     */
+    @Override
+    public synchronized void close()
+    {
+        executor.shutdownNow();
+        transports.values().forEach(Transport::close);
+    }
+
+    private static long[] gcTotals()
+    {
+        final var totals = new long[2];
+        for (var gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    /**
+     * Devices of one transport and their figures.
+     */
+    private final class Transport
+    {
+        private final String name;
+        private final DeviceFactory factory;
+        private final String profileName;
+        private final String dataPointName;
+        private final List<PolledDevice> devices = new ArrayList<>();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        private Transport(String name, DeviceFactory factory, String profileName, String dataPointName)
+        {
+            this.name = name;
+            this.factory = factory;
+            this.profileName = profileName;
+            this.dataPointName = dataPointName;
+        }
+
+        private void grow(int count) throws Exception
+        {
+            while (devices.size() < count)
+            {
+                final var device = factory.build();
+                device.connect();
+                final var polled = new PolledDevice(this, device);
+                devices.add(polled);
+                polled.start();
+            }
+        }
+
+        private void reset()
+        {
+            latencies.snapshotAndReset();
+            errors.reset();
+        }
+
+        private TransportStats stats(long elapsedNs)
+        {
+            return new TransportStats(devices.size(), latencies.snapshotAndReset(), errors.sumThenReset(), elapsedNs);
+        }
+
+        private void close()
+        {
+            for (var polled : devices)
+            {
+                polled.stop();
+            }
+            devices.clear();
+        }
+    }
+
+    /**
+     * A device polled at fixed rate.
+     */
+    private final class PolledDevice implements Runnable
+    {
+        private final Transport transport;
+        private final GenDeviceApi device;
+        private ScheduledFuture<?> future;
+        private long firstDueNs;
+        private long pollCount;
+
+        private PolledDevice(Transport transport, GenDeviceApi device)
+        {
+            this.transport = transport;
+            this.device = device;
+        }
+
+        private void start()
+        {
+            // spread the polls of the devices over the interval
+            final var initialDelayNs = ThreadLocalRandom.current().nextLong(pollIntervalNs);
+            firstDueNs = System.nanoTime() + initialDelayNs;
+            future = executor.scheduleAtFixedRate(this, initialDelayNs, pollIntervalNs, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run()
+        {
+            // executions of a periodic task never overlap, and a late poll is followed by the missed ones
+            final var dueNs = firstDueNs + pollCount++ * pollIntervalNs;
+            try
+            {
+                device.getVal(transport.profileName, transport.dataPointName);
+                transport.latencies.record(System.nanoTime() - dueNs);
+            }
+            catch (Exception e)
+            {
+                transport.errors.increment();
+            }
+        }
+
+        private void stop()
+        {
+            future.cancel(false);
+            try
+            {
+                device.disconnect();
+            }
+            catch (Exception e)
+            {
+                LOG.debug("Disconnecting {} device failed: {}", transport.name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Figures of one transport in a step.
+     */
+    public static final class TransportStats
+    {
+        private final int deviceCount;
+        private final LatencyHistogram.Snapshot latencies;
+        private final long errorCount;
+        private final double throughput;
+
+        private TransportStats(int deviceCount, LatencyHistogram.Snapshot latencies, long errorCount, long elapsedNs)
+        {
+            this.deviceCount = deviceCount;
+            this.latencies = latencies;
+            this.errorCount = errorCount;
+            this.throughput = latencies.getCount() * 1e9 / elapsedNs;
+        }
+
+        public int getDeviceCount()
+        {
+            return deviceCount;
+        }
+
+        /**
+         * @return successful polls per second
+         */
+        public double getThroughput()
+        {
+            return throughput;
+        }
+
+        public long getErrorCount()
+        {
+            return errorCount;
+        }
+
+        /**
+         * @return the latencies of the successful polls
+         */
+        public LatencyHistogram.Snapshot getLatencies()
+        {
+            return latencies;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%d devices, %.0f polls/s, %d errors, p50=%.1fms, p99=%.1fms, max=%.1fms",
+                                 deviceCount,
+                                 throughput,
+                                 errorCount,
+                                 latencies.getPercentileMs(50),
+                                 latencies.getPercentileMs(99),
+                                 latencies.getMaxMs());
+        }
+    }
+
+    /**
+     * Figures of a step.
+     */
+    public static final class StepReport
+    {
+        private final int devicesPerTransport;
+        private final double offeredRate;
+        private final Map<String, TransportStats> transports;
+        private final long gcCount;
+        private final long gcTimeMs;
+        private final int threadCount;
+        private final int peakThreadCount;
+        private final double heapUsedMb;
+        private final boolean saturated;
+
+        private StepReport(int devicesPerTransport,
+                           double offeredRate,
+                           Map<String, TransportStats> transports,
+                           long gcCount,
+                           long gcTimeMs,
+                           int threadCount,
+                           int peakThreadCount,
+                           double heapUsedMb,
+                           double minThroughputRatio,
+                           double maxP99Ms)
+        {
+            this.devicesPerTransport = devicesPerTransport;
+            this.offeredRate = offeredRate;
+            this.transports = Collections.unmodifiableMap(transports);
+            this.gcCount = gcCount;
+            this.gcTimeMs = gcTimeMs;
+            this.threadCount = threadCount;
+            this.peakThreadCount = peakThreadCount;
+            this.heapUsedMb = heapUsedMb;
+            this.saturated = getThroughput() < minThroughputRatio * offeredRate
+                    || transports.values().stream().anyMatch(stats -> stats.latencies.getPercentileMs(99) > maxP99Ms);
+        }
+
+        public int getDevicesPerTransport()
+        {
+            return devicesPerTransport;
+        }
+
+        /**
+         * @return polls per second requested by all devices
+         */
+        public double getOfferedRate()
+        {
+            return offeredRate;
+        }
+
+        /**
+         * @return successful polls per second over all transports
+         */
+        public double getThroughput()
+        {
+            return transports.values().stream().mapToDouble(TransportStats::getThroughput).sum();
+        }
+
+        /**
+         * @return the figures per transport, by transport name
+         */
+        public Map<String, TransportStats> getTransports()
+        {
+            return transports;
+        }
+
+        /**
+         * @return number of garbage collections during the step
+         */
+        public long getGcCount()
+        {
+            return gcCount;
+        }
+
+        /**
+         * @return accumulated time of the garbage collections during the step, as reported by the JVM
+         */
+        public long getGcTimeMs()
+        {
+            return gcTimeMs;
+        }
+
+        public int getThreadCount()
+        {
+            return threadCount;
+        }
+
+        public int getPeakThreadCount()
+        {
+            return peakThreadCount;
+        }
+
+        public double getHeapUsedMb()
+        {
+            return heapUsedMb;
+        }
+
+        /**
+         * @return {@code true} if the throughput fell below the offered rate or the p99 latency exceeded the limit
+         */
+        public boolean isSaturated()
+        {
+            return saturated;
+        }
+
+        @Override
+        public String toString()
+        {
+            final var sb = new StringBuilder();
+            sb.append(String.format("%d devices/transport, offered %.0f polls/s, throughput %.0f polls/s%s, "
+                                            + "gc %d (%dms), threads %d (peak %d), heap %.0fMB",
+                                    devicesPerTransport,
+                                    offeredRate,
+                                    getThroughput(),
+                                    saturated ? " SATURATED" : "",
+                                    gcCount,
+                                    gcTimeMs,
+                                    threadCount,
+                                    peakThreadCount,
+                                    heapUsedMb));
+            transports.forEach((name, stats) -> sb.append("\n  ").append(name).append(": ").append(stats));
+            return sb.toString();
+        }
+    }
+}
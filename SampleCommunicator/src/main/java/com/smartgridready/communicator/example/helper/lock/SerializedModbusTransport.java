@@ -0,0 +1,142 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.lock;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * Modbus transport decorator holding the lock of its channel while a request is on the wire.
+ */
+class SerializedModbusTransport implements GenDriverAPI4Modbus
+{
+    private final String channel;
+    private final StripedLocks locks;
+    private final GenDriverAPI4Modbus delegate;
+
+    SerializedModbusTransport(String channel, StripedLocks locks, GenDriverAPI4Modbus delegate)
+    {
+        this.channel = channel;
+        this.locks = locks;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Request on the wrapped transport.
+     */
+    @FunctionalInterface
+    private interface Request<T>
+    {
+        T call() throws GenDriverException;
+    }
+
+    @Override
+    public int[] ReadInputRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return locked(() -> delegate.ReadInputRegisters(startingAddress, quantity));
+    }
+
+    @Override
+    public int[] ReadHoldingRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return locked(() -> delegate.ReadHoldingRegisters(startingAddress, quantity));
+    }
+
+    @Override
+    public boolean[] ReadDiscreteInputs(int startingAddress, int quantity) throws GenDriverException
+    {
+        return locked(() -> delegate.ReadDiscreteInputs(startingAddress, quantity));
+    }
+
+    @Override
+    public boolean[] ReadCoils(int startingAddress, int quantity) throws GenDriverException
+    {
+        return locked(() -> delegate.ReadCoils(startingAddress, quantity));
+    }
+
+    @Override
+    public void WriteMultipleCoils(int startingAddress, boolean[] values) throws GenDriverException
+    {
+        locked(() -> {
+            delegate.WriteMultipleCoils(startingAddress, values);
+            return null;
+        });
+    }
+
+    @Override
+    public void WriteSingleCoil(int startingAddress, boolean value) throws GenDriverException
+    {
+        locked(() -> {
+            delegate.WriteSingleCoil(startingAddress, value);
+            return null;
+        });
+    }
+
+    @Override
+    public void WriteMultipleRegisters(int startingAddress, int[] values) throws GenDriverException
+    {
+        locked(() -> {
+            delegate.WriteMultipleRegisters(startingAddress, values);
+            return null;
+        });
+    }
+
+    @Override
+    public void WriteSingleRegister(int startingAddress, int value) throws GenDriverException
+    {
+        locked(() -> {
+            delegate.WriteSingleRegister(startingAddress, value);
+            return null;
+        });
+    }
+
+    @Override
+    public boolean connect() throws GenDriverException
+    {
+        return locked(delegate::connect);
+    }
+
+    @Override
+    public void disconnect() throws GenDriverException
+    {
+        locked(() -> {
+            delegate.disconnect();
+            return null;
+        });
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return delegate.isConnected();
+    }
+
+    private <T> T locked(Request<T> request) throws GenDriverException
+    {
+        final var lock = locks.lock(channel);
+        try
+        {
+            return request.call();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.lock;
+
+import com.smartgridready.communicator.example.helper.ChannelModbusFactory;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
+
+/**
+ * Modbus factory decorator serializing the requests per connection: the transports of all devices on the same
+ * serial port, or behind the same TCP address, share one lock of a {@link StripedLocks}, so only one request is on
+ * the wire at a time. Requests on different connections run in parallel.
+ * <p>
+ * Pass the same instance to the builders of all devices, e.g. with {@code SGrDeviceBuilder.useModbusClientFactory()}.
+ */
+public class SerializingModbusFactory extends ChannelModbusFactory
+{
+    private final GenDriverAPI4ModbusFactory factory;
+    private final StripedLocks locks;
+
+    /**
+     * Constructor.
+     *
+     * @param factory
+     *        the factory creating the transports
+     * @param locks
+     *        the locks of the connections
+     */
+    public SerializingModbusFactory(GenDriverAPI4ModbusFactory factory, StripedLocks locks)
+    {
+        this.factory = factory;
+        this.locks = locks;
+    }
+
+    public StripedLocks getLocks()
+    {
+        return locks;
+    }
+
+    @Override
+    protected GenDriverAPI4Modbus create(String channel, TransportCreator creator)
+    {
+        return new SerializedModbusTransport(channel, locks, creator.create(factory));
+    }
+}
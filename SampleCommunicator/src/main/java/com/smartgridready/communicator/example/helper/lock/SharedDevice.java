@@ -0,0 +1,221 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.lock;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.dto.DataPointValue;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.fleet.DeviceFleet;
+import com.smartgridready.driver.api.common.GenDriverException;
+
+/**
+ * Wrapper sharing a {@link GenDeviceApi} between threads, e.g. a poller, a control loop and a user interface,
+ * without a global lock.
+ * <p>
+ * Concurrency contract:
+ * <ul>
+ * <li>{@link #getVal}, {@link #setVal}, {@link #getValues} and {@link #call} may be called from any thread. In
+ * {@link Mode#CONCURRENT} they run in parallel, also on the same device.</li>
+ * <li>{@link #connect()} and {@link #disconnect()} are exclusive: they wait for the calls in flight and hold back new
+ * calls until the transport is (dis)connected.</li>
+ * <li>Requests are serialized where the wire requires it, by the transport, not by the device: the Modbus transports
+ * created by a {@link SerializingModbusFactory} serialize the requests per serial port or TCP connection. REST
+ * requests run concurrently. Messaging clients must be thread-safe, like the clients of the {@code InProcessBroker};
+ * reads answered from a subscription cache do not touch the wire at all.</li>
+ * <li>{@link Mode#SERIALIZED} runs one call at a time per device, for device implementations that are not
+ * thread-safe. Other devices are not affected.</li>
+ * </ul>
+ */
+public class SharedDevice
+{
+    private final GenDeviceApi device;
+    private final Lock callLock;
+    private final Lock lifecycleLock;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Concurrency of the calls on one device.
+     */
+    public enum Mode
+    {
+        /** Calls run in parallel, the transport serializes the wire if needed. */
+        CONCURRENT,
+        /** One call at a time on this device. */
+        SERIALIZED
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param device
+     *        the device
+     * @param mode
+     *        concurrency of the calls on the device
+     */
+    public SharedDevice(GenDeviceApi device, Mode mode)
+    {
+        this.device = device;
+        final var lock = new ReentrantReadWriteLock();
+        this.callLock = mode == Mode.CONCURRENT ? lock.readLock() : lock.writeLock();
+        this.lifecycleLock = lock.writeLock();
+    }
+
+    /**
+     * Reads a data point value.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return the value
+     * @throws Exception
+     *         if the device could not be read
+     */
+    public Value getVal(String profileName, String dataPointName) throws Exception
+    {
+        return call(api -> api.getVal(profileName, dataPointName));
+    }
+
+    /**
+     * Writes a data point value.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the value
+     * @throws Exception
+     *         if the device could not be written
+     */
+    public void setVal(String profileName, String dataPointName, Value value) throws Exception
+    {
+        call(api -> {
+            api.setVal(profileName, dataPointName, value);
+            return null;
+        });
+    }
+
+    /**
+     * Reads all data point values.
+     *
+     * @return the values
+     * @throws Exception
+     *         if the device could not be read
+     */
+    public List<DataPointValue> getValues() throws Exception
+    {
+        return call(GenDeviceApi::getValues);
+    }
+
+    /**
+     * Runs a call on the device under the call lock, e.g. a read-modify-write in {@link Mode#SERIALIZED}.
+     *
+     * @param <T>
+     *        the result type
+     * @param task
+     *        the call
+     * @return the result
+     * @throws Exception
+     *         if the call failed
+     */
+    public <T> T call(DeviceFleet.DeviceTask<T> task) throws Exception
+    {
+        callLock.lock();
+        try
+        {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try
+            {
+                return task.run(device);
+            }
+            finally
+            {
+                inFlight.decrementAndGet();
+            }
+        }
+        finally
+        {
+            callLock.unlock();
+        }
+    }
+
+    /**
+     * Connects the device, after the calls in flight have completed.
+     *
+     * @throws GenDriverException
+     *         if the transport could not be connected
+     */
+    public void connect() throws GenDriverException
+    {
+        lifecycleLock.lock();
+        try
+        {
+            if (!device.isConnected())
+            {
+                device.connect();
+            }
+        }
+        finally
+        {
+            lifecycleLock.unlock();
+        }
+    }
+
+    /**
+     * Disconnects the device, after the calls in flight have completed.
+     *
+     * @throws GenDriverException
+     *         if the transport could not be disconnected
+     */
+    public void disconnect() throws GenDriverException
+    {
+        lifecycleLock.lock();
+        try
+        {
+            if (device.isConnected())
+            {
+                device.disconnect();
+            }
+        }
+        finally
+        {
+            lifecycleLock.unlock();
+        }
+    }
+
+    public boolean isConnected()
+    {
+        return device.isConnected();
+    }
+
+    /**
+     * @return highest number of calls observed in flight at the same time
+     */
+    public int getMaxInFlight()
+    {
+        return maxInFlight.get();
+    }
+}
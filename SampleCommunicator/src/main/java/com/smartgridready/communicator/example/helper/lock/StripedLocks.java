@@ -0,0 +1,126 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.lock;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks, one of which is assigned to each key by its hash.
+ * <p>
+ * Keys with the same name always get the same lock, different keys usually different locks. The memory used does
+ * not grow with the number of keys, at the price that two keys may share a stripe; with 16 times more stripes than
+ * active keys this is rare, and only costs parallelism, never correctness.
+ */
+public class StripedLocks
+{
+    /** Default number of stripes. */
+    public static final int DEFAULT_STRIPES = 256;
+
+    private final ReentrantLock[] locks;
+    private final LongAdder acquiredCount = new LongAdder();
+    private final LongAdder contendedCount = new LongAdder();
+
+    /**
+     * Constructor using {@link #DEFAULT_STRIPES}.
+     */
+    public StripedLocks()
+    {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param stripes
+     *        number of locks, rounded up to a power of two
+     */
+    public StripedLocks(int stripes)
+    {
+        if (stripes < 1)
+        {
+            throw new IllegalArgumentException("stripes must be at least 1: " + stripes);
+        }
+
+        var size = 1;
+        while (size < stripes)
+        {
+            size <<= 1;
+        }
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++)
+        {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Acquires the lock of a key, counting whether another thread held it.
+     *
+     * @param key
+     *        the key, e.g. the channel of a transport
+     * @return the acquired lock, to be released by the caller
+     */
+    public ReentrantLock lock(String key)
+    {
+        final var lock = get(key);
+        acquiredCount.increment();
+        if (!lock.tryLock())
+        {
+            contendedCount.increment();
+            lock.lock();
+        }
+        return lock;
+    }
+
+    /**
+     * @param key
+     *        the key
+     * @return the lock of the key
+     */
+    public ReentrantLock get(String key)
+    {
+        final var hash = key.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (locks.length - 1)];
+    }
+
+    /**
+     * @return number of stripes
+     */
+    public int getStripeCount()
+    {
+        return locks.length;
+    }
+
+    /**
+     * @return number of times a lock was acquired by {@link #lock(String)}
+     */
+    public long getAcquiredCount()
+    {
+        return acquiredCount.sum();
+    }
+
+    /**
+     * @return number of times {@link #lock(String)} had to wait for another thread
+     */
+    public long getContendedCount()
+    {
+        return contendedCount.sum();
+    }
+}
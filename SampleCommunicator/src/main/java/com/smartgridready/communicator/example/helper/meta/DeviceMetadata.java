@@ -0,0 +1,200 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.meta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.dto.DataPoint;
+import com.smartgridready.communicator.common.api.dto.FunctionalProfile;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+
+/**
+ * Immutable metadata of a device: device information, functional profiles and data points, as defined in its EID.
+ * <p>
+ * {@code getDeviceInfo()}, {@code getFunctionalProfiles()}, {@code getDataPoints()} etc. of the device API rebuild
+ * the according object graphs on each call. This class reads them once and answers all further lookups from maps.
+ * Since it only depends on the EID, one instance can be shared by all devices with the same EID, see
+ * {@link DeviceMetadataCache}.
+ * <p>
+ * Live values are deliberately not part of the metadata, they are read from the device with
+ * {@code getValues()} or {@code getVal()} when needed.
+ */
+public final class DeviceMetadata
+{
+    private final String name;
+    private final String manufacturer;
+    private final String interfaceType;
+    private final List<FunctionalProfile> functionalProfiles;
+    private final Map<String, FunctionalProfile> profilesByName;
+    private final Map<String, List<DataPoint>> dataPointsByProfile;
+    private final Map<DataPointKey, DataPoint> dataPointsByKey;
+
+    private DeviceMetadata(String name, String manufacturer, String interfaceType, List<FunctionalProfile> profiles)
+    {
+        this.name = name;
+        this.manufacturer = manufacturer;
+        this.interfaceType = interfaceType;
+        this.functionalProfiles = Collections.unmodifiableList(new ArrayList<>(profiles));
+
+        final var byName = new LinkedHashMap<String, FunctionalProfile>();
+        final var byProfile = new LinkedHashMap<String, List<DataPoint>>();
+        final var byKey = new LinkedHashMap<DataPointKey, DataPoint>();
+
+        for (var profile : profiles)
+        {
+            byName.put(profile.getName(), profile);
+            final var dataPoints = profile.getDataPoints() != null ? profile.getDataPoints() : List.<DataPoint>of();
+            byProfile.put(profile.getName(), Collections.unmodifiableList(new ArrayList<>(dataPoints)));
+            dataPoints.forEach(dataPoint -> byKey.put(DataPointKey.of(profile.getName(), dataPoint.getName()), dataPoint));
+        }
+
+        this.profilesByName = Collections.unmodifiableMap(byName);
+        this.dataPointsByProfile = Collections.unmodifiableMap(byProfile);
+        this.dataPointsByKey = Collections.unmodifiableMap(byKey);
+    }
+
+    /**
+     * Reads the metadata of a device, calling {@code getDeviceInfo()} exactly once.
+     *
+     * @param device
+     *        the device
+     * @return the metadata
+     * @throws Exception
+     *         if the device information cannot be read
+     */
+    public static DeviceMetadata of(GenDeviceApi device) throws Exception
+    {
+        final var deviceInfo = device.getDeviceInfo();
+        final var profiles = deviceInfo.getFunctionalProfiles();
+
+        return new DeviceMetadata(deviceInfo.getName(),
+                                  deviceInfo.getManufacturer(),
+                                  deviceInfo.getInterfaceType() != null ? deviceInfo.getInterfaceType().toString() : null,
+                                  profiles != null ? profiles : List.of());
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public String getManufacturer()
+    {
+        return manufacturer;
+    }
+
+    /**
+     * @return interface type of the device as text, e.g. {@code MODBUS}
+     */
+    public String getInterfaceType()
+    {
+        return interfaceType;
+    }
+
+    /**
+     * @return all functional profiles in EID order
+     */
+    public List<FunctionalProfile> getFunctionalProfiles()
+    {
+        return functionalProfiles;
+    }
+
+    /**
+     * Returns the functional profile with the given name.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @return the functional profile
+     * @throws IllegalArgumentException
+     *         if the EID does not contain the functional profile
+     */
+    public FunctionalProfile getFunctionalProfile(String profileName)
+    {
+        final var profile = profilesByName.get(profileName);
+
+        if (profile == null)
+        {
+            throw new IllegalArgumentException("Functional profile not found in EID of '" + name + "': " + profileName);
+        }
+        return profile;
+    }
+
+    /**
+     * Returns the data points of a functional profile.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @return the data points in EID order
+     * @throws IllegalArgumentException
+     *         if the EID does not contain the functional profile
+     */
+    public List<DataPoint> getDataPoints(String profileName)
+    {
+        final var dataPoints = dataPointsByProfile.get(profileName);
+
+        if (dataPoints == null)
+        {
+            throw new IllegalArgumentException("Functional profile not found in EID of '" + name + "': " + profileName);
+        }
+        return dataPoints;
+    }
+
+    /**
+     * Returns the data point with the given names.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return the data point
+     * @throws IllegalArgumentException
+     *         if the EID does not contain the data point
+     */
+    public DataPoint getDataPoint(String profileName, String dataPointName)
+    {
+        final var key = DataPointKey.of(profileName, dataPointName);
+        final var dataPoint = dataPointsByKey.get(key);
+
+        if (dataPoint == null)
+        {
+            throw new IllegalArgumentException("Data point not found in EID of '" + name + "': " + key);
+        }
+        return dataPoint;
+    }
+
+    /**
+     * @return number of data points over all functional profiles
+     */
+    public int getDataPointCount()
+    {
+        return dataPointsByKey.size();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DeviceMetadata[" + name + ", " + functionalProfiles.size() + " profiles, " + dataPointsByKey.size()
+                + " data points]";
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.meta;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+
+/**
+ * Cache of {@link DeviceMetadata}, one instance per EID, shared by all devices built from the same EID.
+ * <p>
+ * The EID is identified by a key, e.g. the EID file name or {@link #eidKey(byte[])} of its content. On a miss,
+ * the metadata is read from the device passed in. The cache is thread-safe.
+ */
+public class DeviceMetadataCache
+{
+    private final Map<String, DeviceMetadata> metadataByEid = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the metadata of an EID, reading it from the given device if not yet cached.
+     *
+     * @param eidKey
+     *        key identifying the EID of the device
+     * @param device
+     *        a device built from the EID
+     * @return the shared metadata
+     * @throws Exception
+     *         if the device information cannot be read
+     */
+    public DeviceMetadata get(String eidKey, GenDeviceApi device) throws Exception
+    {
+        final var cached = metadataByEid.get(eidKey);
+        if (cached != null)
+        {
+            hits.increment();
+            return cached;
+        }
+
+        // concurrent misses may read the metadata twice, but all callers get the same instance
+        misses.increment();
+        final var metadata = DeviceMetadata.of(device);
+        final var previous = metadataByEid.putIfAbsent(eidKey, metadata);
+        return previous != null ? previous : metadata;
+    }
+
+    /**
+     * Removes the metadata of an EID, e.g. after the EID has been updated.
+     *
+     * @param eidKey
+     *        key identifying the EID
+     */
+    public void invalidate(String eidKey)
+    {
+        metadataByEid.remove(eidKey);
+    }
+
+    /**
+     * @return number of cached EIDs
+     */
+    public int size()
+    {
+        return metadataByEid.size();
+    }
+
+    public long getHitCount()
+    {
+        return hits.sum();
+    }
+
+    public long getMissCount()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Computes a key from the EID content, so that devices loaded from different files with the same content share
+     * their metadata.
+     *
+     * @param eid
+     *        the EID-XML content
+     * @return the SHA-256 digest of the content in hex
+     */
+    public static String eidKey(byte[] eid)
+    {
+        try
+        {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(eid);
+            final var sb = new StringBuilder(digest.length * 2);
+            for (var b : digest)
+            {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Encoding of the HTTP requests in a {@link TrafficRecording}.
+ * <p>
+ * The request is identified by its path and its decoded, sorted query parameters, followed by the body and the
+ * form parameters, if any. The scheme and host are left out, so a recording can be replayed with another base URI
+ * and with URIs built by another URI builder.
+ */
+final class HttpExchanges
+{
+    private HttpExchanges()
+    {
+    }
+
+    static String request(URI uri, String body, Map<String, String> formParams)
+    {
+        final var request = new StringBuilder();
+        final var path = uri.getPath() != null ? uri.getPath() : "";
+        request.append(path.endsWith("/") ? path.substring(0, path.length() - 1) : path);
+
+        final var rawQuery = uri.getRawQuery();
+        if (rawQuery != null && !rawQuery.isEmpty())
+        {
+            final var query = new TreeMap<String, String>();
+            for (var parameter : rawQuery.split("&"))
+            {
+                final var equals = parameter.indexOf('=');
+                query.put(decode(equals < 0 ? parameter : parameter.substring(0, equals)),
+                          equals < 0 ? "" : decode(parameter.substring(equals + 1)));
+            }
+            request.append('?');
+            query.forEach((name, value) -> request.append(name).append('=').append(value).append('&'));
+            request.setLength(request.length() - 1);
+        }
+
+        if (body != null && !body.isEmpty())
+        {
+            request.append('\n').append(body);
+        }
+        if (!formParams.isEmpty())
+        {
+            request.append('\n').append(new TreeMap<>(formParams));
+        }
+        return request.toString();
+    }
+
+    private static String decode(String text)
+    {
+        return URLDecoder.decode(text, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import com.smartgridready.driver.api.messaging.model.Message;
+
+/**
+ * Encoding of the messaging requests in a {@link TrafficRecording}.
+ * <p>
+ * Sends and reads are identified by their topics and payloads. A subscription is recorded as {@code subscribe}
+ * exchange of the topic, each received message as {@code message} exchange of the topic, with the payload as
+ * response, so the messages can be replayed at their original offsets to the subscription.
+ */
+final class MessagingExchanges
+{
+    static final String SEND = "sendSync";
+    static final String SEND_ASYNC = "sendAsynch";
+    static final String READ = "readSync";
+    static final String SUBSCRIBE = "subscribe";
+    static final String MESSAGE = "message";
+
+    private MessagingExchanges()
+    {
+    }
+
+    static String send(String topic, Message message)
+    {
+        return topic + '\n' + payload(message);
+    }
+
+    static String read(String readCmdMessageTopic, Message readCmdMessage, String inMessageTopic)
+    {
+        return readCmdMessageTopic + '\n' + payload(readCmdMessage) + '\n' + inMessageTopic;
+    }
+
+    private static String payload(Message message)
+    {
+        return message != null && message.getPayload() != null ? message.getPayload() : "";
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverModbusException;
+import com.smartgridready.driver.api.modbus.GenDriverSocketException;
+
+/**
+ * Text encoding of the Modbus requests and responses in a {@link TrafficRecording}: registers as comma separated
+ * numbers, coils and discrete inputs as a string of {@code 0} and {@code 1}.
+ */
+final class ModbusExchanges
+{
+    private ModbusExchanges()
+    {
+    }
+
+    static String read(int address, int quantity)
+    {
+        return address + "," + quantity;
+    }
+
+    static String write(int address, String values)
+    {
+        return address + ":" + values;
+    }
+
+    static String registers(int[] registers)
+    {
+        final var text = new StringBuilder(registers.length * 6);
+        for (int i = 0; i < registers.length; i++)
+        {
+            if (i > 0)
+            {
+                text.append(',');
+            }
+            text.append(registers[i]);
+        }
+        return text.toString();
+    }
+
+    static int[] parseRegisters(String text)
+    {
+        if (text.isEmpty())
+        {
+            return new int[0];
+        }
+
+        final var parts = text.split(",");
+        final var registers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++)
+        {
+            registers[i] = Integer.parseInt(parts[i]);
+        }
+        return registers;
+    }
+
+    static String bits(boolean[] bits)
+    {
+        final var text = new char[bits.length];
+        for (int i = 0; i < bits.length; i++)
+        {
+            text[i] = bits[i] ? '1' : '0';
+        }
+        return new String(text);
+    }
+
+    static boolean[] parseBits(String text)
+    {
+        final var bits = new boolean[text.length()];
+        for (int i = 0; i < bits.length; i++)
+        {
+            bits[i] = text.charAt(i) == '1';
+        }
+        return bits;
+    }
+
+    /**
+     * Recreates a recorded exception, keeping the type of the Modbus exceptions.
+     */
+    static GenDriverException failure(String recorded)
+    {
+        final var separator = recorded.indexOf(": ");
+        final var type = separator < 0 ? recorded : recorded.substring(0, separator);
+        final var message = separator < 0 ? recorded : recorded.substring(separator + 2);
+
+        if (type.equals(GenDriverSocketException.class.getName()))
+        {
+            return new GenDriverSocketException(message);
+        }
+        if (type.equals(GenDriverModbusException.class.getName()))
+        {
+            return new GenDriverModbusException(message);
+        }
+        return new GenDriverException(message);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.smartgridready.driver.api.http.GenHttpClientFactory;
+import com.smartgridready.driver.api.http.GenHttpRequest;
+import com.smartgridready.driver.api.http.GenHttpResponse;
+import com.smartgridready.driver.api.http.GenUriBuilder;
+import com.smartgridready.driver.api.http.HttpMethod;
+
+/**
+ * HTTP client factory decorator recording the requests executed by the clients of the wrapped factory.
+ */
+class RecordingHttpClientFactory implements GenHttpClientFactory
+{
+    private final String channel;
+    private final GenHttpClientFactory delegate;
+    private final TrafficRecording recording;
+
+    RecordingHttpClientFactory(String channel, GenHttpClientFactory delegate, TrafficRecording recording)
+    {
+        this.channel = channel;
+        this.delegate = delegate;
+        this.recording = recording;
+    }
+
+    @Override
+    public GenHttpRequest createHttpRequest()
+    {
+        return new RecordingHttpRequest(delegate.createHttpRequest());
+    }
+
+    @Override
+    public GenUriBuilder createUriBuilder(String baseUri) throws URISyntaxException
+    {
+        return delegate.createUriBuilder(baseUri);
+    }
+
+    /**
+     * Request decorator, capturing the request on its way to the wrapped request.
+     */
+    private final class RecordingHttpRequest implements GenHttpRequest
+    {
+        private final GenHttpRequest request;
+        private final Map<String, String> formParams = new HashMap<>();
+        private URI uri;
+        private HttpMethod httpMethod = HttpMethod.GET;
+        private String body;
+
+        private RecordingHttpRequest(GenHttpRequest request)
+        {
+            this.request = request;
+        }
+
+        @Override
+        public GenHttpResponse execute() throws IOException
+        {
+            final var operation = httpMethod.name();
+            final var encodedRequest = HttpExchanges.request(uri, body, formParams);
+            final var startNs = System.nanoTime();
+            try
+            {
+                final var response = request.execute();
+                recording.record(channel, operation, encodedRequest, response.getResponse(), null, startNs);
+                return response;
+            }
+            catch (IOException | RuntimeException e)
+            {
+                recording.record(channel, operation, encodedRequest, null, e, startNs);
+                throw e;
+            }
+        }
+
+        @Override
+        public GenHttpRequest setUri(URI uri)
+        {
+            this.uri = uri;
+            request.setUri(uri);
+            return this;
+        }
+
+        @Override
+        public void setHttpMethod(HttpMethod httpMethod)
+        {
+            this.httpMethod = httpMethod;
+            request.setHttpMethod(httpMethod);
+        }
+
+        @Override
+        public void addHeader(String key, String value)
+        {
+            request.addHeader(key, value);
+        }
+
+        @Override
+        public void setBody(String body)
+        {
+            this.body = body;
+            request.setBody(body);
+        }
+
+        @Override
+        public void addFormParam(String key, String value)
+        {
+            formParams.put(key, value);
+            request.addFormParam(key, value);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.messaging.GenMessagingClient;
+import com.smartgridready.driver.api.messaging.MessageFilterHandler;
+import com.smartgridready.driver.api.messaging.model.Message;
+
+import io.vavr.control.Either;
+
+/**
+ * Messaging client decorator recording the sends, reads and received messages of the wrapped client.
+ */
+class RecordingMessagingClient implements GenMessagingClient
+{
+    private final String channel;
+    private final GenMessagingClient delegate;
+    private final TrafficRecording recording;
+
+    RecordingMessagingClient(String channel, GenMessagingClient delegate, TrafficRecording recording)
+    {
+        this.channel = channel;
+        this.delegate = delegate;
+        this.recording = recording;
+    }
+
+    @Override
+    public void sendSync(String topic, Message message)
+    {
+        final var request = MessagingExchanges.send(topic, message);
+        final var startNs = System.nanoTime();
+        try
+        {
+            delegate.sendSync(topic, message);
+            recording.record(channel, MessagingExchanges.SEND, request, null, null, startNs);
+        }
+        catch (RuntimeException e)
+        {
+            recording.record(channel, MessagingExchanges.SEND, request, null, e, startNs);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Either<Throwable, Void>> sendAsynch(String topic, Message message)
+    {
+        final var request = MessagingExchanges.send(topic, message);
+        final var startNs = System.nanoTime();
+        return delegate.sendAsynch(topic, message).whenComplete((result, exception) -> {
+            final var failure = exception != null ? exception : (result.isLeft() ? result.getLeft() : null);
+            recording.record(channel, MessagingExchanges.SEND_ASYNC, request, null, failure, startNs);
+        });
+    }
+
+    @Override
+    public Either<Throwable, Message> readSync(String readCmdMessageTopic,
+                                               Message readCmdMessage,
+                                               String inMessageTopic,
+                                               MessageFilterHandler messageFilterHandler,
+                                               long timeoutMs)
+    {
+        final var request = MessagingExchanges.read(readCmdMessageTopic, readCmdMessage, inMessageTopic);
+        final var startNs = System.nanoTime();
+        final var result = delegate.readSync(readCmdMessageTopic,
+                                             readCmdMessage,
+                                             inMessageTopic,
+                                             messageFilterHandler,
+                                             timeoutMs);
+        if (result.isRight())
+        {
+            recording.record(channel, MessagingExchanges.READ, request, result.get().getPayload(), null, startNs);
+        }
+        else
+        {
+            recording.record(channel, MessagingExchanges.READ, request, null, result.getLeft(), startNs);
+        }
+        return result;
+    }
+
+    @Override
+    public void subscribe(String topic,
+                          MessageFilterHandler messageFilterHandler,
+                          Consumer<Either<Throwable, Message>> callback) throws GenDriverException
+    {
+        recording.record(channel, MessagingExchanges.SUBSCRIBE, topic, null, null, System.nanoTime());
+        delegate.subscribe(topic, messageFilterHandler, result -> {
+            if (result.isRight())
+            {
+                recording.record(channel, MessagingExchanges.MESSAGE, topic, result.get().getPayload(), null,
+                                 System.nanoTime());
+            }
+            callback.accept(result);
+        });
+    }
+
+    @Override
+    public void unsubscribe(String topic) throws GenDriverException
+    {
+        delegate.unsubscribe(topic);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        delegate.close();
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.util.function.Function;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * Modbus transport decorator recording all reads and writes of the wrapped transport.
+ */
+class RecordingModbusTransport implements GenDriverAPI4Modbus
+{
+    private final String channel;
+    private final GenDriverAPI4Modbus delegate;
+    private final TrafficRecording recording;
+
+    RecordingModbusTransport(String channel, GenDriverAPI4Modbus delegate, TrafficRecording recording)
+    {
+        this.channel = channel;
+        this.delegate = delegate;
+        this.recording = recording;
+    }
+
+    /**
+     * Operation on the wrapped transport.
+     */
+    @FunctionalInterface
+    private interface Operation<T>
+    {
+        T call() throws GenDriverException;
+    }
+
+    @Override
+    public int[] ReadInputRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return record("ReadInputRegisters", ModbusExchanges.read(startingAddress, quantity),
+                      () -> delegate.ReadInputRegisters(startingAddress, quantity), ModbusExchanges::registers);
+    }
+
+    @Override
+    public int[] ReadHoldingRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return record("ReadHoldingRegisters", ModbusExchanges.read(startingAddress, quantity),
+                      () -> delegate.ReadHoldingRegisters(startingAddress, quantity), ModbusExchanges::registers);
+    }
+
+    @Override
+    public boolean[] ReadDiscreteInputs(int startingAddress, int quantity) throws GenDriverException
+    {
+        return record("ReadDiscreteInputs", ModbusExchanges.read(startingAddress, quantity),
+                      () -> delegate.ReadDiscreteInputs(startingAddress, quantity), ModbusExchanges::bits);
+    }
+
+    @Override
+    public boolean[] ReadCoils(int startingAddress, int quantity) throws GenDriverException
+    {
+        return record("ReadCoils", ModbusExchanges.read(startingAddress, quantity),
+                      () -> delegate.ReadCoils(startingAddress, quantity), ModbusExchanges::bits);
+    }
+
+    @Override
+    public void WriteMultipleCoils(int startingAddress, boolean[] values) throws GenDriverException
+    {
+        record("WriteMultipleCoils", ModbusExchanges.write(startingAddress, ModbusExchanges.bits(values)), () -> {
+            delegate.WriteMultipleCoils(startingAddress, values);
+            return null;
+        }, result -> null);
+    }
+
+    @Override
+    public void WriteSingleCoil(int startingAddress, boolean value) throws GenDriverException
+    {
+        record("WriteSingleCoil", ModbusExchanges.write(startingAddress, value ? "1" : "0"), () -> {
+            delegate.WriteSingleCoil(startingAddress, value);
+            return null;
+        }, result -> null);
+    }
+
+    @Override
+    public void WriteMultipleRegisters(int startingAddress, int[] values) throws GenDriverException
+    {
+        record("WriteMultipleRegisters", ModbusExchanges.write(startingAddress, ModbusExchanges.registers(values)),
+               () -> {
+                   delegate.WriteMultipleRegisters(startingAddress, values);
+                   return null;
+               }, result -> null);
+    }
+
+    @Override
+    public void WriteSingleRegister(int startingAddress, int value) throws GenDriverException
+    {
+        record("WriteSingleRegister", ModbusExchanges.write(startingAddress, Integer.toString(value)), () -> {
+            delegate.WriteSingleRegister(startingAddress, value);
+            return null;
+        }, result -> null);
+    }
+
+    @Override
+    public boolean connect() throws GenDriverException
+    {
+        return delegate.connect();
+    }
+
+    @Override
+    public void disconnect() throws GenDriverException
+    {
+        delegate.disconnect();
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return delegate.isConnected();
+    }
+
+    private <T> T record(String operation,
+                         String request,
+                         Operation<T> call,
+                         Function<T, String> encoder) throws GenDriverException
+    {
+        final var startNs = System.nanoTime();
+        try
+        {
+            final var result = call.call();
+            recording.record(channel, operation, request, encoder.apply(result), null, startNs);
+            return result;
+        }
+        catch (GenDriverException | RuntimeException e)
+        {
+            recording.record(channel, operation, request, null, e, startNs);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.smartgridready.driver.api.http.GenHttpClientFactory;
+import com.smartgridready.driver.api.http.GenHttpRequest;
+import com.smartgridready.driver.api.http.GenHttpResponse;
+import com.smartgridready.driver.api.http.GenUriBuilder;
+import com.smartgridready.driver.api.http.HttpMethod;
+
+/**
+ * HTTP client factory answering the requests from a {@link TrafficReplayer}.
+ */
+class ReplayHttpClientFactory implements GenHttpClientFactory
+{
+    private final String channel;
+    private final TrafficReplayer replayer;
+
+    ReplayHttpClientFactory(String channel, TrafficReplayer replayer)
+    {
+        this.channel = channel;
+        this.replayer = replayer;
+    }
+
+    @Override
+    public GenHttpRequest createHttpRequest()
+    {
+        return new ReplayHttpRequest();
+    }
+
+    @Override
+    public GenUriBuilder createUriBuilder(String baseUri)
+    {
+        return new ReplayUriBuilder(baseUri);
+    }
+
+    /**
+     * Request answered from the recording.
+     */
+    private final class ReplayHttpRequest implements GenHttpRequest
+    {
+        private final Map<String, String> formParams = new HashMap<>();
+        private URI uri;
+        private HttpMethod httpMethod = HttpMethod.GET;
+        private String body;
+
+        @Override
+        public GenHttpResponse execute() throws IOException
+        {
+            final var startNs = System.nanoTime();
+            final var request = HttpExchanges.request(uri, body, formParams);
+            final var exchange = replayer.next(channel, httpMethod.name(), request);
+            if (exchange == null)
+            {
+                throw new IOException("No recorded response on " + channel + " for " + httpMethod + ' ' + request);
+            }
+
+            replayer.awaitResponse(exchange, startNs);
+            if (exchange.isFailed())
+            {
+                throw new IOException(exchange.getResponse());
+            }
+            return GenHttpResponse.of(exchange.getResponse());
+        }
+
+        @Override
+        public GenHttpRequest setUri(URI uri)
+        {
+            this.uri = uri;
+            return this;
+        }
+
+        @Override
+        public void setHttpMethod(HttpMethod httpMethod)
+        {
+            this.httpMethod = httpMethod;
+        }
+
+        @Override
+        public void addHeader(String key, String value)
+        {
+            // headers are not part of the recorded request
+        }
+
+        @Override
+        public void setBody(String body)
+        {
+            this.body = body;
+        }
+
+        @Override
+        public void addFormParam(String key, String value)
+        {
+            formParams.put(key, value);
+        }
+    }
+
+    /**
+     * Minimal URI builder, appending paths and encoded query parameters to the base URI.
+     */
+    private static final class ReplayUriBuilder implements GenUriBuilder
+    {
+        private final StringBuilder uri;
+        private final Map<String, String> queryParameters = new LinkedHashMap<>();
+        private String queryString;
+
+        private ReplayUriBuilder(String baseUri)
+        {
+            this.uri = new StringBuilder(baseUri);
+        }
+
+        @Override
+        public GenUriBuilder setQueryString(String queryString)
+        {
+            this.queryString = queryString;
+            return this;
+        }
+
+        @Override
+        public GenUriBuilder addPath(String path)
+        {
+            final var baseEndsWithSlash = uri.length() > 0 && uri.charAt(uri.length() - 1) == '/';
+            final var pathStartsWithSlash = path.startsWith("/");
+            if (baseEndsWithSlash && pathStartsWithSlash)
+            {
+                uri.append(path, 1, path.length());
+            }
+            else
+            {
+                uri.append(baseEndsWithSlash || pathStartsWithSlash ? "" : "/").append(path);
+            }
+            return this;
+        }
+
+        @Override
+        public GenUriBuilder addQueryParameter(String name, String value)
+        {
+            queryParameters.put(name, value);
+            return this;
+        }
+
+        @Override
+        public URI build() throws URISyntaxException
+        {
+            final var query = new StringBuilder(queryString != null ? queryString : "");
+            queryParameters.forEach((name, value) -> query.append(query.length() > 0 ? "&" : "")
+                                                          .append(URLEncoder.encode(name, StandardCharsets.UTF_8))
+                                                          .append('=')
+                                                          .append(URLEncoder.encode(value, StandardCharsets.UTF_8)));
+            return new URI(query.length() > 0 ? uri + "?" + query : uri.toString());
+        }
+    }
+}
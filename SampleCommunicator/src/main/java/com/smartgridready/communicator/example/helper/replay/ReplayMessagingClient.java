@@ -0,0 +1,153 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.messaging.GenMessagingClient;
+import com.smartgridready.driver.api.messaging.MessageFilterHandler;
+import com.smartgridready.driver.api.messaging.model.Message;
+
+import io.vavr.control.Either;
+
+/**
+ * Messaging client answering from a {@link TrafficReplayer}. The messages received by a subscription are delivered
+ * at their recorded offsets to the first recorded subscription of the topic.
+ */
+class ReplayMessagingClient implements GenMessagingClient
+{
+    private final String channel;
+    private final TrafficReplayer replayer;
+    private final Map<String, List<Future<?>>> subscriptions = new ConcurrentHashMap<>();
+
+    ReplayMessagingClient(String channel, TrafficReplayer replayer)
+    {
+        this.channel = channel;
+        this.replayer = replayer;
+    }
+
+    @Override
+    public void sendSync(String topic, Message message)
+    {
+        final var startNs = System.nanoTime();
+        final var request = MessagingExchanges.send(topic, message);
+        final var exchange = replayer.next(channel, MessagingExchanges.SEND, request);
+        if (exchange == null)
+        {
+            throw new IllegalStateException("No recorded send on " + channel + " for " + request);
+        }
+        replayer.awaitResponse(exchange, startNs);
+    }
+
+    @Override
+    public CompletableFuture<Either<Throwable, Void>> sendAsynch(String topic, Message message)
+    {
+        final var request = MessagingExchanges.send(topic, message);
+        final var exchange = replayer.next(channel, MessagingExchanges.SEND_ASYNC, request);
+        if (exchange == null)
+        {
+            return CompletableFuture.completedFuture(
+                    Either.left(new GenDriverException("No recorded send on " + channel + " for " + request)));
+        }
+
+        final var result = new CompletableFuture<Either<Throwable, Void>>();
+        replayer.getScheduler().schedule(() -> result.complete(
+                exchange.isFailed() ? Either.left(new GenDriverException(exchange.getResponse())) : Either.right(null)),
+                replayer.scaledNs(exchange.getDurationUs()), TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    @Override
+    public Either<Throwable, Message> readSync(String readCmdMessageTopic,
+                                               Message readCmdMessage,
+                                               String inMessageTopic,
+                                               MessageFilterHandler messageFilterHandler,
+                                               long timeoutMs)
+    {
+        final var startNs = System.nanoTime();
+        final var request = MessagingExchanges.read(readCmdMessageTopic, readCmdMessage, inMessageTopic);
+        final var exchange = replayer.next(channel, MessagingExchanges.READ, request);
+        if (exchange == null)
+        {
+            return Either.left(new GenDriverException("No recorded read on " + channel + " for " + request));
+        }
+
+        replayer.awaitResponse(exchange, startNs);
+        return exchange.isFailed() ? Either.left(new GenDriverException(exchange.getResponse()))
+                                   : Either.right(Message.of(exchange.getResponse()));
+    }
+
+    @Override
+    public void subscribe(String topic,
+                          MessageFilterHandler messageFilterHandler,
+                          Consumer<Either<Throwable, Message>> callback) throws GenDriverException
+    {
+        final var exchanges = replayer.getExchanges(channel);
+        final var subscription = exchanges.stream()
+                .filter(exchange -> exchange.getOperation().equals(MessagingExchanges.SUBSCRIBE)
+                                    && exchange.getRequest().equals(topic))
+                .findFirst()
+                .orElseThrow(() -> new GenDriverException("No recorded subscription on " + channel + " for " + topic));
+
+        final var scheduled = new CopyOnWriteArrayList<Future<?>>();
+        for (var exchange : exchanges)
+        {
+            if (exchange.getOperation().equals(MessagingExchanges.MESSAGE)
+                && exchange.getRequest().equals(topic)
+                && exchange.getStartUs() >= subscription.getStartUs())
+            {
+                final var payload = exchange.getResponse();
+                scheduled.add(replayer.getScheduler().schedule(() -> {
+                    if (messageFilterHandler == null || messageFilterHandler.isFilterMatch(payload))
+                    {
+                        callback.accept(Either.right(Message.of(payload)));
+                    }
+                }, replayer.scaledNs(exchange.getStartUs() - subscription.getStartUs()), TimeUnit.NANOSECONDS));
+            }
+        }
+        subscriptions.merge(topic, scheduled, (existing, added) -> {
+            existing.addAll(added);
+            return existing;
+        });
+    }
+
+    @Override
+    public void unsubscribe(String topic)
+    {
+        final var scheduled = subscriptions.remove(topic);
+        if (scheduled != null)
+        {
+            scheduled.forEach(future -> future.cancel(false));
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        subscriptions.keySet().forEach(this::unsubscribe);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * Modbus transport answering from a {@link TrafficReplayer}.
+ */
+class ReplayModbusTransport implements GenDriverAPI4Modbus
+{
+    private final String channel;
+    private final TrafficReplayer replayer;
+    private volatile boolean connected;
+
+    ReplayModbusTransport(String channel, TrafficReplayer replayer)
+    {
+        this.channel = channel;
+        this.replayer = replayer;
+    }
+
+    @Override
+    public int[] ReadInputRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusExchanges.parseRegisters(
+                replay("ReadInputRegisters", ModbusExchanges.read(startingAddress, quantity)));
+    }
+
+    @Override
+    public int[] ReadHoldingRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusExchanges.parseRegisters(
+                replay("ReadHoldingRegisters", ModbusExchanges.read(startingAddress, quantity)));
+    }
+
+    @Override
+    public boolean[] ReadDiscreteInputs(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusExchanges.parseBits(replay("ReadDiscreteInputs", ModbusExchanges.read(startingAddress, quantity)));
+    }
+
+    @Override
+    public boolean[] ReadCoils(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusExchanges.parseBits(replay("ReadCoils", ModbusExchanges.read(startingAddress, quantity)));
+    }
+
+    @Override
+    public void WriteMultipleCoils(int startingAddress, boolean[] values) throws GenDriverException
+    {
+        replay("WriteMultipleCoils", ModbusExchanges.write(startingAddress, ModbusExchanges.bits(values)));
+    }
+
+    @Override
+    public void WriteSingleCoil(int startingAddress, boolean value) throws GenDriverException
+    {
+        replay("WriteSingleCoil", ModbusExchanges.write(startingAddress, value ? "1" : "0"));
+    }
+
+    @Override
+    public void WriteMultipleRegisters(int startingAddress, int[] values) throws GenDriverException
+    {
+        replay("WriteMultipleRegisters", ModbusExchanges.write(startingAddress, ModbusExchanges.registers(values)));
+    }
+
+    @Override
+    public void WriteSingleRegister(int startingAddress, int value) throws GenDriverException
+    {
+        replay("WriteSingleRegister", ModbusExchanges.write(startingAddress, Integer.toString(value)));
+    }
+
+    @Override
+    public boolean connect()
+    {
+        connected = true;
+        return true;
+    }
+
+    @Override
+    public void disconnect()
+    {
+        connected = false;
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    private String replay(String operation, String request) throws GenDriverException
+    {
+        final var startNs = System.nanoTime();
+        final var exchange = replayer.next(channel, operation, request);
+        if (exchange == null)
+        {
+            throw new GenDriverException("No recorded response on " + channel + " for " + operation + '(' + request + ')');
+        }
+
+        replayer.awaitResponse(exchange, startNs);
+        if (exchange.isFailed())
+        {
+            throw ModbusExchanges.failure(exchange.getResponse());
+        }
+        return exchange.getResponse();
+    }
+}
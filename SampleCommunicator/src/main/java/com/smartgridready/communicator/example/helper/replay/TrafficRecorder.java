@@ -0,0 +1,137 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.util.Set;
+
+import com.smartgridready.communicator.example.helper.ChannelModbusFactory;
+import com.smartgridready.driver.api.http.GenHttpClientFactory;
+import com.smartgridready.driver.api.messaging.GenMessagingClient;
+import com.smartgridready.driver.api.messaging.GenMessagingClientFactory;
+import com.smartgridready.driver.api.messaging.model.MessagingInterfaceDescription;
+import com.smartgridready.driver.api.messaging.model.MessagingPlatformType;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
+
+/**
+ * Wraps Modbus, HTTP and messaging transports in decorators capturing their request/response pairs with timings into
+ * a {@link TrafficRecording}, e.g. on a live site. The recording can be saved and served back by a
+ * {@link TrafficReplayer} in a deterministic performance test.
+ * <p>
+ * Each transport is recorded as a channel. Modbus channels are named after the serial port or the address of the
+ * device, HTTP and messaging channels by the caller. A replay needs the same channel names.
+ */
+public class TrafficRecorder
+{
+    private final TrafficRecording recording;
+
+    /**
+     * Constructor.
+     *
+     * @param recording
+     *        receives the exchanges
+     */
+    public TrafficRecorder(TrafficRecording recording)
+    {
+        this.recording = recording;
+    }
+
+    public TrafficRecording getRecording()
+    {
+        return recording;
+    }
+
+    /**
+     * @param channel
+     *        name of the channel
+     * @param transport
+     *        the transport to record
+     * @return the recording transport
+     */
+    public GenDriverAPI4Modbus modbus(String channel, GenDriverAPI4Modbus transport)
+    {
+        return new RecordingModbusTransport(channel, transport, recording);
+    }
+
+    /**
+     * @param factory
+     *        the factory creating the transports to record
+     * @return a factory creating recording transports, to be passed to {@code SGrDeviceBuilder.useModbusClientFactory()}
+     */
+    public GenDriverAPI4ModbusFactory modbusFactory(GenDriverAPI4ModbusFactory factory)
+    {
+        return new ChannelModbusFactory()
+        {
+            @Override
+            protected GenDriverAPI4Modbus create(String channel, TransportCreator creator)
+            {
+                return modbus(channel, creator.create(factory));
+            }
+        };
+    }
+
+    /**
+     * @param channel
+     *        name of the channel
+     * @param factory
+     *        the HTTP client factory to record
+     * @return a recording factory, to be passed to {@code SGrDeviceBuilder.useRestServiceClientFactory()}
+     */
+    public GenHttpClientFactory http(String channel, GenHttpClientFactory factory)
+    {
+        return new RecordingHttpClientFactory(channel, factory, recording);
+    }
+
+    /**
+     * @param channel
+     *        name of the channel
+     * @param client
+     *        the messaging client to record
+     * @return the recording client
+     */
+    public GenMessagingClient messaging(String channel, GenMessagingClient client)
+    {
+        return new RecordingMessagingClient(channel, client, recording);
+    }
+
+    /**
+     * @param channel
+     *        name of the channel
+     * @param factory
+     *        the messaging client factory to record
+     * @return a recording factory, to be passed to {@code SGrDeviceBuilder.useMessagingClientFactory()}
+     */
+    public GenMessagingClientFactory messaging(String channel, GenMessagingClientFactory factory)
+    {
+        return new GenMessagingClientFactory()
+        {
+            @Override
+            public GenMessagingClient create(MessagingInterfaceDescription interfaceDescription)
+            {
+                return messaging(channel, factory.create(interfaceDescription));
+            }
+
+            @Override
+            public Set<MessagingPlatformType> getSupportedPlatforms()
+            {
+                return factory.getSupportedPlatforms();
+            }
+        };
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request/response pairs captured by a {@link TrafficRecorder}, with their timings. Thread-safe.
+ * <p>
+ * The recording is saved in a compact binary file: polling traffic repeats the same channels, requests and often
+ * responses, so each string is written once and referenced by an ID afterwards, the timings are written as variable
+ * length deltas in microseconds and the whole file is gzip-compressed.
+ */
+public class TrafficRecording
+{
+    private static final int MAGIC = 0x53475252; // "SGRR"
+    private static final int VERSION = 1;
+
+    private final long startNs;
+    private final List<Exchange> exchanges = new ArrayList<>();
+
+    /**
+     * One request/response pair.
+     */
+    public static final class Exchange
+    {
+        private final String channel;
+        private final String operation;
+        private final String request;
+        private final String response;
+        private final boolean failed;
+        private final long startUs;
+        private final long durationUs;
+
+        Exchange(String channel,
+                 String operation,
+                 String request,
+                 String response,
+                 boolean failed,
+                 long startUs,
+                 long durationUs)
+        {
+            this.channel = channel;
+            this.operation = operation;
+            this.request = request;
+            this.response = response;
+            this.failed = failed;
+            this.startUs = startUs;
+            this.durationUs = durationUs;
+        }
+
+        /**
+         * @return the transport the exchange belongs to, e.g. {@code tcp:192.168.1.10:502}
+         */
+        public String getChannel()
+        {
+            return channel;
+        }
+
+        /**
+         * @return the operation, e.g. {@code ReadHoldingRegisters}
+         */
+        public String getOperation()
+        {
+            return operation;
+        }
+
+        /**
+         * @return the request parameters, encoded by the transport decorator
+         */
+        public String getRequest()
+        {
+            return request;
+        }
+
+        /**
+         * @return the response or, if the request failed, the exception as {@code <class name>: <message>}
+         */
+        public String getResponse()
+        {
+            return response;
+        }
+
+        public boolean isFailed()
+        {
+            return failed;
+        }
+
+        /**
+         * @return start of the request since the start of the recording
+         */
+        public long getStartUs()
+        {
+            return startUs;
+        }
+
+        /**
+         * @return time until the response was received
+         */
+        public long getDurationUs()
+        {
+            return durationUs;
+        }
+
+        String getKey()
+        {
+            return key(channel, operation, request);
+        }
+
+        @Override
+        public String toString()
+        {
+            return channel + ' ' + operation + '(' + request + ") -> " + (failed ? "failed " : "") + response
+                   + " in " + durationUs + "us";
+        }
+    }
+
+    /**
+     * Creates an empty recording, starting now.
+     */
+    public TrafficRecording()
+    {
+        this.startNs = System.nanoTime();
+    }
+
+    /**
+     * Loads a recording saved by {@link #save(Path)}.
+     *
+     * @param file
+     *        the file
+     * @return the recording
+     * @throws IOException
+     *         if the file cannot be read or has an invalid format
+     */
+    public static TrafficRecording load(Path file) throws IOException
+    {
+        final var recording = new TrafficRecording();
+
+        try (var in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file)))))
+        {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION)
+            {
+                throw new IOException("Not a traffic recording: " + file);
+            }
+
+            final var strings = new ArrayList<String>();
+            final var count = readVarLong(in);
+            var startUs = 0L;
+            for (long i = 0; i < count; i++)
+            {
+                final var channel = readString(in, strings);
+                final var operation = readString(in, strings);
+                final var request = readString(in, strings);
+                final var response = readString(in, strings);
+                final var failed = in.readBoolean();
+                startUs += readVarLong(in);
+                final var durationUs = readVarLong(in);
+                recording.exchanges.add(
+                        new Exchange(channel, operation, request, response, failed, startUs, durationUs));
+            }
+        }
+        return recording;
+    }
+
+    /**
+     * Saves the recording, ordered by start time.
+     *
+     * @param file
+     *        the file, replaced if it exists
+     * @throws IOException
+     *         if the file cannot be written
+     */
+    public void save(Path file) throws IOException
+    {
+        final var sorted = getExchanges();
+        sorted.sort(Comparator.comparingLong(Exchange::getStartUs));
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))))
+        {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+
+            final Map<String, Integer> ids = new HashMap<>();
+            writeVarLong(out, sorted.size());
+            var previousUs = 0L;
+            for (var exchange : sorted)
+            {
+                writeString(out, exchange.channel, ids);
+                writeString(out, exchange.operation, ids);
+                writeString(out, exchange.request, ids);
+                writeString(out, exchange.response, ids);
+                out.writeBoolean(exchange.failed);
+                writeVarLong(out, exchange.startUs - previousUs);
+                writeVarLong(out, exchange.durationUs);
+                previousUs = exchange.startUs;
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the recorded exchanges, in recording order
+     */
+    public synchronized List<Exchange> getExchanges()
+    {
+        return new ArrayList<>(exchanges);
+    }
+
+    /**
+     * @return number of recorded exchanges
+     */
+    public synchronized int size()
+    {
+        return exchanges.size();
+    }
+
+    /**
+     * Records an exchange.
+     *
+     * @param channel
+     *        the transport
+     * @param operation
+     *        the operation
+     * @param request
+     *        the request parameters
+     * @param response
+     *        the response, {@code null} for none
+     * @param failure
+     *        the exception thrown instead of a response, {@code null} if none
+     * @param requestStartNs
+     *        {@link System#nanoTime()} at the start of the request
+     */
+    void record(String channel, String operation, String request, String response, Throwable failure,
+                long requestStartNs)
+    {
+        final var endNs = System.nanoTime();
+        final var exchange = new Exchange(channel,
+                                          operation,
+                                          request,
+                                          failure != null ? failure.getClass().getName() + ": " + failure.getMessage()
+                                                          : (response != null ? response : ""),
+                                          failure != null,
+                                          (requestStartNs - startNs) / 1000,
+                                          (endNs - requestStartNs) / 1000);
+        synchronized (this)
+        {
+            exchanges.add(exchange);
+        }
+    }
+
+    static String key(String channel, String operation, String request)
+    {
+        return channel + '\u0000' + operation + '\u0000' + request;
+    }
+
+    /**
+     * Writes a string reference: the ID of a string written before or 0, followed by the string, for a new string.
+     */
+    private static void writeString(DataOutputStream out, String value, Map<String, Integer> ids) throws IOException
+    {
+        final var id = ids.get(value);
+        if (id != null)
+        {
+            writeVarLong(out, id);
+            return;
+        }
+
+        ids.put(value, ids.size() + 1);
+        final var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, 0);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in, List<String> strings) throws IOException
+    {
+        final var id = (int) readVarLong(in);
+        if (id > 0)
+        {
+            if (id > strings.size())
+            {
+                throw new IOException("Invalid string reference: " + id);
+            }
+            return strings.get(id - 1);
+        }
+
+        final var bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        final var value = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(value);
+        return value;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException
+    {
+        var remaining = value;
+        while ((remaining & ~0x7fL) != 0)
+        {
+            out.writeByte((int) ((remaining & 0x7f) | 0x80));
+            remaining >>>= 7;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException
+    {
+        var result = 0L;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            final var b = in.read();
+            if (b < 0)
+            {
+                throw new EOFException("Truncated traffic recording");
+            }
+            result |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+            {
+                return result;
+            }
+        }
+        throw new IOException("Invalid variable length number");
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.replay;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.smartgridready.communicator.example.helper.ChannelModbusFactory;
+import com.smartgridready.driver.api.http.GenHttpClientFactory;
+import com.smartgridready.driver.api.messaging.GenMessagingClientFactory;
+import com.smartgridready.driver.api.messaging.model.MessagingInterfaceDescription;
+import com.smartgridready.driver.api.messaging.model.MessagingPlatformType;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
+
+/**
+ * Serves the exchanges of a {@link TrafficRecording} back, as transports to be injected into the
+ * {@code SGrDeviceBuilder} instead of the real ones.
+ * <p>
+ * A request is answered with the recorded response of the same channel, operation and request parameters. If the same
+ * request was recorded several times, the responses are returned in recording order, starting over after the last
+ * one, so a short recording can drive a long benchmark. Recorded failures are thrown again. Each response is delayed
+ * to the recorded response time multiplied by the time scale: 1 replays the original timings, 0 answers immediately.
+ * <p>
+ * A request that was not recorded fails, so a changed request pattern is detected instead of hidden.
+ */
+public class TrafficReplayer implements AutoCloseable
+{
+    private final Map<String, Cursor> cursors = new HashMap<>();
+    private final Map<String, List<TrafficRecording.Exchange>> channels = new HashMap<>();
+    private final double timeScale;
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder replayedCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Responses of one request, in recording order.
+     */
+    private static final class Cursor
+    {
+        private final List<TrafficRecording.Exchange> exchanges = new ArrayList<>();
+        private final AtomicInteger next = new AtomicInteger();
+
+        private TrafficRecording.Exchange next()
+        {
+            return exchanges.get(Math.floorMod(next.getAndIncrement(), exchanges.size()));
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param recording
+     *        the recording to replay
+     * @param timeScale
+     *        factor applied to the recorded response times, 1 for the original timings, 0 for no delays
+     */
+    public TrafficReplayer(TrafficRecording recording, double timeScale)
+    {
+        if (timeScale < 0)
+        {
+            throw new IllegalArgumentException("Time scale must not be negative: " + timeScale);
+        }
+        this.timeScale = timeScale;
+
+        for (var exchange : recording.getExchanges())
+        {
+            cursors.computeIfAbsent(exchange.getKey(), key -> new Cursor()).exchanges.add(exchange);
+            channels.computeIfAbsent(exchange.getChannel(), key -> new ArrayList<>()).add(exchange);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final var thread = new Thread(runnable, "traffic-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param channel
+     *        the channel name used when recording, e.g. {@code tcp:192.168.1.10:502}
+     * @return a transport replaying the channel
+     */
+    public GenDriverAPI4Modbus modbus(String channel)
+    {
+        return new ReplayModbusTransport(channel, this);
+    }
+
+    /**
+     * @return a factory creating transports replaying the channel of the serial port or address they are created for,
+     *         to be passed to {@code SGrDeviceBuilder.useModbusClientFactory()}
+     */
+    public GenDriverAPI4ModbusFactory modbusFactory()
+    {
+        return new ChannelModbusFactory()
+        {
+            @Override
+            protected GenDriverAPI4Modbus create(String channel, TransportCreator factory)
+            {
+                return modbus(channel);
+            }
+        };
+    }
+
+    /**
+     * @param channel
+     *        the channel name used when recording
+     * @return a factory replaying the HTTP requests of the channel, to be passed to
+     *         {@code SGrDeviceBuilder.useRestServiceClientFactory()}
+     */
+    public GenHttpClientFactory http(String channel)
+    {
+        return new ReplayHttpClientFactory(channel, this);
+    }
+
+    /**
+     * @param channel
+     *        the channel name used when recording
+     * @return a factory creating clients replaying the messages of the channel, to be passed to
+     *         {@code SGrDeviceBuilder.useMessagingClientFactory()}
+     */
+    public GenMessagingClientFactory messaging(String channel)
+    {
+        return new GenMessagingClientFactory()
+        {
+            @Override
+            public ReplayMessagingClient create(MessagingInterfaceDescription interfaceDescription)
+            {
+                return new ReplayMessagingClient(channel, TrafficReplayer.this);
+            }
+
+            @Override
+            public Set<MessagingPlatformType> getSupportedPlatforms()
+            {
+                return Set.of(MessagingPlatformType.MQTT5);
+            }
+        };
+    }
+
+    /**
+     * @return number of requests answered from the recording
+     */
+    public long getReplayedCount()
+    {
+        return replayedCount.sum();
+    }
+
+    /**
+     * @return number of requests that were not recorded
+     */
+    public long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+    @Override
+    public void close()
+    {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Returns the next recorded exchange of a request.
+     *
+     * @return the exchange, {@code null} if the request was not recorded
+     */
+    TrafficRecording.Exchange next(String channel, String operation, String request)
+    {
+        final var cursor = cursors.get(TrafficRecording.key(channel, operation, request));
+        if (cursor == null)
+        {
+            missCount.increment();
+            return null;
+        }
+        replayedCount.increment();
+        return cursor.next();
+    }
+
+    /**
+     * Waits until the scaled response time of the exchange has elapsed since the start of the request.
+     */
+    void awaitResponse(TrafficRecording.Exchange exchange, long requestStartNs)
+    {
+        final var dueNs = requestStartNs + scaledNs(exchange.getDurationUs());
+        var remainingNs = dueNs - System.nanoTime();
+        while (remainingNs > 0)
+        {
+            LockSupport.parkNanos(remainingNs);
+            remainingNs = dueNs - System.nanoTime();
+        }
+    }
+
+    long scaledNs(long us)
+    {
+        return (long) (us * 1000 * timeScale);
+    }
+
+    List<TrafficRecording.Exchange> getExchanges(String channel)
+    {
+        return channels.getOrDefault(channel, List.of());
+    }
+
+    ScheduledExecutorService getScheduler()
+    {
+        return scheduler;
+    }
+}
@@ -0,0 +1,725 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.rtu;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+
+/**
+ * Arbiter for the transactions of several Modbus RTU slave devices on one shared serial line.
+ * <p>
+ * Each device is registered with the transport it uses and gets a {@code GenDriverAPI4Modbus} view in return,
+ * which is handed over to the device, e.g. by a {@code GenDriverAPI4ModbusFactory}. All transactions of all views
+ * are queued and executed one at a time by the bus thread of the arbiter:
+ * <ul>
+ * <li>Transactions are scheduled by {@link Priority}. Writes are executed before control reads, control reads
+ * before telemetry reads.</li>
+ * <li>Within the same priority, devices are served round robin, one transaction each. A slow device therefore
+ * delays every other device by at most one of its transactions, instead of by its whole queue.</li>
+ * <li>The inter-frame gap of 3.5 character times required by the baud rate is kept between two transactions.</li>
+ * </ul>
+ * The queue depth and the wait time of each device are reported by {@link #getStats()}.
+ * <p>
+ * A transport shared by several views is connected by the first and disconnected by the last of them. The connect
+ * is queued like a write, the disconnect like a read of the device, so the port is neither opened nor closed while a
+ * transaction is on the wire, and the other devices can queue transactions while the port is being opened.
+ * <p>
+ * Callers of the views block until their transaction has been executed. A caller interrupted while its transaction
+ * is still queued gets a {@link GenDriverException} and the transaction is dropped. Register the same device once per read
+ * priority to obtain separate views for control and telemetry reads. The queues, wait statistics and round robin
+ * position are shared by all views of a device.
+ */
+public class ModbusRtuBusArbiter implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ModbusRtuBusArbiter.class);
+
+    private static final int BITS_PER_CHAR = 11;
+
+    /** Above this baud rate, the Modbus specification recommends a fixed inter-frame gap. */
+    private static final int FIXED_GAP_BAUD_RATE = 19200;
+
+    private static final long FIXED_GAP_NS = 1_750_000;
+
+    /**
+     * Scheduling priority of a transaction, highest first.
+     */
+    public enum Priority
+    {
+        /** Write transactions. */
+        WRITE,
+        /** Reads of a control loop. */
+        CONTROL,
+        /** Bulk telemetry reads. */
+        TELEMETRY
+    }
+
+    /**
+     * A Modbus transaction of a device.
+     */
+    @FunctionalInterface
+    private interface Transaction
+    {
+        Object execute() throws Exception;
+    }
+
+    private static final class Task
+    {
+        private final Device device;
+        private final Transaction transaction;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private final long enqueuedNs = System.nanoTime();
+
+        private Task(Device device, Transaction transaction)
+        {
+            this.device = device;
+            this.transaction = transaction;
+        }
+    }
+
+    /**
+     * Queues and statistics of a device, guarded by the lock of the arbiter.
+     */
+    private static final class Device
+    {
+        private final String name;
+        private final List<ArrayDeque<Task>> queues = new ArrayList<>();
+        private int queueDepth = 0;
+        private int maxQueueDepth = 0;
+        private long transactionCount = 0;
+        private long totalWaitNs = 0;
+        private long maxWaitNs = 0;
+
+        private Device(String name)
+        {
+            this.name = name;
+            for (int i = 0; i < Priority.values().length; i++)
+            {
+                queues.add(new ArrayDeque<>());
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the statistics of a device.
+     */
+    public static final class DeviceStats
+    {
+        private final String deviceName;
+        private final int queueDepth;
+        private final int maxQueueDepth;
+        private final long transactionCount;
+        private final long totalWaitNs;
+        private final long maxWaitNs;
+
+        private DeviceStats(Device device)
+        {
+            this.deviceName = device.name;
+            this.queueDepth = device.queueDepth;
+            this.maxQueueDepth = device.maxQueueDepth;
+            this.transactionCount = device.transactionCount;
+            this.totalWaitNs = device.totalWaitNs;
+            this.maxWaitNs = device.maxWaitNs;
+        }
+
+        public String getDeviceName()
+        {
+            return deviceName;
+        }
+
+        /**
+         * @return number of transactions currently waiting for the bus
+         */
+        public int getQueueDepth()
+        {
+            return queueDepth;
+        }
+
+        /**
+         * @return maximum number of transactions that were waiting for the bus at the same time
+         */
+        public int getMaxQueueDepth()
+        {
+            return maxQueueDepth;
+        }
+
+        /**
+         * @return number of executed transactions
+         */
+        public long getTransactionCount()
+        {
+            return transactionCount;
+        }
+
+        /**
+         * @return average time between queuing and start of a transaction in milliseconds
+         */
+        public double getAverageWaitMs()
+        {
+            return transactionCount > 0 ? totalWaitNs / 1e6 / transactionCount : 0.0;
+        }
+
+        /**
+         * @return maximum time between queuing and start of a transaction in milliseconds
+         */
+        public double getMaxWaitMs()
+        {
+            return maxWaitNs / 1e6;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s [queueDepth=%d, maxQueueDepth=%d, transactions=%d, avgWait=%.1fms, maxWait=%.1fms]",
+                                 deviceName, queueDepth, maxQueueDepth, transactionCount, getAverageWaitMs(), getMaxWaitMs());
+        }
+    }
+
+    private final long interFrameGapNs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition taskAvailable = lock.newCondition();
+    private final Map<String, Device> devices = new LinkedHashMap<>();
+    private final Map<GenDriverAPI4Modbus, Integer> connectCounts = new IdentityHashMap<>();
+
+    /** Devices with queued transactions per priority, in round robin order. */
+    private final List<ArrayDeque<Device>> readyDevices = new ArrayList<>();
+
+    private final Thread busThread;
+    private boolean closed = false;
+    private long lastFrameEndNs;
+
+    /**
+     * Constructor. Starts the bus thread.
+     *
+     * @param lineName
+     *        name of the serial line, e.g. the COM port, used to name the bus thread
+     * @param baudRate
+     *        the baud rate of the line
+     */
+    public ModbusRtuBusArbiter(String lineName, int baudRate)
+    {
+        this.interFrameGapNs = interFrameGapNs(baudRate);
+        for (int i = 0; i < Priority.values().length; i++)
+        {
+            readyDevices.add(new ArrayDeque<>());
+        }
+        this.lastFrameEndNs = System.nanoTime() - interFrameGapNs;
+
+        busThread = new Thread(this::runBus, "modbus-rtu-" + lineName);
+        busThread.setDaemon(true);
+        busThread.start();
+    }
+
+    /**
+     * Returns the minimum gap between two frames required by the Modbus RTU specification:
+     * 3.5 character times, or 1.75ms for baud rates above 19200.
+     *
+     * @param baudRate
+     *        the baud rate
+     * @return the gap in nanoseconds
+     */
+    public static long interFrameGapNs(int baudRate)
+    {
+        if (baudRate <= 0)
+        {
+            throw new IllegalArgumentException("Invalid baud rate: " + baudRate);
+        }
+        return baudRate > FIXED_GAP_BAUD_RATE
+                ? FIXED_GAP_NS
+                : TimeUnit.SECONDS.toNanos(35L * BITS_PER_CHAR) / (10L * baudRate);
+    }
+
+    /**
+     * Registers a device and returns the view of the transport to be used by the device.
+     *
+     * @param deviceName
+     *        unique name of the device, used for scheduling and statistics
+     * @param transport
+     *        the transport of the device, may be shared by several devices
+     * @param readPriority
+     *        priority of the reads issued through the returned view, writes always have priority {@link Priority#WRITE}
+     * @return the view of the transport
+     */
+    public GenDriverAPI4Modbus register(String deviceName, GenDriverAPI4Modbus transport, Priority readPriority)
+    {
+        Objects.requireNonNull(transport);
+        Objects.requireNonNull(readPriority);
+
+        lock.lock();
+        try
+        {
+            final var device = devices.computeIfAbsent(Objects.requireNonNull(deviceName), Device::new);
+            return new ArbitratedTransport(device, transport, readPriority);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the statistics of all registered devices, in order of registration
+     */
+    public Map<String, DeviceStats> getStats()
+    {
+        lock.lock();
+        try
+        {
+            final var stats = new LinkedHashMap<String, DeviceStats>();
+            devices.forEach((name, device) -> stats.put(name, new DeviceStats(device)));
+            return stats;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the inter-frame gap kept between two transactions in nanoseconds
+     */
+    public long getInterFrameGapNs()
+    {
+        return interFrameGapNs;
+    }
+
+    /**
+     * Stops the bus thread. Queued transactions fail with a {@link GenDriverException}.
+     */
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try
+        {
+            closed = true;
+            for (var ready : readyDevices)
+            {
+                for (var device : ready)
+                {
+                    for (var queue : device.queues)
+                    {
+                        queue.forEach(task -> task.future.completeExceptionally(new GenDriverException("Bus arbiter closed")));
+                        queue.clear();
+                    }
+                    device.queueDepth = 0;
+                }
+                ready.clear();
+            }
+            taskAvailable.signalAll();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private Object submit(Device device, Priority priority, Transaction transaction) throws GenDriverException
+    {
+        final var task = new Task(device, transaction);
+
+        lock.lock();
+        try
+        {
+            if (closed)
+            {
+                throw new GenDriverException("Bus arbiter closed");
+            }
+
+            final var queue = device.queues.get(priority.ordinal());
+            if (queue.isEmpty())
+            {
+                readyDevices.get(priority.ordinal()).addLast(device);
+            }
+            queue.addLast(task);
+            device.queueDepth++;
+            device.maxQueueDepth = Math.max(device.maxQueueDepth, device.queueDepth);
+            taskAvailable.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+
+        try
+        {
+            return task.future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            if (!dequeue(task, priority))
+            {
+                throw new GenDriverException("Interrupted while the transaction was executed", e);
+            }
+            throw new GenDriverException("Interrupted while waiting for the bus", e);
+        }
+        catch (ExecutionException e)
+        {
+            final var cause = e.getCause();
+            if (cause instanceof GenDriverException)
+            {
+                throw (GenDriverException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            throw new GenDriverException("Modbus transaction failed", cause);
+        }
+    }
+
+    /**
+     * Removes a task that has not been started yet from its queue.
+     *
+     * @return {@code true} if the task was removed, {@code false} if it has been started already
+     */
+    private boolean dequeue(Task task, Priority priority)
+    {
+        lock.lock();
+        try
+        {
+            final var queue = task.device.queues.get(priority.ordinal());
+            if (!queue.remove(task))
+            {
+                return false;
+            }
+            task.device.queueDepth--;
+            if (queue.isEmpty())
+            {
+                readyDevices.get(priority.ordinal()).remove(task.device);
+            }
+            return true;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private Task takeNext() throws InterruptedException
+    {
+        lock.lock();
+        try
+        {
+            while (!closed)
+            {
+                for (int p = 0; p < readyDevices.size(); p++)
+                {
+                    final var device = readyDevices.get(p).pollFirst();
+                    if (device != null)
+                    {
+                        final var queue = device.queues.get(p);
+                        final var task = queue.pollFirst();
+                        if (!queue.isEmpty())
+                        {
+                            // round robin: the device goes to the end of the line
+                            readyDevices.get(p).addLast(device);
+                        }
+                        device.queueDepth--;
+                        return task;
+                    }
+                }
+                taskAvailable.await();
+            }
+            return null;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void runBus()
+    {
+        try
+        {
+            Task task;
+            while ((task = takeNext()) != null)
+            {
+                waitForInterFrameGap();
+                recordWait(task);
+
+                try
+                {
+                    task.future.complete(task.transaction.execute());
+                }
+                catch (Exception e)
+                {
+                    task.future.completeExceptionally(e);
+                }
+                finally
+                {
+                    lastFrameEndNs = System.nanoTime();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            LOG.warn("Bus thread interrupted.");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void waitForInterFrameGap()
+    {
+        final var earliestStartNs = lastFrameEndNs + interFrameGapNs;
+        for (var remaining = earliestStartNs - System.nanoTime(); remaining > 0; remaining = earliestStartNs - System.nanoTime())
+        {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private void recordWait(Task task)
+    {
+        final var waitNs = System.nanoTime() - task.enqueuedNs;
+
+        lock.lock();
+        try
+        {
+            task.device.transactionCount++;
+            task.device.totalWaitNs += waitNs;
+            task.device.maxWaitNs = Math.max(task.device.maxWaitNs, waitNs);
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The view of a transport handed over to a device.
+     */
+    private final class ArbitratedTransport implements GenDriverAPI4Modbus
+    {
+        private final Device device;
+        private final GenDriverAPI4Modbus transport;
+        private final Priority readPriority;
+
+        private ArbitratedTransport(Device device, GenDriverAPI4Modbus transport, Priority readPriority)
+        {
+            this.device = device;
+            this.transport = transport;
+            this.readPriority = readPriority;
+        }
+
+        @Override
+        public int[] ReadInputRegisters(int startingAddress, int quantity) throws GenDriverException
+        {
+            return (int[]) submit(device, readPriority, () -> transport.ReadInputRegisters(startingAddress, quantity));
+        }
+
+        @Override
+        public int[] ReadHoldingRegisters(int startingAddress, int quantity) throws GenDriverException
+        {
+            return (int[]) submit(device, readPriority, () -> transport.ReadHoldingRegisters(startingAddress, quantity));
+        }
+
+        @Override
+        public boolean[] ReadDiscreteInputs(int startingAddress, int quantity) throws GenDriverException
+        {
+            return (boolean[]) submit(device, readPriority, () -> transport.ReadDiscreteInputs(startingAddress, quantity));
+        }
+
+        @Override
+        public boolean[] ReadCoils(int startingAddress, int quantity) throws GenDriverException
+        {
+            return (boolean[]) submit(device, readPriority, () -> transport.ReadCoils(startingAddress, quantity));
+        }
+
+        @Override
+        public void WriteMultipleCoils(int startingAdress, boolean[] values) throws GenDriverException
+        {
+            submit(device, Priority.WRITE, () -> {
+                transport.WriteMultipleCoils(startingAdress, values);
+                return null;
+            });
+        }
+
+        @Override
+        public void WriteSingleCoil(int startingAdress, boolean value) throws GenDriverException
+        {
+            submit(device, Priority.WRITE, () -> {
+                transport.WriteSingleCoil(startingAdress, value);
+                return null;
+            });
+        }
+
+        @Override
+        public void WriteMultipleRegisters(int startingAdress, int[] values) throws GenDriverException
+        {
+            submit(device, Priority.WRITE, () -> {
+                transport.WriteMultipleRegisters(startingAdress, values);
+                return null;
+            });
+        }
+
+        @Override
+        public void WriteSingleRegister(int startingAdress, int value) throws GenDriverException
+        {
+            submit(device, Priority.WRITE, () -> {
+                transport.WriteSingleRegister(startingAdress, value);
+                return null;
+            });
+        }
+
+        @Override
+        public boolean connect() throws GenDriverException
+        {
+            // a shared transport is connected by the first device and disconnected by the last one
+            lock.lock();
+            try
+            {
+                connectCounts.merge(transport, 1, Integer::sum);
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            // the port is opened on the bus thread, without holding the lock of the arbiter
+            try
+            {
+                submit(device, Priority.WRITE, this::connectUsed);
+                return true;
+            }
+            catch (GenDriverException | RuntimeException e)
+            {
+                lock.lock();
+                try
+                {
+                    connectCounts.computeIfPresent(transport, (key, count) -> count > 1 ? count - 1 : null);
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void disconnect() throws GenDriverException
+        {
+            lock.lock();
+            try
+            {
+                final int count = connectCounts.getOrDefault(transport, 0);
+                if (count > 1)
+                {
+                    connectCounts.put(transport, count - 1);
+                    return;
+                }
+                connectCounts.remove(transport);
+            }
+            finally
+            {
+                lock.unlock();
+            }
+
+            // the port is closed on the bus thread, not while a transaction of another device is on the wire
+            try
+            {
+                submit(device, readPriority, this::disconnectUnused);
+            }
+            catch (GenDriverException e)
+            {
+                if (!isClosed())
+                {
+                    throw e;
+                }
+                // no bus thread left that could be using the port
+                disconnectUnused();
+            }
+        }
+
+        /**
+         * Connects the transport unless all devices disconnected it in the meantime.
+         */
+        private Object connectUsed() throws GenDriverException
+        {
+            if (isUsed() && !transport.isConnected())
+            {
+                transport.connect();
+            }
+            return null;
+        }
+
+        /**
+         * Disconnects the transport unless another device connected it in the meantime.
+         */
+        private Object disconnectUnused() throws GenDriverException
+        {
+            if (!isUsed() && transport.isConnected())
+            {
+                transport.disconnect();
+            }
+            return null;
+        }
+
+        private boolean isUsed()
+        {
+            lock.lock();
+            try
+            {
+                return connectCounts.containsKey(transport);
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        private boolean isClosed()
+        {
+            lock.lock();
+            try
+            {
+                return closed;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isConnected()
+        {
+            return transport.isConnected();
+        }
+    }
+}
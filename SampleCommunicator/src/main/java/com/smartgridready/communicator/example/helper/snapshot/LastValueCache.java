@@ -0,0 +1,224 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+
+/**
+ * Last known value per device and data point, with the time it was read.
+ * <p>
+ * Pollers {@link #put(String, String, String, Value) put} each value they read, dashboards and control loops
+ * {@link #get(String, String, String) get} the latest one without accessing the device. Values restored from a
+ * {@link ValueSnapshot} after a restart are marked stale until a fresh value of the same data point is put. A
+ * restored value never replaces a fresh one. The cache is thread-safe.
+ */
+public class LastValueCache
+{
+    private final Map<String, Map<DataPointKey, Entry>> devices = new ConcurrentHashMap<>();
+    private final AtomicLong modificationCount = new AtomicLong();
+
+    /**
+     * A cached value.
+     */
+    public static final class Entry
+    {
+        private final String deviceId;
+        private final DataPointKey key;
+        private final Value value;
+        private final long timestampMs;
+        private final boolean stale;
+
+        private Entry(String deviceId, DataPointKey key, Value value, long timestampMs, boolean stale)
+        {
+            this.deviceId = deviceId;
+            this.key = key;
+            this.value = value;
+            this.timestampMs = timestampMs;
+            this.stale = stale;
+        }
+
+        public String getDeviceId()
+        {
+            return deviceId;
+        }
+
+        public String getProfileName()
+        {
+            return key.getProfileName();
+        }
+
+        public String getDataPointName()
+        {
+            return key.getDataPointName();
+        }
+
+        public Value getValue()
+        {
+            return value;
+        }
+
+        /**
+         * @return time the value was read from the device, in milliseconds since the epoch
+         */
+        public long getTimestampMs()
+        {
+            return timestampMs;
+        }
+
+        /**
+         * @return {@code true} if the value was restored from a snapshot and not read since the restart
+         */
+        public boolean isStale()
+        {
+            return stale;
+        }
+
+        @Override
+        public String toString()
+        {
+            return deviceId + "/" + key + "=" + value + (stale ? " (stale)" : "");
+        }
+    }
+
+    /**
+     * Stores a value read now.
+     *
+     * @param deviceId
+     *        ID of the device
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the value read
+     */
+    public void put(String deviceId, String profileName, String dataPointName, Value value)
+    {
+        put(deviceId, profileName, dataPointName, value, System.currentTimeMillis());
+    }
+
+    /**
+     * Stores a value read at the given time.
+     *
+     * @param deviceId
+     *        ID of the device
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the value read
+     * @param timestampMs
+     *        time the value was read, in milliseconds since the epoch
+     */
+    public void put(String deviceId, String profileName, String dataPointName, Value value, long timestampMs)
+    {
+        final var key = DataPointKey.of(profileName, dataPointName);
+        dataPoints(deviceId).put(key, new Entry(deviceId, key, Objects.requireNonNull(value), timestampMs, false));
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Stores a value restored from a snapshot, marked stale, unless a value of the data point is already cached.
+     *
+     * @return {@code true} if the value was stored
+     */
+    boolean restore(String deviceId, String profileName, String dataPointName, Value value, long timestampMs)
+    {
+        final var key = DataPointKey.of(profileName, dataPointName);
+        return dataPoints(deviceId).putIfAbsent(key, new Entry(deviceId, key, value, timestampMs, true)) == null;
+    }
+
+    /**
+     * @param deviceId
+     *        ID of the device
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @return the last known value, {@code null} if none is known
+     */
+    public Entry get(String deviceId, String profileName, String dataPointName)
+    {
+        final var dataPoints = devices.get(deviceId);
+        return dataPoints != null ? dataPoints.get(DataPointKey.of(profileName, dataPointName)) : null;
+    }
+
+    /**
+     * Calls the consumer for each cached value, in no particular order.
+     *
+     * @param consumer
+     *        receives the entries
+     */
+    public void forEach(Consumer<Entry> consumer)
+    {
+        devices.values().forEach(dataPoints -> dataPoints.values().forEach(consumer));
+    }
+
+    /**
+     * @return a copy of all cached values
+     */
+    public List<Entry> getEntries()
+    {
+        final var entries = new ArrayList<Entry>();
+        forEach(entries::add);
+        return entries;
+    }
+
+    /**
+     * @return number of cached values
+     */
+    public int size()
+    {
+        return devices.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * @return number of cached values that are stale
+     */
+    public int getStaleCount()
+    {
+        return (int) devices.values().stream()
+                .flatMap(dataPoints -> dataPoints.values().stream())
+                .filter(Entry::isStale)
+                .count();
+    }
+
+    /**
+     * @return number of values put so far, used to skip snapshots if nothing changed
+     */
+    public long getModificationCount()
+    {
+        return modificationCount.get();
+    }
+
+    private Map<DataPointKey, Entry> dataPoints(String deviceId)
+    {
+        return devices.computeIfAbsent(Objects.requireNonNull(deviceId), id -> new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,582 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.snapshot;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.communicator.common.api.values.BitmapValue;
+import com.smartgridready.communicator.common.api.values.BooleanValue;
+import com.smartgridready.communicator.common.api.values.EnumValue;
+import com.smartgridready.communicator.common.api.values.Float32Value;
+import com.smartgridready.communicator.common.api.values.Float64Value;
+import com.smartgridready.communicator.common.api.values.Int64Value;
+import com.smartgridready.communicator.common.api.values.StringValue;
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.encode.BinaryBatchEncoder;
+import com.smartgridready.communicator.example.helper.encode.ValueKind;
+
+/**
+ * Periodic snapshot of a {@link LastValueCache} in a memory-mapped file, for a warm restart of the gateway.
+ * <p>
+ * After a restart, {@link #load()} restores the last known values into the cache, marked stale, so dashboards and
+ * control loops get a value immediately instead of waiting until every device has been polled again. The fresh
+ * reads replace the stale values one by one.
+ * <p>
+ * The file holds two slots. A snapshot is written into the older slot, forced to disk, and only then its slot header
+ * with a higher sequence number and the CRC of the data is written. If the gateway stops while writing, the other
+ * slot still holds the previous snapshot, and a slot with a wrong CRC is ignored on load. If the cache outgrows the
+ * slots, the file is enlarged; the previous snapshot is moved to the first slot, whose position does not change,
+ * before the layout is switched, so it survives a stop while growing as well. A snapshot is only written if values
+ * have been put into the cache since the last one. The values are encoded with the tags of the
+ * {@link BinaryBatchEncoder}; integer values are restored as {@code Int64Value}. Entries with a string longer than
+ * 65535 UTF-8 bytes are not written.
+ */
+public class ValueSnapshot implements AutoCloseable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ValueSnapshot.class);
+
+    /** File signature "SGRV". */
+    public static final int MAGIC = 0x53475256;
+
+    /** Version of the file format. */
+    public static final int VERSION = 1;
+
+    /** Initial capacity of a slot in bytes, grown as needed. */
+    public static final int DEFAULT_SLOT_CAPACITY = 64 * 1024;
+
+    /** Magic, version, slot capacity, reserved. */
+    private static final int FILE_HEADER_BYTES = 16;
+
+    /** Sequence number, snapshot time, data length, data CRC. */
+    private static final int SLOT_HEADER_BYTES = 24;
+
+    /** Strings are stored with an unsigned 16 bit length. */
+    private static final int MAX_STRING_BYTES = 0xffff;
+
+    private final LastValueCache cache;
+    private final Path file;
+    private final FileChannel channel;
+    private MappedByteBuffer mapped;
+    private int slotCapacity;
+
+    private int currentSlot = -1;
+    private long sequence;
+    private long snapshotModificationCount = -1;
+    private ScheduledExecutorService scheduler;
+
+    private long snapshotCount;
+    private int lastSnapshotBytes;
+    private long lastSnapshotNs;
+
+    /**
+     * Opens the snapshot file, creating it if it does not exist.
+     *
+     * @param cache
+     *        the cache to restore into and to snapshot
+     * @param file
+     *        the snapshot file
+     * @throws IOException
+     *         if the file cannot be opened or mapped
+     */
+    public ValueSnapshot(LastValueCache cache, Path file) throws IOException
+    {
+        this.cache = Objects.requireNonNull(cache);
+        this.file = Objects.requireNonNull(file);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        final var header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() == FILE_HEADER_BYTES && header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+                && header.getInt(8) > 0 && channel.size() >= fileSize(header.getInt(8)))
+        {
+            map(header.getInt(8));
+            selectNewestSlot();
+        }
+        else
+        {
+            if (channel.size() > 0)
+            {
+                LOG.warn("Ignoring invalid snapshot file {}", file);
+            }
+            initialize(DEFAULT_SLOT_CAPACITY);
+        }
+    }
+
+    /**
+     * Restores the values of the newest valid snapshot into the cache, marked stale. Values already in the cache are
+     * kept.
+     *
+     * @return number of values restored
+     */
+    public synchronized int load()
+    {
+        if (currentSlot < 0)
+        {
+            return 0;
+        }
+
+        final var data = slotData(currentSlot, mapped.getInt(slotOffset(currentSlot) + 16));
+        int restored = 0;
+        try
+        {
+            final var count = data.getInt();
+            for (int i = 0; i < count; i++)
+            {
+                final var deviceId = getString(data);
+                final var profileName = getString(data);
+                final var dataPointName = getString(data);
+                final var timestampMs = data.getLong();
+                final var value = getValue(data);
+                if (value != null && cache.restore(deviceId, profileName, dataPointName, value, timestampMs))
+                {
+                    restored++;
+                }
+            }
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e)
+        {
+            // the CRC matched, so the snapshot was written by an incompatible version
+            LOG.warn("Snapshot {} could not be decoded completely: {}", file, e.toString());
+        }
+        return restored;
+    }
+
+    /**
+     * Writes a snapshot of the cache if values have been put since the last one.
+     *
+     * @return {@code true} if a snapshot was written
+     * @throws IOException
+     *         if the snapshot cannot be written
+     */
+    public synchronized boolean write() throws IOException
+    {
+        final var modificationCount = cache.getModificationCount();
+        if (modificationCount == snapshotModificationCount)
+        {
+            return false;
+        }
+
+        final var startNs = System.nanoTime();
+        var slot = currentSlot == 0 ? 1 : 0;
+        var length = encode(slot);
+        while (length < 0)
+        {
+            grow();
+            slot = currentSlot == 0 ? 1 : 0;
+            length = encode(slot);
+        }
+        mapped.force();
+
+        final var data = slotData(slot, length);
+        final var crc = new CRC32();
+        crc.update(data);
+
+        final var offset = slotOffset(slot);
+        mapped.putLong(offset, sequence + 1);
+        mapped.putLong(offset + 8, System.currentTimeMillis());
+        mapped.putInt(offset + 16, length);
+        mapped.putInt(offset + 20, (int) crc.getValue());
+        mapped.force();
+
+        sequence++;
+        currentSlot = slot;
+        snapshotModificationCount = modificationCount;
+        snapshotCount++;
+        lastSnapshotBytes = length;
+        lastSnapshotNs = System.nanoTime() - startNs;
+        return true;
+    }
+
+    /**
+     * Starts writing snapshots periodically on a background thread.
+     *
+     * @param period
+     *        time between two snapshots
+     * @return this snapshot
+     */
+    public synchronized ValueSnapshot start(Duration period)
+    {
+        if (scheduler == null)
+        {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final var thread = new Thread(runnable, "value-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::writeQuietly, period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        return this;
+    }
+
+    /**
+     * Stops the periodic snapshots, writes a last snapshot and closes the file.
+     *
+     * @throws IOException
+     *         if the last snapshot cannot be written
+     */
+    @Override
+    public void close() throws IOException
+    {
+        final ScheduledExecutorService stopped;
+        synchronized (this)
+        {
+            stopped = scheduler;
+            scheduler = null;
+        }
+        if (stopped != null)
+        {
+            stopped.shutdown();
+            try
+            {
+                stopped.awaitTermination(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this)
+        {
+            try
+            {
+                write();
+            }
+            finally
+            {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * @return time the newest valid snapshot was written, in milliseconds since the epoch, or {@code 0} if none
+     */
+    public synchronized long getSnapshotTimeMs()
+    {
+        return currentSlot >= 0 ? mapped.getLong(slotOffset(currentSlot) + 8) : 0;
+    }
+
+    /**
+     * @return number of snapshots written since the file was opened
+     */
+    public synchronized long getSnapshotCount()
+    {
+        return snapshotCount;
+    }
+
+    /**
+     * @return size of the last snapshot written in bytes
+     */
+    public synchronized int getLastSnapshotBytes()
+    {
+        return lastSnapshotBytes;
+    }
+
+    /**
+     * @return duration of the last snapshot written in nanoseconds, including forcing it to disk
+     */
+    public synchronized long getLastSnapshotNs()
+    {
+        return lastSnapshotNs;
+    }
+
+    private void writeQuietly()
+    {
+        try
+        {
+            write();
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOG.warn("Writing snapshot {} failed: {}", file, e.toString());
+        }
+    }
+
+    /**
+     * Encodes the cache into the data area of a slot.
+     *
+     * @return the data length, {@code -1} if the slot is too small
+     */
+    private int encode(int slot)
+    {
+        final var data = slotData(slot, slotCapacity);
+        final int[] count = { 0 };
+        try
+        {
+            data.putInt(0);
+            cache.forEach(entry -> {
+                final var start = data.position();
+                try
+                {
+                    putString(data, entry.getDeviceId());
+                    putString(data, entry.getProfileName());
+                    putString(data, entry.getDataPointName());
+                    data.putLong(entry.getTimestampMs());
+                    putValue(data, entry.getValue());
+                    count[0]++;
+                }
+                catch (IllegalArgumentException e)
+                {
+                    data.position(start);
+                    LOG.warn("Not writing {}/{}/{} to snapshot {}: {}", entry.getDeviceId(), entry.getProfileName(),
+                             entry.getDataPointName(), file, e.getMessage());
+                }
+            });
+        }
+        catch (BufferOverflowException e)
+        {
+            return -1;
+        }
+        data.putInt(0, count[0]);
+        return data.position();
+    }
+
+    private static void putValue(ByteBuffer data, Value value)
+    {
+        switch (ValueKind.of(value))
+        {
+            case FLOAT32:
+                data.put((byte) BinaryBatchEncoder.TAG_FLOAT32);
+                data.putFloat(value.getFloat32());
+                break;
+            case FLOAT64:
+                data.put((byte) BinaryBatchEncoder.TAG_FLOAT64);
+                data.putDouble(value.getFloat64());
+                break;
+            case INTEGER:
+                data.put((byte) BinaryBatchEncoder.TAG_INTEGER);
+                data.putLong(value.getInt64());
+                break;
+            case BOOLEAN:
+                data.put((byte) ("true".equalsIgnoreCase(value.getString())
+                        ? BinaryBatchEncoder.TAG_TRUE : BinaryBatchEncoder.TAG_FALSE));
+                break;
+            case ENUM:
+                data.put((byte) BinaryBatchEncoder.TAG_ENUM);
+                putString(data, value.getEnum().getLiteral());
+                break;
+            case BITMAP:
+                data.put((byte) BinaryBatchEncoder.TAG_BITMAP);
+                final var bitmap = value.getBitmap();
+                if (bitmap.size() > Short.MAX_VALUE)
+                {
+                    throw new IllegalArgumentException("Bitmap of " + bitmap.size() + " bits is too large");
+                }
+                data.putShort((short) bitmap.size());
+                for (var bit : bitmap.entrySet())
+                {
+                    putString(data, bit.getKey());
+                    data.put((byte) (Boolean.TRUE.equals(bit.getValue()) ? 1 : 0));
+                }
+                break;
+            default:
+                data.put((byte) BinaryBatchEncoder.TAG_STRING);
+                putString(data, value.getString());
+                break;
+        }
+    }
+
+    private static Value getValue(ByteBuffer data)
+    {
+        final var tag = data.get();
+        switch (tag)
+        {
+            case BinaryBatchEncoder.TAG_FLOAT32:
+                return Float32Value.of(data.getFloat());
+            case BinaryBatchEncoder.TAG_FLOAT64:
+                return Float64Value.of(data.getDouble());
+            case BinaryBatchEncoder.TAG_INTEGER:
+                return Int64Value.of(data.getLong());
+            case BinaryBatchEncoder.TAG_TRUE:
+                return BooleanValue.of(true);
+            case BinaryBatchEncoder.TAG_FALSE:
+                return BooleanValue.of(false);
+            case BinaryBatchEncoder.TAG_ENUM:
+                return EnumValue.of(getString(data));
+            case BinaryBatchEncoder.TAG_BITMAP:
+                final var size = data.getShort();
+                final Map<String, Boolean> bitmap = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++)
+                {
+                    final var name = getString(data);
+                    bitmap.put(name, data.get() != 0);
+                }
+                return BitmapValue.of(bitmap);
+            case BinaryBatchEncoder.TAG_STRING:
+                return StringValue.of(getString(data));
+            default:
+                throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+
+    private static void putString(ByteBuffer data, String text)
+    {
+        final var bytes = (text != null ? text : "").getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES)
+        {
+            throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long");
+        }
+        data.putShort((short) bytes.length);
+        data.put(bytes);
+    }
+
+    private static String getString(ByteBuffer data)
+    {
+        final var bytes = new byte[data.getShort() & 0xffff];
+        data.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Selects the slot with the highest sequence number and a matching CRC.
+     */
+    private void selectNewestSlot()
+    {
+        currentSlot = -1;
+        sequence = 0;
+        for (int slot = 0; slot < 2; slot++)
+        {
+            final var offset = slotOffset(slot);
+            final var slotSequence = mapped.getLong(offset);
+            final var length = mapped.getInt(offset + 16);
+            if (slotSequence <= sequence || length < 4 || length > slotCapacity)
+            {
+                continue;
+            }
+
+            final var crc = new CRC32();
+            crc.update(slotData(slot, length));
+            if ((int) crc.getValue() == mapped.getInt(offset + 20))
+            {
+                currentSlot = slot;
+                sequence = slotSequence;
+            }
+            else
+            {
+                LOG.warn("Ignoring snapshot slot {} of {} with wrong CRC", slot, file);
+            }
+        }
+    }
+
+    /**
+     * Doubles the slot capacity, keeping the current snapshot valid in every step: it is copied to slot 0, which
+     * starts at the same position in both layouts, then the header of slot 1 in the enlarged layout is cleared, and
+     * only then the new capacity is written to the file header.
+     */
+    private void grow() throws IOException
+    {
+        if (currentSlot < 0)
+        {
+            initialize(slotCapacity * 2);
+            return;
+        }
+
+        final var newCapacity = slotCapacity * 2;
+        if (currentSlot == 1)
+        {
+            // slot 1 ends before the data of slot 0 could reach it, as a snapshot is at most one slot long
+            final var source = slotOffset(1);
+            final var target = mapped.duplicate();
+            target.position(slotOffset(0) + SLOT_HEADER_BYTES);
+            target.put(slotData(1, mapped.getInt(source + 16)));
+            mapped.force();
+            for (int i = 0; i < SLOT_HEADER_BYTES; i += 8)
+            {
+                mapped.putLong(slotOffset(0) + i, mapped.getLong(source + i));
+            }
+            mapped.force();
+            currentSlot = 0;
+        }
+
+        // the header of slot 1 in the enlarged layout lies within the old slot 1, which is not current
+        final var newSlot1 = FILE_HEADER_BYTES + SLOT_HEADER_BYTES + newCapacity;
+        for (int i = 0; i < SLOT_HEADER_BYTES; i += 8)
+        {
+            mapped.putLong(newSlot1 + i, 0);
+        }
+        mapped.force();
+
+        map(newCapacity);
+        mapped.putInt(8, newCapacity);
+        mapped.force();
+    }
+
+    private void initialize(int capacity) throws IOException
+    {
+        map(capacity);
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, VERSION);
+        mapped.putInt(8, capacity);
+        mapped.putInt(12, 0);
+        for (int slot = 0; slot < 2; slot++)
+        {
+            for (int i = 0; i < SLOT_HEADER_BYTES; i += 8)
+            {
+                mapped.putLong(slotOffset(slot) + i, 0);
+            }
+        }
+        mapped.force();
+        currentSlot = -1;
+    }
+
+    private void map(int capacity) throws IOException
+    {
+        slotCapacity = capacity;
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity));
+    }
+
+    private ByteBuffer slotData(int slot, int length)
+    {
+        final var data = mapped.duplicate();
+        final var start = slotOffset(slot) + SLOT_HEADER_BYTES;
+        data.limit(start + length).position(start);
+        return data.slice();
+    }
+
+    private int slotOffset(int slot)
+    {
+        return FILE_HEADER_BYTES + slot * (SLOT_HEADER_BYTES + slotCapacity);
+    }
+
+    private static long fileSize(int slotCapacity)
+    {
+        return FILE_HEADER_BYTES + 2L * (SLOT_HEADER_BYTES + slotCapacity);
+    }
+}
@@ -0,0 +1,621 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.stream;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.smartgridready.communicator.common.api.GenDeviceApi;
+import com.smartgridready.communicator.common.api.values.Value;
+
+import io.vavr.control.Either;
+
+/**
+ * {@link Flow.Publisher} of the values of one data point, for any transport.
+ * <p>
+ * A polled publisher reads the data point periodically on a scheduler, but only while a subscriber has requested
+ * more values than are buffered, so a slow consumer slows down the polling instead of piling up values. A pushed
+ * publisher subscribes to the device (e.g. MQTT) when the first subscriber arrives and unsubscribes when the last
+ * one cancels. Each subscriber has a bounded buffer; when a pushed value arrives and the buffer is full, the oldest
+ * buffered value is dropped, so memory stays bounded across thousands of streams while the latest value always
+ * gets through.
+ * <p>
+ * Signals to a subscriber are serialized and delivered on the thread that produced the value or on the thread
+ * calling {@link Flow.Subscription#request(long)}. Read errors are published as {@link DataPointUpdate#isError()
+ * error updates} and do not terminate the stream; {@link #close()} completes all subscribers.
+ */
+public class DataPointPublisher implements Flow.Publisher<DataPointUpdate>, AutoCloseable
+{
+    /** Default number of values buffered per subscriber. */
+    public static final int DEFAULT_BUFFER_SIZE = 16;
+
+    private final String profileName;
+    private final String dataPointName;
+    private final Source source;
+    private final List<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final LongAdder droppedCount = new LongAdder();
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Pushes values to a callback, e.g. {@code callback -> device.subscribe(profileName, dataPointName, callback)}.
+     */
+    @FunctionalInterface
+    public interface PushSource
+    {
+        /**
+         * Starts pushing values.
+         *
+         * @param callback
+         *        receives the values or errors
+         * @return stops pushing values, e.g. {@code () -> device.unsubscribe(profileName, dataPointName)}
+         * @throws Exception
+         *         if the subscription failed
+         */
+        AutoCloseable subscribe(Consumer<Either<Throwable, Value>> callback) throws Exception;
+    }
+
+    private DataPointPublisher(String profileName, String dataPointName, Source source)
+    {
+        this.profileName = Objects.requireNonNull(profileName);
+        this.dataPointName = Objects.requireNonNull(dataPointName);
+        this.source = source;
+    }
+
+    /**
+     * Creates a publisher for a data point of a device, subscribing to the device if it supports subscriptions,
+     * otherwise polling it.
+     *
+     * @param device
+     *        the device
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param pollInterval
+     *        interval between two reads, if the device is polled
+     * @param scheduler
+     *        scheduler running the reads, if the device is polled
+     * @return the publisher
+     */
+    public static DataPointPublisher of(GenDeviceApi device,
+                                        String profileName,
+                                        String dataPointName,
+                                        Duration pollInterval,
+                                        ScheduledExecutorService scheduler)
+    {
+        if (device.canSubscribe())
+        {
+            return pushed(profileName, dataPointName, callback -> {
+                device.subscribe(profileName, dataPointName, callback);
+                return () -> device.unsubscribe(profileName, dataPointName);
+            });
+        }
+        return polled(profileName, dataPointName, () -> device.getVal(profileName, dataPointName), pollInterval, scheduler);
+    }
+
+    /**
+     * Creates a publisher polling a data point.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param reader
+     *        reads the value, e.g. {@code () -> device.getVal(profileName, dataPointName)}
+     * @param interval
+     *        interval between two reads
+     * @param scheduler
+     *        scheduler running the reads, which block one of its threads
+     * @return the publisher
+     */
+    public static DataPointPublisher polled(String profileName,
+                                            String dataPointName,
+                                            Callable<Value> reader,
+                                            Duration interval,
+                                            ScheduledExecutorService scheduler)
+    {
+        Objects.requireNonNull(reader);
+        Objects.requireNonNull(scheduler);
+        if (interval.isNegative() || interval.isZero())
+        {
+            throw new IllegalArgumentException("Poll interval must be positive: " + interval);
+        }
+        return new DataPointPublisher(profileName, dataPointName, new PolledSource(reader, interval, scheduler));
+    }
+
+    /**
+     * Creates a publisher of the values pushed by a device.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param pushSource
+     *        subscribes to the device
+     * @return the publisher
+     */
+    public static DataPointPublisher pushed(String profileName, String dataPointName, PushSource pushSource)
+    {
+        return new DataPointPublisher(profileName, dataPointName, new PushedSource(Objects.requireNonNull(pushSource)));
+    }
+
+    /**
+     * Sets the number of values buffered per subscriber, for subscribers subscribing afterwards.
+     *
+     * @param bufferSize
+     *        number of values, at least 1
+     * @return this publisher
+     */
+    public synchronized DataPointPublisher withBufferSize(int bufferSize)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("Buffer size must be at least 1: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super DataPointUpdate> subscriber)
+    {
+        Objects.requireNonNull(subscriber);
+
+        final BufferedSubscription subscription;
+        synchronized (this)
+        {
+            subscription = new BufferedSubscription(subscriber, bufferSize);
+            if (!closed)
+            {
+                subscriptions.add(subscription);
+            }
+        }
+
+        subscriber.onSubscribe(subscription);
+
+        synchronized (this)
+        {
+            if (closed)
+            {
+                subscription.complete();
+                return;
+            }
+            if (!started && !subscription.isCancelled())
+            {
+                started = true;
+                try
+                {
+                    source.start(this);
+                }
+                catch (Exception e)
+                {
+                    started = false;
+                    subscriptions.remove(subscription);
+                    subscription.fail(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return name of the functional profile
+     */
+    public String getProfileName()
+    {
+        return profileName;
+    }
+
+    /**
+     * @return name of the data point
+     */
+    public String getDataPointName()
+    {
+        return dataPointName;
+    }
+
+    /**
+     * @return number of subscribers
+     */
+    public int getSubscriberCount()
+    {
+        return subscriptions.size();
+    }
+
+    /**
+     * @return number of values dropped because the buffer of a subscriber was full
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return number of values currently buffered for all subscribers
+     */
+    public int getBufferedCount()
+    {
+        return subscriptions.stream().mapToInt(BufferedSubscription::bufferedCount).sum();
+    }
+
+    /**
+     * Stops reading or receiving values and completes all subscribers once they have consumed the buffered values.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+            stopSource();
+        }
+        subscriptions.forEach(BufferedSubscription::complete);
+        subscriptions.clear();
+    }
+
+    /**
+     * Publishes a value or error to all subscribers.
+     */
+    void publish(Either<Throwable, Value> result)
+    {
+        final var now = System.currentTimeMillis();
+        final var update = result.isRight()
+                ? DataPointUpdate.of(profileName, dataPointName, result.get(), now)
+                : DataPointUpdate.failed(profileName, dataPointName, result.getLeft(), now);
+
+        for (var subscription : subscriptions)
+        {
+            subscription.offer(update);
+        }
+    }
+
+    /**
+     * @return {@code true} if a subscriber has requested more values than are buffered for it
+     */
+    boolean hasDemand()
+    {
+        for (var subscription : subscriptions)
+        {
+            if (subscription.hasDemand())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void cancelled(BufferedSubscription subscription)
+    {
+        synchronized (this)
+        {
+            if (subscriptions.remove(subscription) && subscriptions.isEmpty())
+            {
+                stopSource();
+            }
+        }
+    }
+
+    private void stopSource()
+    {
+        if (started)
+        {
+            started = false;
+            source.stop();
+        }
+    }
+
+    /**
+     * Origin of the values, started with the first subscriber and stopped after the last one.
+     */
+    private interface Source
+    {
+        void start(DataPointPublisher publisher) throws Exception;
+
+        void stop();
+    }
+
+    /**
+     * Reads the data point periodically while there is demand.
+     */
+    private static final class PolledSource implements Source
+    {
+        private final Callable<Value> reader;
+        private final long intervalNs;
+        private final ScheduledExecutorService scheduler;
+        private ScheduledFuture<?> task;
+
+        private PolledSource(Callable<Value> reader, Duration interval, ScheduledExecutorService scheduler)
+        {
+            this.reader = reader;
+            this.intervalNs = interval.toNanos();
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void start(DataPointPublisher publisher)
+        {
+            task = scheduler.scheduleWithFixedDelay(() -> poll(publisher), 0, intervalNs, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void stop()
+        {
+            task.cancel(false);
+        }
+
+        private void poll(DataPointPublisher publisher)
+        {
+            if (!publisher.hasDemand())
+            {
+                return;
+            }
+
+            Either<Throwable, Value> result;
+            try
+            {
+                result = Either.right(reader.call());
+            }
+            catch (Exception e)
+            {
+                result = Either.left(e);
+            }
+            publisher.publish(result);
+        }
+    }
+
+    /**
+     * Receives the values pushed by the device.
+     */
+    private static final class PushedSource implements Source
+    {
+        private final PushSource pushSource;
+        private AutoCloseable unsubscribe;
+
+        private PushedSource(PushSource pushSource)
+        {
+            this.pushSource = pushSource;
+        }
+
+        @Override
+        public void start(DataPointPublisher publisher) throws Exception
+        {
+            unsubscribe = pushSource.subscribe(publisher::publish);
+        }
+
+        @Override
+        public void stop()
+        {
+            try
+            {
+                unsubscribe.close();
+            }
+            catch (Exception e)
+            {
+                // the device may already be disconnected, nothing is delivered anymore anyway
+            }
+        }
+    }
+
+    /**
+     * Subscription with a bounded buffer, delivering values as requested by the subscriber.
+     */
+    private final class BufferedSubscription implements Flow.Subscription
+    {
+        private final Flow.Subscriber<? super DataPointUpdate> subscriber;
+        private final int capacity;
+        private final AtomicInteger wip = new AtomicInteger();
+
+        // guarded by this
+        private final ArrayDeque<DataPointUpdate> buffer = new ArrayDeque<>();
+        private long requested;
+        private boolean cancelled;
+        private boolean completing;
+        private Throwable error;
+        private boolean terminated;
+
+        private BufferedSubscription(Flow.Subscriber<? super DataPointUpdate> subscriber, int capacity)
+        {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void request(long n)
+        {
+            synchronized (this)
+            {
+                if (cancelled || terminated)
+                {
+                    return;
+                }
+                if (n <= 0)
+                {
+                    error = new IllegalArgumentException("Requested number of values must be positive: " + n);
+                }
+                else
+                {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel()
+        {
+            synchronized (this)
+            {
+                cancelled = true;
+                buffer.clear();
+            }
+            cancelled(this);
+        }
+
+        private void offer(DataPointUpdate update)
+        {
+            synchronized (this)
+            {
+                if (cancelled || completing || terminated)
+                {
+                    return;
+                }
+                if (buffer.size() == capacity)
+                {
+                    buffer.pollFirst();
+                    droppedCount.increment();
+                }
+                buffer.addLast(update);
+            }
+            drain();
+        }
+
+        private void complete()
+        {
+            synchronized (this)
+            {
+                completing = true;
+            }
+            drain();
+        }
+
+        private void fail(Throwable cause)
+        {
+            synchronized (this)
+            {
+                error = cause;
+            }
+            drain();
+        }
+
+        private synchronized boolean hasDemand()
+        {
+            return !cancelled && !completing && requested > buffer.size();
+        }
+
+        private synchronized boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        private synchronized int bufferedCount()
+        {
+            return buffer.size();
+        }
+
+        /**
+         * Delivers buffered values and terminal signals, on one thread at a time.
+         */
+        private void drain()
+        {
+            if (wip.getAndIncrement() != 0)
+            {
+                return;
+            }
+
+            int missed = 1;
+            do
+            {
+                while (emitNext())
+                {
+                    // emit as long as there are values and demand
+                }
+                missed = wip.addAndGet(-missed);
+            }
+            while (missed != 0);
+        }
+
+        private boolean emitNext()
+        {
+            DataPointUpdate next = null;
+            Throwable failure = null;
+            boolean done = false;
+
+            synchronized (this)
+            {
+                if (cancelled || terminated)
+                {
+                    return false;
+                }
+                if (error != null)
+                {
+                    failure = error;
+                    terminated = true;
+                    buffer.clear();
+                }
+                else if (requested > 0 && !buffer.isEmpty())
+                {
+                    next = buffer.pollFirst();
+                    if (requested != Long.MAX_VALUE)
+                    {
+                        requested--;
+                    }
+                }
+                else if (completing && buffer.isEmpty())
+                {
+                    done = true;
+                    terminated = true;
+                }
+            }
+
+            if (failure != null)
+            {
+                cancelled(this);
+                subscriber.onError(failure);
+                return false;
+            }
+            if (done)
+            {
+                subscriber.onComplete();
+                return false;
+            }
+            if (next == null)
+            {
+                return false;
+            }
+
+            try
+            {
+                subscriber.onNext(next);
+            }
+            catch (RuntimeException e)
+            {
+                // a subscriber must not throw, treat it as cancelled
+                cancel();
+                return false;
+            }
+            return true;
+        }
+    }
+}
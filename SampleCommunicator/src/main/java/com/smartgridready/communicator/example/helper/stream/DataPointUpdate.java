@@ -0,0 +1,132 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.stream;
+
+import java.util.Objects;
+
+import com.smartgridready.communicator.common.api.values.Value;
+
+/**
+ * A value of a data point published by a {@link DataPointPublisher}: either the value read or received from the
+ * device, or the error of the read. Errors do not terminate the stream, the next poll or message may succeed.
+ */
+public final class DataPointUpdate
+{
+    private final String profileName;
+    private final String dataPointName;
+    private final Value value;
+    private final Throwable error;
+    private final long timestampMs;
+
+    private DataPointUpdate(String profileName, String dataPointName, Value value, Throwable error, long timestampMs)
+    {
+        this.profileName = Objects.requireNonNull(profileName);
+        this.dataPointName = Objects.requireNonNull(dataPointName);
+        this.value = value;
+        this.error = error;
+        this.timestampMs = timestampMs;
+    }
+
+    /**
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the value
+     * @param timestampMs
+     *        time the value was read or received
+     * @return the update
+     */
+    public static DataPointUpdate of(String profileName, String dataPointName, Value value, long timestampMs)
+    {
+        return new DataPointUpdate(profileName, dataPointName, Objects.requireNonNull(value), null, timestampMs);
+    }
+
+    /**
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param error
+     *        the error of the read
+     * @param timestampMs
+     *        time the error occurred
+     * @return the update
+     */
+    public static DataPointUpdate failed(String profileName, String dataPointName, Throwable error, long timestampMs)
+    {
+        return new DataPointUpdate(profileName, dataPointName, null, Objects.requireNonNull(error), timestampMs);
+    }
+
+    /**
+     * @return name of the functional profile
+     */
+    public String getProfileName()
+    {
+        return profileName;
+    }
+
+    /**
+     * @return name of the data point
+     */
+    public String getDataPointName()
+    {
+        return dataPointName;
+    }
+
+    /**
+     * @return the value, {@code null} if the update is an error
+     */
+    public Value getValue()
+    {
+        return value;
+    }
+
+    /**
+     * @return the error, {@code null} if the update is a value
+     */
+    public Throwable getError()
+    {
+        return error;
+    }
+
+    /**
+     * @return {@code true} if the update is an error
+     */
+    public boolean isError()
+    {
+        return error != null;
+    }
+
+    /**
+     * @return time the value was read or received, in milliseconds since the epoch
+     */
+    public long getTimestampMs()
+    {
+        return timestampMs;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DataPointUpdate [" + profileName + '/' + dataPointName + '='
+                + (error != null ? "error: " + error.getMessage() : value) + ", timestampMs=" + timestampMs + "]";
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.tcp;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverSocketException;
+
+/**
+ * Maps the futures of the asynchronous Modbus TCP transports to the blocking {@code GenDriverAPI4Modbus} API.
+ */
+final class ModbusFutures
+{
+    private ModbusFutures()
+    {
+        // Hide constructor of this utility class.
+    }
+
+    /** The transports fail requests after their timeout, the blocking calls wait a little longer as a safety net. */
+    static final long AWAIT_GRACE_MS = 1000;
+
+    /**
+     * Waits at most {@code timeoutMs} for a future, throwing the {@link GenDriverException} it failed with, or a
+     * {@link GenDriverSocketException} if it did not complete in time.
+     */
+    static <T> T await(CompletableFuture<T> future, long timeoutMs) throws GenDriverException
+    {
+        try
+        {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw socketException("Interrupted while waiting for the Modbus response", e);
+        }
+        catch (TimeoutException e)
+        {
+            throw socketException("Modbus response timeout", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw failure(e);
+        }
+    }
+
+    /**
+     * @return the {@link GenDriverException} to throw for a failed future; runtime exceptions are rethrown as is
+     */
+    private static GenDriverException failure(ExecutionException e)
+    {
+        final var cause = unwrap(e);
+        if (cause instanceof GenDriverException)
+        {
+            return (GenDriverException) cause;
+        }
+        if (cause instanceof TimeoutException)
+        {
+            return new GenDriverSocketException("Modbus response timeout");
+        }
+        if (cause instanceof RuntimeException)
+        {
+            throw (RuntimeException) cause;
+        }
+        final var exception = new GenDriverException("Modbus transaction failed");
+        exception.initCause(cause);
+        return exception;
+    }
+
+    /**
+     * @return the cause of a failed future, without the wrapping {@link CompletionException} or {@link ExecutionException}
+     */
+    static Throwable unwrap(Throwable error)
+    {
+        var cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null)
+        {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    static GenDriverSocketException socketException(String message, Throwable cause)
+    {
+        final var exception = new GenDriverSocketException(message);
+        exception.initCause(cause);
+        return exception;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.tcp;
+
+import java.nio.ByteBuffer;
+
+import com.smartgridready.driver.api.modbus.GenDriverModbusException;
+
+/**
+ * Encodes Modbus request PDUs and decodes response PDUs (function code and data, without MBAP header).
+ * <p>
+ * The {@code put...} methods encode directly into a buffer, e.g. the direct buffer of a channel, the
+ * {@code ByteBuffer} decoders read between position and limit of the buffer without copying the frame.
+ */
+final class ModbusPdu
+{
+    static final int READ_COILS = 0x01;
+    static final int READ_DISCRETE_INPUTS = 0x02;
+    static final int READ_HOLDING_REGISTERS = 0x03;
+    static final int READ_INPUT_REGISTERS = 0x04;
+    static final int WRITE_SINGLE_COIL = 0x05;
+    static final int WRITE_SINGLE_REGISTER = 0x06;
+    static final int WRITE_MULTIPLE_COILS = 0x0F;
+    static final int WRITE_MULTIPLE_REGISTERS = 0x10;
+
+    private static final int EXCEPTION_FLAG = 0x80;
+
+    private ModbusPdu()
+    {
+        // Hide constructor of this utility class.
+    }
+
+    static byte[] read(int functionCode, int startingAddress, int quantity)
+    {
+        final var pdu = new byte[5];
+        putRead(ByteBuffer.wrap(pdu), functionCode, startingAddress, quantity);
+        return pdu;
+    }
+
+    static byte[] writeSingleCoil(int address, boolean value)
+    {
+        final var pdu = new byte[5];
+        putWriteSingleCoil(ByteBuffer.wrap(pdu), address, value);
+        return pdu;
+    }
+
+    static byte[] writeSingleRegister(int address, int value)
+    {
+        final var pdu = new byte[5];
+        putWriteSingleRegister(ByteBuffer.wrap(pdu), address, value);
+        return pdu;
+    }
+
+    static byte[] writeMultipleCoils(int startingAddress, boolean[] values)
+    {
+        final var pdu = new byte[6 + (values.length + 7) / 8];
+        putWriteMultipleCoils(ByteBuffer.wrap(pdu), startingAddress, values);
+        return pdu;
+    }
+
+    static byte[] writeMultipleRegisters(int startingAddress, int[] values)
+    {
+        final var pdu = new byte[6 + 2 * values.length];
+        putWriteMultipleRegisters(ByteBuffer.wrap(pdu), startingAddress, values);
+        return pdu;
+    }
+
+    static void putRead(ByteBuffer buffer, int functionCode, int startingAddress, int quantity)
+    {
+        buffer.put((byte) functionCode)
+              .putShort((short) startingAddress)
+              .putShort((short) quantity);
+    }
+
+    static void putWriteSingleCoil(ByteBuffer buffer, int address, boolean value)
+    {
+        buffer.put((byte) WRITE_SINGLE_COIL)
+              .putShort((short) address)
+              .putShort((short) (value ? 0xFF00 : 0x0000));
+    }
+
+    static void putWriteSingleRegister(ByteBuffer buffer, int address, int value)
+    {
+        buffer.put((byte) WRITE_SINGLE_REGISTER)
+              .putShort((short) address)
+              .putShort((short) value);
+    }
+
+    static void putWriteMultipleCoils(ByteBuffer buffer, int startingAddress, boolean[] values)
+    {
+        final var byteCount = (values.length + 7) / 8;
+        buffer.put((byte) WRITE_MULTIPLE_COILS)
+              .putShort((short) startingAddress)
+              .putShort((short) values.length)
+              .put((byte) byteCount);
+
+        for (int b = 0; b < byteCount; b++)
+        {
+            int packed = 0;
+            for (int i = 8 * b; i < Math.min(8 * b + 8, values.length); i++)
+            {
+                if (values[i])
+                {
+                    packed |= 1 << (i % 8);
+                }
+            }
+            buffer.put((byte) packed);
+        }
+    }
+
+    static void putWriteMultipleRegisters(ByteBuffer buffer, int startingAddress, int[] values)
+    {
+        buffer.put((byte) WRITE_MULTIPLE_REGISTERS)
+              .putShort((short) startingAddress)
+              .putShort((short) values.length)
+              .put((byte) (2 * values.length));
+
+        for (var value : values)
+        {
+            buffer.putShort((short) value);
+        }
+    }
+
+    /**
+     * Checks the function code of a response, throwing the Modbus exception reported by the server if any.
+     */
+    static void check(int functionCode, byte[] response) throws GenDriverModbusException
+    {
+        check(functionCode, ByteBuffer.wrap(response));
+    }
+
+    /**
+     * Checks the function code of a response between position and limit of the buffer, throwing the
+     * Modbus exception reported by the server if any. The position of the buffer is not changed.
+     */
+    static void check(int functionCode, ByteBuffer response) throws GenDriverModbusException
+    {
+        final var start = response.position();
+        if (!response.hasRemaining())
+        {
+            throw new GenDriverModbusException("Empty Modbus response");
+        }
+
+        final var responseCode = response.get(start) & 0xFF;
+        if (responseCode == (functionCode | EXCEPTION_FLAG))
+        {
+            throw new GenDriverModbusException(String.format("Modbus exception 0x%02x on function 0x%02x",
+                                                             response.remaining() > 1 ? response.get(start + 1) & 0xFF : 0,
+                                                             functionCode));
+        }
+        if (responseCode != functionCode)
+        {
+            throw new GenDriverModbusException(String.format("Unexpected function 0x%02x in response to 0x%02x",
+                                                             responseCode, functionCode));
+        }
+    }
+
+    static int[] registers(int functionCode, byte[] response, int quantity) throws GenDriverModbusException
+    {
+        return registers(functionCode, ByteBuffer.wrap(response), quantity);
+    }
+
+    /**
+     * Decodes the registers of a read response directly from the buffer.
+     */
+    static int[] registers(int functionCode, ByteBuffer response, int quantity) throws GenDriverModbusException
+    {
+        check(functionCode, response);
+        if (response.remaining() < 2 + 2 * quantity)
+        {
+            throw new GenDriverModbusException("Modbus response too short: " + response.remaining() + " bytes");
+        }
+
+        final var start = response.position() + 2;
+        final var registers = new int[quantity];
+        for (int i = 0; i < quantity; i++)
+        {
+            registers[i] = response.getShort(start + 2 * i) & 0xFFFF;
+        }
+        return registers;
+    }
+
+    static boolean[] bits(int functionCode, byte[] response, int quantity) throws GenDriverModbusException
+    {
+        return bits(functionCode, ByteBuffer.wrap(response), quantity);
+    }
+
+    /**
+     * Decodes the bits of a read response directly from the buffer.
+     */
+    static boolean[] bits(int functionCode, ByteBuffer response, int quantity) throws GenDriverModbusException
+    {
+        check(functionCode, response);
+        if (response.remaining() < 2 + (quantity + 7) / 8)
+        {
+            throw new GenDriverModbusException("Modbus response too short: " + response.remaining() + " bytes");
+        }
+
+        final var start = response.position() + 2;
+        final var bits = new boolean[quantity];
+        for (int i = 0; i < quantity; i++)
+        {
+            bits[i] = (response.get(start + i / 8) & (1 << (i % 8))) != 0;
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.tcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
+import com.smartgridready.driver.api.modbus.GenDriverSocketException;
+
+/**
+ * Pool of Modbus TCP connections, one per {@code ip:port}, shared by all devices (unit IDs) behind it.
+ * <p>
+ * Modbus TCP gateways usually accept only a few sockets, but process pipelined requests. The pool therefore opens
+ * a single connection per gateway, pipelines the requests of all unit IDs using MBAP transaction IDs and reconnects
+ * transparently if the connection is lost. The connection is opened when the first transport connects and closed
+ * when the last one disconnects.
+ * <p>
+ * Use {@link #transport(String, int, int)} directly or {@link #factory(int)} to inject the pool into a device builder.
+ */
+public class ModbusTcpClientPool implements Closeable
+{
+    /** Default Modbus TCP port. */
+    public static final int DEFAULT_PORT = TcpModbusFactory.DEFAULT_PORT;
+
+    /** Default maximum number of requests in flight per connection. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final long RESPONSE_TIMEOUT_MS = 3000;
+
+    private final int maxInFlight;
+    private final Map<String, ModbusTcpConnection> connections = new HashMap<>();
+    private final Map<ModbusTcpConnection, Integer> users = new HashMap<>();
+
+    /**
+     * Constructor using {@link #DEFAULT_MAX_IN_FLIGHT}.
+     */
+    public ModbusTcpClientPool()
+    {
+        this(DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxInFlight
+     *        maximum number of requests in flight per connection, as supported by the gateway
+     */
+    public ModbusTcpClientPool(int maxInFlight)
+    {
+        if (maxInFlight < 1)
+        {
+            throw new IllegalArgumentException("maxInFlight must be at least 1: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Creates a transport for a unit ID behind {@code ip:port}, sharing the connection with all other unit IDs.
+     *
+     * @param host
+     *        IP address or host name
+     * @param port
+     *        TCP port
+     * @param unitId
+     *        the Modbus unit ID
+     * @return the transport, not yet connected
+     */
+    public synchronized PooledModbusTcpTransport transport(String host, int port, int unitId)
+    {
+        if (unitId < 0 || unitId > 255)
+        {
+            throw new IllegalArgumentException("Invalid unit ID: " + unitId);
+        }
+
+        final var connection = connections.computeIfAbsent(host + ':' + port,
+                key -> new ModbusTcpConnection(host, port, maxInFlight, CONNECT_TIMEOUT_MS, RESPONSE_TIMEOUT_MS));
+        return new PooledModbusTcpTransport(this, connection, unitId);
+    }
+
+    /**
+     * Returns a factory creating pooled TCP transports for the given unit ID, to be passed to
+     * {@code SGrDeviceBuilder.useModbusClientFactory()}. RTU and UDP transports are not supported.
+     *
+     * @param unitId
+     *        the Modbus unit ID of the device
+     * @return the factory
+     */
+    public GenDriverAPI4ModbusFactory factory(int unitId)
+    {
+        return new PooledFactory(unitId);
+    }
+
+    /**
+     * @return number of open connections
+     */
+    public synchronized int getOpenConnectionCount()
+    {
+        return (int) connections.values().stream().filter(ModbusTcpConnection::isConnected).count();
+    }
+
+    /**
+     * @return number of times a connection has been opened, including reconnects
+     */
+    public synchronized int getConnectCount()
+    {
+        return connections.values().stream().mapToInt(ModbusTcpConnection::getConnectCount).sum();
+    }
+
+    /**
+     * Closes all connections.
+     */
+    @Override
+    public synchronized void close()
+    {
+        connections.values().forEach(ModbusTcpConnection::close);
+        connections.clear();
+        users.clear();
+    }
+
+    /**
+     * Registers a user of the connection and opens it. The connection is opened outside the lock of the pool, so
+     * an unreachable gateway does not block the transports of other gateways.
+     */
+    void acquire(ModbusTcpConnection connection) throws GenDriverSocketException
+    {
+        synchronized (this)
+        {
+            users.merge(connection, 1, Integer::sum);
+        }
+
+        try
+        {
+            connection.open();
+        }
+        catch (IOException e)
+        {
+            release(connection);
+            final var exception = new GenDriverSocketException("Connecting Modbus TCP failed: " + e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+    synchronized void release(ModbusTcpConnection connection)
+    {
+        final int count = users.getOrDefault(connection, 0);
+        if (count <= 1)
+        {
+            users.remove(connection);
+            connection.disconnect();
+        }
+        else
+        {
+            users.put(connection, count - 1);
+        }
+    }
+
+    /**
+     * Factory handing out pooled transports of one unit ID.
+     */
+    private final class PooledFactory extends TcpModbusFactory
+    {
+        private final int unitId;
+
+        private PooledFactory(int unitId)
+        {
+            super("TCP pool");
+            this.unitId = unitId;
+        }
+
+        @Override
+        public GenDriverAPI4Modbus createTcpTransport(String ipAddress, int port)
+        {
+            return transport(ipAddress, port, unitId);
+        }
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.tcp;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.driver.api.modbus.GenDriverSocketException;
+
+/**
+ * A Modbus TCP connection to one {@code ip:port}, shared by all unit IDs behind it.
+ * <p>
+ * Requests are pipelined: each request gets its own MBAP transaction ID and is written without waiting for
+ * the responses of earlier requests. A reader thread matches the responses to the requests by transaction ID,
+ * so responses may arrive in any order. The number of requests in flight is bounded, further requests are queued
+ * and sent as soon as a response has arrived, so sending never blocks on a free request slot.
+ * <p>
+ * If the socket is lost, the requests in flight on it fail with a {@link GenDriverSocketException}
+ * and the next request opens a new socket.
+ */
+final class ModbusTcpConnection implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ModbusTcpConnection.class);
+
+    private static final int MBAP_HEADER_LENGTH = 7;
+    private static final int MAX_PDU_LENGTH = 253;
+
+    private final String host;
+    private final int port;
+    private final int connectTimeoutMs;
+    private final long responseTimeoutMs;
+    private final Semaphore inFlight;
+    private final Queue<Request> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger nextTransactionId = new AtomicInteger();
+    private final AtomicInteger connectCount = new AtomicInteger();
+
+    /** The current socket, guarded by the monitor of this connection. */
+    private Session session;
+    private boolean closed = false;
+
+    /**
+     * A socket and the requests in flight on it.
+     */
+    private static final class Session
+    {
+        private final Socket socket;
+        private final OutputStream out;
+        private final Map<Integer, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+
+        private Session(Socket socket) throws IOException
+        {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+    }
+
+    /**
+     * A request waiting to be sent.
+     */
+    private static final class Request
+    {
+        private final int unitId;
+        private final byte[] pdu;
+        private final CompletableFuture<byte[]> response = new CompletableFuture<>();
+
+        private Request(int unitId, byte[] pdu)
+        {
+            this.unitId = unitId;
+            this.pdu = pdu;
+        }
+    }
+
+    ModbusTcpConnection(String host, int port, int maxInFlight, int connectTimeoutMs, long responseTimeoutMs)
+    {
+        this.host = host;
+        this.port = port;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.responseTimeoutMs = responseTimeoutMs;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Sends a request and returns the future response PDU. The request is queued while the maximum number of
+     * requests is in flight.
+     */
+    CompletableFuture<byte[]> send(int unitId, byte[] pdu)
+    {
+        final var request = new Request(unitId, pdu);
+        if (inFlight.tryAcquire())
+        {
+            dispatch(request);
+        }
+        else
+        {
+            waiting.add(request);
+            // a response may have freed a slot before the request was queued
+            dispatchWaiting();
+        }
+        return request.response;
+    }
+
+    /**
+     * @return how long a blocking call waits at most for a request, including a reconnect and a retry
+     */
+    long getAwaitTimeoutMs()
+    {
+        return 2 * (connectTimeoutMs + responseTimeoutMs) + ModbusFutures.AWAIT_GRACE_MS;
+    }
+
+    /**
+     * Sends the queued requests for which a request slot is free.
+     */
+    private void dispatchWaiting()
+    {
+        while (!waiting.isEmpty() && inFlight.tryAcquire())
+        {
+            final var request = waiting.poll();
+            if (request != null)
+            {
+                dispatch(request);
+            }
+            else
+            {
+                inFlight.release();
+            }
+        }
+    }
+
+    /**
+     * Sends a request, holding a request slot.
+     */
+    private void dispatch(Request request)
+    {
+        final var wire = new CompletableFuture<byte[]>();
+
+        // the slot is released before the caller sees the response, so that a retry finds a free slot
+        wire.whenComplete((pdu, error) -> {
+            inFlight.release();
+            if (error == null)
+            {
+                request.response.complete(pdu);
+            }
+            else
+            {
+                request.response.completeExceptionally(error);
+            }
+            if (!waiting.isEmpty())
+            {
+                // not on the completing thread, which may be the reader thread
+                CompletableFuture.runAsync(this::dispatchWaiting);
+            }
+        });
+
+        try
+        {
+            synchronized (this)
+            {
+                final var current = connect();
+
+                int transactionId;
+                do
+                {
+                    transactionId = nextTransactionId.incrementAndGet() & 0xFFFF;
+                }
+                while (current.pending.putIfAbsent(transactionId, wire) != null);
+
+                final var id = transactionId;
+                wire.whenComplete((r, e) -> current.pending.remove(id));
+
+                write(current, id, request.unitId, request.pdu);
+            }
+        }
+        catch (IOException e)
+        {
+            wire.completeExceptionally(ModbusFutures.socketException("Sending Modbus request to " + host + ':' + port + " failed", e));
+            return;
+        }
+
+        wire.orTimeout(responseTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the socket if it is not open.
+     */
+    synchronized void open() throws IOException
+    {
+        connect();
+    }
+
+    synchronized boolean isConnected()
+    {
+        return session != null;
+    }
+
+    /**
+     * @return number of times the socket has been opened, including reconnects
+     */
+    int getConnectCount()
+    {
+        return connectCount.get();
+    }
+
+    /**
+     * Closes the socket. The next request opens a new one.
+     */
+    void disconnect()
+    {
+        Session oldSession;
+        synchronized (this)
+        {
+            oldSession = session;
+        }
+        drop(oldSession, new IOException("Disconnected"), true);
+    }
+
+    /**
+     * Closes the socket permanently.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            closed = true;
+        }
+        disconnect();
+    }
+
+    private Session connect() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Connection to " + host + ':' + port + " closed");
+        }
+        if (session != null)
+        {
+            return session;
+        }
+
+        final var socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+        final var newSession = new Session(socket);
+        session = newSession;
+        connectCount.incrementAndGet();
+
+        final var reader = new Thread(() -> readResponses(newSession), "modbus-tcp-" + host + ':' + port);
+        reader.setDaemon(true);
+        reader.start();
+        LOG.debug("Connected to {}:{}", host, port);
+        return newSession;
+    }
+
+    private void write(Session current, int transactionId, int unitId, byte[] pdu) throws IOException
+    {
+        final var frame = new byte[MBAP_HEADER_LENGTH + pdu.length];
+        frame[0] = (byte) (transactionId >> 8);
+        frame[1] = (byte) transactionId;
+        // frame[2..3]: protocol identifier 0 = Modbus
+        frame[4] = (byte) ((pdu.length + 1) >> 8);
+        frame[5] = (byte) (pdu.length + 1);
+        frame[6] = (byte) unitId;
+        System.arraycopy(pdu, 0, frame, MBAP_HEADER_LENGTH, pdu.length);
+
+        try
+        {
+            current.out.write(frame);
+            current.out.flush();
+        }
+        catch (IOException e)
+        {
+            // the reader thread fails the requests in flight once the socket is closed
+            current.socket.close();
+            throw e;
+        }
+    }
+
+    private void readResponses(Session current)
+    {
+        try
+        {
+            final var in = new DataInputStream(current.socket.getInputStream());
+            final var header = new byte[MBAP_HEADER_LENGTH];
+
+            while (true)
+            {
+                in.readFully(header);
+                final var transactionId = ((header[0] & 0xFF) << 8) | (header[1] & 0xFF);
+                final var length = ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
+                if (length < 2 || length > MAX_PDU_LENGTH + 1)
+                {
+                    throw new IOException("Invalid MBAP length " + length);
+                }
+
+                final var pdu = new byte[length - 1];
+                in.readFully(pdu);
+
+                final var response = current.pending.get(transactionId);
+                if (response != null)
+                {
+                    response.complete(pdu);
+                }
+                else
+                {
+                    LOG.debug("Discarding response with unknown transaction ID {}", transactionId);
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            drop(current, e, false);
+        }
+    }
+
+    /**
+     * Closes the socket of a session and fails the requests in flight on it.
+     */
+    private void drop(Session oldSession, IOException cause, boolean expected)
+    {
+        if (oldSession == null)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (session == oldSession)
+            {
+                session = null;
+                if (!expected)
+                {
+                    LOG.info("Connection to {}:{} lost: {}", host, port, cause.toString());
+                }
+            }
+        }
+
+        try
+        {
+            oldSession.socket.close();
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Error closing socket", e);
+        }
+
+        // completed outside the monitor, since a retry may send a new request right away
+        for (var response : new ArrayList<>(oldSession.pending.values()))
+        {
+            response.completeExceptionally(ModbusFutures.socketException("Connection to " + host + ':' + port + " closed", cause));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.tcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single thread serving the non-blocking channels of many {@link NioModbusTcpTransport}s with one {@link Selector}.
+ * <p>
+ * All channel state of a transport is accessed on the thread of its event loop only, so no locking is needed.
+ * Other threads hand over work with {@link #execute(Runnable)}, which is rejected once the loop is closed. The loop wakes up at least every
+ * {@value #TICK_MS}ms to expire requests that did not receive a response in time.
+ */
+final class ModbusTcpEventLoop implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ModbusTcpEventLoop.class);
+
+    private static final long TICK_MS = 20;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final Set<NioModbusTcpTransport> active = new HashSet<>();
+    private volatile boolean running = true;
+    private boolean closed = false;
+
+    ModbusTcpEventLoop(String name) throws IOException
+    {
+        selector = Selector.open();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs a task on the event loop thread.
+     *
+     * @throws RejectedExecutionException
+     *         if the loop is closed
+     */
+    void execute(Runnable task)
+    {
+        // under the lock of close(), so that no task is queued behind the last task of the loop
+        synchronized (this)
+        {
+            if (closed)
+            {
+                throw new RejectedExecutionException("Event loop closed");
+            }
+            enqueue(task);
+        }
+    }
+
+    private void enqueue(Runnable task)
+    {
+        tasks.add(task);
+        if (!inEventLoop() && wakeupPending.compareAndSet(false, true))
+        {
+            selector.wakeup();
+        }
+    }
+
+    boolean inEventLoop()
+    {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * @return the selector, to be used on the event loop thread only
+     */
+    Selector selector()
+    {
+        return selector;
+    }
+
+    /**
+     * Adds a transport with an open channel to the timeout checks. Event loop thread only.
+     */
+    void activate(NioModbusTcpTransport transport)
+    {
+        active.add(transport);
+    }
+
+    /**
+     * Removes a transport whose channel was closed from the timeout checks. Event loop thread only.
+     */
+    void deactivate(NioModbusTcpTransport transport)
+    {
+        active.remove(transport);
+    }
+
+    /**
+     * Closes the channels of all transports and stops the thread.
+     */
+    @Override
+    public void close()
+    {
+        synchronized (this)
+        {
+            if (closed)
+            {
+                return;
+            }
+            closed = true;
+        }
+
+        enqueue(() -> {
+            for (var transport : new ArrayList<>(active))
+            {
+                transport.closeChannel(new IOException("Event loop closed"), true);
+            }
+            running = false;
+        });
+
+        try
+        {
+            thread.join(1000);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        try
+        {
+            selector.close();
+        }
+        catch (IOException e)
+        {
+            LOG.debug("Error closing selector", e);
+        }
+    }
+
+    private void run()
+    {
+        var nextExpiryNs = System.nanoTime();
+
+        while (running)
+        {
+            try
+            {
+                // tasks added by the loop itself do not wake up the selector
+                if (tasks.isEmpty())
+                {
+                    selector.select(TICK_MS);
+                }
+                else
+                {
+                    selector.selectNow();
+                }
+                wakeupPending.set(false);
+            }
+            catch (IOException e)
+            {
+                LOG.error("Selector failed", e);
+                return;
+            }
+
+            final var selected = selector.selectedKeys();
+            for (var key : selected)
+            {
+                handle(key);
+            }
+            selected.clear();
+
+            Runnable task;
+            while ((task = tasks.poll()) != null)
+            {
+                runTask(task);
+            }
+
+            final var now = System.nanoTime();
+            if (now - nextExpiryNs >= 0)
+            {
+                for (var transport : new ArrayList<>(active))
+                {
+                    transport.expire(now);
+                }
+                nextExpiryNs = now + TICK_MS * 1_000_000;
+            }
+        }
+    }
+
+    private static void handle(SelectionKey key)
+    {
+        try
+        {
+            ((NioModbusTcpTransport) key.attachment()).handle(key);
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Unexpected error handling channel", e);
+        }
+    }
+
+    private static void runTask(Runnable task)
+    {
+        try
+        {
+            task.run();
+        }
+        catch (RuntimeException e)
+        {
+            LOG.error("Unexpected error in event loop task", e);
+        }
+    }
+}
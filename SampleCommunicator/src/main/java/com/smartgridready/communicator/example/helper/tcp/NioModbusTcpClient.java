@@ -0,0 +1,182 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.tcp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4ModbusFactory;
+
+/**
+ * Non-blocking Modbus TCP client, serving the connections of many devices with a small number of event loop
+ * threads instead of one thread per device.
+ * <p>
+ * Each device gets its own {@link NioModbusTcpTransport} with its own connection. The transports are assigned
+ * round robin to the event loops. Use {@link #transport(String, int, int)} directly or {@link #factory(int)} to
+ * inject the client into a device builder.
+ */
+public class NioModbusTcpClient implements Closeable
+{
+    /** Default Modbus TCP port. */
+    public static final int DEFAULT_PORT = TcpModbusFactory.DEFAULT_PORT;
+
+    /** Default number of event loop threads. */
+    public static final int DEFAULT_EVENT_LOOPS = 2;
+
+    /** Default maximum number of requests in flight per device. Most devices process one request at a time. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1;
+
+    /** Default time to wait for a response, in milliseconds. */
+    public static final long DEFAULT_RESPONSE_TIMEOUT_MS = 3000;
+
+    private static final long CONNECT_TIMEOUT_MS = 3000;
+
+    private final List<ModbusTcpEventLoop> loops = new ArrayList<>();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final int maxInFlight;
+    private final long responseTimeoutMs;
+
+    /**
+     * Constructor using {@link #DEFAULT_EVENT_LOOPS} and {@link #DEFAULT_MAX_IN_FLIGHT}.
+     *
+     * @throws IOException
+     *         if a selector cannot be opened
+     */
+    public NioModbusTcpClient() throws IOException
+    {
+        this(DEFAULT_EVENT_LOOPS, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param eventLoopCount
+     *        number of event loop threads
+     * @param maxInFlight
+     *        maximum number of pipelined requests per device
+     * @throws IOException
+     *         if a selector cannot be opened
+     */
+    public NioModbusTcpClient(int eventLoopCount, int maxInFlight) throws IOException
+    {
+        this(eventLoopCount, maxInFlight, DEFAULT_RESPONSE_TIMEOUT_MS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param eventLoopCount
+     *        number of event loop threads
+     * @param maxInFlight
+     *        maximum number of pipelined requests per device
+     * @param responseTimeoutMs
+     *        time after which a request without response fails, in milliseconds
+     * @throws IOException
+     *         if a selector cannot be opened
+     */
+    public NioModbusTcpClient(int eventLoopCount, int maxInFlight, long responseTimeoutMs) throws IOException
+    {
+        if (eventLoopCount < 1 || maxInFlight < 1 || responseTimeoutMs < 1)
+        {
+            throw new IllegalArgumentException("eventLoopCount, maxInFlight and responseTimeoutMs must be positive");
+        }
+
+        this.maxInFlight = maxInFlight;
+        this.responseTimeoutMs = responseTimeoutMs;
+        try
+        {
+            for (int i = 0; i < eventLoopCount; i++)
+            {
+                loops.add(new ModbusTcpEventLoop("modbus-tcp-nio-" + i));
+            }
+        }
+        catch (IOException e)
+        {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a new transport for a device. The host name is resolved here, not on the event loop.
+     *
+     * @param host
+     *        host name or IP address of the device or gateway
+     * @param port
+     *        TCP port
+     * @param unitId
+     *        the Modbus unit ID of the device
+     * @return the transport, not yet connected
+     */
+    public NioModbusTcpTransport transport(String host, int port, int unitId)
+    {
+        final var loop = loops.get(Math.floorMod(nextLoop.getAndIncrement(), loops.size()));
+        return new NioModbusTcpTransport(loop,
+                                         new InetSocketAddress(host, port),
+                                         unitId,
+                                         maxInFlight,
+                                         CONNECT_TIMEOUT_MS,
+                                         responseTimeoutMs);
+    }
+
+    /**
+     * Returns a factory creating non-blocking TCP transports for the given unit ID, to be passed to
+     * {@code SGrDeviceBuilder.useModbusClientFactory()}. RTU and UDP transports are not supported.
+     *
+     * @param unitId
+     *        the Modbus unit ID of the device
+     * @return the factory
+     */
+    public GenDriverAPI4ModbusFactory factory(int unitId)
+    {
+        return new TcpModbusFactory("non-blocking TCP client")
+        {
+            @Override
+            public GenDriverAPI4Modbus createTcpTransport(String ipAddress, int port)
+            {
+                return transport(ipAddress, port, unitId);
+            }
+        };
+    }
+
+    /**
+     * @return number of event loop threads
+     */
+    public int getEventLoopCount()
+    {
+        return loops.size();
+    }
+
+    /**
+     * Closes all connections and stops the event loops. Requests of the transports fail from now on.
+     */
+    @Override
+    public void close()
+    {
+        for (var loop : loops)
+        {
+            loop.close();
+        }
+    }
+}
@@ -0,0 +1,700 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.tcp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverModbusException;
+import com.smartgridready.driver.api.modbus.GenDriverSocketException;
+
+/**
+ * Non-blocking Modbus TCP transport of one device, served by an event loop of a {@link NioModbusTcpClient}.
+ * <p>
+ * The device has its own socket channel, but no thread of its own. Requests are encoded directly into a direct
+ * write buffer of the channel, responses are decoded directly from its direct read buffer into the result arrays.
+ * <p>
+ * The {@code ...Async} methods return immediately. Their futures are completed on the event loop thread, so
+ * dependent actions must not block; in particular they must not call the blocking {@code GenDriverAPI4Modbus}
+ * methods. The blocking methods can be called from any other thread.
+ * <p>
+ * If the connection is lost, the pending requests fail with a {@link GenDriverSocketException} and the next request
+ * reconnects. Requests are not retried. Once the client is closed, all requests fail right away.
+ */
+public class NioModbusTcpTransport implements GenDriverAPI4Modbus
+{
+    private static final Logger LOG = LoggerFactory.getLogger(NioModbusTcpTransport.class);
+
+    private static final int MBAP_HEADER_LENGTH = 7;
+    private static final int MAX_PDU_LENGTH = 253;
+    private static final int MAX_FRAME_LENGTH = MBAP_HEADER_LENGTH + MAX_PDU_LENGTH;
+    private static final int BUFFER_SIZE = 4 * MAX_FRAME_LENGTH;
+
+    private final ModbusTcpEventLoop loop;
+    private final InetSocketAddress address;
+    private final int unitId;
+    private final int maxInFlight;
+    private final long connectTimeoutNs;
+    private final long responseTimeoutNs;
+    private final long awaitTimeoutMs;
+    private final AtomicInteger connectCount = new AtomicInteger();
+
+    /** Whether the user has connected this transport. Requests are rejected if not. */
+    private volatile boolean connected = false;
+
+    // channel state, accessed on the event loop thread only
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ArrayDeque<Request<?>> queued = new ArrayDeque<>();
+    private final Map<Integer, Request<?>> inFlight = new HashMap<>();
+    private SocketChannel channel;
+    private SelectionKey key;
+    private boolean channelConnected = false;
+    private long connectDeadlineNs;
+    private CompletableFuture<Void> connectFuture;
+    private int nextTransactionId = 0;
+
+    /**
+     * Encodes a request PDU into the write buffer.
+     */
+    @FunctionalInterface
+    private interface PduEncoder
+    {
+        void encode(ByteBuffer buffer);
+    }
+
+    /**
+     * Decodes a response PDU between position and limit of the read buffer.
+     */
+    @FunctionalInterface
+    private interface PduDecoder<T>
+    {
+        T decode(ByteBuffer pdu) throws GenDriverModbusException;
+    }
+
+    /**
+     * A request waiting to be sent or for its response.
+     */
+    private static final class Request<T>
+    {
+        private final PduEncoder encoder;
+        private final PduDecoder<T> decoder;
+        private final long deadlineNs;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Request(PduEncoder encoder, PduDecoder<T> decoder, long deadlineNs)
+        {
+            this.encoder = encoder;
+            this.decoder = decoder;
+            this.deadlineNs = deadlineNs;
+        }
+
+        private void complete(ByteBuffer pdu)
+        {
+            try
+            {
+                future.complete(decoder.decode(pdu));
+            }
+            catch (GenDriverModbusException | RuntimeException e)
+            {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private void fail(Throwable error)
+        {
+            future.completeExceptionally(error);
+        }
+    }
+
+    NioModbusTcpTransport(ModbusTcpEventLoop loop,
+                          InetSocketAddress address,
+                          int unitId,
+                          int maxInFlight,
+                          long connectTimeoutMs,
+                          long responseTimeoutMs)
+    {
+        this.loop = loop;
+        this.address = address;
+        this.unitId = unitId;
+        this.maxInFlight = maxInFlight;
+        this.connectTimeoutNs = connectTimeoutMs * 1_000_000;
+        this.responseTimeoutNs = responseTimeoutMs * 1_000_000;
+        this.awaitTimeoutMs = Math.max(connectTimeoutMs, responseTimeoutMs) + ModbusFutures.AWAIT_GRACE_MS;
+    }
+
+    /**
+     * @return the Modbus unit ID of this transport
+     */
+    public int getUnitId()
+    {
+        return unitId;
+    }
+
+    /**
+     * Reads holding registers without blocking.
+     *
+     * @param startingAddress
+     *        address of the first register
+     * @param quantity
+     *        number of registers
+     * @return the future register values
+     */
+    public CompletableFuture<int[]> readHoldingRegistersAsync(int startingAddress, int quantity)
+    {
+        return submit(buffer -> ModbusPdu.putRead(buffer, ModbusPdu.READ_HOLDING_REGISTERS, startingAddress, quantity),
+                      pdu -> ModbusPdu.registers(ModbusPdu.READ_HOLDING_REGISTERS, pdu, quantity));
+    }
+
+    /**
+     * Reads input registers without blocking.
+     *
+     * @param startingAddress
+     *        address of the first register
+     * @param quantity
+     *        number of registers
+     * @return the future register values
+     */
+    public CompletableFuture<int[]> readInputRegistersAsync(int startingAddress, int quantity)
+    {
+        return submit(buffer -> ModbusPdu.putRead(buffer, ModbusPdu.READ_INPUT_REGISTERS, startingAddress, quantity),
+                      pdu -> ModbusPdu.registers(ModbusPdu.READ_INPUT_REGISTERS, pdu, quantity));
+    }
+
+    /**
+     * Reads discrete inputs without blocking.
+     *
+     * @param startingAddress
+     *        address of the first input
+     * @param quantity
+     *        number of inputs
+     * @return the future input values
+     */
+    public CompletableFuture<boolean[]> readDiscreteInputsAsync(int startingAddress, int quantity)
+    {
+        return submit(buffer -> ModbusPdu.putRead(buffer, ModbusPdu.READ_DISCRETE_INPUTS, startingAddress, quantity),
+                      pdu -> ModbusPdu.bits(ModbusPdu.READ_DISCRETE_INPUTS, pdu, quantity));
+    }
+
+    /**
+     * Reads coils without blocking.
+     *
+     * @param startingAddress
+     *        address of the first coil
+     * @param quantity
+     *        number of coils
+     * @return the future coil values
+     */
+    public CompletableFuture<boolean[]> readCoilsAsync(int startingAddress, int quantity)
+    {
+        return submit(buffer -> ModbusPdu.putRead(buffer, ModbusPdu.READ_COILS, startingAddress, quantity),
+                      pdu -> ModbusPdu.bits(ModbusPdu.READ_COILS, pdu, quantity));
+    }
+
+    /**
+     * Writes holding registers without blocking.
+     *
+     * @param startingAddress
+     *        address of the first register
+     * @param values
+     *        the register values
+     * @return completes when the device has confirmed the write
+     */
+    public CompletableFuture<Void> writeMultipleRegistersAsync(int startingAddress, int[] values)
+    {
+        return submit(buffer -> ModbusPdu.putWriteMultipleRegisters(buffer, startingAddress, values),
+                      pdu -> confirm(ModbusPdu.WRITE_MULTIPLE_REGISTERS, pdu));
+    }
+
+    /**
+     * Writes a single holding register without blocking.
+     *
+     * @param address
+     *        address of the register
+     * @param value
+     *        the register value
+     * @return completes when the device has confirmed the write
+     */
+    public CompletableFuture<Void> writeSingleRegisterAsync(int address, int value)
+    {
+        return submit(buffer -> ModbusPdu.putWriteSingleRegister(buffer, address, value),
+                      pdu -> confirm(ModbusPdu.WRITE_SINGLE_REGISTER, pdu));
+    }
+
+    /**
+     * Writes coils without blocking.
+     *
+     * @param startingAddress
+     *        address of the first coil
+     * @param values
+     *        the coil values
+     * @return completes when the device has confirmed the write
+     */
+    public CompletableFuture<Void> writeMultipleCoilsAsync(int startingAddress, boolean[] values)
+    {
+        return submit(buffer -> ModbusPdu.putWriteMultipleCoils(buffer, startingAddress, values),
+                      pdu -> confirm(ModbusPdu.WRITE_MULTIPLE_COILS, pdu));
+    }
+
+    /**
+     * Writes a single coil without blocking.
+     *
+     * @param address
+     *        address of the coil
+     * @param value
+     *        the coil value
+     * @return completes when the device has confirmed the write
+     */
+    public CompletableFuture<Void> writeSingleCoilAsync(int address, boolean value)
+    {
+        return submit(buffer -> ModbusPdu.putWriteSingleCoil(buffer, address, value),
+                      pdu -> confirm(ModbusPdu.WRITE_SINGLE_COIL, pdu));
+    }
+
+    @Override
+    public int[] ReadInputRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusFutures.await(readInputRegistersAsync(startingAddress, quantity), awaitTimeoutMs);
+    }
+
+    @Override
+    public int[] ReadHoldingRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusFutures.await(readHoldingRegistersAsync(startingAddress, quantity), awaitTimeoutMs);
+    }
+
+    @Override
+    public boolean[] ReadDiscreteInputs(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusFutures.await(readDiscreteInputsAsync(startingAddress, quantity), awaitTimeoutMs);
+    }
+
+    @Override
+    public boolean[] ReadCoils(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusFutures.await(readCoilsAsync(startingAddress, quantity), awaitTimeoutMs);
+    }
+
+    @Override
+    public void WriteMultipleCoils(int startingAdress, boolean[] values) throws GenDriverException
+    {
+        ModbusFutures.await(writeMultipleCoilsAsync(startingAdress, values), awaitTimeoutMs);
+    }
+
+    @Override
+    public void WriteSingleCoil(int startingAdress, boolean value) throws GenDriverException
+    {
+        ModbusFutures.await(writeSingleCoilAsync(startingAdress, value), awaitTimeoutMs);
+    }
+
+    @Override
+    public void WriteMultipleRegisters(int startingAdress, int[] values) throws GenDriverException
+    {
+        ModbusFutures.await(writeMultipleRegistersAsync(startingAdress, values), awaitTimeoutMs);
+    }
+
+    @Override
+    public void WriteSingleRegister(int startingAdress, int value) throws GenDriverException
+    {
+        ModbusFutures.await(writeSingleRegisterAsync(startingAdress, value), awaitTimeoutMs);
+    }
+
+    /**
+     * Opens the connection without blocking.
+     *
+     * @return completes when the connection is established
+     */
+    public CompletableFuture<Void> connectAsync()
+    {
+        final var result = new CompletableFuture<Void>();
+        try
+        {
+            loop.execute(() -> connectChannel().whenComplete((r, error) -> {
+                if (error != null)
+                {
+                    connected = false;
+                    result.completeExceptionally(error);
+                }
+                else
+                {
+                    connected = true;
+                    result.complete(null);
+                }
+            }));
+        }
+        catch (RejectedExecutionException e)
+        {
+            connected = false;
+            result.completeExceptionally(closedException(e));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean connect() throws GenDriverException
+    {
+        ModbusFutures.await(connectAsync(), awaitTimeoutMs);
+        return true;
+    }
+
+    @Override
+    public void disconnect()
+    {
+        connected = false;
+        try
+        {
+            loop.execute(() -> closeChannel(new IOException("Disconnected"), true));
+        }
+        catch (RejectedExecutionException e)
+        {
+            // the channel was closed with the event loop
+        }
+    }
+
+    @Override
+    public boolean isConnected()
+    {
+        return connected;
+    }
+
+    /**
+     * @return number of times the channel has been opened, including reconnects
+     */
+    public int getConnectCount()
+    {
+        return connectCount.get();
+    }
+
+    private <T> CompletableFuture<T> submit(PduEncoder encoder, PduDecoder<T> decoder)
+    {
+        final var request = new Request<>(encoder, decoder, System.nanoTime() + responseTimeoutNs);
+        if (!connected)
+        {
+            request.fail(new GenDriverSocketException("Modbus transport to " + address + " is not connected"));
+            return request.future;
+        }
+
+        try
+        {
+            loop.execute(() -> {
+                queued.add(request);
+                if (channel == null)
+                {
+                    connectChannel();
+                }
+                else
+                {
+                    flush();
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            request.fail(closedException(e));
+        }
+        return request.future;
+    }
+
+    private GenDriverSocketException closedException(RejectedExecutionException cause)
+    {
+        return ModbusFutures.socketException("Modbus client of " + address + " is closed", cause);
+    }
+
+    private static Void confirm(int functionCode, ByteBuffer pdu) throws GenDriverModbusException
+    {
+        ModbusPdu.check(functionCode, pdu);
+        return null;
+    }
+
+    /**
+     * Opens the channel if it is not open. Event loop thread only.
+     */
+    private CompletableFuture<Void> connectChannel()
+    {
+        if (channel != null)
+        {
+            return connectFuture;
+        }
+
+        connectFuture = new CompletableFuture<>();
+        try
+        {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            connectDeadlineNs = System.nanoTime() + connectTimeoutNs;
+            connectCount.incrementAndGet();
+            loop.activate(this);
+
+            if (channel.connect(address))
+            {
+                key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+                onConnected();
+            }
+            else
+            {
+                key = channel.register(loop.selector(), SelectionKey.OP_CONNECT, this);
+            }
+        }
+        catch (IOException e)
+        {
+            closeChannel(e, false);
+        }
+        return connectFuture;
+    }
+
+    private void onConnected()
+    {
+        channelConnected = true;
+        LOG.debug("Connected to {}", address);
+        connectFuture.complete(null);
+        flush();
+    }
+
+    /**
+     * Handles the readiness of the channel. Event loop thread only.
+     */
+    void handle(SelectionKey readyKey)
+    {
+        if (readyKey != key)
+        {
+            return;
+        }
+
+        try
+        {
+            if (readyKey.isConnectable())
+            {
+                channel.finishConnect();
+                readyKey.interestOps(SelectionKey.OP_READ);
+                onConnected();
+            }
+            if (readyKey.isValid() && readyKey.isReadable())
+            {
+                read();
+            }
+            if (readyKey.isValid() && readyKey.isWritable())
+            {
+                flush();
+            }
+        }
+        catch (IOException e)
+        {
+            closeChannel(e, false);
+        }
+    }
+
+    /**
+     * Fails the requests whose response timeout has passed. Event loop thread only.
+     */
+    void expire(long nowNs)
+    {
+        if (channel != null && !channelConnected && nowNs - connectDeadlineNs >= 0)
+        {
+            closeChannel(new SocketTimeoutException("Connect timeout"), false);
+            return;
+        }
+
+        final var expired = new ArrayList<Request<?>>();
+        inFlight.values().removeIf(request -> isExpired(request, nowNs, expired));
+        queued.removeIf(request -> isExpired(request, nowNs, expired));
+
+        for (var request : expired)
+        {
+            request.fail(new GenDriverSocketException("Modbus response timeout from " + address));
+        }
+        if (!expired.isEmpty())
+        {
+            flush();
+        }
+    }
+
+    private static boolean isExpired(Request<?> request, long nowNs, List<Request<?>> expired)
+    {
+        if (nowNs - request.deadlineNs >= 0)
+        {
+            expired.add(request);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Closes the channel and fails the pending requests. Event loop thread only.
+     */
+    void closeChannel(IOException cause, boolean expected)
+    {
+        if (channel != null)
+        {
+            if (!expected)
+            {
+                LOG.info("Connection to {} lost: {}", address, cause.toString());
+            }
+            try
+            {
+                channel.close();
+            }
+            catch (IOException e)
+            {
+                LOG.debug("Error closing channel", e);
+            }
+            channel = null;
+            key = null;
+            channelConnected = false;
+            loop.deactivate(this);
+        }
+
+        writeBuffer.clear();
+        readBuffer.clear();
+
+        final var failed = new ArrayList<Request<?>>(inFlight.values());
+        failed.addAll(queued);
+        inFlight.clear();
+        queued.clear();
+
+        final var error = ModbusFutures.socketException("Connection to " + address + " closed", cause);
+        if (connectFuture != null)
+        {
+            connectFuture.completeExceptionally(error);
+        }
+        for (var request : failed)
+        {
+            request.fail(error);
+        }
+    }
+
+    /**
+     * Encodes the queued requests into the write buffer, as far as the in-flight limit allows, and writes the
+     * buffer to the channel.
+     */
+    private void flush()
+    {
+        if (!channelConnected)
+        {
+            return;
+        }
+
+        while (!queued.isEmpty() && inFlight.size() < maxInFlight && writeBuffer.remaining() >= MAX_FRAME_LENGTH)
+        {
+            final var request = queued.poll();
+            final var transactionId = allocateTransactionId();
+            encodeFrame(transactionId, request);
+            inFlight.put(transactionId, request);
+        }
+
+        try
+        {
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            writeBuffer.compact();
+            key.interestOps(writeBuffer.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+        catch (IOException e)
+        {
+            closeChannel(e, false);
+        }
+    }
+
+    private int allocateTransactionId()
+    {
+        do
+        {
+            nextTransactionId = (nextTransactionId + 1) & 0xFFFF;
+        }
+        while (inFlight.containsKey(nextTransactionId));
+        return nextTransactionId;
+    }
+
+    private void encodeFrame(int transactionId, Request<?> request)
+    {
+        final var start = writeBuffer.position();
+        writeBuffer.putShort((short) transactionId)
+                   .putShort((short) 0)                  // protocol identifier 0 = Modbus
+                   .putShort((short) 0)                  // length, set below
+                   .put((byte) unitId);
+        request.encoder.encode(writeBuffer);
+        writeBuffer.putShort(start + 4, (short) (writeBuffer.position() - start - 6));
+    }
+
+    /**
+     * Reads from the channel and completes the requests of all complete frames in the read buffer.
+     */
+    private void read() throws IOException
+    {
+        if (channel.read(readBuffer) < 0)
+        {
+            throw new EOFException("Connection closed by peer");
+        }
+
+        readBuffer.flip();
+        while (readBuffer.remaining() >= MBAP_HEADER_LENGTH)
+        {
+            final var frameStart = readBuffer.position();
+            final var length = readBuffer.getShort(frameStart + 4) & 0xFFFF;
+            if (length < 2 || length > MAX_PDU_LENGTH + 1)
+            {
+                throw new IOException("Invalid MBAP length " + length);
+            }
+
+            final var frameEnd = frameStart + 6 + length;
+            final var limit = readBuffer.limit();
+            if (frameEnd > limit)
+            {
+                break;
+            }
+
+            final var transactionId = readBuffer.getShort(frameStart) & 0xFFFF;
+            final var request = inFlight.remove(transactionId);
+            if (request != null)
+            {
+                // the decoder sees the PDU only, without copying it out of the buffer
+                readBuffer.position(frameStart + MBAP_HEADER_LENGTH).limit(frameEnd);
+                request.complete(readBuffer);
+                readBuffer.limit(limit);
+            }
+            else
+            {
+                LOG.debug("Discarding response with unknown transaction ID {}", transactionId);
+            }
+            readBuffer.position(frameEnd);
+        }
+        readBuffer.compact();
+
+        flush();
+    }
+}
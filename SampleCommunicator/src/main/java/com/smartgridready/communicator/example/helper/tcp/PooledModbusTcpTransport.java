@@ -0,0 +1,241 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.tcp;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import com.smartgridready.driver.api.common.GenDriverException;
+import com.smartgridready.driver.api.modbus.GenDriverAPI4Modbus;
+import com.smartgridready.driver.api.modbus.GenDriverModbusException;
+import com.smartgridready.driver.api.modbus.GenDriverSocketException;
+
+/**
+ * Modbus TCP transport of one unit ID, using a connection shared with the other unit IDs behind the same
+ * {@code ip:port}. Created by a {@link ModbusTcpClientPool}.
+ * <p>
+ * The blocking {@code GenDriverAPI4Modbus} methods can be called concurrently by several threads, their requests
+ * are pipelined on the shared connection, and fail with a {@code GenDriverSocketException} if no response arrived
+ * in time. The {@code ...Async} methods never block and allow to pipeline requests from a single thread.
+ * <p>
+ * Reads that fail because the connection was lost are retried once on a new connection. Writes are not retried,
+ * since it is unknown whether the device has executed them.
+ */
+public class PooledModbusTcpTransport implements GenDriverAPI4Modbus
+{
+    private final ModbusTcpClientPool pool;
+    private final ModbusTcpConnection connection;
+    private final int unitId;
+    private final long awaitTimeoutMs;
+    private boolean connected = false;
+
+    PooledModbusTcpTransport(ModbusTcpClientPool pool, ModbusTcpConnection connection, int unitId)
+    {
+        this.pool = pool;
+        this.connection = connection;
+        this.unitId = unitId;
+        this.awaitTimeoutMs = connection.getAwaitTimeoutMs();
+    }
+
+    /**
+     * @return the Modbus unit ID of this transport
+     */
+    public int getUnitId()
+    {
+        return unitId;
+    }
+
+    /**
+     * Reads holding registers without blocking.
+     *
+     * @param startingAddress
+     *        address of the first register
+     * @param quantity
+     *        number of registers
+     * @return the future register values
+     */
+    public CompletableFuture<int[]> readHoldingRegistersAsync(int startingAddress, int quantity)
+    {
+        return readAsync(ModbusPdu.READ_HOLDING_REGISTERS, startingAddress, quantity)
+                .thenApply(response -> registers(ModbusPdu.READ_HOLDING_REGISTERS, response, quantity));
+    }
+
+    /**
+     * Reads input registers without blocking.
+     *
+     * @param startingAddress
+     *        address of the first register
+     * @param quantity
+     *        number of registers
+     * @return the future register values
+     */
+    public CompletableFuture<int[]> readInputRegistersAsync(int startingAddress, int quantity)
+    {
+        return readAsync(ModbusPdu.READ_INPUT_REGISTERS, startingAddress, quantity)
+                .thenApply(response -> registers(ModbusPdu.READ_INPUT_REGISTERS, response, quantity));
+    }
+
+    /**
+     * Writes holding registers without blocking.
+     *
+     * @param startingAddress
+     *        address of the first register
+     * @param values
+     *        the register values
+     * @return completes when the device has confirmed the write
+     */
+    public CompletableFuture<Void> writeMultipleRegistersAsync(int startingAddress, int[] values)
+    {
+        return connection.send(unitId, ModbusPdu.writeMultipleRegisters(startingAddress, values))
+                .thenAccept(response -> check(ModbusPdu.WRITE_MULTIPLE_REGISTERS, response));
+    }
+
+    @Override
+    public int[] ReadInputRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusFutures.await(readInputRegistersAsync(startingAddress, quantity), awaitTimeoutMs);
+    }
+
+    @Override
+    public int[] ReadHoldingRegisters(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusFutures.await(readHoldingRegistersAsync(startingAddress, quantity), awaitTimeoutMs);
+    }
+
+    @Override
+    public boolean[] ReadDiscreteInputs(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusFutures.await(readAsync(ModbusPdu.READ_DISCRETE_INPUTS, startingAddress, quantity)
+                .thenApply(response -> bits(ModbusPdu.READ_DISCRETE_INPUTS, response, quantity)), awaitTimeoutMs);
+    }
+
+    @Override
+    public boolean[] ReadCoils(int startingAddress, int quantity) throws GenDriverException
+    {
+        return ModbusFutures.await(readAsync(ModbusPdu.READ_COILS, startingAddress, quantity)
+                .thenApply(response -> bits(ModbusPdu.READ_COILS, response, quantity)), awaitTimeoutMs);
+    }
+
+    @Override
+    public void WriteMultipleCoils(int startingAdress, boolean[] values) throws GenDriverException
+    {
+        ModbusFutures.await(connection.send(unitId, ModbusPdu.writeMultipleCoils(startingAdress, values))
+                .thenAccept(response -> check(ModbusPdu.WRITE_MULTIPLE_COILS, response)), awaitTimeoutMs);
+    }
+
+    @Override
+    public void WriteSingleCoil(int startingAdress, boolean value) throws GenDriverException
+    {
+        ModbusFutures.await(connection.send(unitId, ModbusPdu.writeSingleCoil(startingAdress, value))
+                .thenAccept(response -> check(ModbusPdu.WRITE_SINGLE_COIL, response)), awaitTimeoutMs);
+    }
+
+    @Override
+    public void WriteMultipleRegisters(int startingAdress, int[] values) throws GenDriverException
+    {
+        ModbusFutures.await(writeMultipleRegistersAsync(startingAdress, values), awaitTimeoutMs);
+    }
+
+    @Override
+    public void WriteSingleRegister(int startingAdress, int value) throws GenDriverException
+    {
+        ModbusFutures.await(connection.send(unitId, ModbusPdu.writeSingleRegister(startingAdress, value))
+                .thenAccept(response -> check(ModbusPdu.WRITE_SINGLE_REGISTER, response)), awaitTimeoutMs);
+    }
+
+    @Override
+    public synchronized boolean connect() throws GenDriverException
+    {
+        if (!connected)
+        {
+            pool.acquire(connection);
+            connected = true;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void disconnect()
+    {
+        if (connected)
+        {
+            connected = false;
+            pool.release(connection);
+        }
+    }
+
+    @Override
+    public synchronized boolean isConnected()
+    {
+        return connected;
+    }
+
+    private CompletableFuture<byte[]> readAsync(int functionCode, int startingAddress, int quantity)
+    {
+        final var pdu = ModbusPdu.read(functionCode, startingAddress, quantity);
+
+        // reads are idempotent and retried once if the connection was lost
+        return connection.send(unitId, pdu)
+                .handle((response, error) -> error == null && response != null
+                        ? CompletableFuture.completedFuture(response)
+                        : isConnectionLoss(error) ? connection.send(unitId, pdu) : CompletableFuture.<byte[]>failedFuture(error))
+                .thenCompose(future -> future);
+    }
+
+    private static boolean isConnectionLoss(Throwable error)
+    {
+        return ModbusFutures.unwrap(error) instanceof GenDriverSocketException;
+    }
+
+    private static int[] registers(int functionCode, byte[] response, int quantity)
+    {
+        try
+        {
+            return ModbusPdu.registers(functionCode, response, quantity);
+        }
+        catch (GenDriverModbusException e)
+        {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static boolean[] bits(int functionCode, byte[] response, int quantity)
+    {
+        try
+        {
+            return ModbusPdu.bits(functionCode, response, quantity);
+        }
+        catch (GenDriverModbusException e)
+        {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static void check(int functionCode, byte[] response)
+    {
+        try
+        {
+            ModbusPdu.check(functionCode, response);
+        }
+        catch (GenDriverModbusException e)
+        {
+            throw new CompletionException(e);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright(c) 2024 Verein SmartGridready Switzerland
+ * 
+ * This Open Source Software is BSD 3 clause licensed:
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the following conditions are met:
+ * 1. Redistributions of source code must retain the above copyright notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following disclaimer in
+ * the documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote products derived from
+ * this software without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+ * THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.smartgridready.communicator.example.helper.write;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.smartgridready.communicator.common.api.values.Value;
+import com.smartgridready.communicator.example.helper.DataPointKey;
+
+/**
+ * Write-behind queue of one device that keeps only the newest pending value per data point.
+ * <p>
+ * A controller may set the same data point, e.g. {@code Curtailment/HemsCurrentLimit}, faster than a slow link
+ * can write it. A plain queue then grows without bounds and each write waits behind all outdated ones. This queue
+ * holds at most one pending value per data point: a value submitted while another one is pending replaces it
+ * (last write wins). The pending data points are written in the order they became pending, at most
+ * {@code maxConcurrentWrites} at a time and never more than one write per data point, so the writes of a data
+ * point are applied in submission order.
+ * <p>
+ * Each {@link #submit(String, String, Value)} returns a future that completes with the value actually written
+ * once the submitted value or a newer one has been applied. If a write fails while a newer value is pending,
+ * its futures wait for the newer value; otherwise they complete exceptionally.
+ */
+public class ConflatingWriteQueue
+{
+    private final DataPointWriter writer;
+    private final Executor executor;
+    private final int maxConcurrentWrites;
+
+    private final Map<DataPointKey, Slot> slots = new HashMap<>();
+    private final ArrayDeque<Slot> ready = new ArrayDeque<>();
+    private int activeWrites;
+
+    private long submittedCount;
+    private long conflatedCount;
+    private long writtenCount;
+    private long failedCount;
+
+    /**
+     * Writes a data point, e.g. {@code device::setVal}.
+     */
+    @FunctionalInterface
+    public interface DataPointWriter
+    {
+        /**
+         * @param profileName
+         *        name of the functional profile
+         * @param dataPointName
+         *        name of the data point
+         * @param value
+         *        the value to write
+         * @throws Exception
+         *         if the write failed
+         */
+        void write(String profileName, String dataPointName, Value value) throws Exception;
+    }
+
+    /**
+     * Pending and in-flight state of one data point.
+     */
+    private static final class Slot
+    {
+        private final DataPointKey key;
+        private Value pending;
+        private List<CompletableFuture<Value>> waiters = new ArrayList<>();
+        private List<CompletableFuture<Value>> inFlight = List.of();
+        private boolean writing;
+
+        private Slot(DataPointKey key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param writer
+     *        the write function of the device
+     * @param executor
+     *        executes the writes
+     * @param maxConcurrentWrites
+     *        maximum number of writes in flight, {@code 1} for a device that handles one request at a time
+     */
+    public ConflatingWriteQueue(DataPointWriter writer, Executor executor, int maxConcurrentWrites)
+    {
+        if (maxConcurrentWrites < 1)
+        {
+            throw new IllegalArgumentException("maxConcurrentWrites must be at least 1: " + maxConcurrentWrites);
+        }
+        this.writer = Objects.requireNonNull(writer);
+        this.executor = Objects.requireNonNull(executor);
+        this.maxConcurrentWrites = maxConcurrentWrites;
+    }
+
+    /**
+     * Queues a value, replacing the pending value of the data point if there is one.
+     *
+     * @param profileName
+     *        name of the functional profile
+     * @param dataPointName
+     *        name of the data point
+     * @param value
+     *        the value to write
+     * @return completes with the value written when this value or a newer one has been applied
+     */
+    public CompletableFuture<Value> submit(String profileName, String dataPointName, Value value)
+    {
+        Objects.requireNonNull(value);
+        final var key = DataPointKey.of(profileName, dataPointName);
+        final var future = new CompletableFuture<Value>();
+
+        synchronized (this)
+        {
+            submittedCount++;
+            final var slot = slots.computeIfAbsent(key, Slot::new);
+            if (slot.pending != null)
+            {
+                conflatedCount++;
+            }
+            else if (!slot.writing)
+            {
+                ready.add(slot);
+            }
+            slot.pending = value;
+            slot.waiters.add(future);
+        }
+
+        dispatch();
+        return future;
+    }
+
+    /**
+     * @return completes when all values submitted so far, or newer ones, have been applied or have failed
+     */
+    public CompletableFuture<Void> flush()
+    {
+        final var futures = new ArrayList<CompletableFuture<Value>>();
+        synchronized (this)
+        {
+            for (var slot : slots.values())
+            {
+                futures.addAll(slot.inFlight);
+                futures.addAll(slot.waiters);
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .handle((result, error) -> null);
+    }
+
+    /**
+     * @return number of data points with a pending value
+     */
+    public synchronized int getPendingCount()
+    {
+        return (int) slots.values().stream().filter(slot -> slot.pending != null).count();
+    }
+
+    /**
+     * @return number of writes in flight
+     */
+    public synchronized int getActiveWriteCount()
+    {
+        return activeWrites;
+    }
+
+    /**
+     * @return number of submitted values
+     */
+    public synchronized long getSubmittedCount()
+    {
+        return submittedCount;
+    }
+
+    /**
+     * @return number of pending values replaced by a newer one before being written
+     */
+    public synchronized long getConflatedCount()
+    {
+        return conflatedCount;
+    }
+
+    /**
+     * @return number of successful writes
+     */
+    public synchronized long getWrittenCount()
+    {
+        return writtenCount;
+    }
+
+    /**
+     * @return number of failed writes
+     */
+    public synchronized long getFailedCount()
+    {
+        return failedCount;
+    }
+
+    private void dispatch()
+    {
+        while (true)
+        {
+            final Slot slot;
+            final Value value;
+            final List<CompletableFuture<Value>> waiters;
+            synchronized (this)
+            {
+                if (activeWrites >= maxConcurrentWrites || ready.isEmpty())
+                {
+                    return;
+                }
+                slot = ready.poll();
+                value = slot.pending;
+                waiters = slot.waiters;
+                slot.pending = null;
+                slot.waiters = new ArrayList<>();
+                slot.inFlight = waiters;
+                slot.writing = true;
+                activeWrites++;
+            }
+
+            try
+            {
+                executor.execute(() -> write(slot, value, waiters));
+            }
+            catch (RejectedExecutionException e)
+            {
+                completed(slot, value, waiters, e);
+            }
+        }
+    }
+
+    private void write(Slot slot, Value value, List<CompletableFuture<Value>> waiters)
+    {
+        Exception error = null;
+        try
+        {
+            writer.write(slot.key.getProfileName(), slot.key.getDataPointName(), value);
+        }
+        catch (Exception e)
+        {
+            error = e;
+        }
+        completed(slot, value, waiters, error);
+    }
+
+    private void completed(Slot slot, Value value, List<CompletableFuture<Value>> waiters, Exception error)
+    {
+        var failedWaiters = waiters;
+        synchronized (this)
+        {
+            activeWrites--;
+            slot.writing = false;
+            slot.inFlight = List.of();
+            if (error == null)
+            {
+                writtenCount++;
+            }
+            else
+            {
+                failedCount++;
+            }
+
+            if (slot.pending != null)
+            {
+                if (error != null)
+                {
+                    // superseded by a newer value: wait for that one
+                    slot.waiters.addAll(0, waiters);
+                    failedWaiters = List.of();
+                }
+                ready.add(slot);
+            }
+            else
+            {
+                slots.remove(slot.key);
+            }
+        }
+
+        if (error == null)
+        {
+            waiters.forEach(waiter -> waiter.complete(value));
+        }
+        else
+        {
+            for (var waiter : failedWaiters)
+            {
+                waiter.completeExceptionally(error);
+            }
+        }
+        dispatch();
+    }
+}